@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bench;
+
+/**
+ * A throughput benchmark.  {@link BenchmarkRunner} calls {@link #setUp()} once,  then {@link #run()} repeatedly in
+ * timed iterations,  then {@link #tearDown()}.  The value returned by run() is consumed by the runner so the work
+ * cannot be optimized away.
+ * <p/>
+ * A benchmark class can be registered more than once with different values of a single parameter,  e.g. the file
+ * format decoded.
+ */
+public abstract class Benchmark {
+
+    private final String paramName;
+    private final String paramValue;
+
+    protected Benchmark() {
+        this(null, null);
+    }
+
+    protected Benchmark(String paramName, String paramValue) {
+        this.paramName = paramName;
+        this.paramValue = paramValue;
+    }
+
+    public String getName() {
+        return paramName == null ? getClass().getName() : getClass().getName() + ":" + paramValue;
+    }
+
+    public String getParamName() {
+        return paramName;
+    }
+
+    public String getParamValue() {
+        return paramValue;
+    }
+
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Perform the operations measured
+     *
+     * @return a result depending on all the work done
+     */
+    public abstract Object run() throws Exception;
+
+    /**
+     * @return the number of operations performed by one call of run(),  e.g. lines decoded.  Throughput is reported
+     *         per operation.
+     */
+    public int getOperationsPerRun() {
+        return 1;
+    }
+
+    public void tearDown() throws Exception {
+    }
+}
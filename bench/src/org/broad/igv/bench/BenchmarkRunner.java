@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bench;
+
+import jargs.gnu.CmdLineParser;
+import org.apache.commons.math.distribution.TDistributionImpl;
+import org.broad.igv.Globals;
+import org.broad.igv.bigwig.BigWigQueryBenchmark;
+import org.broad.igv.data.SummaryTileBenchmark;
+import org.broad.igv.feature.FeatureAtBenchmark;
+import org.broad.igv.feature.tribble.CodecBenchmark;
+import org.broad.igv.hic.data.ReadBlockBenchmark;
+import org.broad.igv.sam.AlignmentCountsBenchmark;
+import org.broad.igv.sam.AlignmentPackerBenchmark;
+import org.broad.igv.tdf.ReadTileBenchmark;
+import org.broad.igv.util.FieldTokenizerBenchmark;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmarks and writes their throughput as JSON,  in the layout of JMH's JSON results so the files can be
+ * read by tools written for JMH.  Each benchmark runs warmup iterations and then measured iterations of a fixed
+ * duration,  in the order listed in {@link #getBenchmarks()}.
+ * <p/>
+ * As with JMH,  each benchmark runs in fresh JVMs,  {@code forks} of them one after the other,  started with the
+ * java command,  class path and JVM options of this one.  Code compiled and profiled for one benchmark then does not
+ * bias the next.  With 0 forks all benchmarks run in this JVM,  which is only useful for debugging.
+ * <p/>
+ * Usage:  BenchmarkRunner [-o output.json] [-f regex] [-w warmupIterations] [-i iterations] [-t iterationMillis]
+ * [-F forks]
+ */
+public class BenchmarkRunner {
+
+    static final int DEFAULT_WARMUP_ITERATIONS = 3;
+    static final int DEFAULT_ITERATIONS = 5;
+    static final int DEFAULT_ITERATION_MILLIS = 1000;
+    static final int DEFAULT_FORKS = 1;
+
+    // Confidence level of the reported score error,  as in JMH
+    static final double CONFIDENCE = 0.999;
+
+    // Results of run() are folded in here
+    static volatile int sink;
+
+    private int warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+    private int iterations = DEFAULT_ITERATIONS;
+    private int iterationMillis = DEFAULT_ITERATION_MILLIS;
+    private int forks = DEFAULT_FORKS;
+
+    static List<Benchmark> getBenchmarks() {
+        return Arrays.asList(
+                new FieldTokenizerBenchmark("tokenizer"),
+                new FieldTokenizerBenchmark("split"),
+                new CodecBenchmark("bed"),
+                new CodecBenchmark("gff"),
+                new CodecBenchmark("vcf"),
+                new AlignmentPackerBenchmark(),
+                new AlignmentCountsBenchmark("dense"),
+                new AlignmentCountsBenchmark("sparse"),
+                new ReadTileBenchmark("raw"),
+                new ReadTileBenchmark("zoom"),
+                new BigWigQueryBenchmark("raw"),
+                new BigWigQueryBenchmark("zoom"),
+                new SummaryTileBenchmark("chromosome"),
+                new SummaryTileBenchmark("region"),
+                new FeatureAtBenchmark(),
+                new ReadBlockBenchmark("coarse"),
+                new ReadBlockBenchmark("fine"));
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        CmdLineParser parser = new CmdLineParser();
+        CmdLineParser.Option outputOption = parser.addStringOption('o', "output");
+        CmdLineParser.Option filterOption = parser.addStringOption('f', "filter");
+        CmdLineParser.Option warmupOption = parser.addIntegerOption('w', "warmup");
+        CmdLineParser.Option iterationsOption = parser.addIntegerOption('i', "iterations");
+        CmdLineParser.Option timeOption = parser.addIntegerOption('t', "time");
+        CmdLineParser.Option forksOption = parser.addIntegerOption('F', "forks");
+        // Used by a forked JVM:  run the benchmark of this name and write the scores to a file
+        CmdLineParser.Option forkedOption = parser.addStringOption("forked");
+        CmdLineParser.Option scoresOption = parser.addStringOption("scores");
+        try {
+            parser.parse(args);
+        } catch (CmdLineParser.OptionException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BenchmarkRunner [-o output.json] [-f regex] [-w warmupIterations] " +
+                    "[-i iterations] [-t iterationMillis] [-F forks]");
+            System.exit(1);
+        }
+
+        Globals.setHeadless(true);
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        runner.warmupIterations = (Integer) parser.getOptionValue(warmupOption, DEFAULT_WARMUP_ITERATIONS);
+        runner.iterations = (Integer) parser.getOptionValue(iterationsOption, DEFAULT_ITERATIONS);
+        runner.iterationMillis = (Integer) parser.getOptionValue(timeOption, DEFAULT_ITERATION_MILLIS);
+        runner.forks = (Integer) parser.getOptionValue(forksOption, DEFAULT_FORKS);
+
+        String forked = (String) parser.getOptionValue(forkedOption, null);
+        if (forked != null) {
+            for (Benchmark benchmark : getBenchmarks()) {
+                if (benchmark.getName().equals(forked)) {
+                    writeScores(runner.measure(benchmark), new File((String) parser.getOptionValue(scoresOption)));
+                    System.exit(0);
+                }
+            }
+            System.err.println("Unknown benchmark: " + forked);
+            System.exit(1);
+        }
+
+        String filter = (String) parser.getOptionValue(filterOption, null);
+        Pattern pattern = filter == null ? null : Pattern.compile(filter);
+
+        List<Result> results = new ArrayList<Result>();
+        for (Benchmark benchmark : getBenchmarks()) {
+            if (pattern == null || pattern.matcher(benchmark.getName()).find()) {
+                Result result = runner.run(benchmark);
+                System.out.println(String.format("%-60s %14.1f +- %.1f ops/s",
+                        benchmark.getName(), result.getScore(), result.getScoreError()));
+                results.add(result);
+            }
+        }
+
+        String output = (String) parser.getOptionValue(outputOption, null);
+        if (output != null) {
+            runner.writeJson(results, new File(output));
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Run the benchmark in each fork,  or in this JVM if there are no forks
+     */
+    Result run(Benchmark benchmark) throws Exception {
+        List<double[]> scores = new ArrayList<double[]>();
+        if (forks <= 0) {
+            scores.add(measure(benchmark));
+        }
+        for (int f = 0; f < forks; f++) {
+            scores.add(runFork(benchmark));
+        }
+        return new Result(benchmark, scores);
+    }
+
+    private double[] runFork(Benchmark benchmark) throws Exception {
+        File scoresFile = File.createTempFile("benchmark", ".txt");
+        try {
+            List<String> command = new ArrayList<String>();
+            command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(BenchmarkRunner.class.getName());
+            command.addAll(Arrays.asList("-w", String.valueOf(warmupIterations), "-i", String.valueOf(iterations),
+                    "-t", String.valueOf(iterationMillis), "--forked", benchmark.getName(),
+                    "--scores", scoresFile.getAbsolutePath()));
+
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            Process process = builder.start();
+            InputStream is = process.getInputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = is.read(buffer)) >= 0) {
+                System.out.write(buffer, 0, n);
+            }
+            System.out.flush();
+            int exitValue = process.waitFor();
+            if (exitValue != 0) {
+                throw new RuntimeException("Benchmark " + benchmark.getName() + " failed,  exit value " + exitValue);
+            }
+            return readScores(scoresFile);
+        } finally {
+            scoresFile.delete();
+        }
+    }
+
+    /**
+     * Run the benchmark in this JVM
+     *
+     * @return the throughput of each measured iteration
+     */
+    double[] measure(Benchmark benchmark) throws Exception {
+
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                runIteration(benchmark);
+            }
+            double[] scores = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                scores[i] = runIteration(benchmark);
+            }
+            return scores;
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    static void writeScores(double[] scores, File file) throws IOException {
+        PrintWriter pw = new PrintWriter(new FileWriter(file));
+        try {
+            for (double score : scores) {
+                pw.println(score);
+            }
+        } finally {
+            pw.close();
+        }
+    }
+
+    static double[] readScores(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String nextLine;
+            while ((nextLine = reader.readLine()) != null) {
+                lines.add(nextLine);
+            }
+        } finally {
+            reader.close();
+        }
+        double[] scores = new double[lines.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = Double.parseDouble(lines.get(i));
+        }
+        return scores;
+    }
+
+    /**
+     * Call run() until the iteration time has passed
+     *
+     * @return operations per second
+     */
+    private double runIteration(Benchmark benchmark) throws Exception {
+        System.gc();
+        long runs = 0;
+        long duration = iterationMillis * 1000000L;
+        long t0 = System.nanoTime();
+        long elapsed;
+        do {
+            Object result = benchmark.run();
+            sink ^= System.identityHashCode(result);
+            runs++;
+            elapsed = System.nanoTime() - t0;
+        } while (elapsed < duration);
+        return runs * benchmark.getOperationsPerRun() / (elapsed / 1.0e9);
+    }
+
+    void writeJson(List<Result> results, File file) throws IOException {
+        PrintWriter pw = new PrintWriter(new FileWriter(file));
+        try {
+            pw.println("[");
+            for (int r = 0; r < results.size(); r++) {
+                Result result = results.get(r);
+                Benchmark benchmark = result.benchmark;
+                pw.println("    {");
+                pw.println("        \"benchmark\" : " + quote(benchmark.getClass().getName()) + ",");
+                pw.println("        \"mode\" : \"thrpt\",");
+                pw.println("        \"threads\" : 1,");
+                pw.println("        \"forks\" : " + result.scores.size() + ",");
+                pw.println("        \"jvm\" : " + quote(System.getProperty("java.home")) + ",");
+                pw.println("        \"jdkVersion\" : " + quote(System.getProperty("java.version")) + ",");
+                pw.println("        \"warmupIterations\" : " + warmupIterations + ",");
+                pw.println("        \"warmupTime\" : \"" + iterationMillis + " ms\",");
+                pw.println("        \"measurementIterations\" : " + iterations + ",");
+                pw.println("        \"measurementTime\" : \"" + iterationMillis + " ms\",");
+                if (benchmark.getParamName() != null) {
+                    pw.println("        \"params\" : {");
+                    pw.println("            " + quote(benchmark.getParamName()) + " : " +
+                            quote(benchmark.getParamValue()));
+                    pw.println("        },");
+                }
+                pw.println("        \"primaryMetric\" : {");
+                pw.println("            \"score\" : " + number(result.getScore()) + ",");
+                pw.println("            \"scoreError\" : " + number(result.getScoreError()) + ",");
+                pw.println("            \"scoreConfidence\" : [" + number(result.getScore() - result.getScoreError()) +
+                        ", " + number(result.getScore() + result.getScoreError()) + "],");
+                pw.println("            \"scoreUnit\" : \"ops/s\",");
+                // One array of iteration scores per fork
+                StringBuffer rawData = new StringBuffer();
+                for (int f = 0; f < result.scores.size(); f++) {
+                    double[] forkScores = result.scores.get(f);
+                    rawData.append(f == 0 ? "[" : ", [");
+                    for (int i = 0; i < forkScores.length; i++) {
+                        rawData.append(i == 0 ? "" : ", ").append(number(forkScores[i]));
+                    }
+                    rawData.append("]");
+                }
+                pw.println("            \"rawData\" : [" + rawData + "]");
+                pw.println("        }");
+                pw.println(r < results.size() - 1 ? "    }," : "    }");
+            }
+            pw.println("]");
+        } finally {
+            pw.close();
+        }
+    }
+
+    static String quote(String s) {
+        StringBuffer buffer = new StringBuffer("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.append('\\').append(c);
+            } else if (c < 0x20) {
+                buffer.append(String.format("\\u%04x", (int) c));
+            } else {
+                buffer.append(c);
+            }
+        }
+        return buffer.append('"').toString();
+    }
+
+    // JSON has no NaN
+    static String number(double v) {
+        return Double.isNaN(v) || Double.isInfinite(v) ? "\"NaN\"" : String.valueOf(v);
+    }
+
+    static class Result {
+
+        final Benchmark benchmark;
+        final List<double[]> scores;
+
+        Result(Benchmark benchmark, List<double[]> scores) {
+            this.benchmark = benchmark;
+            this.scores = scores;
+        }
+
+        /**
+         * @return the scores of all iterations of all forks
+         */
+        double[] getAllScores() {
+            int n = 0;
+            for (double[] forkScores : scores) {
+                n += forkScores.length;
+            }
+            double[] all = new double[n];
+            int i = 0;
+            for (double[] forkScores : scores) {
+                System.arraycopy(forkScores, 0, all, i, forkScores.length);
+                i += forkScores.length;
+            }
+            return all;
+        }
+
+        double getScore() {
+            double[] all = getAllScores();
+            double sum = 0;
+            for (double score : all) {
+                sum += score;
+            }
+            return sum / all.length;
+        }
+
+        /**
+         * @return half the width of the confidence interval of the mean,  NaN for fewer than 2 iterations
+         */
+        double getScoreError() {
+            double[] all = getAllScores();
+            int n = all.length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+            double mean = getScore();
+            double ss = 0;
+            for (double score : all) {
+                ss += (score - mean) * (score - mean);
+            }
+            double sd = Math.sqrt(ss / (n - 1));
+            try {
+                double t = new TDistributionImpl(n - 1).inverseCumulativeProbability(1 - (1 - CONFIDENCE) / 2);
+                return t * sd / Math.sqrt(n);
+            } catch (Exception e) {
+                return Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bench;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.hic.data.Chromosome;
+import org.broad.igv.sam.Alignment;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.tools.BigWigConsumer;
+import org.broad.igv.tools.Preprocessor;
+import org.broad.igv.tools.TestFileGenerator;
+import org.broad.igv.tools.parsers.WiggleParser;
+import org.broad.igv.track.WindowFunction;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Synthetic input files for the benchmarks,  generated by {@link TestFileGenerator} with a fixed seed.  Binary
+ * formats are converted from the generated text files with the igvtools and Hi-C preprocessors.  Files are written
+ * to the directory given by the system property "igv.bench.dir",  by default igv-bench in the temp directory,  and
+ * are reused by later runs.
+ */
+public class Fixtures {
+
+    private static Logger log = Logger.getLogger(Fixtures.class);
+
+    static final long SEED = 1;
+
+    static final int FEATURE_ROWS = 100000;
+    static final int VCF_ROWS = 20000;
+    static final int VCF_SAMPLES = 10;
+    static final int WIG_ROWS = 1000000;
+    static final int TDF_ZOOM_LEVELS = 7;
+    static final int PAIR_COUNT = 500000;
+
+    public static final int READ_COUNT = 100000;
+    public static final int READ_LENGTH = 100;
+    public static final String ALIGNMENT_CHR = "chr1";
+    public static final int ALIGNMENT_START = 1000000;
+    public static final int ALIGNMENT_END = 2000000;
+
+    private static SyntheticGenome genome;
+    private static List<Alignment> alignments;
+
+    public static synchronized Genome getGenome() {
+        if (genome == null) {
+            genome = new SyntheticGenome("synthetic", TestFileGenerator.getChromosomeSizes());
+        }
+        return genome;
+    }
+
+    public static File getDirectory() {
+        File dir = new File(System.getProperty("igv.bench.dir",
+                new File(System.getProperty("java.io.tmpdir"), "igv-bench").getAbsolutePath()));
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    public static synchronized File getBedFile() throws IOException {
+        return generate("features.bed", FEATURE_ROWS, 0);
+    }
+
+    public static synchronized File getGffFile() throws IOException {
+        // Two lines per row,  a gene and an exon
+        return generate("features.gff3", FEATURE_ROWS / 2, 0);
+    }
+
+    public static synchronized File getVcfFile() throws IOException {
+        return generate("variants.vcf", VCF_ROWS, VCF_SAMPLES);
+    }
+
+    public static synchronized File getWigFile() throws IOException {
+        return generate("values.wig", WIG_ROWS, 1);
+    }
+
+    public static synchronized File getAlignmentFile() throws IOException {
+        File file = new File(getDirectory(), "alignments.sam");
+        if (!file.exists()) {
+            File tmp = new File(getDirectory(), "tmp-" + file.getName());
+            TestFileGenerator.generateAlignmentFile(tmp.getAbsolutePath(), ALIGNMENT_CHR, ALIGNMENT_START,
+                    ALIGNMENT_END, READ_COUNT, READ_LENGTH, new Random(SEED));
+            rename(tmp, file);
+        }
+        return file;
+    }
+
+    public static synchronized File getTDFFile() throws IOException {
+        File file = new File(getDirectory(), "values.tdf");
+        if (!file.exists()) {
+            File wigFile = getWigFile();
+            File tmp = new File(getDirectory(), "tmp-" + file.getName());
+            log.info("Generating " + file);
+            Preprocessor preprocessor = new Preprocessor(tmp, getGenome(), Arrays.asList(WindowFunction.mean), -1, null);
+            preprocessor.preprocess(wigFile, TDF_ZOOM_LEVELS, null);
+            preprocessor.finish();
+            rename(tmp, file);
+        }
+        return file;
+    }
+
+    public static synchronized File getBigWigFile() throws IOException {
+        File file = new File(getDirectory(), "values.bw");
+        if (!file.exists()) {
+            File wigFile = getWigFile();
+            File tmp = new File(getDirectory(), "tmp-" + file.getName());
+            log.info("Generating " + file);
+            BigWigConsumer consumer = new BigWigConsumer(tmp, getGenome());
+            new WiggleParser(wigFile.getAbsolutePath(), consumer, getGenome()).parse();
+            consumer.finish();
+            rename(tmp, file);
+        }
+        return file;
+    }
+
+    public static synchronized File getHiCFile() throws IOException {
+        File file = new File(getDirectory(), "contacts.hic");
+        if (!file.exists()) {
+            File pairsFile = new File(getDirectory(), "pairs.txt");
+            if (!pairsFile.exists()) {
+                File tmp = new File(getDirectory(), "tmp-" + pairsFile.getName());
+                TestFileGenerator.generatePairsFile(tmp.getAbsolutePath(), PAIR_COUNT, new Random(SEED));
+                rename(tmp, pairsFile);
+            }
+            File tmp = new File(getDirectory(), "tmp-" + file.getName());
+            log.info("Generating " + file);
+            org.broad.igv.hic.tools.Preprocessor preprocessor =
+                    new org.broad.igv.hic.tools.Preprocessor(tmp, getHiCChromosomes());
+            preprocessor.preprocess(Arrays.asList(pairsFile.getAbsolutePath()));
+            rename(tmp, file);
+        }
+        return file;
+    }
+
+    /**
+     * @return the chromosomes of the Hi-C fixture,  "All" first,  with index 1 being chr1
+     */
+    public static List<Chromosome> getHiCChromosomes() {
+        List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+        chromosomes.add(new Chromosome(0, "All", (int) (getGenome().getLength() / 1000)));
+        for (String name : getGenome().getChromosomeNames()) {
+            chromosomes.add(new Chromosome(chromosomes.size(), name, getGenome().getChromosome(name).getLength()));
+        }
+        return chromosomes;
+    }
+
+    /**
+     * @return the alignments of the SAM fixture,  in order
+     */
+    public static synchronized List<Alignment> getAlignments() throws IOException {
+        if (alignments == null) {
+            AlignmentReader reader = AlignmentReaderFactory.getReader(getAlignmentFile().getAbsolutePath(), false);
+            CloseableIterator<Alignment> iter = reader.iterator();
+            alignments = new ArrayList<Alignment>(READ_COUNT);
+            while (iter.hasNext()) {
+                alignments.add(iter.next());
+            }
+            iter.close();
+            reader.close();
+        }
+        return alignments;
+    }
+
+    /**
+     * Read the lines of a file,  skipping header and comment lines
+     */
+    public static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String nextLine;
+            while ((nextLine = reader.readLine()) != null) {
+                if (!nextLine.startsWith("#") && !nextLine.startsWith("track")) {
+                    lines.add(nextLine);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static File generate(String name, int nRows, int nSamples) throws IOException {
+        File file = new File(getDirectory(), name);
+        if (!file.exists()) {
+            File tmp = new File(getDirectory(), "tmp-" + name);
+            log.info("Generating " + file);
+            TestFileGenerator.generateTestFile(tmp.getAbsolutePath(), true, nRows, nSamples, new Random(SEED));
+            rename(tmp, file);
+        }
+        return file;
+    }
+
+    // Fixtures are written under a temporary name so an interrupted run does not leave a partial file
+    private static void rename(File tmp, File file) throws IOException {
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not rename " + tmp + " to " + file);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bench;
+
+import org.broad.igv.Globals;
+import org.broad.igv.feature.Chromosome;
+import org.broad.igv.feature.ChromosomeImpl;
+import org.broad.igv.feature.genome.ChromosomeCoordinate;
+import org.broad.igv.feature.genome.Genome;
+
+import java.util.*;
+
+/**
+ * A genome of named chromosomes without sequence,  for the generated fixtures.  Coordinates follow
+ * {@link org.broad.igv.feature.genome.GenomeImpl}.
+ */
+public class SyntheticGenome implements Genome {
+
+    private final String id;
+    private final List<String> chromosomeNames;
+    private final Map<String, Chromosome> chromosomeMap = new LinkedHashMap<String, Chromosome>();
+    private final Map<String, Long> cumulativeOffsets = new HashMap<String, Long>();
+    private final Map<String, String> chrAliasTable = new HashMap<String, String>();
+    private long length = 0;
+
+    /**
+     * @param chromosomeSizes sizes by name,  in genome order
+     */
+    public SyntheticGenome(String id, LinkedHashMap<String, Integer> chromosomeSizes) {
+        this.id = id;
+        for (Map.Entry<String, Integer> entry : chromosomeSizes.entrySet()) {
+            String name = entry.getKey();
+            chromosomeMap.put(name, new ChromosomeImpl(name, entry.getValue()));
+            cumulativeOffsets.put(name, length);
+            length += entry.getValue();
+            if (name.startsWith("chr")) {
+                chrAliasTable.put(name.substring(3), name);
+            }
+        }
+        chromosomeNames = new ArrayList<String>(chromosomeMap.keySet());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getHomeChromosome() {
+        return chromosomeNames.size() == 1 ? chromosomeNames.get(0) : Globals.CHR_ALL;
+    }
+
+    public Chromosome getChromosome(String chrName) {
+        return chromosomeMap.get(getChromosomeAlias(chrName));
+    }
+
+    public Collection<Chromosome> getChromosomes() {
+        return chromosomeMap.values();
+    }
+
+    public List<String> getChromosomeNames() {
+        return chromosomeNames;
+    }
+
+    public String getChromosomeAlias(String str) {
+        String alias = chrAliasTable.get(str);
+        return alias == null ? str : alias;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getCumulativeOffset(String chr) {
+        Long offset = cumulativeOffsets.get(getChromosomeAlias(chr));
+        return offset == null ? 0 : offset;
+    }
+
+    public int getGenomeCoordinate(String chr, int locationBP) {
+        return (int) ((getCumulativeOffset(chr) + locationBP) / 1000);
+    }
+
+    public ChromosomeCoordinate getChromosomeCoordinate(int genomeKBP) {
+        long cumOffset = 0;
+        for (String c : chromosomeNames) {
+            int chrLen = chromosomeMap.get(c).getLength();
+            if ((cumOffset + chrLen) / 1000 > genomeKBP) {
+                return new ChromosomeCoordinate(c, (int) (genomeKBP * 1000L - cumOffset));
+            }
+            cumOffset += chrLen;
+        }
+        String c = chromosomeNames.get(chromosomeNames.size() - 1);
+        return new ChromosomeCoordinate(c, (int) (genomeKBP * 1000L - cumOffset));
+    }
+
+    public String getNextChrName(String chr) {
+        int index = chromosomeNames.indexOf(getChromosomeAlias(chr));
+        return index >= 0 && index < chromosomeNames.size() - 1 ? chromosomeNames.get(index + 1) : null;
+    }
+
+    public String getPrevChrName(String chr) {
+        int index = chromosomeNames.indexOf(getChromosomeAlias(chr));
+        return index > 0 ? chromosomeNames.get(index - 1) : null;
+    }
+
+    public byte[] getSequence(String chr, int start, int end) {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return id;
+    }
+
+    public byte getReference(String chr, int pos) {
+        return 0;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bigwig;
+
+import org.broad.igv.bbfile.BBFileReader;
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+import org.broad.igv.feature.genome.Genome;
+
+import java.util.Random;
+
+/**
+ * Throughput of {@link BigWigDataSource#getSummaryScoresForRange} over random regions,  of 100 kb summarized from
+ * the raw data ("raw") or of a quarter chromosome read from the zoom levels ("zoom").  The regions span more summary
+ * tiles than the data source caches.  Operations are queries.
+ */
+public class BigWigQueryBenchmark extends Benchmark {
+
+    static final int REGION_COUNT = 256;
+    static final int RAW_WIDTH = 100000;
+    static final int ZOOM = 2;
+
+    private BigWigDataSource source;
+    private String[] chrs = new String[REGION_COUNT];
+    private int[] starts = new int[REGION_COUNT];
+    private int[] ends = new int[REGION_COUNT];
+    private int[] zooms = new int[REGION_COUNT];
+    private int next = 0;
+
+    public BigWigQueryBenchmark(String level) {
+        super("level", level);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        Genome genome = Fixtures.getGenome();
+        source = new BigWigDataSource(new BBFileReader(Fixtures.getBigWigFile().getAbsolutePath()), genome);
+
+        Random random = new Random(1);
+        for (int i = 0; i < REGION_COUNT; i++) {
+            // The autosomes
+            String chr = "chr" + (1 + random.nextInt(22));
+            int chrLength = genome.getChromosome(chr).getLength();
+            int width;
+            if (getParamValue().equals("raw")) {
+                width = RAW_WIDTH;
+                zooms[i] = (int) (Math.log((double) chrLength / width) / Math.log(2));
+            } else {
+                width = chrLength >> ZOOM;
+                zooms[i] = ZOOM;
+            }
+            chrs[i] = chr;
+            starts[i] = random.nextInt(chrLength - width);
+            ends[i] = starts[i] + width;
+        }
+    }
+
+    @Override
+    public Object run() {
+        int i = next;
+        next = (next + 1) % REGION_COUNT;
+        return source.getSummaryScoresForRange(chrs[i], starts[i], ends[i], zooms[i]);
+    }
+}
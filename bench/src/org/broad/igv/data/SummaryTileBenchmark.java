@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.bbfile.BBFileReader;
+import org.broad.igv.bbfile.WigData;
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.track.TrackType;
+
+import java.util.List;
+
+/**
+ * Throughput of {@link AbstractDataSource#computeSummaryTile},  summarizing the values of chr1 into 700 bins over
+ * the whole chromosome ("chromosome") or over regions of 1/64 of it ("region").  The values are held in memory,  so
+ * only the summary is measured.  Operations are tiles.
+ */
+public class SummaryTileBenchmark extends Benchmark {
+
+    static final String CHR = "chr1";
+    static final int REGION_COUNT = 64;
+
+    private ArrayDataSource source;
+    private int chrLength;
+    private int next = 0;
+
+    public SummaryTileBenchmark(String extent) {
+        super("extent", extent);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        chrLength = Fixtures.getGenome().getChromosome(CHR).getLength();
+        BBFileReader reader = new BBFileReader(Fixtures.getBigWigFile().getAbsolutePath());
+        WigData data = reader.getBigWigData(CHR, 0, chrLength, false);
+        source = new ArrayDataSource(data, chrLength);
+    }
+
+    @Override
+    public Object run() {
+        int start = 0;
+        int end = chrLength;
+        if (getParamValue().equals("region")) {
+            int width = chrLength / REGION_COUNT;
+            start = next * width;
+            end = start + width;
+            next = (next + 1) % REGION_COUNT;
+        }
+        return source.computeSummaryTile(CHR, 0, start, end, AbstractDataSource.BINS_PER_TILE);
+    }
+
+    static class ArrayDataSource extends AbstractDataSource {
+
+        DataTile tile;
+        int chrLength;
+
+        ArrayDataSource(WigData data, int chrLength) {
+            super(null);
+            this.tile = new DataTile(data.getStarts(), data.getEnds(), data.getValues(), null);
+            this.chrLength = chrLength;
+        }
+
+        @Override
+        protected DataTile getRawData(String chr, int startLocation, int endLocation) {
+            return tile;
+        }
+
+        @Override
+        protected List<LocusScore> getPrecomputedSummaryScores(String chr, int startLocation, int endLocation,
+                                                               int zoom) {
+            return null;
+        }
+
+        @Override
+        public int getChrLength(String chr) {
+            return chrLength;
+        }
+
+        @Override
+        public int getLongestFeature(String chr) {
+            return 0;
+        }
+
+        public double getDataMax() {
+            return 0;
+        }
+
+        public double getDataMin() {
+            return 0;
+        }
+
+        public TrackType getTrackType() {
+            return TrackType.OTHER;
+        }
+    }
+}
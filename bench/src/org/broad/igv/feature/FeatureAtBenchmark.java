@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature;
+
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+import org.broad.igv.feature.tribble.IGVBEDCodec;
+import org.broad.tribble.Feature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput of {@link FeatureUtils#getFeatureAt(double, int, java.util.List)} at random positions over the genes
+ * of chr1,  as when finding the feature under the mouse.  Operations are lookups.
+ */
+public class FeatureAtBenchmark extends Benchmark {
+
+    static final String CHR = "chr1";
+    static final int POSITION_COUNT = 10000;
+    static final int BUFFER = 2;
+
+    private List<Feature> features;
+    private int[] positions;
+
+    @Override
+    public void setUp() throws Exception {
+        IGVBEDCodec codec = new IGVBEDCodec(Fixtures.getGenome());
+        features = new ArrayList<Feature>();
+        for (String line : Fixtures.readLines(Fixtures.getBedFile())) {
+            if (line.startsWith(CHR + "\t")) {
+                features.add(codec.decode(line));
+            }
+        }
+        FeatureUtils.sortFeatureList(features);
+
+        int chrLength = Fixtures.getGenome().getChromosome(CHR).getLength();
+        Random random = new Random(1);
+        positions = new int[POSITION_COUNT];
+        for (int i = 0; i < POSITION_COUNT; i++) {
+            positions[i] = random.nextInt(chrLength);
+        }
+    }
+
+    @Override
+    public Object run() {
+        int found = 0;
+        for (int position : positions) {
+            if (FeatureUtils.getFeatureAt(position, BUFFER, features) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int getOperationsPerRun() {
+        return POSITION_COUNT;
+    }
+}
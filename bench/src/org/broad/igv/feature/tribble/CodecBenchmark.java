@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature.tribble;
+
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+import org.broad.tribble.FeatureCodec;
+import org.broad.tribble.readers.AsciiLineReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.List;
+
+/**
+ * Throughput of decoding the lines of a bed,  gff,  or vcf file with the codec IGV uses for the format.  Operations
+ * are lines.
+ */
+public class CodecBenchmark extends Benchmark {
+
+    private FeatureCodec<?> codec;
+    private String[] lines;
+
+    public CodecBenchmark(String format) {
+        super("format", format);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        File file;
+        if (getParamValue().equals("bed")) {
+            file = Fixtures.getBedFile();
+        } else if (getParamValue().equals("gff")) {
+            file = Fixtures.getGffFile();
+        } else {
+            file = Fixtures.getVcfFile();
+        }
+
+        codec = CodecFactory.getCodec(file.getAbsolutePath(), Fixtures.getGenome());
+        AsciiLineReader reader = new AsciiLineReader(new FileInputStream(file));
+        codec.readHeader(reader);
+        reader.close();
+
+        List<String> lineList = Fixtures.readLines(file);
+        lines = lineList.toArray(new String[lineList.size()]);
+    }
+
+    @Override
+    public Object run() {
+        int n = 0;
+        for (String line : lines) {
+            if (codec.decode(line) != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int getOperationsPerRun() {
+        return lines.length;
+    }
+}
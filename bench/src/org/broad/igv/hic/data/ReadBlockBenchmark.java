@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.hic.data;
+
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+import org.broad.igv.hic.HiCGlobals;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.tribble.util.SeekableFileStream;
+
+/**
+ * Throughput of {@link DatasetReader#readBlock},  reading every block of the chr1 matrix at the coarsest ("coarse")
+ * or finest ("fine") resolution.  Blocks are read through a newly read matrix each run,  so none are cached;  the
+ * matrix header is read once per run as well.  Operations are blocks.
+ */
+public class ReadBlockBenchmark extends Benchmark {
+
+    static final String MATRIX_KEY = "1_1";
+
+    private DatasetReader reader;
+    private int zoom;
+    private int[] blockNumbers;
+
+    public ReadBlockBenchmark(String resolution) {
+        super("resolution", resolution);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        reader = new DatasetReader(new SeekableFileStream(Fixtures.getHiCFile()));
+        reader.read();
+        zoom = getParamValue().equals("coarse") ? 0 : HiCGlobals.zoomBinSizes.length - 1;
+
+        MatrixZoomData zd = reader.readMatrix(MATRIX_KEY).getObservedMatrix(zoom);
+        int nBlocks = zd.getBlockColumnCount() * zd.getBlockColumnCount();
+        IntArrayList numbers = new IntArrayList(1000);
+        for (int b = 0; b < nBlocks; b++) {
+            if (zd.getBlock(b) != null) {
+                numbers.add(b);
+            }
+        }
+        blockNumbers = new int[numbers.size()];
+        System.arraycopy(numbers.toArray(), 0, blockNumbers, 0, numbers.size());
+    }
+
+    @Override
+    public Object run() throws Exception {
+        MatrixZoomData zd = reader.readMatrix(MATRIX_KEY).getObservedMatrix(zoom);
+        int contacts = 0;
+        for (int b : blockNumbers) {
+            contacts += zd.getBlock(b).getContactCount();
+        }
+        return contacts;
+    }
+
+    @Override
+    public int getOperationsPerRun() {
+        return blockNumbers.length;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+
+import java.util.List;
+
+/**
+ * Throughput of counting the bases of alignments for the coverage track,  with {@link DenseAlignmentCounts}
+ * ("dense") or {@link SparseAlignmentCounts} ("sparse").  Operations are alignments.
+ */
+public class AlignmentCountsBenchmark extends Benchmark {
+
+    private List<Alignment> alignments;
+
+    public AlignmentCountsBenchmark(String counts) {
+        super("counts", counts);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        alignments = Fixtures.getAlignments();
+    }
+
+    @Override
+    public Object run() {
+        BaseAlignmentCounts counts = getParamValue().equals("dense") ?
+                new DenseAlignmentCounts(Fixtures.ALIGNMENT_START, Fixtures.ALIGNMENT_END, null) :
+                new SparseAlignmentCounts(Fixtures.ALIGNMENT_START, Fixtures.ALIGNMENT_END, null);
+        for (Alignment alignment : alignments) {
+            counts.incCounts(alignment);
+        }
+        counts.finish();
+        return counts;
+    }
+
+    @Override
+    public int getOperationsPerRun() {
+        return alignments.size();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+
+import java.util.List;
+
+/**
+ * Throughput of packing the alignments of a 1 Mb region,  at 10x coverage,  into rows.  Operations are alignments.
+ */
+public class AlignmentPackerBenchmark extends Benchmark {
+
+    private List<Alignment> alignments;
+    private AlignmentTrack.RenderOptions renderOptions;
+
+    @Override
+    public void setUp() throws Exception {
+        alignments = Fixtures.getAlignments();
+        renderOptions = new AlignmentTrack.RenderOptions();
+    }
+
+    @Override
+    public Object run() {
+        return new AlignmentPacker().packAlignments(alignments.iterator(), Fixtures.ALIGNMENT_END, false,
+                renderOptions);
+    }
+
+    @Override
+    public int getOperationsPerRun() {
+        return alignments.size();
+    }
+}
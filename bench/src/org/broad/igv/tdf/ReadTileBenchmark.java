@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tdf;
+
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+import org.broad.igv.track.WindowFunction;
+
+/**
+ * Throughput of {@link TDFReader#readTile},  reading and decoding every tile of chr1 at the raw data level ("raw")
+ * or at zoom level 3 ("zoom").  The tile cache of the dataset is bypassed.  Operations are tiles.
+ */
+public class ReadTileBenchmark extends Benchmark {
+
+    static final int ZOOM = 3;
+
+    private TDFReader reader;
+    private TDFDataset dataset;
+
+    public ReadTileBenchmark(String level) {
+        super("level", level);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        reader = TDFReader.getReader(Fixtures.getTDFFile().getAbsolutePath());
+        dataset = getParamValue().equals("raw") ? reader.getDataset("/chr1/raw") :
+                reader.getDataset("chr1", ZOOM, WindowFunction.mean);
+        if (dataset == null) {
+            throw new IllegalStateException("No " + getParamValue() + " dataset for chr1 in " + reader.getPath());
+        }
+    }
+
+    @Override
+    public Object run() {
+        int size = 0;
+        for (int t = 0; t < dataset.nTiles; t++) {
+            TDFTile tile = reader.readTile(dataset, t);
+            if (tile != null) {
+                size += tile.getSize();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int getOperationsPerRun() {
+        return dataset.nTiles;
+    }
+
+    @Override
+    public void tearDown() {
+        reader.close();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+import org.broad.igv.Globals;
+import org.broad.igv.bench.Benchmark;
+import org.broad.igv.bench.Fixtures;
+
+import java.util.List;
+
+/**
+ * Throughput of splitting bed lines into fields and parsing the start and end,  with {@link FieldTokenizer}
+ * ("tokenizer") or with the regular expression it replaced ("split").  Operations are lines.
+ */
+public class FieldTokenizerBenchmark extends Benchmark {
+
+    private String[] lines;
+    private FieldTokenizer tokenizer = new FieldTokenizer();
+
+    public FieldTokenizerBenchmark(String method) {
+        super("method", method);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        List<String> lineList = Fixtures.readLines(Fixtures.getBedFile());
+        lines = lineList.toArray(new String[lineList.size()]);
+    }
+
+    @Override
+    public Object run() {
+        long sum = 0;
+        if (getParamValue().equals("split")) {
+            for (String line : lines) {
+                String[] tokens = Globals.singleTabMultiSpacePattern.split(line);
+                sum += Integer.parseInt(tokens[1]) + Integer.parseInt(tokens[2]) + tokens.length;
+            }
+        } else {
+            for (String line : lines) {
+                int count = tokenizer.tokenize(line);
+                sum += tokenizer.getInt(1) + tokenizer.getInt(2) + count;
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public int getOperationsPerRun() {
+        return lines.length;
+    }
+}
@@ -38,6 +38,7 @@ public class DirectoryManager {
     private static File GENOME_CACHE_DIRECTORY;
     private static File GENE_LIST_DIRECTORY;
     private static File BAM_CACHE_DIRECTORY;
+    private static File AUTO_INDEX_DIRECTORY;
     final public static String IGV_DIR_USERPREF = "igvDir";
 
 
@@ -192,6 +193,13 @@ public class DirectoryManager {
         return GENOME_CACHE_DIRECTORY;
     }
 
+    /**
+     * Provide override for unit tests,  so genomes compiled by tests are not written to the user's genome cache
+     */
+    public static void setGenomeCacheDirectory(File directory) {
+        GENOME_CACHE_DIRECTORY = directory;
+    }
+
     public static File getGeneListDirectory() {
         if (GENE_LIST_DIRECTORY == null) {
             GENE_LIST_DIRECTORY = new File(getIgvDirectory(), "lists");
@@ -220,6 +228,20 @@ public class DirectoryManager {
         return BAM_CACHE_DIRECTORY;
     }
 
+    /**
+     * Directory for sorted / indexed / tiled copies of large local files, created in the background by
+     * {@link org.broad.igv.tools.AutoIndexer}.
+     */
+    public static synchronized File getAutoIndexDirectory() {
+        if (AUTO_INDEX_DIRECTORY == null) {
+            AUTO_INDEX_DIRECTORY = new File(getIgvDirectory(), "autoindex");
+            if (!AUTO_INDEX_DIRECTORY.exists()) {
+                AUTO_INDEX_DIRECTORY.mkdir();
+            }
+        }
+        return AUTO_INDEX_DIRECTORY;
+    }
+
     public static synchronized File getSamDirectory() {
 
         File samDir = new File(DirectoryManager.getIgvDirectory(), "sam");
@@ -149,6 +149,9 @@ public class PreferenceManager implements PropertyManager {
     public static final String SHOW_EXPAND_ICON = "SHOW_EXPAND_ICON";
 
     public static final String SHOW_SIZE_WARNING = "SHOW_SIZE_WARNING";
+    public static final String AUTO_INDEX_LARGE_FILES = "AUTO_INDEX_LARGE_FILES";
+    public static final String PARALLEL_BGZF = "PARALLEL_BGZF";
+    public static final String TILE_CACHE = "TILE_CACHE";
     public static final String SHOW_GENOME_SERVER_WARNING = "SHOW_GENOME_SERVER_WARNING";
 
     final public static String USE_PROXY = "PROXY.USE";
@@ -204,6 +207,7 @@ public class PreferenceManager implements PropertyManager {
     public static final String DB_HOST = "DB_HOST";
     public static final String DB_NAME = "DB_NAME";
     public static final String DB_PORT = "DB_PORT";
+    public static final String DB_CNV_SUMMARY = "DB_CNV_SUMMARY";
     final public static String DEFAULT_GENOME_URL = "http://www.broadinstitute.org/igv/projects/genomes/genomes.txt";
     final public static String DEFAULT_DATA_URL = "http://www.broadinstitute.org/igvdata/$$_dataServerRegistry.txt";
 
@@ -972,6 +976,9 @@ public class PreferenceManager implements PropertyManager {
 
         defaultValues.put(SHOW_GENOME_SERVER_WARNING, "true");
         defaultValues.put(SHOW_SIZE_WARNING, "true");
+        defaultValues.put(AUTO_INDEX_LARGE_FILES, "true");
+        defaultValues.put(PARALLEL_BGZF, "true");
+        defaultValues.put(TILE_CACHE, "true");
 
         defaultValues.put(SEARCH_ZOOM, "true");
 
@@ -1021,6 +1028,7 @@ public class PreferenceManager implements PropertyManager {
         defaultValues.put(DB_HOST, "");
         defaultValues.put(DB_NAME, "");
         defaultValues.put(DB_PORT, "-1");
+        defaultValues.put(DB_CNV_SUMMARY, "true");
 
         String defaultDataURL = DEFAULT_DATA_URL;
         Properties properties = new Properties();
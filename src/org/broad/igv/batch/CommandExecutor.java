@@ -29,6 +29,7 @@ import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.ui.util.SnapshotUtilities;
 import org.broad.igv.util.*;
+import org.broad.igv.util.stats.Metrics;
 
 import java.awt.*;
 import java.io.File;
@@ -127,6 +128,8 @@ public class CommandExecutor {
                     return this.setCredentials(param1, param2);
                 } else if (cmd.equalsIgnoreCase("clearCredentials")) {
                     return this.clearCredentials();
+                } else if (cmd.equals("stats")) {
+                    return stats(param1, param2);
                 } else if (cmd.equals("exit")) {
                     System.exit(0);
                 } else {
@@ -225,6 +228,38 @@ public class CommandExecutor {
         return "OK";
     }
 
+    /**
+     * Report the metrics of data loading and rendering.  With no arguments the report is returned on one line,
+     * metrics separated by "; ".  "stats reset" zeroes the metrics.  "stats file" appends the report to the file,
+     * and "stats file seconds" appends it every {@code seconds} seconds (0 to stop).
+     */
+    private String stats(String param1, String param2) throws IOException {
+        if (param1 == null) {
+            List<String> report = Metrics.getReport();
+            if (report.isEmpty()) {
+                return "No metrics";
+            }
+            StringBuffer buffer = new StringBuffer(report.get(0));
+            for (int i = 1; i < report.size(); i++) {
+                buffer.append("; ").append(report.get(i));
+            }
+            return buffer.toString();
+        } else if (param1.equalsIgnoreCase("reset")) {
+            Metrics.reset();
+            return "OK";
+        } else if (param2 != null) {
+            try {
+                Metrics.startReporting(new File(param1), Long.parseLong(param2.trim()));
+                return "OK";
+            } catch (NumberFormatException e) {
+                return "ERROR - report interval ('" + param2 + "') must be an integer number of seconds";
+            }
+        } else {
+            Metrics.writeReport(new File(param1));
+            return "OK";
+        }
+    }
+
 
     private String genome(String param1) {
         if (param1 == null) {
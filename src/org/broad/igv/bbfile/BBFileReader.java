@@ -27,12 +27,15 @@ package org.broad.igv.bbfile;
 
 import org.broad.tribble.util.LittleEndianInputStream;
 import org.apache.log4j.Logger;
+import org.broad.igv.util.stats.Metrics;
 import org.broad.tribble.util.SeekableStream;
 import org.broad.tribble.util.SeekableFileStream;
 import org.broad.tribble.util.SeekableStreamFactory;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /*
 *   Broad Institute Interactive Genome Viewer Big Binary File (BBFile) Reader
@@ -92,6 +95,11 @@ public class BBFileReader {
 
     private static Logger log = Logger.getLogger(BBFileReader.class);
 
+    // Data blocks read and decoded by the block readers of this package
+    static final Metrics.Counter blockBytesRead = Metrics.counter("bbfile.read.bytes");
+    static final Metrics.Timer blockReadTimer = Metrics.timer("bbfile.block.read");
+    static final Metrics.Timer blockDecodeTimer = Metrics.timer("bbfile.block.decode");
+
     private SeekableStream fis;      // BBFile input stream handle
     private long fileOffset;           // file offset for next item to be read
 
@@ -379,6 +387,114 @@ public class BBFileReader {
     }
 
 
+    /**
+     * Returns the BigWig values which occupy the specified chromosome region as arrays of start,  end and value.
+     * Adjacent data blocks are read together and blocks are decoded in parallel,  use this in preference to
+     * getBigWigIterator to load large regions.
+     * <p/>
+     * Parameters:
+     * chromosome - name of chromosome
+     * startBase  - starting base position for values
+     * endBase    - ending base position for values
+     * contained  - flag specifies values must be contained in the specified
+     * base region if true; else can intersect the region if false
+     * <p/>
+     * Returns:
+     * Values for the requested chromosome region,  empty if the region has no data available.
+     * A null object is returned if the file is not BigWig.(see isBigWigFile method)
+     */
+    public WigData getBigWigData(String chromosome, int startBase, int endBase, boolean contained)
+            throws IOException {
+
+        if (!isBigWigFile())
+            return null;
+
+        RPChromosomeRegion selectionRegion;
+        List<BigWigDataReader.BlockBytes> blocks;
+        synchronized (this) {
+            selectionRegion = getChromosomeBounds(chromosome, startBase, chromosome, endBase);
+            if (selectionRegion == null)
+                return new WigData(new int[0], new int[0], new float[0]);
+
+            List<RPTreeLeafNodeItem> leafHits = chromosomeDataTree.getChromosomeDataHits(selectionRegion, contained);
+            blocks = BigWigDataReader.readBlocks(fis, leafHits);
+        }
+
+        // Decompression does not need the file
+        return BigWigDataReader.decodeBlocks(blocks, selectionRegion, contained, isLowToHigh, uncompressBufSize);
+    }
+
+
+    /**
+     * Returns the zoom level records of a chromosome region as arrays,  see getZoomLevelIterator for the parameters.
+     * Returns empty arrays if the region has no data.
+     */
+    public ZoomData getZoomData(int zoomLevel, String chromosome, int startBase, int endBase, boolean contained)
+            throws IOException {
+
+        RPChromosomeRegion selectionRegion;
+        List<BigWigDataReader.BlockBytes> blocks;
+        synchronized (this) {
+            RPTree zoomDataTree = getZoomDataTree(zoomLevel);
+            selectionRegion = getChromosomeBounds(chromosome, startBase, chromosome, endBase);
+            if (selectionRegion == null)
+                return BigWigDataReader.concatenate(new ArrayList<ZoomData>());
+
+            List<RPTreeLeafNodeItem> leafHits = zoomDataTree.getChromosomeDataHits(selectionRegion, contained);
+            blocks = BigWigDataReader.readBlocks(fis, leafHits);
+        }
+
+        // Decompression does not need the file
+        return BigWigDataReader.decodeZoomBlocks(blocks, selectionRegion, contained, isLowToHigh, uncompressBufSize);
+    }
+
+    /**
+     * Returns the first {@code maxRecords} zoom level records of all chromosomes as arrays.  Blocks are read only
+     * until that many records are found.
+     *
+     * @param zoomLevel  zoom level for data extraction; levels start at 1
+     * @param maxRecords maximum number of records returned
+     */
+    public ZoomData getZoomData(int zoomLevel, int maxRecords) throws IOException {
+
+        List<ZoomData> decoded = new ArrayList<ZoomData>();
+        int count = 0;
+        synchronized (this) {
+            RPTree zoomDataTree = getZoomDataTree(zoomLevel);
+            RPChromosomeRegion selectionRegion = zoomDataTree.getChromosomeBounds();
+            List<RPTreeLeafNodeItem> leafHits = zoomDataTree.getChromosomeDataHits(selectionRegion, true);
+            int itemsPerSlot = Math.max(1, zoomDataTree.getRPTreeHeader().getItemsPerSlot());
+
+            int i = 0;
+            while (count < maxRecords && i < leafHits.size()) {
+                // Blocks hold at most itemsPerSlot records
+                long needed = ((long) maxRecords - count + itemsPerSlot - 1) / itemsPerSlot;
+                int nBlocks = (int) Math.min(leafHits.size() - i, needed);
+                List<BigWigDataReader.BlockBytes> blocks =
+                        BigWigDataReader.readBlocks(fis, leafHits.subList(i, i + nBlocks));
+                ZoomData data = BigWigDataReader.decodeZoomBlocks(blocks, selectionRegion, true, isLowToHigh,
+                        uncompressBufSize);
+                decoded.add(data);
+                count += data.size();
+                i += nBlocks;
+            }
+        }
+
+        ZoomData data = BigWigDataReader.concatenate(decoded);
+        if (data.size() > maxRecords) {
+            data = new ZoomData(Arrays.copyOf(data.getStarts(), maxRecords), Arrays.copyOf(data.getEnds(), maxRecords),
+                    Arrays.copyOf(data.getMinValues(), maxRecords), Arrays.copyOf(data.getMaxValues(), maxRecords),
+                    Arrays.copyOf(data.getMeanValues(), maxRecords));
+        }
+        return data;
+    }
+
+    private RPTree getZoomDataTree(int zoomLevel) {
+        if (zoomLevel < 1 || zoomLevel > zoomLevelCount)
+            throw new RuntimeException("Error: zoom level " + zoomLevel + " is out of range\n");
+        return zoomLevels.getZoomLevelRPTree(zoomLevel);
+    }
+
     /**
      * Returns an iterator for zoom level records for the chromosome selection region.
      * <p/>
@@ -0,0 +1,910 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bbfile;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.CompressionUtils;
+import org.broad.igv.util.ExecutorUtils;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.tribble.util.LittleEndianOutputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Writes BigWig and BigBed files,  low to high byte order.  Values or features are added one chromosome at a time,
+ * sorted by start position.  Data blocks are compressed on worker threads and written in order as they are added.
+ * When a chromosome is complete its zoom level summaries are computed on a worker thread,  in parallel with the
+ * following chromosomes.  The zoom levels,  indexes,  and header are written on close.
+ * <p/>
+ * See BBFileReader and the BBFile tables for the layout.
+ */
+public class BBFileWriter {
+
+    private static Logger log = Logger.getLogger(BBFileWriter.class);
+
+    static final int BIGWIG_MAGIC = 0x888FFC26;
+    static final int BIGBED_MAGIC = 0x8789F2EB;
+    static final int BPTREE_MAGIC = 0x78CA8C91;
+    static final int RPTREE_MAGIC = 0x2468ACE0;
+
+    static final int VERSION = 4;
+    static final int MAX_ZOOM_LEVELS = 10;
+    static final int ZOOM_INCREMENT = 4;
+    static final int HEADER_SIZE = 64;
+    static final int ZOOM_HEADER_SIZE = 24;
+    static final int TOTAL_SUMMARY_SIZE = 40;
+
+    /**
+     * Maximum number of items in a data block,  and of children in an index node
+     */
+    static final int ITEMS_PER_SLOT = 1024;
+    static final int BLOCK_SIZE = 256;
+
+    private final File file;
+    private final boolean isBigBed;
+    private final int fieldCount;
+    private final String[] chrNames;
+    private final int[] chrSizes;
+    private final Map<String, Integer> chrIds;
+
+    private int nThreads = ExecutorUtils.CPU_THREADS;
+    private ExecutorService executor;
+    private LittleEndianOutputStream fos;
+    private long chromTreeOffset;
+    private long fullDataOffset;
+    private long dataCount;
+    private int maxUncompressedSize;
+
+    // Data blocks waiting to be written,  in order
+    private LinkedList<PendingBlock> pendingBlocks = new LinkedList<PendingBlock>();
+    private List<IndexEntry> dataIndex = new ArrayList<IndexEntry>();
+
+    // Items of the current chromosome
+    private int currentChrId = -1;
+    private Set<Integer> completedChrIds = new HashSet<Integer>();
+    private IntArrayList starts = new IntArrayList(100000);
+    private IntArrayList ends = new IntArrayList(100000);
+    private FloatArrayList values;
+    private List<String> rests;
+    private int blockStart;
+
+    private int[] reductions;
+    private List<Future<ZoomData>> zoomData = new ArrayList<Future<ZoomData>>();
+
+    /**
+     * Create a BigWig writer.
+     *
+     * @param file
+     * @param chromosomeSizes size of every chromosome that can be written,  by name
+     */
+    public static BBFileWriter createBigWig(File file, Map<String, Integer> chromosomeSizes) {
+        return new BBFileWriter(file, chromosomeSizes, false, 0);
+    }
+
+    /**
+     * Create a BigBed writer.
+     *
+     * @param file
+     * @param chromosomeSizes size of every chromosome that can be written,  by name
+     * @param fieldCount      number of bed fields,  including chr,  start,  and end
+     */
+    public static BBFileWriter createBigBed(File file, Map<String, Integer> chromosomeSizes, int fieldCount) {
+        return new BBFileWriter(file, chromosomeSizes, true, fieldCount);
+    }
+
+    private BBFileWriter(File file, Map<String, Integer> chromosomeSizes, boolean isBigBed, int fieldCount) {
+        this.file = file;
+        this.isBigBed = isBigBed;
+        this.fieldCount = fieldCount;
+
+        // Chromosome ids are in key order,  as required by the B+ tree
+        chrNames = chromosomeSizes.keySet().toArray(new String[chromosomeSizes.size()]);
+        Arrays.sort(chrNames);
+        chrSizes = new int[chrNames.length];
+        chrIds = new HashMap<String, Integer>();
+        for (int i = 0; i < chrNames.length; i++) {
+            chrSizes[i] = chromosomeSizes.get(chrNames[i]);
+            chrIds.put(chrNames[i], i);
+        }
+
+        if (isBigBed) {
+            rests = new ArrayList<String>();
+        } else {
+            values = new FloatArrayList(100000);
+        }
+    }
+
+    public void setNumberOfThreads(int n) {
+        this.nThreads = n;
+    }
+
+    public boolean isBigBed() {
+        return isBigBed;
+    }
+
+    /**
+     * @return true if the chromosome can be written to this file
+     */
+    public boolean hasChromosome(String chr) {
+        return chrIds.containsKey(chr);
+    }
+
+    /**
+     * Add a BigWig value.
+     */
+    public void addValue(String chr, int start, int end, float value) throws IOException {
+        if (isBigBed) {
+            throw new IllegalStateException("Values cannot be added to a BigBed file");
+        }
+        addItem(chr, start, end);
+        values.add(value);
+        if (starts.size() - blockStart >= ITEMS_PER_SLOT) {
+            submitBlock();
+        }
+    }
+
+    /**
+     * Add a BigBed feature.
+     *
+     * @param rest the bed fields following chr,  start,  and end,  tab delimited,  or null
+     */
+    public void addFeature(String chr, int start, int end, String rest) throws IOException {
+        if (!isBigBed) {
+            throw new IllegalStateException("Features cannot be added to a BigWig file");
+        }
+        addItem(chr, start, end);
+        rests.add(rest == null ? "" : rest);
+        if (starts.size() - blockStart >= ITEMS_PER_SLOT) {
+            submitBlock();
+        }
+    }
+
+    private void addItem(String chr, int start, int end) throws IOException {
+
+        Integer chrId = chrIds.get(chr);
+        if (chrId == null) {
+            throw new IllegalArgumentException("Unknown chromosome: " + chr);
+        }
+        if (end < start) {
+            throw new IllegalArgumentException("End is less than start: " + chr + ":" + start + "-" + end);
+        }
+        if (fos == null) {
+            open();
+        }
+
+        if (chrId != currentChrId) {
+            if (completedChrIds.contains(chrId)) {
+                throw new IllegalArgumentException("Input is not sorted,  " + chr + " is not contiguous");
+            }
+            completeChromosome();
+            currentChrId = chrId;
+        } else if (start < starts.get(starts.size() - 1)) {
+            throw new IllegalArgumentException("Input is not sorted by start position at " + chr + ":" + start);
+        }
+
+        starts.add(start);
+        ends.add(end);
+    }
+
+    /**
+     * Write the placeholders for the header,  zoom headers,  and total summary,  followed by the chromosome tree.
+     * Data blocks are written after these as they are added.
+     */
+    private void open() throws IOException {
+        executor = ExecutorUtils.newFixedThreadPool("BBFile writer", nThreads);
+
+        fos = new LittleEndianOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        int reserved = HEADER_SIZE + MAX_ZOOM_LEVELS * ZOOM_HEADER_SIZE + TOTAL_SUMMARY_SIZE;
+        fos.write(new byte[reserved]);
+
+        chromTreeOffset = fos.getWrittenCount();
+        writeChromosomeTree();
+
+        fullDataOffset = fos.getWrittenCount();
+        fos.writeLong(0);  // Data count,  updated on close
+    }
+
+    /**
+     * Submit the items of the current chromosome since the last block for compression
+     */
+    private void submitBlock() throws IOException {
+
+        int n = starts.size() - blockStart;
+        if (n == 0) {
+            return;
+        }
+
+        ByteBuffer buffer;
+        if (isBigBed) {
+            byte[][] restBytes = new byte[n][];
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                restBytes[i] = rests.get(i).getBytes("UTF-8");
+                size += 13 + restBytes[i].length;
+            }
+            buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < n; i++) {
+                buffer.putInt(currentChrId);
+                buffer.putInt(starts.get(blockStart + i));
+                buffer.putInt(ends.get(blockStart + i));
+                buffer.put(restBytes[i]);
+                buffer.put((byte) 0);
+            }
+        } else {
+            // A single bedGraph section,  see BBFile Table J
+            buffer = ByteBuffer.allocate(24 + 12 * n).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(currentChrId);
+            buffer.putInt(starts.get(blockStart));
+            buffer.putInt(maxEnd(blockStart, starts.size()));
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.put((byte) 1);
+            buffer.put((byte) 0);
+            buffer.putShort((short) n);
+            for (int i = blockStart; i < starts.size(); i++) {
+                buffer.putInt(starts.get(i));
+                buffer.putInt(ends.get(i));
+                buffer.putFloat(values.get(i));
+            }
+        }
+
+        final byte[] bytes = buffer.array();
+        maxUncompressedSize = Math.max(maxUncompressedSize, bytes.length);
+        Future<byte[]> compressed = executor.submit(new Callable<byte[]>() {
+            public byte[] call() throws Exception {
+                return CompressionUtils.compress(bytes);
+            }
+        });
+        pendingBlocks.add(new PendingBlock(new IndexEntry(currentChrId, starts.get(blockStart),
+                maxEnd(blockStart, starts.size())), compressed));
+        dataCount += n;
+
+        if (isBigBed) {
+            rests.clear();
+        }
+        blockStart = starts.size();
+
+        int maxPending = 2 * Math.max(1, nThreads);
+        while (pendingBlocks.size() > maxPending) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+    }
+
+    private void writeBlock(PendingBlock block) throws IOException {
+        byte[] bytes = getResult(block.compressed);
+        block.entry.offset = fos.getWrittenCount();
+        block.entry.size = bytes.length;
+        fos.write(bytes);
+        dataIndex.add(block.entry);
+    }
+
+    private int maxEnd(int from, int to) {
+        int max = 0;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, ends.get(i));
+        }
+        return max;
+    }
+
+    /**
+     * Submit the last block of the current chromosome,  and its zoom level summaries
+     */
+    private void completeChromosome() throws IOException {
+
+        if (currentChrId < 0) {
+            return;
+        }
+        submitBlock();
+
+        final int chrId = currentChrId;
+        final int[] chrStarts = starts.toArray();
+        final int[] chrEnds = ends.toArray();
+        final float[] chrValues = isBigBed ? null : values.toArray();
+
+        // Reduction levels are based on the mean item size of the first chromosome
+        if (reductions == null) {
+            reductions = computeReductions(chrStarts, chrEnds);
+        }
+        final int[] levels = reductions;
+        zoomData.add(executor.submit(new Callable<ZoomData>() {
+            public ZoomData call() throws Exception {
+                return computeZoomData(chrId, chrStarts, chrEnds, chrValues, levels);
+            }
+        }));
+
+        // The arrays are now owned by the zoom task
+        completedChrIds.add(chrId);
+        starts = new IntArrayList(100000);
+        ends = new IntArrayList(100000);
+        if (!isBigBed) {
+            values = new FloatArrayList(100000);
+        }
+        blockStart = 0;
+    }
+
+    private int[] computeReductions(int[] chrStarts, int[] chrEnds) {
+
+        long totalSpan = 0;
+        for (int i = 0; i < chrStarts.length; i++) {
+            totalSpan += chrEnds[i] - chrStarts[i];
+        }
+        long meanSpan = Math.max(1, totalSpan / Math.max(1, chrStarts.length));
+
+        int maxChrSize = 0;
+        for (int size : chrSizes) {
+            maxChrSize = Math.max(maxChrSize, size);
+        }
+
+        IntArrayList levels = new IntArrayList(MAX_ZOOM_LEVELS);
+        long reduction = 10 * meanSpan;
+        while (levels.size() < MAX_ZOOM_LEVELS && reduction < maxChrSize) {
+            levels.add((int) reduction);
+            reduction *= ZOOM_INCREMENT;
+        }
+        return levels.toArray();
+    }
+
+    /**
+     * Summarize the items of one chromosome at each reduction level.  BigBed features are summarized by their
+     * coverage depth.
+     */
+    static ZoomData computeZoomData(int chrId, int[] chrStarts, int[] chrEnds, float[] chrValues, int[] reductions) {
+
+        if (chrValues == null) {
+            WigData depth = computeDepth(chrStarts, chrEnds);
+            chrStarts = depth.getStarts();
+            chrEnds = depth.getEnds();
+            chrValues = depth.getValues();
+        }
+
+        ZoomData zoomData = new ZoomData(chrId, reductions.length);
+        for (int i = 0; i < chrStarts.length; i++) {
+            int span = chrEnds[i] - chrStarts[i];
+            float v = chrValues[i];
+            zoomData.basesCovered += span;
+            zoomData.min = Math.min(zoomData.min, v);
+            zoomData.max = Math.max(zoomData.max, v);
+            zoomData.sum += (double) v * span;
+            zoomData.sumSquares += (double) v * v * span;
+        }
+
+        for (int z = 0; z < reductions.length; z++) {
+            ZoomLevelRecords records = zoomData.levels[z];
+            int reduction = reductions[z];
+
+            // Starts are sorted,  so records of bins before the current start bin are complete.  The cursor is the
+            // first record which can still receive values.
+            int cursor = 0;
+            for (int i = 0; i < chrStarts.length; i++) {
+                int start = chrStarts[i];
+                int end = chrEnds[i];
+                if (end <= start) {
+                    continue;
+                }
+                int firstBin = start / reduction;
+                int lastBin = (end - 1) / reduction;
+                while (cursor < records.size() && records.starts[cursor] / reduction < firstBin) {
+                    cursor++;
+                }
+                int r = cursor;
+                for (int bin = firstBin; bin <= lastBin; bin++) {
+                    int binStart = bin * reduction;
+                    int overlap = Math.min(end, binStart + reduction) - Math.max(start, binStart);
+                    while (r < records.size() && records.starts[r] < binStart) {
+                        r++;
+                    }
+                    if (r == records.size()) {
+                        records.add(binStart, binStart + reduction);
+                    }
+                    records.update(r, overlap, chrValues[i]);
+                    r++;
+                }
+            }
+        }
+        return zoomData;
+    }
+
+    /**
+     * Compute the coverage depth of features as runs of constant depth,  in order.  Uncovered regions are skipped.
+     */
+    static WigData computeDepth(int[] featureStarts, int[] featureEnds) {
+
+        int[] sortedEnds = featureEnds.clone();
+        Arrays.sort(sortedEnds);
+
+        IntArrayList starts = new IntArrayList(featureStarts.length);
+        IntArrayList ends = new IntArrayList(featureStarts.length);
+        FloatArrayList values = new FloatArrayList(featureStarts.length);
+
+        int i = 0;
+        int j = 0;
+        int depth = 0;
+        int position = 0;
+        while (j < sortedEnds.length) {
+            int next = i < featureStarts.length ? Math.min(featureStarts[i], sortedEnds[j]) : sortedEnds[j];
+            if (depth > 0 && next > position) {
+                starts.add(position);
+                ends.add(next);
+                values.add(depth);
+            }
+            position = next;
+            while (j < sortedEnds.length && sortedEnds[j] == position) {
+                depth--;
+                j++;
+            }
+            while (i < featureStarts.length && featureStarts[i] == position) {
+                depth++;
+                i++;
+            }
+        }
+        return new WigData(starts.toArray(), ends.toArray(), values.toArray());
+    }
+
+    /**
+     * Write the remaining data and the zoom levels,  then update the header.
+     */
+    public void close() throws IOException {
+
+        try {
+            if (fos == null) {
+                open();
+            }
+            completeChromosome();
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.removeFirst());
+            }
+
+            long fullIndexOffset = fos.getWrittenCount();
+            writeRTree(dataIndex);
+
+            int nLevels = reductions == null ? 0 : reductions.length;
+            long[] zoomDataOffsets = new long[nLevels];
+            long[] zoomIndexOffsets = new long[nLevels];
+            List<ZoomData> chrZoomData = new ArrayList<ZoomData>(zoomData.size());
+            for (Future<ZoomData> future : zoomData) {
+                chrZoomData.add(getResult(future));
+            }
+            for (int z = 0; z < nLevels; z++) {
+                zoomDataOffsets[z] = fos.getWrittenCount();
+                zoomIndexOffsets[z] = writeZoomLevel(chrZoomData, z);
+            }
+
+            ZoomData total = new ZoomData(0, 0);
+            for (ZoomData zd : chrZoomData) {
+                total.basesCovered += zd.basesCovered;
+                total.min = Math.min(total.min, zd.min);
+                total.max = Math.max(total.max, zd.max);
+                total.sum += zd.sum;
+                total.sumSquares += zd.sumSquares;
+            }
+            if (total.basesCovered == 0) {
+                total.min = 0;
+                total.max = 0;
+            }
+
+            fos.close();
+            fos = null;
+            writeHeader(fullIndexOffset, zoomDataOffsets, zoomIndexOffsets, total);
+
+        } finally {
+            if (fos != null) {
+                fos.close();
+            }
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Write the zoom records of one level,  in blocks compressed in parallel,  followed by their index.
+     *
+     * @return the file offset of the index
+     */
+    private long writeZoomLevel(List<ZoomData> chrZoomData, int z) throws IOException {
+
+        int nRecords = 0;
+        for (ZoomData zd : chrZoomData) {
+            nRecords += zd.levels[z].size();
+        }
+        fos.writeInt(nRecords);
+
+        LinkedList<PendingBlock> pending = new LinkedList<PendingBlock>();
+        List<IndexEntry> index = new ArrayList<IndexEntry>();
+        for (ZoomData zd : chrZoomData) {
+            final ZoomLevelRecords records = zd.levels[z];
+            for (int from = 0; from < records.size(); from += ITEMS_PER_SLOT) {
+                final int chrId = zd.chrId;
+                final int start = from;
+                final int end = Math.min(records.size(), from + ITEMS_PER_SLOT);
+                maxUncompressedSize = Math.max(maxUncompressedSize, 32 * (end - start));
+                Future<byte[]> compressed = executor.submit(new Callable<byte[]>() {
+                    public byte[] call() throws Exception {
+                        return CompressionUtils.compress(records.encode(chrId, start, end));
+                    }
+                });
+                pending.add(new PendingBlock(new IndexEntry(chrId, records.starts[start],
+                        records.ends[end - 1]), compressed));
+                if (pending.size() > 2 * Math.max(1, nThreads)) {
+                    writeZoomBlock(pending.removeFirst(), index);
+                }
+            }
+        }
+        while (!pending.isEmpty()) {
+            writeZoomBlock(pending.removeFirst(), index);
+        }
+
+        long indexOffset = fos.getWrittenCount();
+        writeRTree(index);
+        return indexOffset;
+    }
+
+    private void writeZoomBlock(PendingBlock block, List<IndexEntry> index) throws IOException {
+        byte[] bytes = getResult(block.compressed);
+        block.entry.offset = fos.getWrittenCount();
+        block.entry.size = bytes.length;
+        fos.write(bytes);
+        index.add(block.entry);
+    }
+
+    /**
+     * Write the B+ tree of chromosome names,  see BBFile Tables E-H.  Nodes are written top down,  each level
+     * following the one above.
+     */
+    private void writeChromosomeTree() throws IOException {
+
+        int keySize = 1;
+        for (String name : chrNames) {
+            keySize = Math.max(keySize, name.getBytes("UTF-8").length);
+        }
+        int nItems = chrNames.length;
+        int blockSize = Math.max(2, Math.min(BLOCK_SIZE, nItems));
+
+        fos.writeInt(BPTREE_MAGIC);
+        fos.writeInt(blockSize);
+        fos.writeInt(keySize);
+        fos.writeInt(8);
+        fos.writeLong(nItems);
+        fos.writeLong(0);
+
+        // Number of items per level,  from the leaves up.  The last level is the root.
+        List<Integer> levelCounts = new ArrayList<Integer>();
+        levelCounts.add(nItems);
+        while (levelCounts.get(levelCounts.size() - 1) > blockSize) {
+            int n = levelCounts.get(levelCounts.size() - 1);
+            levelCounts.add((n + blockSize - 1) / blockSize);
+        }
+
+        // Leaf and child items have the same size,  and within a level every node is full but the last,  so child
+        // offsets can be computed from the counts.
+        int itemSize = keySize + 8;
+        long nodeSize = 4 + (long) blockSize * itemSize;
+        long levelOffset = fos.getWrittenCount();
+        for (int level = levelCounts.size() - 1; level >= 0; level--) {
+            int nLevelItems = levelCounts.get(level);
+            int nNodes = Math.max(1, (nLevelItems + blockSize - 1) / blockSize);
+            long nextLevelOffset = levelOffset + 4L * nNodes + (long) itemSize * nLevelItems;
+
+            // Span of one item of this level,  in leaf items
+            int itemSpan = 1;
+            for (int i = 0; i < level; i++) {
+                itemSpan *= blockSize;
+            }
+            for (int node = 0; node < nNodes; node++) {
+                int first = node * blockSize;
+                int count = Math.min(blockSize, nLevelItems - first);
+                fos.writeByte(level == 0 ? 1 : 0);
+                fos.writeByte(0);
+                fos.writeShort(count);
+                for (int item = first; item < first + count; item++) {
+                    writeKey(chrNames[item * itemSpan], keySize);
+                    if (level == 0) {
+                        fos.writeInt(item);
+                        fos.writeInt(chrSizes[item]);
+                    } else {
+                        fos.writeLong(nextLevelOffset + item * nodeSize);
+                    }
+                }
+            }
+            levelOffset = nextLevelOffset;
+        }
+    }
+
+    private void writeKey(String name, int keySize) throws IOException {
+        byte[] key = new byte[keySize];
+        byte[] bytes = name.getBytes("UTF-8");
+        System.arraycopy(bytes, 0, key, 0, bytes.length);
+        fos.write(key);
+    }
+
+    /**
+     * Write an R tree index of data blocks,  see BBFile Tables K-N.  Nodes are written top down,  each level
+     * following the one above.
+     */
+    private void writeRTree(List<IndexEntry> entries) throws IOException {
+
+        List<IndexEntry> leaves = new ArrayList<IndexEntry>(entries);
+        Collections.sort(leaves);
+        long headerOffset = fos.getWrittenCount();
+
+        // Node bounds of each level,  from the leaves up.  Level 0 holds the entries themselves.
+        List<List<IndexEntry>> levels = new ArrayList<List<IndexEntry>>();
+        levels.add(leaves);
+        List<IndexEntry> nodes;
+        do {
+            List<IndexEntry> below = levels.get(levels.size() - 1);
+            nodes = new ArrayList<IndexEntry>();
+            int first = 0;
+            do {
+                nodes.add(IndexEntry.bounds(below.subList(first, Math.min(below.size(), first + BLOCK_SIZE))));
+                first += BLOCK_SIZE;
+            } while (first < below.size());
+            levels.add(nodes);
+        } while (nodes.size() > 1);
+
+        IndexEntry root = levels.get(levels.size() - 1).get(0);
+        fos.writeInt(RPTREE_MAGIC);
+        fos.writeInt(BLOCK_SIZE);
+        fos.writeLong(leaves.size());
+        fos.writeInt(root.chrId);
+        fos.writeInt(root.start);
+        fos.writeInt(root.endChrId);
+        fos.writeInt(root.end);
+        fos.writeLong(headerOffset);
+        fos.writeInt(ITEMS_PER_SLOT);
+        fos.writeInt(0);
+
+        // Level 1 nodes are the leaf nodes.  Offsets of the nodes of each level are assigned before writing the
+        // level above.
+        long offset = fos.getWrittenCount();
+        for (int level = levels.size() - 1; level >= 1; level--) {
+            nodes = levels.get(level);
+            List<IndexEntry> children = levels.get(level - 1);
+            int itemSize = level == 1 ? 32 : 24;
+            for (int node = 0; node < nodes.size(); node++) {
+                nodes.get(node).offset = offset;
+                int count = Math.max(0, Math.min(BLOCK_SIZE, children.size() - node * BLOCK_SIZE));
+                offset += 4 + count * itemSize;
+            }
+        }
+
+        for (int level = levels.size() - 1; level >= 1; level--) {
+            nodes = levels.get(level);
+            List<IndexEntry> children = levels.get(level - 1);
+            for (int node = 0; node < nodes.size(); node++) {
+                int first = node * BLOCK_SIZE;
+                int last = Math.min(children.size(), first + BLOCK_SIZE);
+                fos.writeByte(level == 1 ? 1 : 0);
+                fos.writeByte(0);
+                fos.writeShort(Math.max(0, last - first));
+                for (int i = first; i < last; i++) {
+                    IndexEntry child = children.get(i);
+                    fos.writeInt(child.chrId);
+                    fos.writeInt(child.start);
+                    fos.writeInt(child.endChrId);
+                    fos.writeInt(child.end);
+                    fos.writeLong(child.offset);
+                    if (level == 1) {
+                        fos.writeLong(child.size);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the header,  zoom headers,  and total summary over the placeholders,  and the data count.
+     */
+    private void writeHeader(long fullIndexOffset, long[] zoomDataOffsets, long[] zoomIndexOffsets,
+                             ZoomData total) throws IOException {
+
+        int size = HEADER_SIZE + MAX_ZOOM_LEVELS * ZOOM_HEADER_SIZE + TOTAL_SUMMARY_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(isBigBed ? BIGBED_MAGIC : BIGWIG_MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) zoomDataOffsets.length);
+        buffer.putLong(chromTreeOffset);
+        buffer.putLong(fullDataOffset);
+        buffer.putLong(fullIndexOffset);
+        buffer.putShort((short) (isBigBed ? fieldCount : 0));
+        buffer.putShort((short) (isBigBed ? Math.min(fieldCount, 12) : 0));
+        buffer.putLong(0);  // AutoSql
+        buffer.putLong(HEADER_SIZE + MAX_ZOOM_LEVELS * ZOOM_HEADER_SIZE);
+        buffer.putInt(maxUncompressedSize);
+        buffer.putLong(0);
+
+        for (int z = 0; z < MAX_ZOOM_LEVELS; z++) {
+            if (z < zoomDataOffsets.length) {
+                buffer.putInt(reductions[z]);
+                buffer.putInt(0);
+                buffer.putLong(zoomDataOffsets[z]);
+                buffer.putLong(zoomIndexOffsets[z]);
+            } else {
+                buffer.put(new byte[ZOOM_HEADER_SIZE]);
+            }
+        }
+
+        buffer.putLong(total.basesCovered);
+        buffer.putDouble(total.min);
+        buffer.putDouble(total.max);
+        buffer.putDouble(total.sum);
+        buffer.putDouble(total.sumSquares);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.write(buffer.array());
+            raf.seek(fullDataOffset);
+            ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            count.putLong(dataCount);
+            raf.write(count.array());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            log.error("Error writing " + cause);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A data or zoom block being compressed,  and its index entry
+     */
+    private static class PendingBlock {
+        final IndexEntry entry;
+        final Future<byte[]> compressed;
+
+        PendingBlock(IndexEntry entry, Future<byte[]> compressed) {
+            this.entry = entry;
+            this.compressed = compressed;
+        }
+    }
+
+    /**
+     * The region and location of a block,  or the bounds of an index node
+     */
+    static class IndexEntry implements Comparable<IndexEntry> {
+        int chrId;
+        int start;
+        int endChrId;
+        int end;
+        long offset;
+        long size;
+
+        IndexEntry(int chrId, int start, int end) {
+            this.chrId = chrId;
+            this.start = start;
+            this.endChrId = chrId;
+            this.end = end;
+        }
+
+        static IndexEntry bounds(List<IndexEntry> entries) {
+            if (entries.isEmpty()) {
+                return new IndexEntry(0, 0, 0);
+            }
+            IndexEntry first = entries.get(0);
+            IndexEntry bounds = new IndexEntry(first.chrId, first.start, first.end);
+            for (IndexEntry e : entries) {
+                if (e.endChrId > bounds.endChrId || (e.endChrId == bounds.endChrId && e.end > bounds.end)) {
+                    bounds.endChrId = e.endChrId;
+                    bounds.end = e.end;
+                }
+            }
+            return bounds;
+        }
+
+        public int compareTo(IndexEntry o) {
+            if (chrId != o.chrId) {
+                return chrId < o.chrId ? -1 : 1;
+            }
+            return start < o.start ? -1 : (start == o.start ? 0 : 1);
+        }
+    }
+
+    /**
+     * Zoom records of one chromosome and reduction level,  see BBFile Table O
+     */
+    static class ZoomLevelRecords {
+        int size;
+        int[] starts = new int[1000];
+        int[] ends = new int[1000];
+        int[] validCounts = new int[1000];
+        float[] mins = new float[1000];
+        float[] maxs = new float[1000];
+        float[] sums = new float[1000];
+        float[] sumSquares = new float[1000];
+
+        int size() {
+            return size;
+        }
+
+        void add(int start, int end) {
+            if (size == starts.length) {
+                int capacity = 2 * size;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                validCounts = Arrays.copyOf(validCounts, capacity);
+                mins = Arrays.copyOf(mins, capacity);
+                maxs = Arrays.copyOf(maxs, capacity);
+                sums = Arrays.copyOf(sums, capacity);
+                sumSquares = Arrays.copyOf(sumSquares, capacity);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            mins[size] = Float.MAX_VALUE;
+            maxs[size] = -Float.MAX_VALUE;
+            size++;
+        }
+
+        void update(int i, int bases, float value) {
+            validCounts[i] += bases;
+            mins[i] = Math.min(mins[i], value);
+            maxs[i] = Math.max(maxs[i], value);
+            sums[i] += value * bases;
+            sumSquares[i] += value * value * bases;
+        }
+
+        byte[] encode(int chrId, int from, int to) {
+            ByteBuffer buffer = ByteBuffer.allocate(32 * (to - from)).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = from; i < to; i++) {
+                buffer.putInt(chrId);
+                buffer.putInt(starts[i]);
+                buffer.putInt(ends[i]);
+                buffer.putInt(validCounts[i]);
+                buffer.putFloat(mins[i]);
+                buffer.putFloat(maxs[i]);
+                buffer.putFloat(sums[i]);
+                buffer.putFloat(sumSquares[i]);
+            }
+            return buffer.array();
+        }
+    }
+
+    /**
+     * Zoom records of one chromosome at every reduction level,  and its summary
+     */
+    static class ZoomData {
+        final int chrId;
+        final ZoomLevelRecords[] levels;
+        long basesCovered;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        double sum;
+        double sumSquares;
+
+        ZoomData(int chrId, int nLevels) {
+            this.chrId = chrId;
+            levels = new ZoomLevelRecords[nLevels];
+            for (int i = 0; i < nLevels; i++) {
+                levels[i] = new ZoomLevelRecords();
+            }
+        }
+    }
+}
@@ -85,20 +85,20 @@ public class BBTotalSummaryBlock {
             else
                 bdis = new DataInputStream(new ByteArrayInputStream(buffer));
 
-            // Get TotalSummaryBlcok information
+            // Get TotalSummaryBlcok information,  the statistics are stored as doubles
             if(isLowToHigh){
                 basesCovered = lbdis.readLong();
-                minVal = lbdis.readFloat();
-                maxVal = lbdis.readFloat();
-                sumData = lbdis.readFloat();
-                sumSquares = lbdis.readFloat();
+                minVal = (float) lbdis.readDouble();
+                maxVal = (float) lbdis.readDouble();
+                sumData = (float) lbdis.readDouble();
+                sumSquares = (float) lbdis.readDouble();
             }
             else {
                 basesCovered = bdis.readLong();
-                minVal = bdis.readFloat();
-                maxVal = bdis.readFloat();
-                sumData = bdis.readFloat();
-                sumSquares = bdis.readFloat();
+                minVal = (float) bdis.readDouble();
+                maxVal = (float) bdis.readDouble();
+                sumData = (float) bdis.readDouble();
+                sumSquares = (float) bdis.readDouble();
             }
 
         }catch(IOException ex) {
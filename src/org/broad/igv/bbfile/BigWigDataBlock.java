@@ -81,15 +81,20 @@ public class BigWigDataBlock {
 
         // read Wig data block into a buffer
         try {
+            long t0 = BBFileReader.blockReadTimer.start();
             fis.seek(fileOffset);
             fis.readFully(buffer);
+            BBFileReader.blockReadTimer.stop(t0);
+            BBFileReader.blockBytesRead.add(buffer.length);
 
             // decompress if necessary - the buffer size is 0 for uncompressed data
             // Note:  BBFile Table C specifies a decompression buffer size
+            t0 = BBFileReader.blockDecodeTimer.start();
             if(uncompressBufSize > 0)
                 wigBuffer = CompressionUtils.decompress(buffer, uncompressBufSize);
             else
                 wigBuffer = buffer;    // use uncompressed read buffer directly
+            BBFileReader.blockDecodeTimer.stop(t0);
         }catch(IOException ex) {
              log.error("Error reading Wig section for leaf item ", ex);
              String error = String.format("Error reading Wig section for leaf item %d\n");
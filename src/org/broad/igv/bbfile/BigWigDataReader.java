@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bbfile;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.CompressionUtils;
+import org.broad.igv.util.ExecutorUtils;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.tribble.util.SeekableStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Reads the BigWig data blocks,  or zoom level blocks,  of a selection region into primitive arrays.  Unlike
+ * BigWigIterator and ZoomLevelIterator,  leaf hits whose blocks are adjacent in the file are fetched with a single read,
+ * and blocks are inflated and decoded in parallel without creating an object per value.
+ */
+public class BigWigDataReader {
+
+    private static Logger log = Logger.getLogger(BigWigDataReader.class);
+
+    private static ExecutorService decoder = ExecutorUtils.newFixedThreadPool(
+            "BigWig block decoder", ExecutorUtils.CPU_THREADS);
+
+    /**
+     * The compressed bytes of one data block within a buffer shared by adjacent blocks
+     */
+    static class BlockBytes {
+        final byte[] buffer;
+        final int offset;
+        final int length;
+
+        BlockBytes(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Read the data blocks of the leaf hits,  in hit order.  Runs of hits whose blocks follow each other in the file
+     * are read with one seek and read.
+     *
+     * @param fis
+     * @param leafHits
+     * @return the bytes of each block
+     * @throws IOException
+     */
+    static List<BlockBytes> readBlocks(SeekableStream fis, List<RPTreeLeafNodeItem> leafHits) throws IOException {
+
+        List<BlockBytes> blocks = new ArrayList<BlockBytes>(leafHits.size());
+        int i = 0;
+        while (i < leafHits.size()) {
+            long start = leafHits.get(i).getDataOffset();
+            long end = start + leafHits.get(i).geDataSize();
+            int j = i + 1;
+            while (j < leafHits.size() && leafHits.get(j).getDataOffset() == end &&
+                    end + leafHits.get(j).geDataSize() - start <= Integer.MAX_VALUE) {
+                end += leafHits.get(j).geDataSize();
+                j++;
+            }
+
+            byte[] buffer = new byte[(int) (end - start)];
+            long t0 = BBFileReader.blockReadTimer.start();
+            fis.seek(start);
+            fis.readFully(buffer);
+            BBFileReader.blockReadTimer.stop(t0);
+            BBFileReader.blockBytesRead.add(buffer.length);
+
+            for (int k = i; k < j; k++) {
+                RPTreeLeafNodeItem hit = leafHits.get(k);
+                blocks.add(new BlockBytes(buffer, (int) (hit.getDataOffset() - start), (int) hit.geDataSize()));
+            }
+            i = j;
+        }
+        return blocks;
+    }
+
+    /**
+     * Decodes one block
+     */
+    interface BlockDecoder<T> {
+        T decode(BlockBytes block);
+    }
+
+    /**
+     * Decode the blocks in parallel,  returning the results in block order
+     */
+    static <T> List<T> decodeAll(List<BlockBytes> blocks, final BlockDecoder<T> blockDecoder) {
+
+        List<T> decoded = new ArrayList<T>(blocks.size());
+
+        // Not worth a thread switch for a single block
+        if (blocks.size() == 1) {
+            decoded.add(blockDecoder.decode(blocks.get(0)));
+            return decoded;
+        }
+
+        List<Future<T>> futures = new ArrayList<Future<T>>(blocks.size());
+        for (final BlockBytes block : blocks) {
+            futures.add(decoder.submit(new Callable<T>() {
+                public T call() throws Exception {
+                    return blockDecoder.decode(block);
+                }
+            }));
+        }
+        for (Future<T> future : futures) {
+            try {
+                decoded.add(future.get());
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                log.error("Error decoding data block", e.getCause());
+                throw new RuntimeException("Error decoding data block", e.getCause());
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Inflate and decode the blocks,  keeping the values in the selection region.
+     *
+     * @param blocks            compressed blocks,  in the order values are returned
+     * @param selectionRegion
+     * @param contained         if true values must be contained in the selection region,  else they may intersect it
+     * @param isLowToHigh       byte order is low to high if true; else high to low
+     * @param uncompressBufSize byte size for decompression buffer; else 0 for uncompressed
+     * @return
+     */
+    static WigData decodeBlocks(List<BlockBytes> blocks,
+                                final RPChromosomeRegion selectionRegion,
+                                final boolean contained,
+                                final boolean isLowToHigh,
+                                final int uncompressBufSize) {
+
+        List<WigData> decoded = decodeAll(blocks, new BlockDecoder<WigData>() {
+            public WigData decode(BlockBytes block) {
+                return decodeBlock(block, selectionRegion, contained, isLowToHigh, uncompressBufSize);
+            }
+        });
+        if (decoded.size() == 1) {
+            return decoded.get(0);
+        }
+
+        int size = 0;
+        for (WigData data : decoded) {
+            size += data.size();
+        }
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        float[] values = new float[size];
+        int n = 0;
+        for (WigData data : decoded) {
+            System.arraycopy(data.getStarts(), 0, starts, n, data.size());
+            System.arraycopy(data.getEnds(), 0, ends, n, data.size());
+            System.arraycopy(data.getValues(), 0, values, n, data.size());
+            n += data.size();
+        }
+        return new WigData(starts, ends, values);
+    }
+
+    /**
+     * Inflate and decode zoom level blocks,  keeping the records in the selection region.  Parameters are as for
+     * decodeBlocks.
+     */
+    static ZoomData decodeZoomBlocks(List<BlockBytes> blocks,
+                                     final RPChromosomeRegion selectionRegion,
+                                     final boolean contained,
+                                     final boolean isLowToHigh,
+                                     final int uncompressBufSize) {
+
+        List<ZoomData> decoded = decodeAll(blocks, new BlockDecoder<ZoomData>() {
+            public ZoomData decode(BlockBytes block) {
+                return decodeZoomBlock(block, selectionRegion, contained, isLowToHigh, uncompressBufSize);
+            }
+        });
+        return concatenate(decoded);
+    }
+
+    static ZoomData concatenate(List<ZoomData> decoded) {
+        if (decoded.size() == 1) {
+            return decoded.get(0);
+        }
+
+        int size = 0;
+        for (ZoomData data : decoded) {
+            size += data.size();
+        }
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        float[] minValues = new float[size];
+        float[] maxValues = new float[size];
+        float[] meanValues = new float[size];
+        int n = 0;
+        for (ZoomData data : decoded) {
+            System.arraycopy(data.getStarts(), 0, starts, n, data.size());
+            System.arraycopy(data.getEnds(), 0, ends, n, data.size());
+            System.arraycopy(data.getMinValues(), 0, minValues, n, data.size());
+            System.arraycopy(data.getMaxValues(), 0, maxValues, n, data.size());
+            System.arraycopy(data.getMeanValues(), 0, meanValues, n, data.size());
+            n += data.size();
+        }
+        return new ZoomData(starts, ends, minValues, maxValues, meanValues);
+    }
+
+    private static ByteBuffer inflate(BlockBytes block, boolean isLowToHigh, int uncompressBufSize) {
+        long t0 = BBFileReader.blockDecodeTimer.start();
+        ByteBuffer buffer = uncompressBufSize > 0 ?
+                ByteBuffer.wrap(CompressionUtils.decompress(block.buffer, block.offset, block.length, uncompressBufSize)) :
+                ByteBuffer.wrap(block.buffer, block.offset, block.length).slice();
+        BBFileReader.blockDecodeTimer.stop(t0);
+        buffer.order(isLowToHigh ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Decode the records of one zoom level block,  of ZoomDataRecord.RECORD_SIZE bytes each.
+     */
+    static ZoomData decodeZoomBlock(BlockBytes block, RPChromosomeRegion selectionRegion, boolean contained,
+                                    boolean isLowToHigh, int uncompressBufSize) {
+
+        ByteBuffer buffer = inflate(block, isLowToHigh, uncompressBufSize);
+
+        int selStartChrom = selectionRegion.getStartChromID();
+        int selStartBase = selectionRegion.getStartBase();
+        int selEndChrom = selectionRegion.getEndChromID();
+        int selEndBase = selectionRegion.getEndBase();
+
+        int capacity = buffer.remaining() / ZoomDataRecord.RECORD_SIZE;
+        IntArrayList starts = new IntArrayList(capacity);
+        IntArrayList ends = new IntArrayList(capacity);
+        FloatArrayList minValues = new FloatArrayList(capacity);
+        FloatArrayList maxValues = new FloatArrayList(capacity);
+        FloatArrayList meanValues = new FloatArrayList(capacity);
+
+        while (buffer.remaining() >= ZoomDataRecord.RECORD_SIZE) {
+            int chromID = buffer.getInt();
+            int start = buffer.getInt();
+            int end = buffer.getInt();
+            int validCount = buffer.getInt();
+            float minVal = buffer.getFloat();
+            float maxVal = buffer.getFloat();
+            float sumData = buffer.getFloat();
+            buffer.getFloat();  // sum of squares
+
+            boolean selected = contained ?
+                    isContained(chromID, start, end, selStartChrom, selStartBase, selEndChrom, selEndBase) :
+                    intersects(chromID, start, end, selStartChrom, selStartBase, selEndChrom, selEndBase);
+            if (selected) {
+                starts.add(start);
+                ends.add(end);
+                minValues.add(minVal);
+                maxValues.add(maxVal);
+                meanValues.add(validCount == 0 ? 0 : sumData / validCount);
+            }
+        }
+
+        return new ZoomData(starts.toArray(), ends.toArray(), minValues.toArray(), maxValues.toArray(),
+                meanValues.toArray());
+    }
+
+    /**
+     * Decode the sections of one data block.  See BBFile Table J for the section layout.
+     */
+    static WigData decodeBlock(BlockBytes block, RPChromosomeRegion selectionRegion, boolean contained,
+                               boolean isLowToHigh, int uncompressBufSize) {
+
+        ByteBuffer buffer = inflate(block, isLowToHigh, uncompressBufSize);
+
+        int selStartChrom = selectionRegion.getStartChromID();
+        int selStartBase = selectionRegion.getStartBase();
+        int selEndChrom = selectionRegion.getEndChromID();
+        int selEndBase = selectionRegion.getEndBase();
+
+        IntArrayList starts = new IntArrayList(1000);
+        IntArrayList ends = new IntArrayList(1000);
+        FloatArrayList values = new FloatArrayList(1000);
+
+        while (buffer.remaining() >= BigWigSectionHeader.SECTION_HEADER_SIZE) {
+            int chromID = buffer.getInt();
+            int chromStart = buffer.getInt();
+            int chromEnd = buffer.getInt();
+            int itemStep = buffer.getInt();
+            int itemSpan = buffer.getInt();
+            byte type = buffer.get();
+            buffer.get();  // reserved
+            int itemCount = buffer.getShort() & 0xffff;
+
+            // Values of a section contained in the selection region are all selected
+            boolean allSelected = isContained(chromID, chromStart, chromEnd,
+                    selStartChrom, selStartBase, selEndChrom, selEndBase);
+
+            for (int i = 0; i < itemCount; i++) {
+                int start;
+                int end;
+                switch (type) {
+                    case 1:  // bedGraph
+                        start = buffer.getInt();
+                        end = buffer.getInt();
+                        break;
+                    case 2:  // varStep
+                        start = buffer.getInt();
+                        end = start + itemSpan;
+                        break;
+                    case 3:  // fixedStep
+                        start = chromStart + i * itemStep;
+                        end = start + itemSpan;
+                        break;
+                    default:
+                        throw new RuntimeException("Read error on wig section with item type " + type);
+                }
+                float value = buffer.getFloat();
+
+                boolean selected = allSelected;
+                if (!selected) {
+                    selected = contained ?
+                            isContained(chromID, start, end, selStartChrom, selStartBase, selEndChrom, selEndBase) :
+                            intersects(chromID, start, end, selStartChrom, selStartBase, selEndChrom, selEndBase);
+                }
+                if (selected) {
+                    starts.add(start);
+                    ends.add(end);
+                    values.add(value);
+                }
+            }
+        }
+
+        return new WigData(starts.toArray(), ends.toArray(), values.toArray());
+    }
+
+    private static boolean intersects(int chromID, int start, int end,
+                                      int selStartChrom, int selStartBase, int selEndChrom, int selEndBase) {
+        return !(chromID < selStartChrom || (chromID == selStartChrom && end <= selStartBase)) &&
+                !(chromID > selEndChrom || (chromID == selEndChrom && start >= selEndBase));
+    }
+
+    private static boolean isContained(int chromID, int start, int end,
+                                       int selStartChrom, int selStartBase, int selEndChrom, int selEndBase) {
+        return (chromID > selStartChrom || (chromID == selStartChrom && start >= selStartBase)) &&
+                (chromID < selEndChrom || (chromID == selEndChrom && end <= selEndBase));
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bbfile;
+
+/**
+ * BigWig values of a chromosome region as parallel arrays of start,  end and value,  in file order.
+ */
+public class WigData {
+
+    private int[] starts;
+    private int[] ends;
+    private float[] values;
+
+    public WigData(int[] starts, int[] ends, float[] values) {
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public int[] getStarts() {
+        return starts;
+    }
+
+    public int[] getEnds() {
+        return ends;
+    }
+
+    public float[] getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bbfile;
+
+/**
+ * Zoom level records of a chromosome region as parallel arrays,  in file order.  The mean of a record is its sum of
+ * data divided by the number of bases covered,  see ZoomDataRecord.getMeanVal().
+ */
+public class ZoomData {
+
+    private int[] starts;
+    private int[] ends;
+    private float[] minValues;
+    private float[] maxValues;
+    private float[] meanValues;
+
+    public ZoomData(int[] starts, int[] ends, float[] minValues, float[] maxValues, float[] meanValues) {
+        this.starts = starts;
+        this.ends = ends;
+        this.minValues = minValues;
+        this.maxValues = maxValues;
+        this.meanValues = meanValues;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public int[] getStarts() {
+        return starts;
+    }
+
+    public int[] getEnds() {
+        return ends;
+    }
+
+    public float[] getMinValues() {
+        return minValues;
+    }
+
+    public float[] getMaxValues() {
+        return maxValues;
+    }
+
+    public float[] getMeanValues() {
+        return meanValues;
+    }
+}
@@ -24,8 +24,6 @@ import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.color.ColorUtilities;
 import org.broad.igv.util.ParsingUtils;
-import org.broad.igv.util.collections.FloatArrayList;
-import org.broad.igv.util.collections.IntArrayList;
 import org.broad.tribble.Feature;
 
 import java.io.IOException;
@@ -96,18 +94,19 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
         final int oneMB = 1000000;
         int z = getZoomLevelForScale(oneMB).getZoomLevel();
 
-        ZoomLevelIterator zlIter = reader.getZoomLevelIterator(z);
-        int n = 0;
-        double[] values = new double[10000];
-        if (zlIter.hasNext()) {
-            while (zlIter.hasNext()) {
-                ZoomDataRecord rec = zlIter.next();
-                values[n] = (rec.getMeanVal());
-                n++;
-                if (n >= 10000) {
-                    break;
-                }
-            }
+        ZoomData data;
+        try {
+            data = reader.getZoomData(z, 10000);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading zoom level " + z, e);
+        }
+        int n = data.size();
+        double[] values = new double[n];
+        float[] means = data.getMeanValues();
+        for (int i = 0; i < n; i++) {
+            values[i] = means[i];
+        }
+        if (n > 0) {
             dataMin = StatUtils.percentile(values, 0, n, 10);
 
             // Peg the scale at 100, this seems arbitrary but it maintains some compatibility with earlier releases
@@ -216,14 +215,13 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
         String querySeq = tmp == null ? chr : tmp;
 
         if (reader.isBigBedFile() || bbLevel > 1 || (bbLevel == 1 && (reductionLevel / scale) < 2)) {
-            ArrayList<LocusScore> scores = new ArrayList(1000);
-            ZoomLevelIterator zlIter = reader.getZoomLevelIterator(bbLevel, querySeq, start, querySeq, end, false);
-            while (zlIter.hasNext()) {
-                ZoomDataRecord rec = zlIter.next();
-
-                float v = getValue(rec);
-                BasicScore bs = new BasicScore(rec.getChromStart(), rec.getChromEnd(), v);
-                scores.add(bs);
+            ZoomData data = getZoomData(bbLevel, querySeq, start, end);
+            int[] starts = data.getStarts();
+            int[] ends = data.getEnds();
+            float[] values = getValues(data);
+            ArrayList<LocusScore> scores = new ArrayList(data.size());
+            for (int i = 0; i < data.size(); i++) {
+                scores.add(new BasicScore(starts[i], ends[i], values[i]));
             }
             return scores;
 
@@ -233,20 +231,23 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
         }
     }
 
-    private float getValue(ZoomDataRecord rec) {
-        float v;
+    private ZoomData getZoomData(int zoomLevel, String querySeq, int start, int end) {
+        try {
+            return reader.getZoomData(zoomLevel, querySeq, start, end, false);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading zoom data for " + querySeq + ":" + start + "-" + end, e);
+        }
+    }
+
+    private float[] getValues(ZoomData data) {
         switch (windowFunction) {
             case min:
-                v = rec.getMinVal();
-                break;
+                return data.getMinValues();
             case max:
-                v = rec.getMaxVal();
-                break;
+                return data.getMaxValues();
             default:
-                v = rec.getMeanVal();
-
+                return data.getMeanValues();
         }
-        return v;
     }
 
 
@@ -262,22 +263,15 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
             return currentInterval.tile;
         }
 
-        // TODO -- fetch data directly in arrays to avoid creation of multiple "WigItem" objects?
-        IntArrayList startsList = new IntArrayList(100000);
-        IntArrayList endsList = new IntArrayList(100000);
-        FloatArrayList valuesList = new FloatArrayList(100000);
-
         String chrAlias = chrNameMap.containsKey(chr) ? chrNameMap.get(chr) : chr;
-        Iterator<WigItem> iter = reader.getBigWigIterator(chrAlias, start, chrAlias, end, false);
-
-        while (iter.hasNext()) {
-            WigItem wi = iter.next();
-            startsList.add(wi.getStartBase());
-            endsList.add(wi.getEndBase());
-            valuesList.add(wi.getWigValue());
+        WigData data;
+        try {
+            data = reader.getBigWigData(chrAlias, start, end, false);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading wig data for " + chr + ":" + start + "-" + end, e);
         }
 
-        DataTile tile = new DataTile(startsList.toArray(), endsList.toArray(), valuesList.toArray(), null);
+        DataTile tile = new DataTile(data.getStarts(), data.getEnds(), data.getValues(), null);
         currentInterval = new RawDataInterval(chr, start, end, tile);
 
         return tile;
@@ -302,20 +296,18 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
                     String tmp = chrNameMap.get(chrName);
                     String querySeq = tmp == null ? chrName : tmp;
 
-                    ZoomLevelIterator zlIter = reader.getZoomLevelIterator(
-                            lowestResHeader.getZoomLevel(), querySeq, 0, querySeq, end, false);
-
-                    while (zlIter.hasNext()) {
-                        ZoomDataRecord rec = zlIter.next();
-
-                        float value = getValue(rec);
-                        int genomeStart = genome.getGenomeCoordinate(chrName, rec.getChromStart());
+                    ZoomData data = getZoomData(lowestResHeader.getZoomLevel(), querySeq, 0, end);
+                    int[] starts = data.getStarts();
+                    int[] ends = data.getEnds();
+                    float[] values = getValues(data);
+                    for (int i = 0; i < data.size(); i++) {
+                        int genomeStart = genome.getGenomeCoordinate(chrName, starts[i]);
                         if (genomeStart < lastGenomeEnd) {
                             continue;
                         }
 
-                        int genomeEnd = genome.getGenomeCoordinate(chrName, rec.getChromEnd());
-                        wholeGenomeScores.add(new BasicScore(genomeStart, genomeEnd, value));
+                        int genomeEnd = genome.getGenomeCoordinate(chrName, ends[i]);
+                        wholeGenomeScores.add(new BasicScore(genomeStart, genomeEnd, values[i]));
                         lastGenomeEnd = genomeEnd;
                     }
                 }
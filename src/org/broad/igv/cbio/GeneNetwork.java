@@ -20,6 +20,7 @@ import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.FeatureDB;
 import org.broad.igv.feature.NamedFeature;
 import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScorer;
 import org.broad.igv.track.Track;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
@@ -755,26 +756,24 @@ public class GeneNetwork extends DirectedMultigraph<Node, Node> {
                 }
                 int featStart = feat.getStart();
                 int featEnd = feat.getEnd();
-                for (Track track : tracks) {
-                    if (!track.isVisible()) {
-                        continue;
-                    }
-                    String sample = track.getSample();
 
-                    //If track is wrong type, or if sample has already been marked altered,
-                    //no further information can be gained
-                    if (!track.isRegionScoreType(type) || alteredSamplesForType.contains(sample)) {
-                        //if(alteredSamplesForType.contains(sample)) assert samplesForType.contains(sample);
-                        continue;
+                //If track is wrong type, or if sample has already been marked altered,
+                //no further information can be gained
+                List<Track> scoredTracks = new ArrayList<Track>();
+                for (Track track : tracks) {
+                    if (track.isVisible() && track.isRegionScoreType(type) &&
+                            !alteredSamplesForType.contains(track.getSample())) {
+                        scoredTracks.add(track);
+                        samplesForType.add(track.getSample());
                     }
+                }
 
-                    samplesForType.add(sample);
-
-                    float score = track.getRegionScore(feat.getChr(), featStart, featEnd, zoom,
-                            type, frameName, tracks);
-
+                float[] scores = RegionScorer.getScores(scoredTracks, feat.getChr(), featStart, featEnd, zoom,
+                        type, frameName, tracks);
+                for (int i = 0; i < scores.length; i++) {
+                    float score = scores[i];
                     if (score >= curBounds[0] && score <= curBounds[1] && !Float.isNaN(score)) {
-                        alteredSamplesForType.add(sample);
+                        alteredSamplesForType.add(scoredTracks.get(i).getSample());
                     }
                 }
             }
@@ -26,7 +26,6 @@ import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.tdf.Accumulator;
 import org.broad.igv.track.WindowFunction;
-import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.util.LRUCache;
 
 import java.util.*;
@@ -38,10 +37,15 @@ public abstract class AbstractDataSource implements DataSource {
 
     private static Logger log = Logger.getLogger(AbstractDataSource.class);
 
+    static final int BINS_PER_TILE = 700;
+
+    // Limit for deriving tiles from the next zoom level,  beyond this 2^(z+1) tiles overflows an int
+    private static final int MAX_PYRAMID_ZOOM = 29;
+
     // DataManager dataManager;
     boolean cacheSummaryTiles = true;
     WindowFunction windowFunction = WindowFunction.mean;
-    LRUCache<String, SummaryTile> summaryTileCache = new LRUCache(this, 10);
+    LRUCache<String, SummaryTile> summaryTileCache = new LRUCache(this, 30);
     protected Genome genome;
 
     public AbstractDataSource(Genome genome) {
@@ -158,40 +162,95 @@ public abstract class AbstractDataSource implements DataSource {
         int adjustedEnd = Math.min(chrLength, endLocation);
 
 
-        if (cacheSummaryTiles && !FrameManager.isGeneListMode()) {
+        // Tiles are keyed by chromosome and zoom only,  so the cache is valid for gene list frames as well.
+        if (cacheSummaryTiles) {
             double tileWidth = ((double) chrLength) / nTiles;
             int startTile = (int) (adjustedStart / tileWidth);
-            int endTile = (int) (Math.min(chrLength, adjustedEnd) / tileWidth) + 1;
+            int endTile = Math.min(nTiles - 1, (int) (Math.min(chrLength, adjustedEnd) / tileWidth) + 1);
             List<SummaryTile> tiles = new ArrayList(nTiles);
             for (int t = startTile; t <= endTile; t++) {
+                SummaryTile summaryTile = getSummaryTile(chr, z, t, chrLength);
+                if (summaryTile != null) {
+                    tiles.add(summaryTile);
+                }
+            }
+            return tiles;
+        } else {
+            SummaryTile summaryTile = computeSummaryTile(chr, 0, startLocation, endLocation, BINS_PER_TILE);
+            return Arrays.asList(summaryTile);
+        }
+
+
+    }
+
+    /**
+     * Return summary tile {@code t} at zoom {@code z}, from the cache if possible.  Otherwise the tile is derived
+     * from its children at zoom z + 1 if either of those is cached, and computed from raw data only as a last resort.
+     * Zooming out over data already viewed therefore costs O(bins) rather than O(data points).
+     *
+     * @param chr
+     * @param z
+     * @param t
+     * @param chrLength
+     * @return
+     */
+    private SummaryTile getSummaryTile(String chr, int z, int t, int chrLength) {
+
+        String key = getTileKey(chr, z, t);
+        SummaryTile summaryTile = summaryTileCache.get(key);
+        if (summaryTile == null) {
+
+            summaryTile = mergeChildTiles(chr, z, t, chrLength);
+
+            if (summaryTile == null) {
+                double tileWidth = ((double) chrLength) / (1 << z);
                 int tileStart = (int) (t * tileWidth);
                 int tileEnd = Math.min(chrLength, (int) ((t + 1) * tileWidth));
 
-                String key = chr + "_" + z + "_" + t + getWindowFunction();
-                SummaryTile summaryTile = summaryTileCache.get(key);
+                // Bins are aligned to the chromosome start so that each bin is exactly two bins of the next zoom
+                summaryTile = computeSummaryTile(chr, tileStart, tileEnd, 0, getBinSize(chrLength, z));
                 if (summaryTile == null) {
+                    // Cache the absence of data as well
+                    summaryTile = new SummaryTile();
+                }
+            }
 
-                    summaryTile = computeSummaryTile(chr, t, tileStart, tileEnd, 700);
+            synchronized (summaryTileCache) {
+                summaryTileCache.put(key, summaryTile);
+            }
+        }
+        return summaryTile;
+    }
 
-                    if (cacheSummaryTiles && !FrameManager.isGeneListMode()) {
-                        synchronized (summaryTileCache) {
-                            summaryTileCache.put(key, summaryTile);
-                        }
-                    }
-                }
+    private SummaryTile mergeChildTiles(String chr, int z, int t, int chrLength) {
 
+        if (windowFunction == WindowFunction.none || z >= MAX_PYRAMID_ZOOM) {
+            return null;
+        }
 
-                if (summaryTile != null) {
-                    tiles.add(summaryTile);
-                }
-            }
-            return tiles;
-        } else {
-            SummaryTile summaryTile = computeSummaryTile(chr, 0, startLocation, endLocation, 700);
-            return Arrays.asList(summaryTile);
+        SummaryTile child1 = summaryTileCache.get(getTileKey(chr, z + 1, 2 * t));
+        SummaryTile child2 = summaryTileCache.get(getTileKey(chr, z + 1, 2 * t + 1));
+        if (child1 == null && child2 == null) {
+            return null;
+        }
+        if (child1 == null) {
+            child1 = getSummaryTile(chr, z + 1, 2 * t, chrLength);
+        }
+        if (child2 == null) {
+            child2 = getSummaryTile(chr, z + 1, 2 * t + 1, chrLength);
+        }
+        if (!child1.isMergeable() || !child2.isMergeable()) {
+            return null;
         }
+        return mergeTiles(child1, child2, getBinSize(chrLength, z));
+    }
 
+    private String getTileKey(String chr, int z, int t) {
+        return chr + "_" + z + "_" + t + getWindowFunction();
+    }
 
+    private static double getBinSize(int chrLength, int z) {
+        return ((double) chrLength) / (((long) 1 << z) * BINS_PER_TILE);
     }
 
 
@@ -207,6 +266,17 @@ public abstract class AbstractDataSource implements DataSource {
      */
 
     SummaryTile computeSummaryTile(String chr, int tileNumber, int startLocation, int endLocation, int nBins) {
+        if (nBins <= 0) {
+            return null;
+        }
+        double scale = (double) (endLocation - startLocation) / nBins;
+        return computeSummaryTile(chr, startLocation, endLocation, startLocation, scale);
+    }
+
+    /**
+     * Summarize raw data over the interval into bins of size {@code scale}, numbered from {@code binOrigin}.
+     */
+    private SummaryTile computeSummaryTile(String chr, int startLocation, int endLocation, double binOrigin, double scale) {
 
 
         // TODO -- we should use an index here
@@ -217,17 +287,20 @@ public abstract class AbstractDataSource implements DataSource {
         SummaryTile tile = null;
 
 
-        if ((rawTile != null) && !rawTile.isEmpty() && nBins > 0) {
+        if ((rawTile != null) && !rawTile.isEmpty()) {
             int[] starts = rawTile.getStartLocations();
             int[] ends = rawTile.getEndLocations();
             float[] values = rawTile.getValues();
             String[] features = rawTile.getFeatureNames();
 
+            // Raw data might cover the whole chromosome,  skip features which cannot overlap the interval
+            int firstIndex = getFirstIndex(starts, adjustedStart);
+
             tile = new SummaryTile();
 
             if (windowFunction == WindowFunction.none) {
 
-                for (int i = 0; i < starts.length; i++) {
+                for (int i = firstIndex; i < starts.length; i++) {
                     int s = starts[i];
                     int e = ends == null ? s + 1 : Math.max(s + 1, ends[i]);
 
@@ -248,8 +321,6 @@ public abstract class AbstractDataSource implements DataSource {
 
             } else {
                 float normalizationFactor = 1.0f;
-                List<LocusScore> scores = new ArrayList(nBins);
-                double scale = (double) (endLocation - startLocation) / nBins;
 
                 Accumulator accumulator = new Accumulator(windowFunction, 5);
                 int accumulatedStart = -1;
@@ -259,7 +330,7 @@ public abstract class AbstractDataSource implements DataSource {
                 int size = starts.length;
 
                 // Loop through and bin scores for this interval.
-                for (int i = 0; i < size; i++) {
+                for (int i = firstIndex; i < size; i++) {
 
                     int true_end = ends == null ? starts[i] + 1 : ends[i];
 
@@ -277,20 +348,20 @@ public abstract class AbstractDataSource implements DataSource {
 
                     String probeName = features == null ? null : features[i];
 
-                    // Compute bin numbers, relative to start of this tile
-                    int endBin = (int) ((e - startLocation) / scale);
-                    int startBin = (int) ((s - startLocation) / scale);
+                    // Compute bin numbers
+                    int endBin = (int) ((e - binOrigin) / scale);
+                    int startBin = (int) ((s - binOrigin) / scale);
 
                     // If this feature spans multiple bins, or extends beyond last end bin, record
                     if (endBin > lastEndBin || endBin > startBin) {
                         if (accumulator.hasData()) {
-                            scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd));
+                            tile.addScore(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd), accumulator);
                             accumulator = new Accumulator(windowFunction, 5);
                         }
                     }
 
                     if (endBin > startBin) {
-                        scores.add(new NamedScore(s, e, v, probeName));
+                        tile.addScore(new NamedScore(s, e, v, probeName), null);
                     } else {
                         if (!accumulator.hasData()) accumulatedStart = s;
                         accumulatedEnd = e;
@@ -302,10 +373,8 @@ public abstract class AbstractDataSource implements DataSource {
 
                 // Cleanup
                 if (accumulator.hasData()) {
-                    scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd));
+                    tile.addScore(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd), accumulator);
                 }
-
-                tile.addAllScores(scores);
             }
 
         }
@@ -314,6 +383,117 @@ public abstract class AbstractDataSource implements DataSource {
         return tile;
     }
 
+    /**
+     * Combine two adjacent tiles into one tile with bins of {@code binSize}, which must be twice the bin size of the
+     * input tiles.  Scores are binned as in {@link #computeSummaryTile}, but with the cached statistics of the input
+     * bins merged in place of the raw data.
+     * <p/>
+     * Note:  Package scope used so this method can be unit tested
+     *
+     * @param tile1
+     * @param tile2
+     * @param binSize
+     * @return
+     */
+    SummaryTile mergeTiles(SummaryTile tile1, SummaryTile tile2, double binSize) {
+
+        List<LocusScore> scores = new ArrayList<LocusScore>(tile1.getSize() + tile2.getSize());
+        List<Accumulator> accumulators = new ArrayList<Accumulator>(tile1.getSize() + tile2.getSize());
+        if (tile1.accumulators != null) {
+            scores.addAll(tile1.getScores());
+            accumulators.addAll(tile1.accumulators);
+        }
+        if (tile2.accumulators != null) {
+            int i = 0;
+            // A feature crossing the tile boundary is split between the tiles,  rejoin the pieces
+            if (scores.size() > 0 && tile2.getSize() > 0) {
+                LocusScore last = scores.get(scores.size() - 1);
+                LocusScore first = tile2.getScores().get(0);
+                if (accumulators.get(accumulators.size() - 1) == null && tile2.accumulators.get(0) == null &&
+                        last.getEnd() == first.getStart() && last.getScore() == first.getScore() &&
+                        equals(getProbe(last), getProbe(first))) {
+                    scores.set(scores.size() - 1,
+                            new NamedScore(last.getStart(), first.getEnd(), last.getScore(), getProbe(last)));
+                    i = 1;
+                }
+            }
+            scores.addAll(tile2.getScores().subList(i, tile2.getSize()));
+            accumulators.addAll(tile2.accumulators.subList(i, tile2.getSize()));
+        }
+
+        SummaryTile tile = new SummaryTile();
+        Accumulator accumulator = new Accumulator(windowFunction, 5);
+        int accumulatedStart = -1;
+        int accumulatedEnd = -1;
+        int lastEndBin = 0;
+
+        for (int i = 0; i < scores.size(); i++) {
+
+            LocusScore score = scores.get(i);
+            Accumulator childAccumulator = accumulators.get(i);
+            int s = score.getStart();
+            int e = score.getEnd();
+
+            int endBin = (int) (e / binSize);
+            int startBin = (int) (s / binSize);
+
+            if (endBin > lastEndBin || endBin > startBin) {
+                if (accumulator.hasData()) {
+                    tile.addScore(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd), accumulator);
+                    accumulator = new Accumulator(windowFunction, 5);
+                }
+            }
+
+            if (endBin > startBin) {
+                // Still spans multiple bins.  Child bins fall within a single bin,  so this is a single feature.
+                tile.addScore(score, childAccumulator);
+            } else {
+                if (!accumulator.hasData()) accumulatedStart = s;
+                accumulatedEnd = e;
+                if (childAccumulator == null) {
+                    accumulator.add(e - s, score.getScore(), getProbe(score));
+                } else {
+                    accumulator.merge(childAccumulator);
+                }
+            }
+
+            lastEndBin = endBin;
+        }
+
+        if (accumulator.hasData()) {
+            tile.addScore(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd), accumulator);
+        }
+        if (tile.accumulators == null) {
+            tile.accumulators = new ArrayList<Accumulator>(0);
+        }
+        return tile;
+    }
+
+    private static String getProbe(LocusScore score) {
+        return score instanceof NamedScore ? ((NamedScore) score).getProbe() : null;
+    }
+
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    /**
+     * Return the index of the first start location >= {@code position}.
+     */
+    private static int getFirstIndex(int[] starts, int position) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     private LocusScore getCompositeScore(Accumulator accumulator, int accumulatedStart, int accumulatedEnd) {
         LocusScore ls;
         if (accumulator.getNpts() == 1) {
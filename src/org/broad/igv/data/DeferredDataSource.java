@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.track.WindowFunction;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A data source whose data becomes available some time after the track is created,  for example when a large
+ * wig file is being tiled in the background.  Until then queries return no scores.
+ *
+ * @see org.broad.igv.tools.AutoIndexer
+ */
+public class DeferredDataSource implements DataSource {
+
+    private volatile DataSource delegate;
+    private TrackType trackType;
+    private WindowFunction windowFunction = WindowFunction.mean;
+
+    public DeferredDataSource(TrackType trackType) {
+        this.trackType = trackType;
+    }
+
+    public boolean isReady() {
+        return delegate != null;
+    }
+
+    public void setDelegate(DataSource delegate) {
+        delegate.setWindowFunction(windowFunction);
+        this.delegate = delegate;
+    }
+
+    public double getDataMax() {
+        DataSource src = delegate;
+        return src == null ? 0 : src.getDataMax();
+    }
+
+    public double getDataMin() {
+        DataSource src = delegate;
+        return src == null ? 0 : src.getDataMin();
+    }
+
+    public List<LocusScore> getSummaryScoresForRange(String chr, int startLocation, int endLocation, int zoom) {
+        DataSource src = delegate;
+        return src == null ? Collections.<LocusScore>emptyList() :
+                src.getSummaryScoresForRange(chr, startLocation, endLocation, zoom);
+    }
+
+    public TrackType getTrackType() {
+        DataSource src = delegate;
+        return src == null ? trackType : src.getTrackType();
+    }
+
+    public void setWindowFunction(WindowFunction statType) {
+        this.windowFunction = statType;
+        DataSource src = delegate;
+        if (src != null) {
+            src.setWindowFunction(statType);
+        }
+    }
+
+    public boolean isLogNormalized() {
+        DataSource src = delegate;
+        return src != null && src.isLogNormalized();
+    }
+
+    public WindowFunction getWindowFunction() {
+        return windowFunction;
+    }
+
+    public Collection<WindowFunction> getAvailableWindowFunctions() {
+        DataSource src = delegate;
+        return src == null ? Arrays.asList(WindowFunction.mean) : src.getAvailableWindowFunctions();
+    }
+}
@@ -27,6 +27,7 @@ import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.collections.FloatArrayList;
@@ -62,6 +63,7 @@ public class IGVDatasetParser {
     private int probeColumn = -1;
     private boolean hasEndLocations = false;
     private boolean hasCalls = false;
+    private FieldTokenizer tokens = new FieldTokenizer(false, true);
     private Genome genome;
     private IGV igv;
 
@@ -236,10 +238,9 @@ public class IGVDatasetParser {
                 }
                 // Distance since last sample
 
-                String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                int nTokens = tokens.length;
+                int nTokens = tokens.tokenize(nextLine);
                 if (nTokens > 0) {
-                    String thisChr = genome.getChromosomeAlias(tokens[chrColumn]);
+                    String thisChr = genome.getChromosomeAlias(tokens.getString(chrColumn));
                     if (chrSummary == null || !thisChr.equals(chrSummary.getName())) {
                         // Update whole genome and previous chromosome summary, unless this is
                         // the first chromosome
@@ -260,24 +261,24 @@ public class IGVDatasetParser {
 
                     int location = -1;
                     try {
-                        location = ParsingUtils.parseInt(tokens[startColumn]) - startBase;
+                        location = parseInt(startColumn) - startBase;
 
                     } catch (NumberFormatException numberFormatException) {
-                        log.error("Column " + tokens[startColumn] + " is not a number");
+                        log.error("Column " + tokens.getString(startColumn) + " is not a number");
                         throw new ParserException("Column " + (startColumn + 1) +
-                                " must contain an integer value." + " Found: " + tokens[startColumn],
+                                " must contain an integer value." + " Found: " + tokens.getString(startColumn),
                                 reader.getCurrentLineNumber(), nextLine);
                     }
 
                     int length = 1;
                     if (hasEndLocations) {
                         try {
-                            length = ParsingUtils.parseInt(tokens[endColumn].trim()) - location + 1;
+                            length = parseInt(endColumn) - location + 1;
 
                         } catch (NumberFormatException numberFormatException) {
-                            log.error("Column " + tokens[endColumn] + " is not a number");
+                            log.error("Column " + tokens.getString(endColumn) + " is not a number");
                             throw new ParserException("Column " + (endColumn + 1) +
-                                    " must contain an integer value." + " Found: " + tokens[endColumn],
+                                    " must contain an integer value." + " Found: " + tokens.getString(endColumn),
                                     reader.getCurrentLineNumber(), nextLine);
                         }
                     }
@@ -294,7 +295,7 @@ public class IGVDatasetParser {
                     for (int idx = 0; idx < headings.length; idx++) {
                         int i = firstDataColumn + idx * skipColumns;
 
-                        float copyNo = i < tokens.length ? readFloat(tokens[i]) : Float.NaN;
+                        float copyNo = tokens.getFloat(i, Float.NaN);
 
                         if (!Float.isNaN(copyNo)) {
                             dataMin = Math.min(dataMin, copyNo);
@@ -359,18 +360,16 @@ public class IGVDatasetParser {
         }
     }
 
-    private float readFloat(String token) {
-        float copyNo = Float.NaN;
+    /**
+     * Parse a position column of the current line.  Positions are normally plain integers, but values such as
+     * "1.5e6" are accepted and truncated.
+     */
+    private int parseInt(int column) {
         try {
-            if (token != null) {
-                copyNo = Float.parseFloat(token);
-            }
-
+            return tokens.getInt(column);
         } catch (NumberFormatException e) {
-            // This is an expected condition.
+            return ParsingUtils.parseInt(tokens.getString(column).trim());
         }
-        return copyNo;
-
     }
 
     /**
@@ -413,27 +412,27 @@ public class IGVDatasetParser {
 
                 if (!nextLine.startsWith("#")) {
                     try {
-                        String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                        String thisChromosome = genome.getChromosomeAlias(tokens[chrColumn].trim());
+                        tokens.tokenize(nextLine);
+                        String thisChromosome = genome.getChromosomeAlias(tokens.getString(chrColumn).trim());
                         if (thisChromosome.equals(chromosome)) {
                             chromosomeStarted = true;
 
                             // chromosomeData.setMarkerId(nRows, tokens[0]);
 
                             // The probe.  A new string is created to prevent holding on to the entire row through a substring reference
-                            String probe = new String(tokens[probeColumn]);
+                            String probe = tokens.getString(probeColumn);
                             probes.add(probe);
 
-                            int start = ParsingUtils.parseInt(tokens[startColumn].trim()) - startBase;
+                            int start = parseInt(startColumn) - startBase;
                             if (hasEndLocations) {
-                                endLocations.add(ParsingUtils.parseInt(tokens[endColumn].trim()));
+                                endLocations.add(parseInt(endColumn));
                             }
 
                             startLocations.add(start);
 
                             for (int idx = 0; idx < dataHeaders.length; idx++) {
                                 int i = firstDataColumn + idx * skipColumns;
-                                float copyNo = i <= lastDataColumn ? readFloat(tokens[i]) : Float.NaN;
+                                float copyNo = i <= lastDataColumn ? tokens.getFloat(i, Float.NaN) : Float.NaN;
                                 String heading = dataHeaders[idx];
                                 dataMap.get(heading).add(copyNo);
                             }
@@ -33,6 +33,10 @@ public class NamedScore extends BasicScore {
         this.probe = probe;
     }
 
+    public String getProbe() {
+        return probe;
+    }
+
     public String getValueString(double position, WindowFunction windowFunction) {
         StringBuffer buf = new StringBuffer();
         buf.append("Value: " + score);
@@ -22,6 +22,7 @@ package org.broad.igv.data;
 //~--- non-JDK imports --------------------------------------------------------
 
 import org.broad.igv.feature.LocusScore;
+import org.broad.igv.tdf.Accumulator;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,6 +40,10 @@ public class SummaryTile {
 
     List<LocusScore> summaryScores;
 
+    // Mergeable statistics behind each score, null for scores which represent a single feature.  Present only for
+    // tiles computed by AbstractDataSource,  which uses them to derive coarser tiles from finer ones.
+    List<Accumulator> accumulators;
+
 
     public SummaryTile() {
         summaryScores = new ArrayList(1000);
@@ -53,6 +58,19 @@ public class SummaryTile {
     }
 
 
+    void addScore(LocusScore score, Accumulator accumulator) {
+        if (accumulators == null) {
+            accumulators = new ArrayList<Accumulator>(1000);
+        }
+        summaryScores.add(score);
+        accumulators.add(accumulator);
+    }
+
+    boolean isMergeable() {
+        return summaryScores.isEmpty() || (accumulators != null && accumulators.size() == summaryScores.size());
+    }
+
+
     public void addAllScores(Collection<? extends LocusScore> scores) {
         summaryScores.addAll(scores);
     }
@@ -17,7 +17,6 @@
  */
 package org.broad.igv.data;
 
-import org.broad.igv.Globals;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.util.collections.FloatArrayList;
@@ -25,6 +24,7 @@ import org.broad.igv.util.collections.IntArrayList;
 import org.apache.log4j.Logger;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.track.TrackProperties;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.tribble.readers.AsciiLineReader;
@@ -65,6 +65,8 @@ public class WiggleParser {
     // state.
     private String chr;
     String lastChr = "";
+    private FieldTokenizer tokens = new FieldTokenizer();
+    private String rawChr;
     int lastPosition = 0;
     private int start;
     private int step = 1;
@@ -180,8 +182,7 @@ public class WiggleParser {
 
                 } else {
                     // Must be data
-                    String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
-                    int nTokens = tokens.length;
+                    int nTokens = tokens.tokenize(nextLine);
                     if (nTokens == 0) {
                         continue;
                     }
@@ -189,7 +190,7 @@ public class WiggleParser {
                         if (type.equals(Type.CPG)) {
 
                             if (nTokens > 3) {
-                                chr = tokens[1].trim();
+                                chr = tokens.getString(1).trim();
                                 if (!chr.equals(lastChr)) {
                                     changedChromosome(dataset, lastChr);
 
@@ -198,11 +199,11 @@ public class WiggleParser {
 
                                 int endPosition = -1;
                                 try {
-                                    endPosition = Integer.parseInt(tokens[2].trim());
+                                    endPosition = tokens.getInt(2);
                                 } catch (NumberFormatException numberFormatException) {
                                     log.error("Column 2  is not a number");
 
-                                    throw new ParserException("Column 2 must be numeric." + " Found: " + tokens[1],
+                                    throw new ParserException("Column 2 must be numeric." + " Found: " + tokens.getString(1),
                                             reader.getCurrentLineNumber(), nextLine);
                                 }
                                 int startPosition = endPosition - 1;
@@ -215,8 +216,8 @@ public class WiggleParser {
                                 startLocations.add(startPosition);
                                 endLocations.add(endPosition);
 
-                                float value = Float.parseFloat(tokens[4].trim());
-                                if (tokens[3].trim().equals("R")) {
+                                float value = tokens.getFloat(4);
+                                if (tokens.getString(3).trim().equals("R")) {
                                     value = -value;
                                 }
 
@@ -225,7 +226,11 @@ public class WiggleParser {
                         } else if (type.equals(Type.BED_GRAPH) || type.equals(Type.EXPR)) {
 
                             if (nTokens > 3) {
-                                chr = tokens[chrColumn].trim();
+                                // Reuse the chromosome name while it is unchanged, rather than creating a string per line
+                                if (rawChr == null || !tokens.equals(chrColumn, rawChr)) {
+                                    rawChr = tokens.getString(chrColumn);
+                                }
+                                chr = rawChr.trim();
                                 if (!chr.equals(lastChr)) {
                                     changedChromosome(dataset, lastChr);
 
@@ -234,12 +239,12 @@ public class WiggleParser {
 
                                 int startPosition = -1;
                                 try {
-                                    startPosition = Integer.parseInt(tokens[startColumn].trim());
+                                    startPosition = tokens.getInt(startColumn);
                                 } catch (NumberFormatException numberFormatException) {
                                     log.error("Column " + (startColumn + 1) + "  is not a number");
 
                                     throw new ParserException("Column (startColumn + 1) must be numeric." + " Found: " +
-                                            tokens[startColumn],
+                                            tokens.getString(startColumn),
                                             reader.getCurrentLineNumber(), nextLine);
                                 }
 
@@ -252,7 +257,7 @@ public class WiggleParser {
 
 
                                 try {
-                                    int endPosition = Integer.parseInt(tokens[endColumn].trim());
+                                    int endPosition = tokens.getInt(endColumn);
                                     endLocations.add(endPosition);
                                     int length = endPosition - startPosition;
                                     updateLongestFeature(length);
@@ -260,18 +265,18 @@ public class WiggleParser {
                                     log.error("Column " + (endColumn + 1) + " is not a number");
 
                                     throw new ParserException("Column " + (endColumn + 1) +
-                                            " must be numeric." + " Found: " + tokens[endColumn],
+                                            " must be numeric." + " Found: " + tokens.getString(endColumn),
                                             reader.getCurrentLineNumber(), nextLine);
                                 }
 
-                                data.add(Float.parseFloat(tokens[dataColumn].trim()));
+                                data.add(tokens.getFloat(dataColumn));
                             }
                         } else if (type.equals(Type.VARIABLE)) {
                             if (nTokens > 1) {
 
                                 // Per UCSC specification variable and fixed step coordinates are "1" based.
                                 // We need to subtract 1 to convert to the internal "zero" based coordinates.
-                                int startPosition = Integer.parseInt(tokens[0]) - 1;
+                                int startPosition = tokens.getInt(0) - 1;
                                 if (startPosition < lastPosition) {
                                     unsortedChromosomes.add(chr);
                                 }
@@ -280,13 +285,13 @@ public class WiggleParser {
                                 int end = startPosition + windowSpan;
                                 startLocations.add(startPosition);
                                 endLocations.add(end);
-                                data.add(Float.parseFloat(tokens[1]));
+                                data.add(tokens.getFloat(1));
                             }
                         } else {    // Fixed step -- sorting is checked when step line is parsed
                             if (position >= 0) {
                                 startLocations.add(position);
                                 endLocations.add(position + windowSpan);
-                                data.add(Float.parseFloat(tokens[0]));
+                                data.add(tokens.getFloat(0));
                             }
                             position += step;
                             lastPosition = position;
@@ -15,164 +15,365 @@
  * THE BROAD OR MIT SHALL BE ADVISED, SHALL HAVE OTHER REASON TO KNOW, OR IN FACT
  * SHALL KNOW OF THE POSSIBILITY OF THE FOREGOING.
  */
-
 package org.broad.igv.data.seg;
 
+import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.ExecutorUtils;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
+ * Amplification and deletion frequencies of a segmented data set,  binned by chromosome and over the whole genome.
+ * <p/>
+ * The segments of all samples are read once into primitive arrays,  with their scores on a log2 scale,  in order of
+ * score.  Counts are accumulated in primitive arrays per chromosome,  a segment adding to the partially covered
+ * bins at its ends and to a difference array over the bins it covers entirely,  in parallel over partitions of the
+ * segments.  A change of thresholds at the same bin size adds or removes only the segments whose scores lie between
+ * the old and new thresholds.
+ * <p/>
+ * Only the chromosome,  start,  end and score of each segment are kept,  as both kinds of update need them.  Whole
+ * genome coordinates are computed when counted.
+ *
  * @author jrobinso
  * @date Oct 13, 2010
  */
 public class FreqData {
 
+    private static Logger log = Logger.getLogger(FreqData.class);
+
     public static float DEFAULT_AMP_THRESHOLD = 0.1f;
     public static float DEFAULT_DEL_THRESHOLD = -0.1f;
     public static int DEFAULT_BIN_SIZE = 200000;
 
+    private static final int N_THREADS = ExecutorUtils.CPU_THREADS;
+
+    /**
+     * Minimum number of segments in a partition computed in parallel
+     */
+    private static final int MIN_PARTITION_SIZE = 50000;
+
+    private static ExecutorService executor = ExecutorUtils.newFixedThreadPool("CN frequencies", N_THREADS);
+
     private float ampThreshold = DEFAULT_AMP_THRESHOLD;
     private float delThreshold = DEFAULT_DEL_THRESHOLD;
     private int binSize = DEFAULT_BIN_SIZE;    // 200 kb bin size;
 
-    private SegmentedDataSet dataset;
     private int numberOfSamples;
-    // private boolean logNormalized;
     private Map<String, List<LocusScore>> amp;
     private Map<String, List<LocusScore>> del;
     private List<String> sampleNames;
     Genome genome;
 
+    // Chromosomes,  the last entry is the whole genome
+    private String[] chrNames;
+    private int[] chrLengths;
+    private long[] chrOffsets;
+    private int wgBinSize;
+
+    // Segments of all samples in ascending order of score
+    private int segmentCount;
+    private int[] segChr;
+    private int[] segStarts;
+    private int[] segEnds;
+    private float[] segScores;
+
+    private BinCounts[] ampCounts;
+    private BinCounts[] delCounts;
+
     public FreqData(SegmentedDataSet ds, Genome genome) {
 
-        this.dataset = ds;
         this.sampleNames = ds.getSampleNames();
         numberOfSamples = sampleNames.size();
-        amp = new HashMap();
-        del = new HashMap();
         this.genome = genome;
+        loadSegments(ds);
         compute();
 
     }
 
 
-    public void setParameters(int binSize, float delThreshold, float ampThreshold) {
-        this.binSize = binSize;
-        this.delThreshold = delThreshold;
-        this.ampThreshold = ampThreshold;
-        compute();
+    public synchronized void setParameters(int binSize, float delThreshold, float ampThreshold) {
+        if (binSize != this.binSize || ampCounts == null) {
+            this.binSize = binSize;
+            this.delThreshold = delThreshold;
+            this.ampThreshold = ampThreshold;
+            compute();
+        } else {
+            updateThresholds(delThreshold, ampThreshold);
+        }
     }
 
-    void compute() {
-
-        amp.clear();
-        del.clear();
+    /**
+     * Read the segments of all samples into arrays,  and order them by score
+     */
+    private void loadSegments(SegmentedDataSet dataset) {
+
+        List<String> chrList = new ArrayList<String>(genome.getChromosomeNames());
+        int nChrs = chrList.size();
+        chrNames = new String[nChrs + 1];
+        chrLengths = new int[nChrs];
+        chrOffsets = new long[nChrs];
+        for (int c = 0; c < nChrs; c++) {
+            String chr = chrList.get(c);
+            Chromosome chromosome = genome.getChromosome(chr);
+            chrNames[c] = chr;
+            chrLengths[c] = chromosome.getLength();
+            chrOffsets[c] = genome.getCumulativeOffset(chr);
+        }
+        chrNames[nChrs] = Globals.CHR_ALL;
 
         int sizeInKB = (int) (genome.getLength() / 1000);
-        int wgBinSize = sizeInKB / 700;
-        int wgBinCount = sizeInKB / wgBinSize + 1;
-
-        //Chromosome bins
-        for (String chr : genome.getChromosomeNames()) {
-            Chromosome c = genome.getChromosome(chr);
-            int len = c.getLength();
-            int nBins = len / binSize + 1;
-            List<LocusScore> ampBins = new ArrayList(nBins);
-            List<LocusScore> delBins = new ArrayList(nBins);
-            for (int i = 0; i < nBins; i++) {
-                int start = i * binSize;
-                int end = start + binSize;
-                ampBins.add(new Bin(chr, start, end));
-                delBins.add(new Bin(chr, start, end));
+        wgBinSize = Math.max(1, sizeInKB / 700);
+
+        int capacity = 1024;
+        segChr = new int[capacity];
+        segStarts = new int[capacity];
+        segEnds = new int[capacity];
+        segScores = new float[capacity];
+
+        final boolean logNormalized = dataset.isLogNormalized();
+        int n = 0;
+        for (int s = 0; s < numberOfSamples; s++) {
+            String sample = sampleNames.get(s);
+            for (int c = 0; c < nChrs; c++) {
+                String chr = chrNames[c];
+                List<LocusScore> segments = dataset.getSegments(sample, chr);
+                if (segments == null) {
+                    continue;
+                }
+                for (LocusScore seg : segments) {
+                    final float segScore = logNormalized ? seg.getScore() :
+                            (float) (Math.log(seg.getScore() / 2) / Globals.log2);
+                    if (Float.isNaN(segScore)) {
+                        // Neither an amplification nor a deletion
+                        continue;
+                    }
+                    if (n == segChr.length) {
+                        capacity = 2 * n;
+                        segChr = Arrays.copyOf(segChr, capacity);
+                        segStarts = Arrays.copyOf(segStarts, capacity);
+                        segEnds = Arrays.copyOf(segEnds, capacity);
+                        segScores = Arrays.copyOf(segScores, capacity);
+                    }
+                    segChr[n] = c;
+                    segStarts[n] = seg.getStart();
+                    segEnds[n] = seg.getEnd();
+                    segScores[n] = segScore;
+                    n++;
+                }
             }
-            amp.put(chr, ampBins);
-            del.put(chr, delBins);
         }
+        segmentCount = n;
 
-        // Whole genome bins
-        List<LocusScore> ampBins = new ArrayList(wgBinCount);
-        List<LocusScore> delBins = new ArrayList(wgBinCount);
-        for (int i = 0; i < wgBinCount; i++) {
-            int start = i * wgBinSize;
-            int end = start + wgBinSize;
-            ampBins.add(new Bin(Globals.CHR_ALL, start, end));
-            delBins.add(new Bin(Globals.CHR_ALL, start, end));
+        // Sort keys of score and then index,  so segments of equal score keep their order
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) sortableBits(segScores[i]) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] sortedChr = new int[n];
+        int[] sortedStarts = new int[n];
+        int[] sortedEnds = new int[n];
+        float[] sortedScores = new float[n];
+        for (int k = 0; k < n; k++) {
+            int i = (int) keys[k];
+            sortedChr[k] = segChr[i];
+            sortedStarts[k] = segStarts[i];
+            sortedEnds[k] = segEnds[i];
+            sortedScores[k] = segScores[i];
         }
-        amp.put(Globals.CHR_ALL, ampBins);
-        del.put(Globals.CHR_ALL, delBins);
+        segChr = sortedChr;
+        segStarts = sortedStarts;
+        segEnds = sortedEnds;
+        segScores = sortedScores;
+    }
 
-        final boolean logNormalized = dataset.isLogNormalized();
-        for (String sample : sampleNames) {
-            for (String chr : genome.getChromosomeNames()) {
-                List<LocusScore> segments = dataset.getSegments(sample, chr);
-                if (segments != null) {
-
-                    for (LocusScore seg : segments) {
-                        final float segScore = logNormalized ? seg.getScore() :
-                                (float) (Math.log(seg.getScore() / 2) / Globals.log2);
-
-                        if (segScore > ampThreshold || segScore < delThreshold) {
-
-                            int startBin = seg.getStart() / binSize;
-                            int endBin = seg.getEnd() / binSize;
-                            for (int b = startBin; b <= endBin; b++) {
-                                if (b >= amp.get(chr).size()) {
-                                    break;
-                                }
-                                binCounts(chr, seg.getStart(), seg.getEnd(), segScore, b, binSize);
-                            }
-
-                            int gStart = genome.getGenomeCoordinate(chr, seg.getStart());
-                            int gEnd = genome.getGenomeCoordinate(chr, seg.getEnd());
-                            int wgStartBin = gStart / wgBinSize;
-                            int wgEndBin = gEnd / wgBinSize;
-                            for (int b = wgStartBin; b <= wgEndBin; b++) {
-                                if (b >= amp.get(Globals.CHR_ALL).size()) {
-                                    break;
-                                }
-                                binCounts(Globals.CHR_ALL, gStart, gEnd, segScore, b, wgBinSize);
-                            }
+    /**
+     * Return an int which orders as the float does,  for any float but NaN
+     */
+    static int sortableBits(float f) {
+        int bits = Float.floatToIntBits(f);
+        return bits < 0 ? bits ^ 0x7fffffff : bits;
+    }
+
+    /**
+     * Compute the counts of all segments,  in parallel over partitions of the segments
+     */
+    synchronized void compute() {
+
+        int nPartitions = Math.max(1, Math.min(N_THREADS, segmentCount / MIN_PARTITION_SIZE));
+        BinCounts[][] result = null;
+        if (nPartitions > 1) {
+            try {
+                List<Future<BinCounts[][]>> futures = new ArrayList<Future<BinCounts[][]>>(nPartitions);
+                for (int p = 0; p < nPartitions; p++) {
+                    final int from = (int) ((long) p * segmentCount / nPartitions);
+                    final int to = (int) ((long) (p + 1) * segmentCount / nPartitions);
+                    futures.add(executor.submit(new Callable<BinCounts[][]>() {
+                        public BinCounts[][] call() {
+                            return computePartition(from, to);
+                        }
+                    }));
+                }
+                for (Future<BinCounts[][]> future : futures) {
+                    BinCounts[][] counts = future.get();
+                    if (result == null) {
+                        result = counts;
+                    } else {
+                        for (int c = 0; c < chrNames.length; c++) {
+                            result[0][c].add(counts[0][c]);
+                            result[1][c].add(counts[1][c]);
                         }
                     }
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = null;
+            } catch (ExecutionException e) {
+                log.error("Error computing copy number frequencies in parallel", e.getCause());
+                result = null;
             }
         }
+        if (result == null) {
+            result = computePartition(0, segmentCount);
+        }
+
+        ampCounts = result[0];
+        delCounts = result[1];
+        updateBins();
     }
 
-    private void binCounts(String chr, int segStart, int segEnd, float segScore, int b, int binSize) {
+    private BinCounts[][] computePartition(int from, int to) {
+        BinCounts[] ampPartition = createCounts();
+        BinCounts[] delPartition = createCounts();
+        for (int i = from; i < to; i++) {
+            float segScore = segScores[i];
+            if (segScore > ampThreshold) {
+                addSegment(ampPartition, i, 1, 1);
+            }
+            if (segScore < delThreshold) {
+                addSegment(delPartition, i, -1, 1);
+            }
+        }
+        return new BinCounts[][]{ampPartition, delPartition};
+    }
+
+    /**
+     * Update the counts for new thresholds,  adding or removing only the segments whose scores lie between the
+     * current and new thresholds.
+     */
+    private void updateThresholds(float newDelThreshold, float newAmpThreshold) {
+
+        // Amplifications are the segments with score > ampThreshold,  a suffix of the segments
+        int ampFrom = upperBound(ampThreshold);
+        int newAmpFrom = upperBound(newAmpThreshold);
+        for (int i = Math.min(ampFrom, newAmpFrom); i < Math.max(ampFrom, newAmpFrom); i++) {
+            addSegment(ampCounts, i, 1, newAmpFrom < ampFrom ? 1 : -1);
+        }
 
-        int binStart = b * binSize;
-        int binEnd = binStart + binSize;
+        // Deletions are the segments with score < delThreshold,  a prefix of the segments
+        int delTo = lowerBound(delThreshold);
+        int newDelTo = lowerBound(newDelThreshold);
+        for (int i = Math.min(delTo, newDelTo); i < Math.max(delTo, newDelTo); i++) {
+            addSegment(delCounts, i, -1, newDelTo > delTo ? 1 : -1);
+        }
 
-        // Weight by % overlap with bin
-        float weight = 1.0f;
-        if (segEnd < binEnd) {
-            int s = Math.max(segStart, binStart);
-            weight = ((float) (segEnd - s)) / binSize;
+        ampThreshold = newAmpThreshold;
+        delThreshold = newDelThreshold;
+        updateBins();
+    }
 
-        } else if (segStart > binStart) {
-            int e = Math.min(segEnd, binEnd);
-            weight = ((float) (e - segStart)) / binSize;
+    /**
+     * Index of the first segment with score >= threshold
+     */
+    private int lowerBound(float threshold) {
+        int lo = 0;
+        int hi = segmentCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (segScores[mid] < threshold) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
         }
+        return lo;
+    }
 
+    /**
+     * Index of the first segment with score > threshold
+     */
+    private int upperBound(float threshold) {
+        int lo = 0;
+        int hi = segmentCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (segScores[mid] <= threshold) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
 
-        if (segScore > ampThreshold) {
-            Bin bin = (Bin) amp.get(chr).get(b);
-            bin.increment(weight, weight * segScore);
+    private BinCounts[] createCounts() {
+        int nChrs = chrLengths.length;
+        BinCounts[] counts = new BinCounts[nChrs + 1];
+        for (int c = 0; c < nChrs; c++) {
+            counts[c] = new BinCounts(binSize, chrLengths[c] / binSize + 1);
         }
+        int sizeInKB = (int) (genome.getLength() / 1000);
+        counts[nChrs] = new BinCounts(wgBinSize, sizeInKB / wgBinSize + 1);
+        return counts;
+    }
+
+    /**
+     * Add segment i to its chromosome's and the whole genome counts
+     *
+     * @param counts
+     * @param i         segment index
+     * @param countSign 1 for amplifications,  -1 for deletions
+     * @param direction 1 to add the segment,  -1 to remove it
+     */
+    private void addSegment(BinCounts[] counts, int i, int countSign, int direction) {
+        float segScore = segScores[i];
+        int c = segChr[i];
+        counts[c].add(segStarts[i], segEnds[i], segScore, countSign, direction);
+        counts[counts.length - 1].add(getGenomeCoordinate(c, segStarts[i]), getGenomeCoordinate(c, segEnds[i]),
+                segScore, countSign, direction);
+    }
 
-        if (segScore < delThreshold) {
-            Bin bin = (Bin) del.get(chr).get(b);
-            bin.increment(-weight, weight * segScore);
+    /**
+     * Genome coordinate in kb,  as Genome.getGenomeCoordinate
+     */
+    private int getGenomeCoordinate(int c, int position) {
+        return (int) ((chrOffsets[c] + position) / 1000);
+    }
+
+    private void updateBins() {
+        Map<String, List<LocusScore>> newAmp = new HashMap<String, List<LocusScore>>();
+        Map<String, List<LocusScore>> newDel = new HashMap<String, List<LocusScore>>();
+        for (int c = 0; c < chrNames.length; c++) {
+            newAmp.put(chrNames[c], new BinList(chrNames[c], ampCounts[c]));
+            newDel.put(chrNames[c], new BinList(chrNames[c], delCounts[c]));
         }
+        amp = newAmp;
+        del = newDel;
     }
 
     // For testing
@@ -209,6 +410,185 @@ public class FreqData {
     }
 
 
+    /**
+     * Counts and total copy numbers of the bins of one chromosome.  Bins entirely covered by a segment are
+     * incremented through difference arrays,  resolved by a prefix sum when read.
+     */
+    static class BinCounts {
+
+        final int binSize;
+        final int nBins;
+        final double[] counts;
+        final double[] totalCN;
+        final double[] countDeltas;
+        final double[] totalCNDeltas;
+
+        // Numbers of segments with infinite scores,  i.e. copy number 0,  which cannot be summed and subtracted
+        int[] negativeInfinite;
+        int[] positiveInfinite;
+
+        BinCounts(int binSize, int nBins) {
+            this.binSize = binSize;
+            this.nBins = nBins;
+            counts = new double[nBins];
+            totalCN = new double[nBins];
+            countDeltas = new double[nBins + 1];
+            totalCNDeltas = new double[nBins + 1];
+        }
+
+        void add(int segStart, int segEnd, float segScore, int countSign, int direction) {
+
+            int startBin = segStart / binSize;
+            int endBin = segEnd / binSize;
+            if (startBin >= nBins) {
+                return;
+            }
+
+            addPartial(startBin, segStart, segEnd, segScore, countSign, direction);
+
+            // Bins strictly between the end bins are covered entirely,  with weight 1
+            int first = startBin + 1;
+            int last = Math.min(endBin - 1, nBins - 1);
+            if (first <= last) {
+                countDeltas[first] += countSign * direction;
+                countDeltas[last + 1] -= countSign * direction;
+                if (Float.isInfinite(segScore)) {
+                    for (int b = first; b <= last; b++) {
+                        addInfinite(b, segScore, direction);
+                    }
+                } else {
+                    totalCNDeltas[first] += direction * segScore;
+                    totalCNDeltas[last + 1] -= direction * segScore;
+                }
+            }
+
+            if (endBin > startBin && endBin < nBins) {
+                addPartial(endBin, segStart, segEnd, segScore, countSign, direction);
+            }
+        }
+
+        private void addPartial(int b, int segStart, int segEnd, float segScore, int countSign, int direction) {
+
+            int binStart = b * binSize;
+            int binEnd = binStart + binSize;
+
+            // Weight by % overlap with bin
+            float weight = 1.0f;
+            if (segEnd < binEnd) {
+                int s = Math.max(segStart, binStart);
+                weight = ((float) (segEnd - s)) / binSize;
+
+            } else if (segStart > binStart) {
+                int e = Math.min(segEnd, binEnd);
+                weight = ((float) (e - segStart)) / binSize;
+            }
+
+            counts[b] += direction * countSign * weight;
+            if (!Float.isInfinite(segScore)) {
+                totalCN[b] += direction * weight * segScore;
+            } else if (weight > 0) {
+                addInfinite(b, segScore, direction);
+            }
+        }
+
+        private void addInfinite(int b, float segScore, int direction) {
+            if (segScore < 0) {
+                if (negativeInfinite == null) {
+                    negativeInfinite = new int[nBins];
+                }
+                negativeInfinite[b] += direction;
+            } else {
+                if (positiveInfinite == null) {
+                    positiveInfinite = new int[nBins];
+                }
+                positiveInfinite[b] += direction;
+            }
+        }
+
+        void add(BinCounts other) {
+            for (int b = 0; b < nBins; b++) {
+                counts[b] += other.counts[b];
+                totalCN[b] += other.totalCN[b];
+            }
+            for (int b = 0; b <= nBins; b++) {
+                countDeltas[b] += other.countDeltas[b];
+                totalCNDeltas[b] += other.totalCNDeltas[b];
+            }
+            if (other.negativeInfinite != null) {
+                if (negativeInfinite == null) {
+                    negativeInfinite = new int[nBins];
+                }
+                for (int b = 0; b < nBins; b++) {
+                    negativeInfinite[b] += other.negativeInfinite[b];
+                }
+            }
+            if (other.positiveInfinite != null) {
+                if (positiveInfinite == null) {
+                    positiveInfinite = new int[nBins];
+                }
+                for (int b = 0; b < nBins; b++) {
+                    positiveInfinite[b] += other.positiveInfinite[b];
+                }
+            }
+        }
+
+        float[][] resolve() {
+            float[] resolvedCounts = new float[nBins];
+            float[] resolvedCN = new float[nBins];
+            double count = 0;
+            double cn = 0;
+            for (int b = 0; b < nBins; b++) {
+                count += countDeltas[b];
+                cn += totalCNDeltas[b];
+                resolvedCounts[b] = (float) (counts[b] + count);
+                boolean negative = negativeInfinite != null && negativeInfinite[b] > 0;
+                boolean positive = positiveInfinite != null && positiveInfinite[b] > 0;
+                if (negative || positive) {
+                    resolvedCN[b] = negative && positive ? Float.NaN :
+                            (negative ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY);
+                } else {
+                    resolvedCN[b] = (float) (totalCN[b] + cn);
+                }
+            }
+            return new float[][]{resolvedCounts, resolvedCN};
+        }
+    }
+
+    /**
+     * A read-only list of the bins of one chromosome,  created on access from the resolved counts
+     */
+    class BinList extends AbstractList<LocusScore> {
+
+        final String chr;
+        final int binSize;
+        final float[] counts;
+        final float[] totalCN;
+
+        BinList(String chr, BinCounts binCounts) {
+            this.chr = chr;
+            this.binSize = binCounts.binSize;
+            float[][] resolved = binCounts.resolve();
+            this.counts = resolved[0];
+            this.totalCN = resolved[1];
+        }
+
+        @Override
+        public LocusScore get(int index) {
+            if (index < 0 || index >= counts.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            int start = index * binSize;
+            Bin bin = new Bin(chr, start, start + binSize);
+            bin.increment(counts[index], totalCN[index]);
+            return bin;
+        }
+
+        @Override
+        public int size() {
+            return counts.length;
+        }
+    }
+
     public class Bin implements LocusScore {
         String chr;
         int start;
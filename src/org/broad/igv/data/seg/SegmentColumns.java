@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data.seg;
+
+import org.broad.igv.feature.LocusScore;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The segments of one sample on one chromosome,  stored as parallel primitive arrays sorted by start.  Segments are
+ * returned as lists of {@link Segment} created on access,  so only the segments in view are materialized.
+ * <p/>
+ * Range queries use a running maximum of segment ends,  which is non-decreasing,  so the first segment overlapping a
+ * position is found by binary search even when segments overlap.  At low zoom levels adjacent segments narrower than a
+ * screen pixel are merged into decimated views,  computed once per zoom.
+ */
+public class SegmentColumns {
+
+    /**
+     * Number of bins spanning the extent of the segments at zoom 0,  about the width of the data panel
+     */
+    static final int BINS_AT_ZOOM_0 = 700;
+
+    static final int MAX_DECIMATED_ZOOM = 20;
+
+    private int size;
+    private int[] starts;
+    private int[] ends;
+    private float[] values;
+    private String[] descriptions;
+    private int[] maxEnds;
+
+    private SegmentColumns[] decimatedViews;
+
+    public SegmentColumns() {
+        this(16);
+    }
+
+    public SegmentColumns(int capacity) {
+        starts = new int[capacity];
+        ends = new int[capacity];
+        values = new float[capacity];
+    }
+
+    /**
+     * Create columns from arrays of equal length,  which are not copied.  Call {@link #sort()} before querying if
+     * they are not sorted by start.
+     */
+    public SegmentColumns(int[] starts, int[] ends, float[] values) {
+        this.size = starts.length;
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+    }
+
+    public void add(int start, int end, float value, String description) {
+        if (size == starts.length) {
+            int capacity = Math.max(16, 2 * size);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            values = Arrays.copyOf(values, capacity);
+            if (descriptions != null) {
+                descriptions = Arrays.copyOf(descriptions, capacity);
+            }
+        }
+        if (description != null && descriptions == null) {
+            descriptions = new String[starts.length];
+        }
+        starts[size] = start;
+        ends[size] = end;
+        values[size] = value;
+        if (descriptions != null) {
+            descriptions[size] = description;
+        }
+        size++;
+        maxEnds = null;
+        decimatedViews = null;
+    }
+
+    /**
+     * Sort by start,  keeping the input order of segments with equal starts,  and trim the arrays.
+     */
+    public synchronized void sort() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = starts[i - 1] <= starts[i];
+        }
+        if (sorted) {
+            trim();
+        } else {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            final int[] s = starts;
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer i1, Integer i2) {
+                    int s1 = s[i1];
+                    int s2 = s[i2];
+                    return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+                }
+            });
+            int[] sortedStarts = new int[size];
+            int[] sortedEnds = new int[size];
+            float[] sortedValues = new float[size];
+            String[] sortedDescriptions = descriptions == null ? null : new String[size];
+            for (int i = 0; i < size; i++) {
+                int j = order[i];
+                sortedStarts[i] = starts[j];
+                sortedEnds[i] = ends[j];
+                sortedValues[i] = values[j];
+                if (descriptions != null) {
+                    sortedDescriptions[i] = descriptions[j];
+                }
+            }
+            starts = sortedStarts;
+            ends = sortedEnds;
+            values = sortedValues;
+            descriptions = sortedDescriptions;
+        }
+        maxEnds = null;
+        decimatedViews = null;
+    }
+
+    private void trim() {
+        if (starts.length != size) {
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            values = Arrays.copyOf(values, size);
+            if (descriptions != null) {
+                descriptions = Arrays.copyOf(descriptions, size);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int i) {
+        return starts[i];
+    }
+
+    public int getEnd(int i) {
+        return ends[i];
+    }
+
+    public float getValue(int i) {
+        return values[i];
+    }
+
+    public String getDescription(int i) {
+        return descriptions == null ? null : descriptions[i];
+    }
+
+    /**
+     * Return all segments
+     *
+     * @return
+     */
+    public List<LocusScore> getSegments() {
+        return new SegmentView(this, 0, size);
+    }
+
+    /**
+     * Return the segments overlapping the interval [start, end)
+     *
+     * @param start
+     * @param end
+     * @return
+     */
+    public List<LocusScore> getSegments(int start, int end) {
+        int[] maxEnds = getMaxEnds();
+
+        // First segment whose end,  or the end of a preceding segment,  is past start
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (maxEnds[mid] <= start) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int first = lo;
+
+        // First segment starting at or after end
+        hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < end) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return new SegmentView(this, first, lo);
+    }
+
+    /**
+     * Return the segments overlapping the interval [start, end),  decimated for the zoom level.  Within each bin of
+     * about one pixel at this zoom,  runs of segments narrower than the bin are merged into one segment whose value is
+     * the one farthest from the baseline,  so focal events stay visible.
+     *
+     * @param start
+     * @param end
+     * @param zoom
+     * @param baseline value of no change,  e.g. 0 for log ratios or 2 for copy numbers
+     * @return
+     */
+    public List<LocusScore> getSegments(int start, int end, int zoom, float baseline) {
+        SegmentColumns view = getDecimatedView(zoom, baseline);
+        return view.getSegments(start, end);
+    }
+
+    synchronized SegmentColumns getDecimatedView(int zoom, float baseline) {
+        if (zoom < 0 || zoom > MAX_DECIMATED_ZOOM || size < 2 * BINS_AT_ZOOM_0) {
+            return this;
+        }
+        if (decimatedViews == null) {
+            decimatedViews = new SegmentColumns[MAX_DECIMATED_ZOOM + 1];
+        }
+        SegmentColumns view = decimatedViews[zoom];
+        if (view == null) {
+            view = decimate(zoom, baseline);
+            // Only worth keeping if it is substantially smaller
+            if (view.size() > size / 2) {
+                view = this;
+            }
+            decimatedViews[zoom] = view;
+        }
+        return view;
+    }
+
+    private SegmentColumns decimate(int zoom, float baseline) {
+
+        int extent = getMaxEnds()[size - 1];
+        double binSize = ((double) extent) / (BINS_AT_ZOOM_0 * Math.pow(2, zoom));
+        if (binSize < 1) {
+            return this;
+        }
+
+        SegmentColumns view = new SegmentColumns(Math.min(size, 2 * BINS_AT_ZOOM_0 << zoom));
+        int i = 0;
+        while (i < size) {
+            int runStart = starts[i];
+            int runEnd = ends[i];
+            float runValue = values[i];
+            String runDescription = getDescription(i);
+            int count = 1;
+            if (runEnd - runStart < binSize) {
+                long bin = (long) (runStart / binSize);
+                while (i + count < size) {
+                    int j = i + count;
+                    if (ends[j] - starts[j] >= binSize || (long) (starts[j] / binSize) != bin) {
+                        break;
+                    }
+                    runEnd = Math.max(runEnd, ends[j]);
+                    if (Math.abs(values[j] - baseline) > Math.abs(runValue - baseline)) {
+                        runValue = values[j];
+                        runDescription = getDescription(j);
+                    }
+                    count++;
+                }
+            }
+            view.add(runStart, runEnd, runValue, runDescription);
+            i += count;
+        }
+        view.trim();
+        return view;
+    }
+
+    private synchronized int[] getMaxEnds() {
+        if (maxEnds == null) {
+            int[] tmp = new int[size];
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, ends[i]);
+                tmp[i] = max;
+            }
+            maxEnds = tmp;
+        }
+        return maxEnds;
+    }
+
+    /**
+     * A read-only list of the segments in [from, to)
+     */
+    static class SegmentView extends AbstractList<LocusScore> {
+
+        final SegmentColumns columns;
+        final int from;
+        final int to;
+
+        SegmentView(SegmentColumns columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = Math.max(from, to);
+        }
+
+        @Override
+        public LocusScore get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            int i = from + index;
+            int start = columns.starts[i];
+            int end = columns.ends[i];
+            return new Segment(start, start, end, end, columns.values[i], columns.getDescription(i));
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -25,7 +25,7 @@ package org.broad.igv.data.seg;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import org.broad.igv.feature.FeatureUtils;
+import org.broad.igv.Globals;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
@@ -51,15 +51,15 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      */
     private boolean logNormalized = false;
     /**
-     * Map of [heading ->  [chr -> [list of chrSegments]]]
+     * Map of [heading ->  [chr -> chrSegments]]
      */
-    private Map<String, Map<String, List<LocusScore>>> segments = new HashMap();
+    private Map<String, Map<String, SegmentColumns>> segments = new HashMap();
     /**
      * Set of chromosomes represented in this dataset
      */
     private Set<String> chromosomes = new HashSet();
     private List<String> headings = new ArrayList();
-    private Map<String, List<LocusScore>> wholeGenomeScoresCache = new HashMap();
+    private Map<String, SegmentColumns> wholeGenomeScoresCache = new HashMap();
     private long lastRefreshTime = 0;
     private TrackProperties trackProperties;
     Genome genome;
@@ -80,10 +80,9 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
 
 
     public void sortLists() {
-        for (Map.Entry<String, Map<String, List<LocusScore>>> sampleEntry : segments.entrySet()) {
-            for (Map.Entry<String, List<LocusScore>> chrEntry : sampleEntry.getValue().entrySet()) {
-                List<LocusScore> tmp = chrEntry.getValue();
-                FeatureUtils.sortFeatureList(tmp);
+        for (Map<String, SegmentColumns> chrSegments : segments.values()) {
+            for (SegmentColumns columns : chrSegments.values()) {
+                columns.sort();
             }
         }
     }
@@ -96,19 +95,19 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
 
         String chr = genome == null ? c : genome.getChromosomeAlias(c);
 
-        Map<String, List<LocusScore>> chrSegments = segments.get(heading);
+        Map<String, SegmentColumns> chrSegments = segments.get(heading);
         if (chrSegments == null) {
             headings.add(heading);
             chrSegments = new HashMap();
             segments.put(heading, chrSegments);
         }
 
-        List<LocusScore> segmentList = chrSegments.get(chr);
-        if (segmentList == null) {
-            segmentList = new ArrayList<LocusScore>();
-            chrSegments.put(chr, segmentList);
+        SegmentColumns columns = chrSegments.get(chr);
+        if (columns == null) {
+            columns = new SegmentColumns();
+            chrSegments.put(chr, columns);
         }
-        segmentList.add(new Segment(start, start, end, end, value, desc));
+        columns.add(start, end, value, desc);
         dataMax = Math.max(dataMax, value);
         dataMin = Math.min(dataMin, value);
         if (value < 0) {
@@ -137,7 +136,16 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      * @return
      */
     public List<LocusScore> getSegments(String heading, String chr) {
-        Map<String, List<LocusScore>> chrSegments = segments.get(heading);
+        Map<String, SegmentColumns> chrSegments = segments.get(heading);
+        SegmentColumns columns = (chrSegments == null) ? null : chrSegments.get(chr);
+        return columns == null ? null : columns.getSegments();
+    }
+
+    public SegmentColumns getSegmentColumns(String heading, String chr) {
+        if (chr.equals(Globals.CHR_ALL)) {
+            return getWholeGenomeColumns(heading);
+        }
+        Map<String, SegmentColumns> chrSegments = segments.get(heading);
         return (chrSegments == null) ? null : chrSegments.get(chr);
     }
 
@@ -200,10 +208,13 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      * @return
      */
     public List<LocusScore> getWholeGenomeScores(String heading) {
+        return getWholeGenomeColumns(heading).getSegments();
+    }
 
+    private synchronized SegmentColumns getWholeGenomeColumns(String heading) {
 
-        List<LocusScore> wholeGenomeScores = wholeGenomeScoresCache.get(heading);
-        if ((wholeGenomeScores == null) || wholeGenomeScores.isEmpty()) {
+        SegmentColumns wholeGenomeScores = wholeGenomeScoresCache.get(heading);
+        if ((wholeGenomeScores == null) || wholeGenomeScores.size() == 0) {
             int locationUnit = 1000;
 
             // Compute the smallest concievable feature that could be viewed on the
@@ -213,24 +224,23 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
             double minFeatureSize = 0; // ((double) genome.getLength()) / (maxScreenSize * locationUnit);
 
             long offset = 0;
-            wholeGenomeScores = new ArrayList(1000);
+            wholeGenomeScores = new SegmentColumns(1000);
             for (String chr : genome.getChromosomeNames()) {
-                List<LocusScore> chrSegments = getSegments(heading, chr);
+                SegmentColumns chrSegments = getSegmentColumns(heading, chr);
                 if (chrSegments != null) {
-                    int lastgEnd = -1;
-                    for (LocusScore score : chrSegments) {
-                        Segment seg = (Segment) score;
-                        int gStart = (int) ((offset + score.getStart()) / locationUnit);
-                        int gEnd = (int) ((offset + score.getEnd()) / locationUnit);
+                    for (int i = 0; i < chrSegments.size(); i++) {
+                        int gStart = (int) ((offset + chrSegments.getStart(i)) / locationUnit);
+                        int gEnd = (int) ((offset + chrSegments.getEnd(i)) / locationUnit);
                         if ((gEnd - gStart) > minFeatureSize) {
-                            wholeGenomeScores.add(new Segment(gStart, gStart, gEnd,
-                                    gEnd, seg.getScore(), seg.getDescription()));
+                            wholeGenomeScores.add(gStart, gEnd, chrSegments.getValue(i),
+                                    chrSegments.getDescription(i));
                         }
                     }
 
                 }
                 offset += genome.getChromosome(chr).getLength();
             }
+            wholeGenomeScores.sort();
             wholeGenomeScoresCache.put(heading, wholeGenomeScores);
         }
         return wholeGenomeScores;
@@ -23,7 +23,6 @@ import org.broad.igv.feature.LocusScore;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.util.ResourceLocator;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,9 +46,9 @@ public class SegmentedBinaryDataSet implements SegmentedDataSet {
     private List<String> sampleNames = null;
 
     /**
-     * Map of [heading ->  [chr -> [list of segmentsCache]]]
+     * Map of [heading ->  [chr -> segments]]
      */
-    Map<String, Map<String, List<LocusScore>>> segmentsCache = new HashMap();
+    Map<String, Map<String, SegmentColumns>> segmentsCache = new HashMap();
 
     Map<String, SegmentedChromosomeData> chrData = new HashMap();
 
@@ -80,17 +79,23 @@ public class SegmentedBinaryDataSet implements SegmentedDataSet {
     }
 
 
-    // TODO -- the synchronized keyword can be removed with the async whole genome load
-
     public List<LocusScore> getSegments(String heading, String chr) {
+        SegmentColumns columns = getSegmentColumns(heading, chr);
+        return columns == null ? null : columns.getSegments();
+    }
+
+    /**
+     * The segment arrays of the chromosome data are used as they are,  without creating segment objects.
+     */
+    public synchronized SegmentColumns getSegmentColumns(String heading, String chr) {
 
-        Map<String, List<LocusScore>> chrSegments = segmentsCache.get(heading);
+        Map<String, SegmentColumns> chrSegments = segmentsCache.get(heading);
         if (chrSegments == null) {
             chrSegments = new HashMap();
             segmentsCache.put(heading, chrSegments);
         }
 
-        List<LocusScore> segments = chrSegments.get(chr);
+        SegmentColumns segments = chrSegments.get(chr);
 
         if (segments == null) {
 
@@ -122,12 +127,9 @@ public class SegmentedBinaryDataSet implements SegmentedDataSet {
             assert (startLocations.length == endLocations.length);
             assert (endLocations.length == values.length);
 
-            segments = new ArrayList(startLocations.length);
-            for (int i = 0; i <
-                    startLocations.length; i++) {
-                segments.add(new Segment(startLocations[i], endLocations[i], values[i]));
-                chrSegments.put(chr, segments);
-            }
+            segments = new SegmentColumns(startLocations, endLocations, values);
+            segments.sort();
+            chrSegments.put(chr, segments);
 
         }
         return segments;
@@ -159,7 +161,7 @@ public class SegmentedBinaryDataSet implements SegmentedDataSet {
         return -3;
     }
 
-    public synchronized List<LocusScore> getWholeGenomeScores(String heading) {
+    public List<LocusScore> getWholeGenomeScores(String heading) {
         return getSegments(heading, Globals.CHR_ALL);
 
     }
@@ -41,6 +41,12 @@ public interface SegmentedDataSet {
 
     List<LocusScore> getSegments(String heading, String chr);
 
+    /**
+     * Return the segments of the sample on the chromosome,  or on the whole genome for {@link org.broad.igv.Globals#CHR_ALL},
+     * or null if there are none.
+     */
+    SegmentColumns getSegmentColumns(String heading, String chr);
+
     TrackType getType();
 
     List<LocusScore> getWholeGenomeScores(String heading);
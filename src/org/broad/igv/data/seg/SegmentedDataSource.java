@@ -42,7 +42,7 @@ public class SegmentedDataSource implements DataSource {
     /**
      * Identifies the track.  Often a sample name.
      */
-    String trackIdentifier;
+    protected String trackIdentifier;
     SegmentedDataSet dataset;
 
     /**
@@ -93,12 +93,36 @@ public class SegmentedDataSource implements DataSource {
     }
 
 
+    /**
+     * Return the segments overlapping the range,  decimated for the zoom level.  A negative end returns all segments
+     * on the chromosome.
+     */
     public List<LocusScore> getSummaryScoresForRange(String chr, int startLocation,
                                                      int endLocation, int zoom) {
-        if (chr.equals(Globals.CHR_ALL)) {
-            return getWholeGenomeScores();
+        if (endLocation < 0) {
+            return chr.equals(Globals.CHR_ALL) ? getWholeGenomeScores() : getSegments(chr);
+        }
+        SegmentColumns columns = dataset.getSegmentColumns(trackIdentifier, chr);
+        if (columns == null) {
+            return null;
+        }
+        return columns.getSegments(startLocation, endLocation, zoom, getBaseline());
+    }
+
+    /**
+     * The value of no change,  about which segments are decimated
+     */
+    protected float getBaseline() {
+        if (dataset.isLogNormalized()) {
+            return 0;
+        }
+        TrackType type = dataset.getType();
+        if (type == TrackType.ALLELE_SPECIFIC_COPY_NUMBER) {
+            return 1;
+        } else if (type == TrackType.COPY_NUMBER || type == TrackType.CNV) {
+            return 2;
         }
-        return getSegments(chr);
+        return 0;
     }
 
 
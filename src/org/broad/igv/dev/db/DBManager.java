@@ -11,10 +11,14 @@ import java.awt.*;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Class for prototyping database connections.  Prototype only -- hardcoded for mysql,  connects to single database,
- * keeps single connection, etc.
+ * Class for prototyping database connections.  Prototype only -- hardcoded for mysql,  connects to single database.
+ * <p/>
+ * Connections are pooled.  At most {@link #MAX_CONNECTIONS} are open at once,  callers block until one is returned
+ * or {@link #CONNECTION_TIMEOUT_SECONDS} pass.  Closing a connection returns it to the pool.
  *
  * @author Jim Robinson
  * @date 10/31/11
@@ -23,40 +27,94 @@ public class DBManager {
 
     private static Logger log = Logger.getLogger(DBManager.class);
 
-    static Collection<ConnectionWrapper> connectionPool =
-            Collections.synchronizedCollection(new ArrayList<ConnectionWrapper>());
+    static final int MAX_CONNECTIONS = 4;
+
+    /**
+     * Seconds to wait for a connection when all are in use.  A connection that is never closed would otherwise hang
+     * later callers.
+     */
+    static long CONNECTION_TIMEOUT_SECONDS = 60;
+
+    private static final Semaphore permits = new Semaphore(MAX_CONNECTIONS, true);
+    private static final LinkedList<Connection> idleConnections = new LinkedList<Connection>();
     static String username;
     static String password;
 
+    /**
+     * JDBC url,  overrides the database preferences when set,  e.g. to use an embedded database
+     */
+    private static String url;
+
+    public static void setURL(String url) {
+        DBManager.url = url;
+    }
+
+    /**
+     * Return a pooled connection,  waiting for one if all are in use.  Close the connection to return it.
+     *
+     * @return the connection,  or null if the database could not be reached
+     * @throws RuntimeException if no connection is returned to the pool within CONNECTION_TIMEOUT_SECONDS
+     */
     public static Connection getConnection() {
 
-        Iterator<ConnectionWrapper> poolIter = connectionPool.iterator();
-        while (poolIter.hasNext()) {
-            ConnectionWrapper conn = poolIter.next();
+        try {
+            if (!permits.tryAcquire(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Timed out after " + CONNECTION_TIMEOUT_SECONDS +
+                        " seconds waiting for a database connection,  all " + MAX_CONNECTIONS + " are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for a database connection", e);
+        }
+
+        Connection conn = null;
+        try {
+            conn = takeIdleConnection();
+            if (conn == null) {
+                conn = createConnection();
+            }
+        } finally {
+            if (conn == null) {
+                permits.release();
+            }
+        }
+        return conn == null ? null : new ConnectionWrapper(conn);
+    }
+
+    private static Connection takeIdleConnection() {
+        while (true) {
+            Connection conn;
+            synchronized (idleConnections) {
+                conn = idleConnections.poll();
+            }
+            if (conn == null) {
+                return null;
+            }
             try {
-                if (conn == null || conn.isReallyClosed()) {
-                    poolIter.remove();
-                } else if (!conn.isClosed()) {
+                if (!conn.isClosed()) {
                     return conn;
                 }
             } catch (SQLException e) {
                 log.error("Bad connection", e);
-                poolIter.remove();
+                closeQuietly(conn);
             }
         }
+    }
 
-        // No valid connections
-        ConnectionWrapper conn = createConnection();
-        if (conn != null) {
-            connectionPool.add(conn);
-            log.info("Connection pool size: " + connectionPool.size());
+    private static void release(Connection conn) {
+        synchronized (idleConnections) {
+            idleConnections.add(conn);
         }
-        return conn;
-
+        permits.release();
     }
 
 
-    private static ConnectionWrapper createConnection() {
+    private static Connection createConnection() {
+
+        if (url != null) {
+            return connect(url);
+        }
+
         String driver = "com.mysql.jdbc.Driver";
         try {
             Class.forName(driver).newInstance();
@@ -78,9 +136,11 @@ public class DBManager {
         return connect(url);
     }
 
-    private static ConnectionWrapper connect(String url) {
+    private static Connection connect(String url) {
         try {
-            return new ConnectionWrapper(DriverManager.getConnection(url, username, password));
+            Connection conn = DriverManager.getConnection(url, username, password);
+            log.info("Opened database connection: " + url);
+            return conn;
         } catch (SQLException e) {
             int errorCode = e.getErrorCode();
             if (errorCode == 1044 || errorCode == 1045) {
@@ -104,20 +164,30 @@ public class DBManager {
         }
     }
 
-    public static void shutdown() {
-        for (ConnectionWrapper conn : connectionPool) {
-            if (conn != null) {
-                try {
-                    conn.reallyClose();
-                } catch (SQLException e) {
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.error("Error closing sql connection", e);
+        }
+    }
 
-                }
+    /**
+     * Close the idle connections.  Connections in use are returned to the pool when closed.
+     */
+    public static void shutdown() {
+        synchronized (idleConnections) {
+            for (Connection conn : idleConnections) {
+                closeQuietly(conn);
             }
+            idleConnections.clear();
         }
-        connectionPool.clear();
     }
 
 
+    /**
+     * A pooled connection.  Closing the wrapper returns the connection to the pool,  a wrapper is not reused.
+     */
     static class ConnectionWrapper implements Connection {
 
         Connection conn;
@@ -128,23 +198,17 @@ public class DBManager {
             closed = false;
         }
 
-        public void close() throws SQLException {
-            closed = true;
+        public synchronized void close() throws SQLException {
+            if (!closed) {
+                closed = true;
+                release(conn);
+            }
         }
 
-        public boolean isClosed() throws SQLException {
+        public synchronized boolean isClosed() throws SQLException {
             return closed;
         }
 
-        public void reallyClose() throws SQLException {
-            closed = true;
-            conn.close();
-        }
-
-        public boolean isReallyClosed() throws SQLException {
-            return conn.isClosed();
-        }
-
 
         public void clearWarnings() throws SQLException {
             conn.clearWarnings();
@@ -3,6 +3,7 @@ package org.broad.igv.dev.db;
 import org.apache.log4j.Logger;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -15,6 +16,23 @@ public abstract class DBReader {
 
     private static Logger log = Logger.getLogger(DBReader.class);
 
+    /**
+     * Rows fetched per round trip when streaming results
+     */
+    static final int FETCH_SIZE = 10000;
+
+    /**
+     * Prepare a forward-only statement whose results are streamed rather than read into memory at once.  The mysql
+     * driver only streams with a fetch size of Integer.MIN_VALUE.
+     */
+    public static PreparedStatement prepareStreamingStatement(Connection conn, String sql) throws SQLException {
+        PreparedStatement st = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        String driverName = conn.getMetaData().getDriverName();
+        boolean mysql = driverName != null && driverName.toLowerCase().contains("mysql");
+        st.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+        return st;
+    }
+
 
     public static void closeResources(ResultSet rs, Statement st, Connection conn) {
         if (rs != null) {
@@ -26,8 +26,9 @@ public class SampleInfoSQLReader extends DBReader {
             conn = DBManager.getConnection();
 
             String query = locator.getDescription();
-            st = conn.createStatement();
-            rs = st.executeQuery(query);
+            PreparedStatement ps = prepareStreamingStatement(conn, query);
+            st = ps;
+            rs = ps.executeQuery();
 
             ResultSetMetaData metaData = rs.getMetaData();
             int nCol = metaData.getColumnCount();
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.dev.db;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.Globals;
+import org.broad.igv.data.seg.SegmentColumns;
+import org.broad.igv.data.seg.SegmentedAsciiDataSet;
+import org.broad.igv.data.seg.SegmentedDataSet;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.util.LRUCache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Segmented data read from a SQL database on demand.  Only summary statistics are read when the data set is
+ * created.  Segments are read for a region when it is viewed,  one prepared query per run of uncached bins,  and
+ * cached by bin as in {@link org.broad.igv.feature.AbstractCacher}.
+ * <p/>
+ * The source is a table name or a query.  Its rows must have the columns Sample,  chr,  start,  end,  value and
+ * description.
+ */
+public class SegmentedSQLDataSet extends DBReader implements SegmentedDataSet {
+
+    private static Logger log = Logger.getLogger(SegmentedSQLDataSet.class);
+
+    static final int DEFAULT_BIN_SIZE = 5000000;
+    static final int MAX_CACHED_BINS = 50;
+
+    /**
+     * Width of the largest screen in pixels.  Segments narrower than a pixel of the whole genome view at this width
+     * are not read for that view.
+     */
+    static final int MAX_SCREEN_SIZE = 4000;
+
+    private String source;
+    private Genome genome;
+    private int binSize;
+    private LRUCache<String, Bin> cache;
+
+    private List<String> sampleNames = new ArrayList<String>();
+
+    /**
+     * Map of [chr -> database chromosome name]
+     */
+    private Map<String, String> chrNames = new HashMap<String, String>();
+
+    /**
+     * Map of [chr -> end of the last segment]
+     */
+    private Map<String, Integer> chrExtents = new HashMap<String, Integer>();
+
+    private Map<String, SegmentColumns> wholeGenomeColumns;
+    private float dataMax = -Float.MAX_VALUE;
+    private float dataMin = Float.MAX_VALUE;
+    private boolean logNormalized = false;
+    private TrackType trackType = TrackType.COPY_NUMBER;
+
+    public SegmentedSQLDataSet(String source, Genome genome) {
+        this(source, genome, DEFAULT_BIN_SIZE);
+    }
+
+    SegmentedSQLDataSet(String source, Genome genome, int binSize) {
+        this.source = getFromClause(source);
+        this.genome = genome;
+        this.binSize = binSize;
+        this.cache = new LRUCache<String, Bin>(this, MAX_CACHED_BINS);
+        loadSummary();
+    }
+
+    /**
+     * A table name is used as is,  a query becomes a derived table.
+     */
+    static String getFromClause(String source) {
+        String s = source.trim();
+        while (s.endsWith(";")) {
+            s = s.substring(0, s.length() - 1).trim();
+        }
+        return s.matches("[\\w.]+") ? s : "(" + s + ") segments";
+    }
+
+    /**
+     * Read the sample names,  chromosomes and the range of values
+     */
+    private void loadSummary() {
+
+        String sql = "SELECT Sample, chr, MIN(value), MAX(value), MAX(end) FROM " + source + " GROUP BY Sample, chr";
+
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            conn = DBManager.getConnection();
+            st = prepareStreamingStatement(conn, sql);
+            rs = st.executeQuery();
+
+            Set<String> samples = new LinkedHashSet<String>();
+            while (rs.next()) {
+                samples.add(rs.getString(1));
+                String dbChr = rs.getString(2);
+                String chr = genome == null ? dbChr : genome.getChromosomeAlias(dbChr);
+                chrNames.put(chr, dbChr);
+                float min = rs.getFloat(3);
+                float max = rs.getFloat(4);
+                dataMin = Math.min(dataMin, min);
+                dataMax = Math.max(dataMax, max);
+                int extent = rs.getInt(5);
+                Integer chrExtent = chrExtents.get(chr);
+                chrExtents.put(chr, chrExtent == null ? extent : Math.max(extent, chrExtent));
+            }
+            sampleNames.addAll(samples);
+            Collections.sort(sampleNames);
+            logNormalized = dataMin < 0;
+
+        } catch (SQLException e) {
+            log.error("Database error", e);
+            throw new RuntimeException("Database error", e);
+        } finally {
+            closeResources(rs, st, conn);
+        }
+    }
+
+    public List<String> getSampleNames() {
+        return sampleNames;
+    }
+
+    public double getDataMax(String chr) {
+        return dataMax;
+    }
+
+    public double getDataMin(String chr) {
+        return dataMin;
+    }
+
+    public boolean isLogNormalized() {
+        return logNormalized;
+    }
+
+    public TrackType getType() {
+        return trackType;
+    }
+
+    public void setTrackType(TrackType trackType) {
+        this.trackType = trackType;
+    }
+
+    public List<LocusScore> getSegments(String heading, String chr) {
+        SegmentColumns columns = getSegmentColumns(heading, chr);
+        return columns == null ? null : columns.getSegments();
+    }
+
+    public SegmentColumns getSegmentColumns(String heading, String chr) {
+        if (chr.equals(Globals.CHR_ALL)) {
+            return getWholeGenomeColumns().get(heading);
+        }
+        Integer extent = chrExtents.get(chr);
+        return extent == null ? null : getSegmentColumns(heading, chr, 0, extent);
+    }
+
+    public List<LocusScore> getWholeGenomeScores(String heading) {
+        SegmentColumns columns = getWholeGenomeColumns().get(heading);
+        return columns == null ? null : columns.getSegments();
+    }
+
+    /**
+     * Return the segments of a sample overlapping the interval [start, end),  or null if the sample has no segments
+     * there.
+     */
+    public SegmentColumns getSegmentColumns(String heading, String chr, int start, int end) {
+
+        if (!chrNames.containsKey(chr)) {
+            return null;
+        }
+
+        int startBin = Math.max(0, start) / binSize;
+        int endBin = Math.max(start, end - 1) / binSize;
+        List<Bin> bins = getBins(chr, startBin, endBin);
+
+        // Segments from before the first bin,  then those starting in each bin
+        SegmentColumns first = bins.get(0).overlappingSegments.get(heading);
+        SegmentColumns columns = new SegmentColumns(first == null ? 16 : first.size() + 16);
+        if (first != null) {
+            addAll(columns, first);
+        }
+        for (Bin bin : bins) {
+            SegmentColumns contained = bin.containedSegments.get(heading);
+            if (contained != null) {
+                addAll(columns, contained);
+            }
+        }
+        if (columns.size() == 0) {
+            return null;
+        }
+        columns.sort();
+        return columns;
+    }
+
+    private static void addAll(SegmentColumns to, SegmentColumns from) {
+        for (int i = 0; i < from.size(); i++) {
+            to.add(from.getStart(i), from.getEnd(i), from.getValue(i), from.getDescription(i));
+        }
+    }
+
+    /**
+     * Return the bins spanning [startBin, endBin],  loading the uncached ones.  Synchronized so concurrent
+     * requests for the same region query the database once.
+     */
+    private synchronized List<Bin> getBins(String chr, int startBin, int endBin) {
+
+        List<Bin> bins = new ArrayList<Bin>(endBin - startBin + 1);
+        List<Bin> binsToLoad = new ArrayList<Bin>();
+        for (int b = startBin; b <= endBin; b++) {
+            String key = chr + "_" + b;
+            Bin bin = cache.get(key);
+            if (bin == null) {
+                bin = new Bin(b * binSize, (b + 1) * binSize);
+                cache.put(key, bin);
+            }
+            bins.add(bin);
+
+            if (bin.loaded) {
+                if (binsToLoad.size() > 0) {
+                    loadBins(chr, binsToLoad);
+                    binsToLoad.clear();
+                }
+            } else {
+                binsToLoad.add(bin);
+            }
+        }
+        if (binsToLoad.size() > 0) {
+            loadBins(chr, binsToLoad);
+        }
+        return bins;
+    }
+
+    /**
+     * Load a run of adjacent bins with one range query
+     */
+    private void loadBins(String chr, List<Bin> bins) {
+
+        int start = bins.get(0).start;
+        int end = bins.get(bins.size() - 1).end;
+        String sql = "SELECT Sample, start, end, value, description FROM " + source +
+                " WHERE chr = ? AND start < ? AND end > ? ORDER BY start";
+
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        int count = 0;
+        long t0 = System.currentTimeMillis();
+        try {
+            conn = DBManager.getConnection();
+            st = prepareStreamingStatement(conn, sql);
+            st.setString(1, chrNames.get(chr));
+            st.setInt(2, end);
+            st.setInt(3, start);
+            rs = st.executeQuery();
+            while (rs.next()) {
+                String sample = rs.getString(1);
+                int segStart = rs.getInt(2);
+                int segEnd = rs.getInt(3);
+                float value = rs.getFloat(4);
+                String description = rs.getString(5);
+
+                // Range of bins the segment overlaps
+                int idx0 = Math.max(0, (segStart - start) / binSize);
+                int idx1 = Math.min(bins.size() - 1, (segEnd - 1 - start) / binSize);
+                for (int i = idx0; i <= idx1; i++) {
+                    Bin bin = bins.get(i);
+                    Map<String, SegmentColumns> segments = segStart >= bin.start ?
+                            bin.containedSegments : bin.overlappingSegments;
+                    SegmentColumns columns = segments.get(sample);
+                    if (columns == null) {
+                        columns = new SegmentColumns();
+                        segments.put(sample, columns);
+                    }
+                    columns.add(segStart, segEnd, value, description);
+                }
+                count++;
+            }
+            for (Bin bin : bins) {
+                bin.loaded = true;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Loaded " + count + " segments for " + chr + ":" + start + "-" + end + " in " +
+                        (System.currentTimeMillis() - t0) + " ms");
+            }
+        } catch (SQLException e) {
+            log.error("Database error", e);
+            throw new RuntimeException("Database error", e);
+        } finally {
+            closeResources(rs, st, conn);
+        }
+    }
+
+    /**
+     * Read every segment with one streaming query,  for computations over all samples and chromosomes such as copy
+     * number frequencies.  Reading those through {@link #getSegments(String, String)} would query each chromosome
+     * once per sample,  as the bin cache holds only part of the genome.  The segments are not cached.
+     *
+     * @return the segments in memory
+     */
+    public SegmentedDataSet readAllSegments() {
+
+        SegmentedAsciiDataSet segments = new SegmentedAsciiDataSet(genome);
+        segments.setTrackType(trackType);
+
+        String sql = "SELECT Sample, chr, start, end, value, description FROM " + source;
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            conn = DBManager.getConnection();
+            st = prepareStreamingStatement(conn, sql);
+            rs = st.executeQuery();
+            while (rs.next()) {
+                segments.addSegment(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getInt(4), rs.getFloat(5),
+                        rs.getString(6));
+            }
+            segments.sortLists();
+        } catch (SQLException e) {
+            log.error("Database error", e);
+            throw new RuntimeException("Database error", e);
+        } finally {
+            closeResources(rs, st, conn);
+        }
+        return segments;
+    }
+
+    /**
+     * Compute the whole genome view of every sample.  Only segments wider than a pixel of the whole genome view on
+     * the largest screen are read,  so the query does not transfer the entire table.
+     */
+    private synchronized Map<String, SegmentColumns> getWholeGenomeColumns() {
+
+        if (wholeGenomeColumns != null) {
+            return wholeGenomeColumns;
+        }
+        wholeGenomeColumns = new HashMap<String, SegmentColumns>();
+        if (genome == null) {
+            return wholeGenomeColumns;
+        }
+
+        // Genome coordinates of the chromosomes,  in kb as in SegmentedAsciiDataSet
+        int locationUnit = 1000;
+        Map<String, Long> offsets = new HashMap<String, Long>();
+        long offset = 0;
+        for (String chr : genome.getChromosomeNames()) {
+            offsets.put(chrNames.containsKey(chr) ? chrNames.get(chr) : chr, offset);
+            offset += genome.getChromosome(chr).getLength();
+        }
+        int minFeatureSize = (int) (offset / MAX_SCREEN_SIZE);
+
+        String sql = "SELECT Sample, chr, start, end, value, description FROM " + source + " WHERE end - start >= ?";
+        Connection conn = null;
+        PreparedStatement st = null;
+        ResultSet rs = null;
+        try {
+            conn = DBManager.getConnection();
+            st = prepareStreamingStatement(conn, sql);
+            st.setInt(1, minFeatureSize);
+            rs = st.executeQuery();
+            while (rs.next()) {
+                String sample = rs.getString(1);
+                Long chrOffset = offsets.get(rs.getString(2));
+                if (chrOffset == null) {
+                    continue;
+                }
+                int gStart = (int) ((chrOffset + rs.getInt(3)) / locationUnit);
+                int gEnd = (int) ((chrOffset + rs.getInt(4)) / locationUnit);
+                SegmentColumns columns = wholeGenomeColumns.get(sample);
+                if (columns == null) {
+                    columns = new SegmentColumns(1000);
+                    wholeGenomeColumns.put(sample, columns);
+                }
+                columns.add(gStart, gEnd, rs.getFloat(5), rs.getString(6));
+            }
+            for (SegmentColumns columns : wholeGenomeColumns.values()) {
+                columns.sort();
+            }
+        } catch (SQLException e) {
+            log.error("Database error", e);
+            throw new RuntimeException("Database error", e);
+        } finally {
+            closeResources(rs, st, conn);
+        }
+        return wholeGenomeColumns;
+    }
+
+
+    /**
+     * The segments of every sample in one bin,  split as in AbstractCacher into those starting in the bin and those
+     * starting before it.
+     */
+    private static class Bin {
+
+        final int start;
+        final int end;
+        boolean loaded = false;
+        Map<String, SegmentColumns> containedSegments = new HashMap<String, SegmentColumns>();
+        Map<String, SegmentColumns> overlappingSegments = new HashMap<String, SegmentColumns>();
+
+        Bin(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.dev.db;
+
+import org.broad.igv.Globals;
+import org.broad.igv.data.seg.SegmentColumns;
+import org.broad.igv.data.seg.SegmentedDataSource;
+import org.broad.igv.feature.LocusScore;
+
+import java.util.List;
+
+/**
+ * Data source for one sample of a {@link SegmentedSQLDataSet}.  Only the segments of the requested region are read.
+ */
+public class SegmentedSQLDataSource extends SegmentedDataSource {
+
+    SegmentedSQLDataSet sqlDataset;
+
+    public SegmentedSQLDataSource(String trackIdentifier, SegmentedSQLDataSet dataset) {
+        super(trackIdentifier, dataset);
+        this.sqlDataset = dataset;
+    }
+
+    @Override
+    public List<LocusScore> getSummaryScoresForRange(String chr, int startLocation, int endLocation, int zoom) {
+        if (endLocation < 0 || chr.equals(Globals.CHR_ALL)) {
+            return super.getSummaryScoresForRange(chr, startLocation, endLocation, zoom);
+        }
+        SegmentColumns columns = sqlDataset.getSegmentColumns(trackIdentifier, chr, startLocation, endLocation);
+        if (columns == null) {
+            return null;
+        }
+        return columns.getSegments(startLocation, endLocation, zoom, getBaseline());
+    }
+}
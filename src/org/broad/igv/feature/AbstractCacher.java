@@ -14,6 +14,7 @@ package org.broad.igv.feature;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.util.LRUCache;
+import org.broad.igv.util.stats.Metrics;
 import org.broad.tribble.CloseableTribbleIterator;
 import org.broad.tribble.Feature;
 
@@ -35,6 +36,11 @@ public abstract class AbstractCacher {
 
     private static Logger log = Logger.getLogger(AbstractCacher.class);
 
+    private static final Metrics.Counter binHits = Metrics.counter("features.bin.hits");
+    private static final Metrics.Counter binMisses = Metrics.counter("features.bin.misses");
+    private static final Metrics.Counter featuresRead = Metrics.counter("features.read");
+    private static final Metrics.Timer loadTimer = Metrics.timer("features.load");
+
     protected int binSize;
     protected LRUCache<String, Bin> cache;
 
@@ -146,6 +152,7 @@ public abstract class AbstractCacher {
 
             // The current tile is loaded,  load any preceding tiles we have pending
             if (tile.isLoaded()) {
+                binHits.inc();
                 if (tilesToLoad.size() > 0) {
                     if (!loadTiles(seq, tilesToLoad)) {
                         return tiles;
@@ -153,6 +160,7 @@ public abstract class AbstractCacher {
                 }
                 tilesToLoad.clear();
             } else {
+                binMisses.inc();
                 tilesToLoad.add(tile);
             }
         }
@@ -182,12 +190,14 @@ public abstract class AbstractCacher {
         //log.debug("Loading : " + start + " - " + end);
         int featureCount = 0;
         long t0 = System.currentTimeMillis();
+        long loadStart = loadTimer.start();
         try {
 
             iter = queryRaw(seq, start, end);
 
             while (iter != null && iter.hasNext()) {
                 Feature record = iter.next();
+                featureCount++;
 
                 // Range of tile indices that this feature contributes to.
                 int aStart = record.getStart();
@@ -215,6 +225,8 @@ public abstract class AbstractCacher {
             for (Bin t : tiles) {
                 t.setLoaded(true);
             }
+            loadTimer.stop(loadStart);
+            featuresRead.add(featureCount);
             if (log.isDebugEnabled()) {
                 long dt = System.currentTimeMillis() - t0;
                 long rate = dt == 0 ? Long.MAX_VALUE : featureCount / dt;
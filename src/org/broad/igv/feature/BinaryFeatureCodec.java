@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature;
+
+import org.broad.tribble.Feature;
+
+import java.awt.*;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of {@link BasicFeature}s and their exons,  used to cache parsed annotations.  Features are
+ * encoded without their chromosome,  which is supplied when decoding,  as they are stored in blocks of one
+ * chromosome.
+ */
+public class BinaryFeatureCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Strand[] STRANDS = Strand.values();
+
+    /**
+     * Return true if the feature can be encoded without loss,  i.e. it is a BasicFeature with plain exons.
+     * Subclasses may hold state not known here.
+     *
+     * @param feature
+     * @return
+     */
+    public static boolean canEncode(Feature feature) {
+        if (feature == null || feature.getClass() != BasicFeature.class) {
+            return false;
+        }
+        List<Exon> exons = ((BasicFeature) feature).exons;
+        if (exons != null) {
+            for (Exon exon : exons) {
+                if (exon == null || exon.getClass() != Exon.class) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public static void encode(BasicFeature feature, DataOutput out) throws IOException {
+        encodeAbstractFeature(feature, out);
+        writeString(out, feature.getType());
+        out.writeInt(feature.level);
+        out.writeFloat(feature.score);
+        out.writeFloat(feature.confidence);
+        writeString(out, feature.identifier);
+        out.writeInt(feature.getThickStart());
+        out.writeInt(feature.getThickEnd());
+        writeString(out, feature.link);
+
+        String[] parentIds = feature.parentIds;
+        out.writeInt(parentIds == null ? -1 : parentIds.length);
+        if (parentIds != null) {
+            for (String id : parentIds) {
+                writeString(out, id);
+            }
+        }
+
+        List<Exon> exons = feature.exons;
+        out.writeInt(exons == null ? -1 : exons.size());
+        if (exons != null) {
+            for (Exon exon : exons) {
+                encodeAbstractFeature(exon, out);
+                out.writeInt(exon.getNumber());
+                out.writeInt(exon.getReadingShift());
+                out.writeInt(exon.getCdStart());
+                out.writeInt(exon.getCdEnd());
+                out.writeBoolean(exon.isUTR());
+                out.writeInt(exon.getMrnaBase());
+            }
+        }
+    }
+
+    public static BasicFeature decode(String chr, ByteBuffer buffer) {
+        BasicFeature feature = new BasicFeature();
+        decodeAbstractFeature(feature, chr, buffer);
+        feature.setType(readString(buffer));
+        feature.level = buffer.getInt();
+        feature.score = buffer.getFloat();
+        feature.confidence = buffer.getFloat();
+        feature.identifier = readString(buffer);
+        feature.setThickStart(buffer.getInt());
+        feature.setThickEnd(buffer.getInt());
+        feature.link = readString(buffer);
+
+        int nParentIds = buffer.getInt();
+        if (nParentIds >= 0) {
+            String[] parentIds = new String[nParentIds];
+            for (int i = 0; i < nParentIds; i++) {
+                parentIds[i] = readString(buffer);
+            }
+            feature.parentIds = parentIds;
+        }
+
+        int nExons = buffer.getInt();
+        if (nExons >= 0) {
+            List<Exon> exons = new ArrayList<Exon>(nExons);
+            for (int i = 0; i < nExons; i++) {
+                Exon exon = new Exon(chr, 0, 0, Strand.NONE);
+                decodeAbstractFeature(exon, chr, buffer);
+                exon.setNumber(buffer.getInt());
+                exon.setReadingFrame(buffer.getInt());
+                int codingStart = buffer.getInt();
+                int codingEnd = buffer.getInt();
+                exon.setUTR(buffer.get() != 0);
+                exon.setCodingStart(codingStart);
+                exon.setCodingEnd(codingEnd);
+                exon.setMrnaBase(buffer.getInt());
+                exons.add(exon);
+            }
+            feature.exons = exons;
+        }
+        return feature;
+    }
+
+    private static void encodeAbstractFeature(AbstractFeature feature, DataOutput out) throws IOException {
+        out.writeInt(feature.start);
+        out.writeInt(feature.end);
+        out.writeByte(feature.strand == null ? -1 : feature.strand.ordinal());
+        writeString(out, feature.name);
+        writeString(out, feature.type);
+        writeString(out, feature.description);
+        out.writeBoolean(feature.color != null);
+        if (feature.color != null) {
+            out.writeInt(feature.color.getRGB());
+        }
+        Map<String, String> attributes = feature.attributes;
+        out.writeInt(attributes == null ? -1 : attributes.size());
+        if (attributes != null) {
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+    }
+
+    private static void decodeAbstractFeature(AbstractFeature feature, String chr, ByteBuffer buffer) {
+        feature.chromosome = chr;
+        feature.start = buffer.getInt();
+        feature.end = buffer.getInt();
+        byte strand = buffer.get();
+        feature.strand = strand < 0 ? null : STRANDS[strand];
+        feature.name = readString(buffer);
+        feature.type = readString(buffer);
+        feature.description = readString(buffer);
+        if (buffer.get() != 0) {
+            feature.color = new Color(buffer.getInt(), true);
+        }
+        int nAttributes = buffer.getInt();
+        if (nAttributes >= 0) {
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            for (int i = 0; i < nAttributes; i++) {
+                String key = readString(buffer);
+                attributes.put(key, readString(buffer));
+            }
+            feature.attributes = attributes;
+        }
+    }
+
+    /**
+     * Write a string as its length in bytes and its UTF-8 bytes,  or -1 if it is null
+     */
+    public static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    public static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
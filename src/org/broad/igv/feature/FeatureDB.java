@@ -19,62 +19,90 @@ package org.broad.igv.feature;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import com.jidesoft.utils.SortedList;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
-import org.broad.igv.ui.IGV;
+import org.broad.igv.util.ExecutorUtils;
+import org.broad.igv.util.collections.IntArrayList;
 import org.broad.tribble.Feature;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This is a placeholder class for a true "feature database" wrapper.  Its purpose
  * is to return a feature given a name.  Used to support the "search" box.
+ * <p/>
+ * Names are kept in a compact {@link FeatureNameIndex}.  Names added since it was built are kept in a small sorted
+ * map,  which is merged into a new index in the background once it grows,  so reads never wait for writes or merges.
+ * The index of the genes of a genome can be read from the genome cache instead of built from the features.
  *
  * @author jrobinso
  */
 public class FeatureDB {
 
     private static Logger log = Logger.getLogger(FeatureDB.class);
+
+    private static final int MAX_DUPLICATE_COUNT = 20;
+
     /**
-     * Map for all features other than genes.
+     * Minimum number of names added since the last merge for a merge to start.  Merges also wait for a quarter of
+     * the size of the index,  so the cost of merging stays proportional to the number of names added.
      */
-    //private static Map<String, NamedFeature> featureMap = new HashMap(10000);
-    private static Map<String, List<NamedFeature>> featureMap = Collections.synchronizedSortedMap(new TreeMap<String, List<NamedFeature>>());
-    private static final int MAX_DUPLICATE_COUNT = 20;
+    static final int MIN_MERGE_SIZE = 10000;
+
+    private static final Object writeLock = new Object();
+    private static final Object mergeLock = new Object();
+    private static volatile State state = new State(FeatureNameIndex.EMPTY, null);
+    private static int addedCount = 0;
+    private static boolean mergeScheduled = false;
+
+    private static ExecutorService mergeExecutor = ExecutorUtils.newSingleThreadExecutor("Feature name index");
 
     public static void addFeature(NamedFeature feature) {
+        for (String key : getKeys(feature)) {
+            put(key, feature);
+        }
+    }
 
+    /**
+     * Return the names a feature is found by:  its name,  identifier,  and short attribute values of the feature and
+     * its exons.
+     */
+    private static List<String> getKeys(NamedFeature feature) {
+        List<String> keys = new ArrayList<String>();
         final String name = feature.getName();
         if (name != null && name.length() > 0 && !name.equals(".")) {
-            put(name, feature);
+            keys.add(name);
         }
         if (feature instanceof IGVFeature) {
             final IGVFeature igvFeature = (IGVFeature) feature;
             final String id = igvFeature.getIdentifier();
             if (id != null && id.length() > 0) {
-                put(id, feature);
+                keys.add(id);
             }
 
-            addByAttributes(igvFeature);
+            addByAttributes(igvFeature, keys);
 
             List<Exon> exons = igvFeature.getExons();
             if (exons != null) {
                 for (Exon exon : exons) {
-                    addByAttributes(exon);
+                    addByAttributes(exon, keys);
                 }
             }
         }
+        return keys;
     }
 
-    private static void addByAttributes(IGVFeature igvFeature) {
+    private static void addByAttributes(IGVFeature igvFeature, List<String> keys) {
         Map<String, String> attributes = igvFeature.getAttributes();
         if (attributes != null) {
             for (String value : attributes.values()) {
                 if (value.length() < 20) {
-                    put(value, igvFeature);
+                    keys.add(value);
                 }
             }
         }
@@ -97,60 +125,162 @@ public class FeatureDB {
             }
         }
 
-        synchronized (featureMap) {
-            List<NamedFeature> currentList = featureMap.get(key);
-            if (currentList == null) {
-                List<NamedFeature> newList = new SortedList<NamedFeature>(
-                        new ArrayList<NamedFeature>(), FeatureComparator.get(true));
-                boolean added = newList.add(feature);
-                if (added) {
-                    featureMap.put(key, newList);
-                }
-                return added;
-            } else {
-                // Don't let list grow without bounds
-                if (currentList.size() > MAX_DUPLICATE_COUNT) {
-                    return false;
-                }
-
-                return currentList.add(feature);
+        synchronized (writeLock) {
+            State s = state;
+            // Don't let list grow without bounds
+            if (s.getFeatureCount(key) > MAX_DUPLICATE_COUNT) {
+                return false;
             }
+            s.added.put(key, insert(s.added.get(key), feature));
+            addedCount++;
+            if (!mergeScheduled && addedCount >= Math.max(MIN_MERGE_SIZE, s.index.size() / 4)) {
+                mergeScheduled = true;
+                mergeExecutor.submit(new Runnable() {
+                    public void run() {
+                        mergeNames();
+                    }
+                });
+            }
+            return true;
         }
     }
 
-    /*
-        String key = name.toUpperCase();
+    /**
+     * Return a copy of the sorted array with the feature inserted after the features it ties with
+     */
+    private static NamedFeature[] insert(NamedFeature[] features, NamedFeature feature) {
+        if (features == null) {
+            return new NamedFeature[]{feature};
+        }
+        Comparator<Feature> order = FeatureComparator.get(true);
+        int i = features.length;
+        while (i > 0 && order.compare(features[i - 1], feature) > 0) {
+            i--;
+        }
+        NamedFeature[] result = new NamedFeature[features.length + 1];
+        System.arraycopy(features, 0, result, 0, i);
+        result[i] = feature;
+        System.arraycopy(features, i, result, i + 1, features.length - i);
+        return result;
+    }
 
-        Genome currentGenome = GenomeManager.getInstance().getCurrentGenome();
-        if (currentGenome == null || currentGenome.getChromosome(feature.getChr()) != null) {
-            NamedFeature currentFeature = featureMap.get(key);
-            if (currentFeature == null) {
-                featureMap.put(key, feature);
-            } else {
-                // If there are multiple features, prefer the one that is NOT on a "random" chromosome.
-                // This is a hack, but an important one for the human assemblies
-                String featureChr = feature.getChr().toLowerCase();
-                String currentFeatureChr = currentFeature.getChr();
-                if (featureChr.contains("random") || featureChr.contains("chrun") || featureChr.contains("hap")) {
-                    return;
-                } else if (currentFeatureChr.contains("random") || currentFeatureChr.contains("chrun") ||
-                        currentFeatureChr.contains("hap")) {
-                    featureMap.put(key, feature);
+    /**
+     * Merge the names added since the last merge into a new index.  Names added meanwhile are kept apart and merged
+     * next time.
+     */
+    static void mergeNames() {
+        synchronized (mergeLock) {
+            State frozenState;
+            synchronized (writeLock) {
+                mergeScheduled = false;
+                State s = state;
+                if (s.added.isEmpty()) {
                     return;
                 }
+                frozenState = new State(s.index, s.added);
+                state = frozenState;
+                addedCount = 0;
+            }
 
-                // If there are multiple features, use or keep the longest one
-                int w1 = currentFeature.getEnd() - currentFeature.getStart();
-                int w2 = feature.getEnd() - feature.getStart();
-                if (w2 > w1) {
-                    featureMap.put(key, feature);
-                }
+            long t0 = System.currentTimeMillis();
+            FeatureNameIndex merged = null;
+            try {
+                merged = frozenState.index.merge(frozenState.frozen, FeatureComparator.get(true),
+                        MAX_DUPLICATE_COUNT + 1);
+            } catch (Exception e) {
+                log.error("Error merging feature names", e);
+            }
 
+            synchronized (writeLock) {
+                State s = state;
+                // The names were cleared meanwhile
+                if (s.frozen != frozenState.frozen) {
+                    return;
+                }
+                if (merged != null) {
+                    state = new State(merged, null, s.added);
+                } else {
+                    // Keep the names unmerged
+                    for (Map.Entry<String, NamedFeature[]> entry : s.frozen.entrySet()) {
+                        NamedFeature[] features = s.added.get(entry.getKey());
+                        for (NamedFeature feature : entry.getValue()) {
+                            features = insert(features, feature);
+                        }
+                        s.added.put(entry.getKey(), features);
+                    }
+                    state = new State(s.index, null, s.added);
+                }
             }
+            if (merged != null) {
+                log.debug("Merged " + frozenState.frozen.size() + " feature names in " +
+                        (System.currentTimeMillis() - t0) + " ms,  " + merged.size() + " names");
+            }
+        }
+    }
 
+    /**
+     * Replace all names with the index,  e.g. the index of the genes of a genome read from the genome cache
+     *
+     * @param index
+     */
+    public static void setIndex(FeatureNameIndex index) {
+        synchronized (writeLock) {
+            state = new State(index, null);
+            addedCount = 0;
         }
+    }
 
+    /**
+     * Create an index of the features,  by the names they would be added with.  Features on chromosomes not in the
+     * genome are skipped.
+     *
+     * @param features
+     * @param genome   the genome,  or null to index all features
+     * @return an index referring to features by their position in the list
      */
+    public static FeatureNameIndex createIndex(final List<? extends Feature> features, Genome genome) {
+        Map<String, IntArrayList> ids = new HashMap<String, IntArrayList>();
+        for (int i = 0; i < features.size(); i++) {
+            Feature feature = features.get(i);
+            if (!(feature instanceof NamedFeature) ||
+                    (genome != null && genome.getChromosome(feature.getChr()) == null)) {
+                continue;
+            }
+            for (String name : getKeys((NamedFeature) feature)) {
+                String key = name.toUpperCase();
+                IntArrayList keyIds = ids.get(key);
+                if (keyIds == null) {
+                    keyIds = new IntArrayList(1);
+                    ids.put(key, keyIds);
+                }
+                keyIds.add(i);
+            }
+        }
+
+        String[] keys = ids.keySet().toArray(new String[ids.size()]);
+        Arrays.sort(keys);
+        final Comparator<Feature> order = FeatureComparator.get(true);
+        FeatureNameIndex.Builder builder = new FeatureNameIndex.Builder();
+        IntArrayList sortedIds = new IntArrayList();
+        for (String key : keys) {
+            IntArrayList keyIds = ids.get(key);
+            Integer[] sorted = new Integer[keyIds.size()];
+            for (int k = 0; k < sorted.length; k++) {
+                sorted[k] = keyIds.get(k);
+            }
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                public int compare(Integer id1, Integer id2) {
+                    return order.compare(features.get(id1), features.get(id2));
+                }
+            });
+            sortedIds.clear();
+            for (int k = 0; k < Math.min(sorted.length, MAX_DUPLICATE_COUNT + 1); k++) {
+                sortedIds.add(sorted[k]);
+            }
+            builder.add(key, sortedIds);
+        }
+        return builder.build(features);
+    }
 
 
     public static void addFeature(String name, NamedFeature feature) {
@@ -171,11 +301,22 @@ public class FeatureDB {
 
 
     public static void clearFeatures() {
-        featureMap.clear();
+        setIndex(FeatureNameIndex.EMPTY);
     }
 
     static int size() {
-        return featureMap.size();
+        State s = state;
+        int size = s.index.size();
+        Set<String> added = new HashSet<String>(s.added.keySet());
+        if (s.frozen != null) {
+            added.addAll(s.frozen.keySet());
+        }
+        for (String key : added) {
+            if (s.index.find(key) < 0) {
+                size++;
+            }
+        }
+        return size;
     }
 
     /**
@@ -184,7 +325,7 @@ public class FeatureDB {
      */
     public static NamedFeature getFeature(String name) {
         String nm = name.trim().toUpperCase();
-        List<NamedFeature> features = featureMap.get(nm);
+        List<NamedFeature> features = state.getFeatures(nm);
 
         if (features != null) {
             return features.get(0);
@@ -198,22 +339,59 @@ public class FeatureDB {
      * an exact match. Current implementation will match anything
      * for which name is at the beginning, including but not limited to
      * exact matches.
-     * <p/>
-     * NOTE: "It is imperative that the user manually synchronize
-     * on [this sorted map] when iterating over any of its
-     * collection views, or the collections views of any of its
-     * subMap, headMap or tailMap views". See
-     * <a href="http://docs.oracle.com/javase/6/docs/api/java/util/Collections.html#synchronizedSortedMap%28java.util.SortedMap%29> here</a>
      *
      * @param name : Search string. Features which begin with this
      *             string will be found.
-     * @return
+     * @return features by name,  in order of name
      */
     static Map<String, List<NamedFeature>> getFeaturesMap(String name) {
+        return getFeaturesMap(name, Integer.MAX_VALUE);
+    }
+
+    private static Map<String, List<NamedFeature>> getFeaturesMap(String name, int limit) {
         String nm = name.trim().toUpperCase();
-        SortedMap<String, List<NamedFeature>> treeMap = (SortedMap) featureMap;
+        State s = state;
+
+        // Names added since the last merge,  at most limit of each map are needed
+        TreeSet<String> added = new TreeSet<String>();
+        addPrefixed(s.added, nm, limit, added);
+        if (s.frozen != null) {
+            addPrefixed(s.frozen, nm, limit, added);
+        }
+
+        Map<String, List<NamedFeature>> result = new LinkedHashMap<String, List<NamedFeature>>();
+        Iterator<String> addedIter = added.iterator();
+        String addedKey = addedIter.hasNext() ? addedIter.next() : null;
+        int i = s.index.lowerBound(nm);
+        boolean indexed = i < s.index.size() && s.index.keyStartsWith(i, nm);
+        while ((indexed || addedKey != null) && result.size() < limit) {
+            int cmp = !indexed ? 1 : (addedKey == null ? -1 : s.index.compareKey(i, addedKey));
+            String key;
+            if (cmp <= 0) {
+                key = s.index.getKey(i);
+                i++;
+                indexed = i < s.index.size() && s.index.keyStartsWith(i, nm);
+            } else {
+                key = addedKey;
+            }
+            if (cmp >= 0) {
+                addedKey = addedIter.hasNext() ? addedIter.next() : null;
+            }
+            result.put(key, s.getFeatures(key));
+        }
+        return result;
+    }
+
+    private static void addPrefixed(ConcurrentNavigableMap<String, NamedFeature[]> map, String prefix, int limit,
+                                    Set<String> keys) {
         //Search is inclusive to first argument, exclusive to second
-        return treeMap.subMap(nm, nm + Character.MAX_VALUE);
+        int n = 0;
+        for (String key : map.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+            if (n++ >= limit) {
+                break;
+            }
+            keys.add(key);
+        }
     }
 
     /**
@@ -239,26 +417,16 @@ public class FeatureDB {
      */
     public static List<NamedFeature> getFeaturesList(String name, int limit, boolean longestOnly) {
 
-        //Note: We are iterating over submap, this needs
-        //to be synchronized over the main map.
-        synchronized (featureMap) {
-            Map<String, List<NamedFeature>> resultMap = getFeaturesMap(name);
-            Set<String> names = resultMap.keySet();
-            Iterator<String> nameIter = names.iterator();
-            ArrayList<NamedFeature> features = new ArrayList<NamedFeature>((Math.min(limit, names.size())));
-            int ii = 0;
-            while (nameIter.hasNext() && ii < limit) {
-                List<NamedFeature> subFeats = resultMap.get(nameIter.next());
-                if (longestOnly) {
-                    features.add(subFeats.get(0));
-                } else {
-                    features.addAll(subFeats);
-                }
-                ii++;
+        Map<String, List<NamedFeature>> resultMap = getFeaturesMap(name, limit);
+        ArrayList<NamedFeature> features = new ArrayList<NamedFeature>(resultMap.size());
+        for (List<NamedFeature> subFeats : resultMap.values()) {
+            if (longestOnly) {
+                features.add(subFeats.get(0));
+            } else {
+                features.addAll(subFeats);
             }
-            return features;
         }
-
+        return features;
     }
 
     /**
@@ -282,29 +450,26 @@ public class FeatureDB {
         }
 
         Map<Integer, BasicFeature> results = new HashMap<Integer, BasicFeature>();
-        List<NamedFeature> possibles = featureMap.get(nm);
+        List<NamedFeature> possibles = state.getFeatures(nm);
 
         if (possibles != null) {
-            synchronized (featureMap) {
-                for (NamedFeature f : possibles) {
-                    if (!(f instanceof BasicFeature)) {
-                        continue;
-                    }
+            for (NamedFeature f : possibles) {
+                if (!(f instanceof BasicFeature)) {
+                    continue;
+                }
 
-                    BasicFeature bf = (BasicFeature) f;
-                    Codon c = bf.getCodon(currentGenome, proteinPosition);
-                    if (c == null) {
-                        continue;
-                    }
-                    if (c.getAminoAcid().equalsByName(refAA)) {
-                        Set<String> snps = AminoAcidManager.getMappingSNPs(c.getSequence(),
-                                AminoAcidManager.getAminoAcidByName(mutAA));
-                        if (snps.size() >= 1) {
-                            results.put(c.getGenomePositions()[0], bf);
-                        }
+                BasicFeature bf = (BasicFeature) f;
+                Codon c = bf.getCodon(currentGenome, proteinPosition);
+                if (c == null) {
+                    continue;
+                }
+                if (c.getAminoAcid().equalsByName(refAA)) {
+                    Set<String> snps = AminoAcidManager.getMappingSNPs(c.getSequence(),
+                            AminoAcidManager.getAminoAcidByName(mutAA));
+                    if (snps.size() >= 1) {
+                        results.put(c.getGenomePositions()[0], bf);
                     }
                 }
-
             }
         }
 
@@ -331,43 +496,98 @@ public class FeatureDB {
         }
 
         Map<Integer, BasicFeature> results = new HashMap<Integer, BasicFeature>();
-        List<NamedFeature> possibles = featureMap.get(nm);
+        List<NamedFeature> possibles = state.getFeatures(nm);
         String tempNT;
         String brefNT = refNT.toUpperCase();
 
         if (possibles != null) {
-            synchronized (featureMap) {
-                for (NamedFeature f : possibles) {
-                    if (!(f instanceof BasicFeature)) {
-                        continue;
-                    }
-
-                    BasicFeature bf = (BasicFeature) f;
+            for (NamedFeature f : possibles) {
+                if (!(f instanceof BasicFeature)) {
+                    continue;
+                }
 
-                    int genomePosition = bf.featureToGenomePosition(new int[]{startPosition - 1})[0];
-                    if (genomePosition <= 0) {
-                        continue;
-                    }
-                    final byte[] nuclSequence = currentGenome.getSequence(bf.getChr(), genomePosition, genomePosition + 1);
-                    if (nuclSequence == null) {
-                        continue;
-                    }
-                    tempNT = new String(nuclSequence);
-                    if (bf.getStrand() == Strand.NEGATIVE) {
-                        tempNT = AminoAcidManager.getNucleotideComplement(tempNT);
-                    }
+                BasicFeature bf = (BasicFeature) f;
 
-                    if (tempNT.toUpperCase().equals(brefNT)) {
-                        results.put(genomePosition, bf);
-                    }
+                int genomePosition = bf.featureToGenomePosition(new int[]{startPosition - 1})[0];
+                if (genomePosition <= 0) {
+                    continue;
+                }
+                final byte[] nuclSequence = currentGenome.getSequence(bf.getChr(), genomePosition, genomePosition + 1);
+                if (nuclSequence == null) {
+                    continue;
+                }
+                tempNT = new String(nuclSequence);
+                if (bf.getStrand() == Strand.NEGATIVE) {
+                    tempNT = AminoAcidManager.getNucleotideComplement(tempNT);
                 }
 
+                if (tempNT.toUpperCase().equals(brefNT)) {
+                    results.put(genomePosition, bf);
+                }
             }
         }
 
         return results;
     }
 
+    /**
+     * The names at one point in time:  the index,  names being merged into it if any,  and names added since.
+     * Only the map of added names changes,  under the write lock.
+     */
+    private static class State {
+
+        final FeatureNameIndex index;
+        final ConcurrentNavigableMap<String, NamedFeature[]> frozen;
+        final ConcurrentNavigableMap<String, NamedFeature[]> added;
+
+        State(FeatureNameIndex index, ConcurrentNavigableMap<String, NamedFeature[]> frozen) {
+            this(index, frozen, new ConcurrentSkipListMap<String, NamedFeature[]>());
+        }
+
+        State(FeatureNameIndex index, ConcurrentNavigableMap<String, NamedFeature[]> frozen,
+              ConcurrentNavigableMap<String, NamedFeature[]> added) {
+            this.index = index;
+            this.frozen = frozen;
+            this.added = added;
+        }
+
+        int getFeatureCount(String key) {
+            int i = index.find(key);
+            int count = i < 0 ? 0 : index.getFeatureCount(i);
+            NamedFeature[] features = frozen == null ? null : frozen.get(key);
+            if (features != null) {
+                count += features.length;
+            }
+            features = added.get(key);
+            if (features != null) {
+                count += features.length;
+            }
+            return count;
+        }
+
+        /**
+         * @return the features with the name,  longest first,  or null if there are none
+         */
+        List<NamedFeature> getFeatures(String key) {
+            int i = index.find(key);
+            List<NamedFeature> features = i < 0 ? null : index.getFeatures(i);
+            int nSources = features == null ? 0 : 1;
+            for (NamedFeature[] array : Arrays.asList(frozen == null ? null : frozen.get(key), added.get(key))) {
+                if (array != null) {
+                    if (features == null) {
+                        features = new ArrayList<NamedFeature>(array.length);
+                    }
+                    features.addAll(Arrays.asList(array));
+                    nSources++;
+                }
+            }
+            if (nSources > 1) {
+                Collections.sort(features, FeatureComparator.get(true));
+            }
+            return features;
+        }
+    }
+
     /**
      * Doubleton class. Can sort forward or descending, at most 2 instances.
      */
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature;
+
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.tribble.Feature;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * An immutable table of feature names sorted for exact and prefix lookup.  The names are stored back to back in one
+ * character array,  and the features of each name as a run of integer ids into a feature table,  so the index is a
+ * handful of primitive arrays rather than a string,  a list and a map entry per name.  Being immutable it is read
+ * without locking.
+ * <p/>
+ * The feature table is any list.  The index of the genes of a genome cache refers to features by their position in
+ * the cached gene blocks,  which are decoded only when one of their features is requested.
+ */
+public class FeatureNameIndex {
+
+    public static final FeatureNameIndex EMPTY = new Builder().build(Collections.<Feature>emptyList());
+
+    private final char[] keyChars;
+    private final int[] keyOffsets;
+    private final int[] postingOffsets;
+    private final int[] postings;
+    private final List<? extends Feature> features;
+
+    private FeatureNameIndex(char[] keyChars, int[] keyOffsets, int[] postingOffsets, int[] postings,
+                             List<? extends Feature> features) {
+        this.keyChars = keyChars;
+        this.keyOffsets = keyOffsets;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+        this.features = features;
+    }
+
+    /**
+     * @return the number of names
+     */
+    public int size() {
+        return keyOffsets.length - 1;
+    }
+
+    public String getKey(int i) {
+        return new String(keyChars, keyOffsets[i], keyOffsets[i + 1] - keyOffsets[i]);
+    }
+
+    /**
+     * Compare the i-th name to a string,  in the order of String.compareTo
+     */
+    int compareKey(int i, String s) {
+        int from = keyOffsets[i];
+        int length = keyOffsets[i + 1] - from;
+        int n = Math.min(length, s.length());
+        for (int k = 0; k < n; k++) {
+            char c1 = keyChars[from + k];
+            char c2 = s.charAt(k);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return length - s.length();
+    }
+
+    public boolean keyStartsWith(int i, String prefix) {
+        int from = keyOffsets[i];
+        if (keyOffsets[i + 1] - from < prefix.length()) {
+            return false;
+        }
+        for (int k = 0; k < prefix.length(); k++) {
+            if (keyChars[from + k] != prefix.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the first name not less than key,  or size() if there is none
+     */
+    public int lowerBound(String key) {
+        int lo = 0;
+        int hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareKey(mid, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return the index of the name,  or -1 if it is not in the index
+     */
+    public int find(String key) {
+        int i = lowerBound(key);
+        return i < size() && compareKey(i, key) == 0 ? i : -1;
+    }
+
+    public int getFeatureCount(int i) {
+        return postingOffsets[i + 1] - postingOffsets[i];
+    }
+
+    /**
+     * @return the features of the i-th name,  in the order they were indexed
+     */
+    public List<NamedFeature> getFeatures(int i) {
+        List<NamedFeature> result = new ArrayList<NamedFeature>(getFeatureCount(i));
+        for (int p = postingOffsets[i]; p < postingOffsets[i + 1]; p++) {
+            result.add((NamedFeature) features.get(postings[p]));
+        }
+        return result;
+    }
+
+    /**
+     * Merge names added since this index was built.  The features of a name are sorted with the order given and
+     * limited to maxCount,  names in both are merged.  Features of this index are not decoded unless their name was
+     * added to.
+     *
+     * @param added    features by name,  sorted by name
+     * @param order
+     * @param maxCount
+     * @return
+     */
+    FeatureNameIndex merge(SortedMap<String, NamedFeature[]> added, Comparator<Feature> order, int maxCount) {
+
+        // The merged table is this table followed by the added features
+        List<? extends Feature> head = features;
+        List<Feature> tail = new ArrayList<Feature>();
+        if (features instanceof AppendedList) {
+            head = ((AppendedList) features).head;
+            tail.addAll(((AppendedList) features).tail);
+        }
+        final List<Feature> table = new AppendedList(head, tail);
+        Map<Feature, Integer> addedIds = new IdentityHashMap<Feature, Integer>();
+
+        Builder builder = new Builder();
+        IntArrayList ids = new IntArrayList();
+        Iterator<Map.Entry<String, NamedFeature[]>> iter = added.entrySet().iterator();
+        Map.Entry<String, NamedFeature[]> entry = iter.hasNext() ? iter.next() : null;
+        int i = 0;
+        while (i < size() || entry != null) {
+            int cmp = entry == null ? -1 : (i == size() ? 1 : compareKey(i, entry.getKey()));
+            ids.clear();
+            if (cmp <= 0) {
+                for (int p = postingOffsets[i]; p < postingOffsets[i + 1]; p++) {
+                    ids.add(postings[p]);
+                }
+            }
+            if (cmp >= 0) {
+                for (NamedFeature feature : entry.getValue()) {
+                    Integer id = addedIds.get(feature);
+                    if (id == null) {
+                        id = table.size();
+                        tail.add(feature);
+                        addedIds.put(feature, id);
+                    }
+                    ids.add(id);
+                }
+            }
+
+            if (cmp == 0) {
+                Integer[] merged = new Integer[ids.size()];
+                for (int k = 0; k < merged.length; k++) {
+                    merged[k] = ids.get(k);
+                }
+                final Comparator<Feature> featureOrder = order;
+                Arrays.sort(merged, new Comparator<Integer>() {
+                    public int compare(Integer id1, Integer id2) {
+                        return featureOrder.compare(table.get(id1), table.get(id2));
+                    }
+                });
+                ids.clear();
+                for (int k = 0; k < Math.min(merged.length, maxCount); k++) {
+                    ids.add(merged[k]);
+                }
+            }
+
+            if (cmp <= 0) {
+                builder.add(keyChars, keyOffsets[i], keyOffsets[i + 1] - keyOffsets[i], ids);
+                i++;
+            } else {
+                String key = entry.getKey();
+                builder.add(key.toCharArray(), 0, key.length(), ids);
+            }
+            if (cmp >= 0) {
+                entry = iter.hasNext() ? iter.next() : null;
+            }
+        }
+        return builder.build(table);
+    }
+
+    /**
+     * Write the index.  Feature ids are written as is,  so the index must be read with the same feature table.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        int n = size();
+        out.writeInt(n);
+        out.writeInt(keyOffsets[n]);
+        out.writeInt(postingOffsets[n]);
+        for (int offset : keyOffsets) {
+            out.writeInt(offset);
+        }
+        for (int k = 0; k < keyOffsets[n]; k++) {
+            out.writeChar(keyChars[k]);
+        }
+        for (int offset : postingOffsets) {
+            out.writeInt(offset);
+        }
+        for (int p = 0; p < postingOffsets[n]; p++) {
+            out.writeInt(postings[p]);
+        }
+    }
+
+    /**
+     * Read an index written by {@link #write(java.io.DataOutput)}.  The arrays are copied in bulk from the buffer,
+     * which is left positioned after the index.
+     *
+     * @param buffer
+     * @param features the feature table the index was written with
+     * @return
+     */
+    public static FeatureNameIndex read(ByteBuffer buffer, List<? extends Feature> features) {
+        int n = buffer.getInt();
+        int nChars = buffer.getInt();
+        int nPostings = buffer.getInt();
+
+        int[] keyOffsets = new int[n + 1];
+        buffer.asIntBuffer().get(keyOffsets);
+        buffer.position(buffer.position() + 4 * keyOffsets.length);
+
+        char[] keyChars = new char[nChars];
+        buffer.asCharBuffer().get(keyChars);
+        buffer.position(buffer.position() + 2 * nChars);
+
+        int[] postingOffsets = new int[n + 1];
+        buffer.asIntBuffer().get(postingOffsets);
+        buffer.position(buffer.position() + 4 * postingOffsets.length);
+
+        int[] postings = new int[nPostings];
+        buffer.asIntBuffer().get(postings);
+        buffer.position(buffer.position() + 4 * nPostings);
+
+        return new FeatureNameIndex(keyChars, keyOffsets, postingOffsets, postings, features);
+    }
+
+    /**
+     * Accumulates names,  which must be added in sorted order,  and their feature ids
+     */
+    static class Builder {
+
+        private char[] keyChars = new char[1024];
+        private IntArrayList keyOffsets = new IntArrayList();
+        private IntArrayList postingOffsets = new IntArrayList();
+        private IntArrayList postings = new IntArrayList();
+
+        Builder() {
+            keyOffsets.add(0);
+            postingOffsets.add(0);
+        }
+
+        void add(String key, IntArrayList ids) {
+            add(key.toCharArray(), 0, key.length(), ids);
+        }
+
+        void add(char[] chars, int from, int length, IntArrayList ids) {
+            if (ids.isEmpty()) {
+                return;
+            }
+            int nChars = keyOffsets.get(keyOffsets.size() - 1);
+            if (nChars + length > keyChars.length) {
+                keyChars = Arrays.copyOf(keyChars, Math.max(2 * keyChars.length, nChars + length));
+            }
+            System.arraycopy(chars, from, keyChars, nChars, length);
+            keyOffsets.add(nChars + length);
+            for (int k = 0; k < ids.size(); k++) {
+                postings.add(ids.get(k));
+            }
+            postingOffsets.add(postings.size());
+        }
+
+        FeatureNameIndex build(List<? extends Feature> features) {
+            int nChars = keyOffsets.get(keyOffsets.size() - 1);
+            return new FeatureNameIndex(Arrays.copyOf(keyChars, nChars), keyOffsets.toArray(),
+                    postingOffsets.toArray(), postings.toArray(), features);
+        }
+    }
+
+    /**
+     * A list followed by features appended by merges.  Merges copy the appended features rather than nesting lists.
+     */
+    static class AppendedList extends AbstractList<Feature> {
+
+        final List<? extends Feature> head;
+        final List<Feature> tail;
+
+        AppendedList(List<? extends Feature> head, List<Feature> tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+
+        @Override
+        public Feature get(int index) {
+            int headSize = head.size();
+            return index < headSize ? head.get(index) : tail.get(index - headSize);
+        }
+
+        @Override
+        public int size() {
+            return head.size() + tail.size();
+        }
+    }
+}
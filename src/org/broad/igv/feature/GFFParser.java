@@ -26,6 +26,7 @@ import org.broad.igv.ui.color.ColorUtilities;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.StringUtils;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.tribble.Feature;
 
 import java.io.*;
@@ -191,6 +192,7 @@ public class GFFParser implements FeatureParser {
         List<org.broad.tribble.Feature> features = new ArrayList();
         String line = null;
         int lineNumber = 0;
+        FieldTokenizer tokens = new FieldTokenizer(false, true);
         try {
 
             genome = GenomeManager.getInstance().getCurrentGenome();
@@ -232,8 +234,7 @@ public class GFFParser implements FeatureParser {
                     continue;
                 }
 
-                String[] tokens = Globals.tabPattern.split(line, -1);
-                int nTokens = tokens.length;
+                int nTokens = tokens.tokenize(line);
 
                 // GFF files have 9 tokens
                 if (nTokens < 9) {
@@ -246,33 +247,34 @@ public class GFFParser implements FeatureParser {
                 }
 
                 // The type
-                String featureType = new String(tokens[2].trim());
+                String featureType = tokens.getString(2).trim();
 
                 if (ignoredTypes.contains(featureType)) {
                     continue;
                 }
 
-                String chromosome = genome == null ? tokens[0] : genome.getChromosomeAlias(tokens[0]);
+                String chrToken = tokens.getString(0);
+                String chromosome = genome == null ? chrToken : genome.getChromosomeAlias(chrToken);
 
                 // GFF coordinates are 1-based inclusive (length = end - start + 1)
                 // IGV (UCSC) coordinates are 0-based exclusive.  Adjust start and end accordingly
                 int start;
                 int end;
                 try {
-                    start = Integer.parseInt(tokens[3]) - 1;
+                    start = tokens.getInt(3) - 1;
                 } catch (NumberFormatException ne) {
                     throw new ParserException("Column 4 must contain a numeric value", lineNumber, line);
                 }
 
                 try {
-                    end = Integer.parseInt(tokens[4]);
+                    end = tokens.getInt(4);
                 } catch (NumberFormatException ne) {
                     throw new ParserException("Column 5 must contain a numeric value", lineNumber, line);
                 }
 
-                Strand strand = convertStrand(tokens[6]);
+                Strand strand = convertStrand(tokens.getString(6));
 
-                String attributeString = tokens[8];
+                String attributeString = tokens.getString(8);
 
                 LinkedHashMap<String, String> attributes = new LinkedHashMap();
                 //attributes.put("Type", featureType);
@@ -297,7 +299,7 @@ public class GFFParser implements FeatureParser {
                         parentIds[0] != null && parentIds[0].length() > 0 && !parentIds[0].equals(".")) {
                     String name = getName(attributes);
                     int phase = -1;
-                    String phaseString = tokens[7].trim();
+                    String phaseString = tokens.getString(7).trim();
                     if (!phaseString.equals(".")) {
                         try {
                             phase = Integer.parseInt(phaseString);
@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature.genome;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.Globals;
+import org.broad.igv.data.DataTile;
+import org.broad.igv.feature.BasicFeature;
+import org.broad.igv.feature.BinaryFeatureCodec;
+import org.broad.igv.feature.Cytoband;
+import org.broad.igv.feature.FeatureDB;
+import org.broad.igv.feature.FeatureNameIndex;
+import org.broad.igv.track.FeatureCollectionSource;
+import org.broad.tribble.Feature;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A compiled snapshot of the parts of a .genome archive that are otherwise parsed from text on every load:  the
+ * cytobands,  from which chromosomes are defined for non-fasta genomes,  the chromosome aliases,  and the gene
+ * annotation sorted by chromosome and start,  with an index of the gene names.  The snapshot is written to the genome
+ * cache directory on the first load of an archive,  and is stale once the archive changes.  Genes that cannot be
+ * encoded are recorded as such,  so the snapshot is not rewritten on every load.
+ * <p/>
+ * Later loads read the file into memory,  the file is not kept open or mapped so it can be deleted or replaced at
+ * any time.  Cytobands and aliases are small and read at once,  the genes of a chromosome are decoded on first
+ * access.  The whole genome view of the gene track is stored with the genes,  so the gene track is created without
+ * decoding any chromosome,  and the name index refers to genes by their position in the cached blocks.
+ */
+public class GenomeCache {
+
+    private static Logger log = Logger.getLogger(GenomeCache.class);
+
+    static final int MAGIC = 0x49475643;  // "IGVC"
+    static final int VERSION = 2;
+
+    static final String CACHE_DIRECTORY = "compiled";
+    static final String CACHE_EXTENSION = ".cache";
+
+    // Gene block counts that mean there are no genes
+    private static final int NO_GENES = -1;
+    private static final int GENES_NOT_CACHEABLE = -2;
+
+    private LinkedHashMap<String, List<Cytoband>> cytobands;
+    private Map<String, String> aliases;
+    private Map<String, List<Feature>> genes;
+    private List<Feature> genomeGenes;
+    private DataTile genomeCoverage;
+    private FeatureNameIndex nameIndex;
+    private boolean genesNotCacheable;
+
+    private GenomeCache() {
+    }
+
+    /**
+     * Return the cache file for the archive.  The name includes a hash of the archive path,  so archives of the
+     * same name in different directories are cached separately.
+     *
+     * @param archiveFile
+     * @return
+     */
+    public static File getCacheFile(File archiveFile) {
+        File directory = new File(DirectoryManager.getGenomeCacheDirectory(), CACHE_DIRECTORY);
+        String path = archiveFile.getAbsolutePath();
+        return new File(directory, archiveFile.getName() + "_" + Integer.toHexString(path.hashCode()) + CACHE_EXTENSION);
+    }
+
+    /**
+     * Delete all cache files
+     */
+    public static void clear() {
+        File directory = new File(DirectoryManager.getGenomeCacheDirectory(), CACHE_DIRECTORY);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(CACHE_EXTENSION)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the cache of the archive.  Returns null if there is none,  or it is stale or cannot be read.
+     *
+     * @param archiveFile
+     * @return
+     */
+    public static GenomeCache read(File archiveFile) {
+        File cacheFile = getCacheFile(archiveFile);
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(cacheFile, "r");
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            raf.close();
+            raf = null;
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            String path = BinaryFeatureCodec.readString(buffer);
+            long length = buffer.getLong();
+            long lastModified = buffer.getLong();
+            if (!archiveFile.getAbsolutePath().equals(path) || archiveFile.length() != length ||
+                    archiveFile.lastModified() != lastModified) {
+                log.info("Genome cache is out of date: " + cacheFile.getAbsolutePath());
+                return null;
+            }
+
+            GenomeCache cache = new GenomeCache();
+            cache.readCytobands(buffer);
+            cache.readAliases(buffer);
+            cache.readGenes(buffer);
+            return cache;
+        } catch (Exception e) {
+            log.error("Error reading genome cache: " + cacheFile.getAbsolutePath(), e);
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    log.error("Error closing genome cache", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the cache of the archive.  Genes are written only if all can be encoded,  otherwise the cache records
+     * that they are not cacheable.  Errors are logged and leave no cache.
+     *
+     * @param archiveFile
+     * @param genome      the genome,  genes on other chromosomes are not in the name index
+     * @param cytobands   cytobands by chromosome,  or null
+     * @param aliases     chromosome aliases,  or null
+     * @param geneSource  source of the gene track,  or null
+     */
+    public static void write(File archiveFile, Genome genome, Map<String, List<Cytoband>> cytobands,
+                             Map<String, String> aliases, FeatureCollectionSource geneSource) {
+
+        File cacheFile = getCacheFile(archiveFile);
+        File tmpFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            BinaryFeatureCodec.writeString(out, archiveFile.getAbsolutePath());
+            out.writeLong(archiveFile.length());
+            out.writeLong(archiveFile.lastModified());
+            writeCytobands(out, cytobands);
+            writeAliases(out, aliases);
+            writeGenes(out, genome, geneSource);
+            out.close();
+            out = null;
+
+            cacheFile.delete();
+            if (!tmpFile.renameTo(cacheFile)) {
+                log.error("Could not write genome cache: " + cacheFile.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            log.error("Error writing genome cache: " + cacheFile.getAbsolutePath(), e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    log.error("Error closing genome cache", e);
+                }
+            }
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * @return cytobands by chromosome,  in file order,  or null if the archive has none
+     */
+    public LinkedHashMap<String, List<Cytoband>> getCytobands() {
+        return cytobands;
+    }
+
+    /**
+     * @return chromosome aliases,  or null if the archive has none
+     */
+    public Map<String, String> getAliases() {
+        return aliases;
+    }
+
+    public boolean hasGenes() {
+        return genes != null;
+    }
+
+    /**
+     * @return true if the archive's genes were loaded when the cache was written,  but could not be cached
+     */
+    public boolean hasUncacheableGenes() {
+        return genesNotCacheable;
+    }
+
+    /**
+     * Create a source for the gene track.  The genes of a chromosome are decoded when first requested.
+     *
+     * @param genome
+     * @return
+     */
+    public FeatureCollectionSource createGeneSource(Genome genome) {
+        return new FeatureCollectionSource(genes, genomeGenes, genomeCoverage, genome);
+    }
+
+    /**
+     * @return the index of the gene names,  or null if there are no genes
+     */
+    public FeatureNameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    private static void writeCytobands(DataOutputStream out, Map<String, List<Cytoband>> cytobands) throws IOException {
+        out.writeInt(cytobands == null ? -1 : cytobands.size());
+        if (cytobands != null) {
+            for (Map.Entry<String, List<Cytoband>> entry : cytobands.entrySet()) {
+                BinaryFeatureCodec.writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Cytoband band : entry.getValue()) {
+                    BinaryFeatureCodec.writeString(out, band.getName());
+                    out.writeInt(band.getStart());
+                    out.writeInt(band.getEnd());
+                    out.writeChar(band.getType());
+                    out.writeShort(band.getStain());
+                }
+            }
+        }
+    }
+
+    private void readCytobands(ByteBuffer buffer) {
+        int nChrs = buffer.getInt();
+        if (nChrs < 0) {
+            return;
+        }
+        cytobands = new LinkedHashMap<String, List<Cytoband>>();
+        for (int c = 0; c < nChrs; c++) {
+            String chr = BinaryFeatureCodec.readString(buffer);
+            int nBands = buffer.getInt();
+            List<Cytoband> bands = new ArrayList<Cytoband>(nBands);
+            for (int i = 0; i < nBands; i++) {
+                Cytoband band = new Cytoband(chr);
+                band.setName(BinaryFeatureCodec.readString(buffer));
+                band.setStart(buffer.getInt());
+                band.setEnd(buffer.getInt());
+                band.setType(buffer.getChar());
+                band.setStain(buffer.getShort());
+                bands.add(band);
+            }
+            cytobands.put(chr, bands);
+        }
+    }
+
+    private static void writeAliases(DataOutputStream out, Map<String, String> aliases) throws IOException {
+        out.writeInt(aliases == null ? -1 : aliases.size());
+        if (aliases != null) {
+            for (Map.Entry<String, String> entry : aliases.entrySet()) {
+                BinaryFeatureCodec.writeString(out, entry.getKey());
+                BinaryFeatureCodec.writeString(out, entry.getValue());
+            }
+        }
+    }
+
+    private void readAliases(ByteBuffer buffer) {
+        int n = buffer.getInt();
+        if (n < 0) {
+            return;
+        }
+        aliases = new HashMap<String, String>();
+        for (int i = 0; i < n; i++) {
+            String key = BinaryFeatureCodec.readString(buffer);
+            aliases.put(key, BinaryFeatureCodec.readString(buffer));
+        }
+    }
+
+    /**
+     * Write the genes as a directory of chromosome blocks,  the whole genome coverage,  the blocks,  and the name
+     * index.  The whole genome features are the block of Globals.CHR_ALL,  which is not in the name index.
+     */
+    private static void writeGenes(DataOutputStream out, Genome genome, FeatureCollectionSource geneSource)
+            throws IOException {
+
+        if (geneSource == null) {
+            out.writeInt(NO_GENES);
+            return;
+        }
+        Map<String, byte[]> blocks = encodeGenes(geneSource);
+        if (blocks == null) {
+            out.writeInt(GENES_NOT_CACHEABLE);
+            return;
+        }
+        out.writeInt(blocks.size());
+
+        for (Map.Entry<String, byte[]> entry : blocks.entrySet()) {
+            String chr = entry.getKey();
+            BinaryFeatureCodec.writeString(out, chr);
+            out.writeInt(geneSource.getFeatures(chr).size());
+            out.writeInt(entry.getValue().length);
+        }
+
+        DataTile coverage = geneSource.getGenomeCoverage();
+        int nBins = coverage == null ? -1 : coverage.getStartLocations().length;
+        out.writeInt(nBins);
+        for (int i = 0; i < nBins; i++) {
+            out.writeInt(coverage.getStartLocations()[i]);
+            out.writeInt(coverage.getEndLocations()[i]);
+            out.writeFloat(coverage.getValues()[i]);
+        }
+
+        List<Feature> table = new ArrayList<Feature>();
+        for (Map.Entry<String, byte[]> entry : blocks.entrySet()) {
+            out.write(entry.getValue());
+            if (!entry.getKey().equals(Globals.CHR_ALL)) {
+                table.addAll(geneSource.getFeatures(entry.getKey()));
+            }
+        }
+        FeatureDB.createIndex(table, genome).write(out);
+    }
+
+    private static Map<String, byte[]> encodeGenes(FeatureCollectionSource geneSource) throws IOException {
+        Map<String, byte[]> blocks = new LinkedHashMap<String, byte[]>();
+        for (String chr : geneSource.getChrs()) {
+            List<Feature> features = geneSource.getFeatures(chr);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream blockOut = new DataOutputStream(bytes);
+            for (Feature feature : features) {
+                if (!BinaryFeatureCodec.canEncode(feature)) {
+                    log.info("Genes of type " + (feature == null ? null : feature.getClass().getName()) +
+                            " are not cached");
+                    return null;
+                }
+                BinaryFeatureCodec.encode((BasicFeature) feature, blockOut);
+            }
+            blockOut.flush();
+            blocks.put(chr, bytes.toByteArray());
+        }
+        return blocks;
+    }
+
+    private void readGenes(ByteBuffer buffer) {
+        int nBlocks = buffer.getInt();
+        if (nBlocks < 0) {
+            genesNotCacheable = nBlocks == GENES_NOT_CACHEABLE;
+            return;
+        }
+
+        String[] chrs = new String[nBlocks];
+        int[] counts = new int[nBlocks];
+        int[] lengths = new int[nBlocks];
+        for (int i = 0; i < nBlocks; i++) {
+            chrs[i] = BinaryFeatureCodec.readString(buffer);
+            counts[i] = buffer.getInt();
+            lengths[i] = buffer.getInt();
+        }
+
+        int nBins = buffer.getInt();
+        if (nBins >= 0) {
+            int[] starts = new int[nBins];
+            int[] ends = new int[nBins];
+            float[] values = new float[nBins];
+            for (int i = 0; i < nBins; i++) {
+                starts[i] = buffer.getInt();
+                ends[i] = buffer.getInt();
+                values[i] = buffer.getFloat();
+            }
+            genomeCoverage = new DataTile(starts, ends, values, null);
+        }
+
+        genes = new LinkedHashMap<String, List<Feature>>();
+        int position = buffer.position();
+        for (int i = 0; i < nBlocks; i++) {
+            GeneBlock block = new GeneBlock(chrs[i], counts[i], buffer, position);
+            position += lengths[i];
+            if (chrs[i].equals(Globals.CHR_ALL)) {
+                genomeGenes = block;
+            } else {
+                genes.put(chrs[i], block);
+            }
+        }
+        if (genomeGenes == null) {
+            genomeGenes = new ArrayList<Feature>();
+        }
+
+        buffer.position(position);
+        nameIndex = FeatureNameIndex.read(buffer, new GeneTable(new ArrayList<List<Feature>>(genes.values())));
+    }
+
+    /**
+     * The genes of one chromosome,  decoded from the cache file contents on first access
+     */
+    static class GeneBlock extends AbstractList<Feature> {
+
+        final String chr;
+        final int size;
+        final ByteBuffer buffer;
+        final int offset;
+        private List<Feature> features;
+
+        GeneBlock(String chr, int size, ByteBuffer buffer, int offset) {
+            this.chr = chr;
+            this.size = size;
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        private synchronized List<Feature> getFeatures() {
+            if (features == null) {
+                ByteBuffer block = buffer.duplicate();
+                block.position(offset);
+                List<Feature> decoded = new ArrayList<Feature>(size);
+                for (int i = 0; i < size; i++) {
+                    decoded.add(BinaryFeatureCodec.decode(chr, block));
+                }
+                features = decoded;
+            }
+            return features;
+        }
+
+        @Override
+        public Feature get(int index) {
+            return getFeatures().get(index);
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            return getFeatures().iterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The genes of all chromosomes,  in block order,  as one list.  Only the block of a requested gene is decoded.
+     */
+    static class GeneTable extends AbstractList<Feature> {
+
+        final List<List<Feature>> blocks;
+        final int[] blockStarts;
+
+        GeneTable(List<List<Feature>> blocks) {
+            this.blocks = blocks;
+            blockStarts = new int[blocks.size() + 1];
+            for (int i = 0; i < blocks.size(); i++) {
+                blockStarts[i + 1] = blockStarts[i] + blocks.get(i).size();
+            }
+        }
+
+        @Override
+        public Feature get(int index) {
+            int b = Arrays.binarySearch(blockStarts, index);
+            if (b < 0) {
+                b = -b - 2;
+            } else {
+                // Skip empty blocks
+                while (b < blocks.size() && blocks.get(b).isEmpty()) {
+                    b++;
+                }
+            }
+            return blocks.get(b).get(index - blockStarts[b]);
+        }
+
+        @Override
+        public int size() {
+            return blockStarts[blocks.size()];
+        }
+    }
+}
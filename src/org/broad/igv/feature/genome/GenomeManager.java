@@ -29,15 +29,23 @@ import org.apache.log4j.Logger;
 import org.broad.igv.DirectoryManager;
 import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
+import org.broad.igv.feature.AbstractFeatureParser;
 import org.broad.igv.feature.CytoBandFileParser;
 import org.broad.igv.feature.Cytoband;
+import org.broad.igv.feature.FeatureDB;
+import org.broad.igv.feature.FeatureParser;
+import org.broad.igv.feature.GFFParser;
+import org.broad.igv.track.FeatureCollectionSource;
+import org.broad.igv.track.TrackProperties;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.ConfirmDialog;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.ui.util.ProgressMonitor;
 import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.HttpUtils;
+import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.Utilities;
+import org.broad.tribble.Feature;
 
 import java.io.*;
 import java.net.MalformedURLException;
@@ -111,7 +119,10 @@ public class GenomeManager {
                 File archiveFile = getArchiveFile(genomePath);
 
                 GenomeDescriptor genomeDescriptor = parseGenomeArchiveFile(archiveFile);
-                Map<String, String> aliases = loadAliasFile(genomeDescriptor);
+
+                // Cytobands,  aliases and genes are read from the compiled cache when it is current
+                GenomeCache cache = GenomeCache.read(archiveFile);
+                Map<String, String> aliases = cache != null ? cache.getAliases() : loadAliasFile(genomeDescriptor);
 
                 final String id = genomeDescriptor.getId();
                 final String displayName = genomeDescriptor.getName();
@@ -124,8 +135,9 @@ public class GenomeManager {
 
                 log.info("Genome loaded.  id= " + id);
 
+                LinkedHashMap<String, List<Cytoband>> cytobandMap = null;
                 if (genomeDescriptor.hasCytobands()) {
-                    LinkedHashMap<String, List<Cytoband>> cytobandMap = loadCytobandFile(genomeDescriptor);
+                    cytobandMap = cache != null ? cache.getCytobands() : loadCytobandFile(genomeDescriptor);
                     if (!isFasta) {
                         newGenome.generateChromosomeMap(cytobandMap, genomeDescriptor.isChromosomesAreOrdered());
                     }
@@ -134,8 +146,22 @@ public class GenomeManager {
 
 
                 if (aliases != null) newGenome.addChrAliases(aliases);
+
+                FeatureCollectionSource geneSource = null;
                 if (IGV.hasInstance() && !Globals.isHeadless()) {
-                    updateGeneTrack(genomeDescriptor);
+                    FeatureDB.clearFeatures();
+                    if (cache != null && cache.hasGenes()) {
+                        IGV.getInstance().createGeneTrack(newGenome, cache.createGeneSource(newGenome), null,
+                                genomeDescriptor.getGeneTrackName(), genomeDescriptor.getUrl());
+                        FeatureDB.setIndex(cache.getNameIndex());
+                    } else {
+                        geneSource = updateGeneTrack(genomeDescriptor);
+                    }
+                }
+
+                // Rewrite a current cache only to add genes it lacks,  unless they are known not to be cacheable
+                if (cache == null || (geneSource != null && !cache.hasUncacheableGenes())) {
+                    GenomeCache.write(archiveFile, newGenome, cytobandMap, aliases, geneSource);
                 }
 
                 genomeDescriptor.close();
@@ -180,6 +206,7 @@ public class GenomeManager {
 
                 log.info("Genome loaded.  id= " + id);
                 if (!Globals.isHeadless()) {
+                    FeatureDB.clearFeatures();
                     IGV.getInstance().createGeneTrack(currentGenome, null, null, null, null);
                 }
             }
@@ -226,14 +253,40 @@ public class GenomeManager {
         return archiveFile;
     }
 
-    private void updateGeneTrack(GenomeDescriptor genomeDescriptor) throws IOException {
+    /**
+     * Parse the gene file of the genome descriptor and create the gene track.
+     *
+     * @param genomeDescriptor
+     * @return the source of the gene track if it can be cached,  i.e. the gene file has no track line,  or null
+     * @throws IOException
+     */
+    private FeatureCollectionSource updateGeneTrack(GenomeDescriptor genomeDescriptor) throws IOException {
         InputStream geneStream = null;
         try {
             geneStream = genomeDescriptor.getGeneStream();
-            BufferedReader reader = geneStream == null ? null : new BufferedReader(new InputStreamReader(geneStream));
-            IGV.getInstance().createGeneTrack(currentGenome, reader,
-                    genomeDescriptor.getGeneFileName(), genomeDescriptor.getGeneTrackName(),
-                    genomeDescriptor.getUrl());
+            FeatureCollectionSource geneSource = null;
+            TrackProperties properties = null;
+            if (geneStream != null) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(geneStream));
+                String geneFileName = genomeDescriptor.getGeneFileName();
+                FeatureParser parser;
+                if (GFFParser.isGFF(geneFileName)) {
+                    parser = new GFFParser(geneFileName);
+                } else {
+                    parser = AbstractFeatureParser.getInstanceFor(new ResourceLocator(geneFileName), currentGenome);
+                }
+                if (parser == null) {
+                    MessageUtils.showMessage("ERROR: Unrecognized annotation file format: " + geneFileName +
+                            "<br>Annotations for genome: " + currentGenome.getId() + " will not be loaded.");
+                } else {
+                    List<Feature> genes = parser.loadFeatures(reader, currentGenome);
+                    geneSource = new FeatureCollectionSource(genes, currentGenome);
+                    properties = parser.getTrackProperties();
+                }
+            }
+            IGV.getInstance().createGeneTrack(currentGenome, geneSource, properties,
+                    genomeDescriptor.getGeneTrackName(), genomeDescriptor.getUrl());
+            return properties == null ? geneSource : null;
         } finally {
             if (geneStream != null) geneStream.close();
         }
@@ -365,116 +418,103 @@ public class GenomeManager {
         Map<String, ZipEntry> zipEntries = new HashMap();
         ZipFile zipFile = new ZipFile(f);
 
-        FileInputStream fileInputStream = null;
-        try {
-            fileInputStream = new FileInputStream(f);
-            ZipInputStream zipInputStream = new ZipInputStream(fileInputStream);
-            ZipEntry zipEntry = zipInputStream.getNextEntry();
-
-            while (zipEntry != null) {
-                String zipEntryName = zipEntry.getName();
-                zipEntries.put(zipEntryName, zipEntry);
-
-                if (zipEntryName.equalsIgnoreCase(Globals.GENOME_ARCHIVE_PROPERTY_FILE_NAME)) {
-                    InputStream inputStream = zipFile.getInputStream(zipEntry);
-                    Properties properties = new Properties();
-                    properties.load(inputStream);
+        // Entries are listed from the zip central directory,  without reading through the compressed data
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry zipEntry = entries.nextElement();
+            String zipEntryName = zipEntry.getName();
+            zipEntries.put(zipEntryName, zipEntry);
+
+            if (zipEntryName.equalsIgnoreCase(Globals.GENOME_ARCHIVE_PROPERTY_FILE_NAME)) {
+                InputStream inputStream = zipFile.getInputStream(zipEntry);
+                Properties properties = new Properties();
+                properties.load(inputStream);
+
+                String cytobandZipEntryName = properties.getProperty(Globals.GENOME_ARCHIVE_CYTOBAND_FILE_KEY);
+                String geneFileName = properties.getProperty(Globals.GENOME_ARCHIVE_GENE_FILE_KEY);
+                String chrAliasFileName = properties.getProperty(Globals.GENOME_CHR_ALIAS_FILE_KEY);
+                String sequenceLocation = properties.getProperty(Globals.GENOME_ARCHIVE_SEQUENCE_FILE_LOCATION_KEY);
+
+                if ((sequenceLocation != null) && !HttpUtils.getInstance().isURL(sequenceLocation)) {
+                    File sequenceFolder = null;
+                    // Relative or absolute location?
+                    if (sequenceLocation.startsWith("/") || sequenceLocation.startsWith("\\")) {
+                        sequenceFolder = new File(sequenceLocation);
+                    } else {
+                        sequenceFolder = new File(f.getParent(), sequenceLocation);
 
-                    String cytobandZipEntryName = properties.getProperty(Globals.GENOME_ARCHIVE_CYTOBAND_FILE_KEY);
-                    String geneFileName = properties.getProperty(Globals.GENOME_ARCHIVE_GENE_FILE_KEY);
-                    String chrAliasFileName = properties.getProperty(Globals.GENOME_CHR_ALIAS_FILE_KEY);
-                    String sequenceLocation = properties.getProperty(Globals.GENOME_ARCHIVE_SEQUENCE_FILE_LOCATION_KEY);
-
-                    if ((sequenceLocation != null) && !HttpUtils.getInstance().isURL(sequenceLocation)) {
-                        File sequenceFolder = null;
-                        // Relative or absolute location?
-                        if (sequenceLocation.startsWith("/") || sequenceLocation.startsWith("\\")) {
-                            sequenceFolder = new File(sequenceLocation);
-                        } else {
-                            sequenceFolder = new File(f.getParent(), sequenceLocation);
-
-                        }
-                        sequenceLocation = sequenceFolder.getCanonicalPath();
-                        sequenceLocation.replace('\\', '/');
                     }
+                    sequenceLocation = sequenceFolder.getCanonicalPath();
+                    sequenceLocation.replace('\\', '/');
+                }
 
-                    boolean chrNamesAltered = false;
-                    String chrNamesAlteredString = properties.getProperty("filenamesAltered");
-                    if (chrNamesAlteredString != null) {
-                        try {
-                            chrNamesAltered = Boolean.parseBoolean(chrNamesAlteredString);
-                        } catch (Exception e) {
-                            log.error("Error parsing chrNamesAlteredString string: " + chrNamesAlteredString);
-                        }
+                boolean chrNamesAltered = false;
+                String chrNamesAlteredString = properties.getProperty("filenamesAltered");
+                if (chrNamesAlteredString != null) {
+                    try {
+                        chrNamesAltered = Boolean.parseBoolean(chrNamesAlteredString);
+                    } catch (Exception e) {
+                        log.error("Error parsing chrNamesAlteredString string: " + chrNamesAlteredString);
                     }
+                }
 
-                    boolean fasta = false;
-                    String fastaString = properties.getProperty("fasta");
-                    if (fastaString != null) {
-                        try {
-                            fasta = Boolean.parseBoolean(fastaString);
-                        } catch (Exception e) {
-                            log.error("Error parsing fastaString string: " + fastaString);
-                        }
+                boolean fasta = false;
+                String fastaString = properties.getProperty("fasta");
+                if (fastaString != null) {
+                    try {
+                        fasta = Boolean.parseBoolean(fastaString);
+                    } catch (Exception e) {
+                        log.error("Error parsing fastaString string: " + fastaString);
                     }
+                }
 
 
-                    boolean fastaDirectory = false;
-                    String fastaDirectoryString = properties.getProperty("fastaDirectory");
-                    if (fastaDirectoryString != null) {
-                        try {
-                            fastaDirectory = Boolean.parseBoolean(fastaString);
-                        } catch (Exception e) {
-                            log.error("Error parsing fastaDirectoryString string: " + fastaDirectoryString);
-                        }
-                    }
-
-                    boolean chromosomesAreOrdered = false;
-                    String tmp = properties.getProperty(Globals.GENOME_ORDERED_KEY);
-                    if (tmp != null) {
-                        try {
-                            chromosomesAreOrdered = Boolean.parseBoolean(tmp);
-                        } catch (Exception e) {
-                            log.error("Error parsing ordered string: " + tmp);
-                        }
+                boolean fastaDirectory = false;
+                String fastaDirectoryString = properties.getProperty("fastaDirectory");
+                if (fastaDirectoryString != null) {
+                    try {
+                        fastaDirectory = Boolean.parseBoolean(fastaString);
+                    } catch (Exception e) {
+                        log.error("Error parsing fastaDirectoryString string: " + fastaDirectoryString);
                     }
+                }
 
-                    String fastaFileNameString = properties.getProperty("fastaFiles");
-
-                    String url = properties.getProperty(Globals.GENOME_URL_KEY);
-
-
-                    // The new descriptor
-                    genomeDescriptor = new GenomeZipDescriptor(
-                            properties.getProperty(Globals.GENOME_ARCHIVE_NAME_KEY),
-                            chrNamesAltered,
-                            properties.getProperty(Globals.GENOME_ARCHIVE_ID_KEY),
-                            cytobandZipEntryName,
-                            geneFileName,
-                            chrAliasFileName,
-                            properties.getProperty(Globals.GENOME_GENETRACK_NAME, "Gene"),
-                            sequenceLocation,
-                            zipFile,
-                            zipEntries,
-                            chromosomesAreOrdered,
-                            fasta,
-                            fastaDirectory,
-                            fastaFileNameString);
-
-                    if (url != null) {
-                        genomeDescriptor.setUrl(url);
+                boolean chromosomesAreOrdered = false;
+                String tmp = properties.getProperty(Globals.GENOME_ORDERED_KEY);
+                if (tmp != null) {
+                    try {
+                        chromosomesAreOrdered = Boolean.parseBoolean(tmp);
+                    } catch (Exception e) {
+                        log.error("Error parsing ordered string: " + tmp);
                     }
-
                 }
-                zipEntry = zipInputStream.getNextEntry();
-            }
-        } finally {
-            try {
-                if (fileInputStream != null) {
-                    fileInputStream.close();
+
+                String fastaFileNameString = properties.getProperty("fastaFiles");
+
+                String url = properties.getProperty(Globals.GENOME_URL_KEY);
+
+
+                // The new descriptor
+                genomeDescriptor = new GenomeZipDescriptor(
+                        properties.getProperty(Globals.GENOME_ARCHIVE_NAME_KEY),
+                        chrNamesAltered,
+                        properties.getProperty(Globals.GENOME_ARCHIVE_ID_KEY),
+                        cytobandZipEntryName,
+                        geneFileName,
+                        chrAliasFileName,
+                        properties.getProperty(Globals.GENOME_GENETRACK_NAME, "Gene"),
+                        sequenceLocation,
+                        zipFile,
+                        zipEntries,
+                        chromosomesAreOrdered,
+                        fasta,
+                        fastaDirectory,
+                        fastaFileNameString);
+
+                if (url != null) {
+                    genomeDescriptor.setUrl(url);
                 }
-            } catch (IOException ex) {
-                log.warn("Error closing imported genome zip stream!", ex);
+
             }
         }
         return genomeDescriptor;
@@ -639,6 +679,8 @@ public class GenomeManager {
      */
     public void clearGenomeCache() {
 
+        GenomeCache.clear();
+
         File[] files = DirectoryManager.getGenomeCacheDirectory().listFiles();
         for (File file : files) {
             if (file.getName().toLowerCase().endsWith(Globals.GENOME_FILE_EXTENSION)) {
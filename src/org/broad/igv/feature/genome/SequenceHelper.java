@@ -23,6 +23,7 @@ package org.broad.igv.feature.genome;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.util.*;
+import org.broad.igv.util.stats.Metrics;
 
 import java.util.*;
 
@@ -32,6 +33,10 @@ import java.util.*;
 public class SequenceHelper {
 
     private static Logger log = Logger.getLogger(SequenceHelper.class);
+
+    private static final Metrics.Counter tileHits = Metrics.counter("sequence.tile.hits");
+    private static final Metrics.Counter tileMisses = Metrics.counter("sequence.tile.misses");
+    private static final Metrics.Timer readTimer = Metrics.timer("sequence.read");
     private static boolean cacheSequences = true;
     private static int tileSize = 1000000;
 
@@ -195,9 +200,14 @@ public class SequenceHelper {
                 return null;
             }
 
+            tileMisses.inc();
+            long t0 = readTimer.start();
             byte[] seq = sequence.readSequence(chr, start, end);
+            readTimer.stop(t0);
             tile = new SequenceTile(start, seq);
             sequenceCache.put(key, tile);
+        } else {
+            tileHits.inc();
         }
 
         return tile;
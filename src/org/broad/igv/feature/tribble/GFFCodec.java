@@ -12,7 +12,6 @@
 package org.broad.igv.feature.tribble;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.feature.BasicFeature;
 import org.broad.igv.feature.Strand;
@@ -21,6 +20,7 @@ import org.broad.igv.track.TrackProperties;
 import org.broad.igv.ui.color.ColorUtilities;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.StringUtils;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.tribble.Feature;
 import org.broad.tribble.exception.CodecLineParsingException;
 import org.broad.tribble.readers.LineReader;
@@ -70,6 +70,8 @@ public class GFFCodec implements org.broad.tribble.FeatureCodec {
     Helper helper;
     Genome genome;
 
+    private final ThreadLocal<FieldTokenizer> tokenizer = FieldTokenizer.perThread(false, true);
+
     public GFFCodec(Genome genome) {
         // Assume GFF2 until shown otherwise
         helper = new GFF2Helper();
@@ -156,8 +158,8 @@ public class GFFCodec implements org.broad.tribble.FeatureCodec {
             return null;
         }
 
-        String[] tokens = Globals.tabPattern.split(line, -1);
-        int nTokens = tokens.length;
+        FieldTokenizer tokens = tokenizer.get();
+        int nTokens = tokens.tokenize(line);
 
         // GFF files have 9 tokens
         if (nTokens < 9) {
@@ -165,10 +167,10 @@ public class GFFCodec implements org.broad.tribble.FeatureCodec {
         }
 
         // The type
-        String featureType = new String(tokens[2].trim());
+        String featureType = tokens.getString(2).trim();
 
 
-        String chrToken = tokens[0];  //genome.getChromosomeAlias(tokens[0]);
+        String chrToken = tokens.getString(0);
         String chromosome = genome == null ? chrToken : genome.getChromosomeAlias(chrToken);
 
         // GFF coordinates are 1-based inclusive (length = end - start + 1)
@@ -176,20 +178,20 @@ public class GFFCodec implements org.broad.tribble.FeatureCodec {
         int start;
         int end;
         try {
-            start = Integer.parseInt(tokens[3]) - 1;
+            start = tokens.getInt(3) - 1;
         } catch (NumberFormatException ne) {
             throw new DataLoadException("Column 4 must contain a numeric value", line);
         }
 
         try {
-            end = Integer.parseInt(tokens[4]);
+            end = tokens.getInt(4);
         } catch (NumberFormatException ne) {
             throw new DataLoadException("Column 5 must contain a numeric value", line);
         }
 
-        Strand strand = convertStrand(tokens[6]);
+        Strand strand = convertStrand(tokens.getString(6));
 
-        String attributeString = tokens[8];
+        String attributeString = tokens.getString(8);
 
         LinkedHashMap<String, String> attributes = new LinkedHashMap();
         //attributes.put("Type", featureType);
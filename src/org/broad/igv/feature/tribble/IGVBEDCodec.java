@@ -11,10 +11,10 @@
 
 package org.broad.igv.feature.tribble;
 
-import org.broad.igv.Globals;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.ui.color.ColorUtilities;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.tribble.Feature;
 import org.broad.tribble.util.ParsingUtils;
 
@@ -39,6 +39,8 @@ public class IGVBEDCodec extends UCSCCodec {
 
     Genome genome;
 
+    private final ThreadLocal<FieldTokenizer> tokenizer = FieldTokenizer.perThread(true, false);
+
     public IGVBEDCodec() {
         this.genome = null;
     }
@@ -56,7 +58,13 @@ public class IGVBEDCodec extends UCSCCodec {
     }
 
     public BasicFeature decode(String[] tokens) {
-        int tokenCount = tokens.length;
+        FieldTokenizer fields = tokenizer.get();
+        fields.setFields(tokens);
+        return decode(fields);
+    }
+
+    private BasicFeature decode(FieldTokenizer tokens) {
+        int tokenCount = tokens.getCount();
 
         // The first 3 columns are non optional for BED.  We will relax this
         // and only require 2.
@@ -65,15 +73,15 @@ public class IGVBEDCodec extends UCSCCodec {
             return null;
         }
 
-        String c = tokens[0];
+        String c = tokens.getString(0);
         String chr = genome == null ? c : genome.getChromosomeAlias(c);
 
         //BED format, and IGV, use starting element as 0.
-        int start = Integer.parseInt(tokens[1]) - startOffsetValue;
+        int start = tokens.getInt(1) - startOffsetValue;
 
         int end = start + 1;
         if (tokenCount > 2) {
-            end = Integer.parseInt(tokens[2]);
+            end = tokens.getInt(2);
         }
 
         BasicFeature feature = spliceJunctions ?
@@ -87,7 +95,7 @@ public class IGVBEDCodec extends UCSCCodec {
         if (tokenCount > 3) {
             if (gffTags) {
                 Map<String, String> atts = new LinkedHashMap();
-                tagHelper.parseAttributes(tokens[3], atts);
+                tagHelper.parseAttributes(tokens.getString(3), atts);
                 String name = tagHelper.getName(atts);
                 //if (name == null) {
                 //    name = tokens[3];
@@ -117,7 +125,7 @@ public class IGVBEDCodec extends UCSCCodec {
 
 
             } else {
-                String name = tokens[3].replaceAll("\"", "");
+                String name = tokens.getString(3).replaceAll("\"", "");
                 feature.setName(name);
                 feature.setIdentifier(name);
             }
@@ -126,7 +134,7 @@ public class IGVBEDCodec extends UCSCCodec {
         // Score
         if (tokenCount > 4) {
             try {
-                float score = Float.parseFloat(tokens[4]);
+                float score = tokens.getFloat(4);
                 feature.setScore(score);
                 if (spliceJunctions) {
                     ((SpliceJunctionFeature) feature).setJunctionDepth((int) score);
@@ -142,9 +150,7 @@ public class IGVBEDCodec extends UCSCCodec {
 
         // Strand
         if (tokenCount > 5) {
-            String strandString = tokens[5].trim();
-            char strand = (strandString.length() == 0)
-                    ? ' ' : strandString.charAt(0);
+            char strand = (tokens.length(5) == 0) ? ' ' : tokens.charAt(5, 0);
 
             if (strand == '-') {
                 feature.setStrand(Strand.NEGATIVE);
@@ -157,14 +163,14 @@ public class IGVBEDCodec extends UCSCCodec {
 
         // Thick ends
         if(tokenCount > 7) {
-            feature.setThickStart(Integer.parseInt(tokens[6]) - startOffsetValue);
-            feature.setThickEnd(Integer.parseInt(tokens[7]));
+            feature.setThickStart(tokens.getInt(6) - startOffsetValue);
+            feature.setThickEnd(tokens.getInt(7));
         }
 
 
         // Color
         if (tokenCount > 8) {
-            String colorString = tokens[8];
+            String colorString = tokens.getString(8);
             if (colorString.trim().length() > 0 && !colorString.equals(".")) {
                 feature.setColor(ParsingUtils.parseColor(colorString));
             }
@@ -200,9 +206,9 @@ public class IGVBEDCodec extends UCSCCodec {
             return null;
         }
 
-        String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
-
-        return decode(tokens);
+        FieldTokenizer fields = tokenizer.get();
+        fields.tokenize(nextLine);
+        return decode(fields);
     }
 
     /**
@@ -224,17 +230,17 @@ public class IGVBEDCodec extends UCSCCodec {
     }
 
 
-    private void createExons(int start, String[] tokens, BasicFeature gene, String chr,
+    private void createExons(int start, FieldTokenizer tokens, BasicFeature gene, String chr,
                              Strand strand) throws NumberFormatException {
 
-        int cdStart = Integer.parseInt(tokens[6]) - startOffsetValue;
-        int cdEnd = Integer.parseInt(tokens[7]);
+        int cdStart = tokens.getInt(6) - startOffsetValue;
+        int cdEnd = tokens.getInt(7);
 
-        int exonCount = Integer.parseInt(tokens[9]);
+        int exonCount = tokens.getInt(9);
         String[] exonSizes = new String[exonCount];
         String[] startsBuffer = new String[exonCount];
-        ParsingUtils.split(tokens[10], exonSizes, ',');
-        ParsingUtils.split(tokens[11], startsBuffer, ',');
+        ParsingUtils.split(tokens.getString(10), exonSizes, ',');
+        ParsingUtils.split(tokens.getString(11), startsBuffer, ',');
 
         int exonNumber = (strand == Strand.NEGATIVE ? exonCount : 1);
 
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature.tribble;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.index.BGZFIndex;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.ParallelBlockCompressedInputStream;
+import org.broad.igv.util.stream.SeekablePicardStream;
+import org.broad.tribble.*;
+import org.broad.tribble.readers.BufferedLineReader;
+import org.broad.tribble.readers.LineReader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reader for tabix indexed files,  a replacement for the Tribble TabixFeatureReader that decompresses through
+ * {@link ParallelBlockCompressedInputStream}.  Query results are the same:  lines are selected by the tabix index
+ * and interval rules,  then filtered on the decoded features as Tribble does.
+ */
+public class IGVTabixFeatureReader implements FeatureReader {
+
+    private static Logger log = Logger.getLogger(IGVTabixFeatureReader.class);
+
+    // Tabix preset flag for 0-based (UCSC) coordinates
+    private static final int TI_FLAG_UCSC = 0x10000;
+    private static final int TI_PRESET_GENERIC = 0;
+    private static final int TI_PRESET_SAM = 1;
+    private static final int TI_PRESET_VCF = 2;
+
+    private String path;
+    private FeatureCodec codec;
+    private BGZFIndex index;
+    private Object header;
+
+    public IGVTabixFeatureReader(String path, FeatureCodec codec) throws IOException {
+        this.path = path;
+        this.codec = codec;
+        this.index = BGZFIndex.loadTabixIndex(path + ".tbi");
+        readHeader();
+    }
+
+    private void readHeader() throws IOException {
+        ParallelBlockCompressedInputStream stream = openStream();
+        LineReader reader = new BufferedLineReader(new InputStreamReader(stream));
+        try {
+            header = codec.readHeader(reader);
+        } catch (Exception e) {
+            throw new TribbleException.MalformedFeatureFile("Unable to parse header with error: " + e.getMessage(),
+                    path, e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private ParallelBlockCompressedInputStream openStream() throws IOException {
+        SeekablePicardStream ss = new SeekablePicardStream(IGVSeekableStreamFactory.getStreamFor(path), path);
+        return new ParallelBlockCompressedInputStream(ss);
+    }
+
+    public Object getHeader() {
+        return header;
+    }
+
+    public List<String> getSequenceNames() {
+        return index.getSequenceNames();
+    }
+
+    /**
+     * Return features overlapping the region,  or null if the sequence is not in the index.
+     *
+     * @param chr
+     * @param start
+     * @param end
+     * @return
+     * @throws IOException
+     */
+    public CloseableTribbleIterator query(String chr, int start, int end) throws IOException {
+        int tid = index.getSequenceIndex(chr);
+        if (tid < 0) {
+            return null;
+        }
+        List<BGZFIndex.Chunk> chunks = index.getChunks(tid, start - 1, end);
+        return new FeatureIterator(new TabixLineReader(openStream(), chunks, tid, start - 1, end), start - 1, end);
+    }
+
+    public CloseableTribbleIterator iterator() throws IOException {
+        final ParallelBlockCompressedInputStream stream = openStream();
+        LineReader reader = new LineReader() {
+            public String readLine() throws IOException {
+                return stream.readLine();
+            }
+
+            public void close() {
+                closeQuietly(stream);
+            }
+        };
+        return new FeatureIterator(reader, 0, Integer.MAX_VALUE);
+    }
+
+    public void close() throws IOException {
+        // Streams are opened per query and closed by the iterators
+    }
+
+    private static void closeQuietly(ParallelBlockCompressedInputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.error("Error closing " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the lines of a tabix query:  those in the index chunks that overlap the region by the tabix rules.
+     */
+    class TabixLineReader implements LineReader {
+
+        ParallelBlockCompressedInputStream stream;
+        Iterator<BGZFIndex.Chunk> chunks;
+        BGZFIndex.Chunk chunk;
+        int tid;
+        int beg;
+        int end;
+        boolean done = false;
+
+        TabixLineReader(ParallelBlockCompressedInputStream stream, List<BGZFIndex.Chunk> chunks, int tid, int beg,
+                        int end) {
+            this.stream = stream;
+            this.chunks = chunks.iterator();
+            this.tid = tid;
+            this.beg = beg;
+            this.end = end;
+            if (!chunks.isEmpty()) {
+                stream.setReadAheadLimit(chunks.get(chunks.size() - 1).getEnd() >>> 16);
+            }
+        }
+
+        public String readLine() throws IOException {
+            while (!done) {
+                while (chunk == null || stream.getFilePointer() >= chunk.getEnd()) {
+                    if (!chunks.hasNext()) {
+                        close();
+                        return null;
+                    }
+                    BGZFIndex.Chunk nextChunk = chunks.next();
+                    if (chunk == null || stream.getFilePointer() < nextChunk.getStart()) {
+                        stream.seek(nextChunk.getStart());
+                    }
+                    chunk = nextChunk;
+                }
+
+                String line = stream.readLine();
+                if (line == null) {
+                    close();
+                    return null;
+                }
+                if (line.length() == 0 || line.charAt(0) == index.getMetaChar()) {
+                    continue;
+                }
+                if (!parseInterval(line)) {
+                    close();
+                    return null;
+                }
+                if (intervalEnd > beg) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        public void close() {
+            if (!done) {
+                done = true;
+                closeQuietly(stream);
+            }
+        }
+
+        int intervalBeg;
+        int intervalEnd;
+
+        /**
+         * Parse the sequence and interval of a line as tabix does.
+         *
+         * @return false if the line is past the region,  ending the query
+         */
+        private boolean parseInterval(String line) {
+            int preset = index.getFormat() & 0xFFFF;
+            int lineTid = -1;
+            intervalBeg = intervalEnd = 0;
+            int col = 0;
+            int fieldStart = 0;
+            while (fieldStart <= line.length()) {
+                int fieldEnd = line.indexOf('\t', fieldStart);
+                if (fieldEnd < 0) {
+                    fieldEnd = line.length();
+                }
+                col++;
+                if (col == index.getSequenceColumn()) {
+                    lineTid = index.getSequenceIndex(line.substring(fieldStart, fieldEnd));
+                } else if (col == index.getStartColumn()) {
+                    intervalBeg = intervalEnd = Integer.parseInt(line.substring(fieldStart, fieldEnd));
+                    if ((index.getFormat() & TI_FLAG_UCSC) != 0) {
+                        intervalEnd++;
+                    } else {
+                        intervalBeg--;
+                    }
+                    if (intervalBeg < 0) intervalBeg = 0;
+                    if (intervalEnd < 1) intervalEnd = 1;
+                } else if (preset == TI_PRESET_GENERIC) {
+                    if (col == index.getEndColumn()) {
+                        intervalEnd = Integer.parseInt(line.substring(fieldStart, fieldEnd));
+                    }
+                } else if (preset == TI_PRESET_SAM) {
+                    if (col == 6) {
+                        intervalEnd = intervalBeg + cigarLength(line, fieldStart, fieldEnd);
+                    }
+                } else if (preset == TI_PRESET_VCF) {
+                    if (col == 4) {
+                        if (fieldEnd > fieldStart) {
+                            intervalEnd = intervalBeg + fieldEnd - fieldStart;
+                        }
+                    } else if (col == 8) {
+                        int infoEnd = vcfInfoEnd(line.substring(fieldStart, fieldEnd));
+                        if (infoEnd > 0) {
+                            intervalEnd = infoEnd;
+                        }
+                    }
+                }
+                fieldStart = fieldEnd + 1;
+            }
+            return lineTid == tid && intervalBeg < end;
+        }
+
+        private int cigarLength(String line, int start, int end) {
+            int length = 0;
+            int n = 0;
+            for (int i = start; i < end; i++) {
+                char c = line.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    n = 10 * n + (c - '0');
+                } else {
+                    if (c == 'M' || c == 'D' || c == 'N') {
+                        length += n;
+                    }
+                    n = 0;
+                }
+            }
+            return length;
+        }
+
+        private int vcfInfoEnd(String info) {
+            int i;
+            if (info.startsWith("END=")) {
+                i = 4;
+            } else {
+                i = info.indexOf(";END=");
+                if (i < 0) {
+                    return -1;
+                }
+                i += 5;
+            }
+            int j = info.indexOf(';', i);
+            return Integer.parseInt(j < 0 ? info.substring(i) : info.substring(i, j));
+        }
+    }
+
+    /**
+     * Decodes features from lines,  skipping those that end before the region and stopping at the first that
+     * starts after it.
+     */
+    class FeatureIterator implements CloseableTribbleIterator {
+
+        LineReader lineReader;
+        int start;
+        int end;
+        Feature currentRecord;
+
+        FeatureIterator(LineReader lineReader, int start, int end) throws IOException {
+            this.lineReader = lineReader;
+            this.start = start;
+            this.end = end;
+            readNextRecord();
+        }
+
+        protected void readNextRecord() throws IOException {
+            currentRecord = null;
+            String nextLine;
+            while (currentRecord == null && (nextLine = lineReader.readLine()) != null) {
+                Feature f;
+                try {
+                    f = codec.decode(nextLine);
+                    if (f == null) {
+                        continue;
+                    }
+                    if (f.getStart() > end) {
+                        close();
+                        return;
+                    }
+                    if (f.getEnd() <= start) {
+                        continue;
+                    }
+                    currentRecord = f;
+                } catch (TribbleException e) {
+                    e.setSource(path);
+                    throw e;
+                } catch (NumberFormatException e) {
+                    throw new TribbleException.MalformedFeatureFile("Error parsing line: " + nextLine, path, e);
+                }
+            }
+            if (currentRecord == null) {
+                close();
+            }
+        }
+
+        public boolean hasNext() {
+            return currentRecord != null;
+        }
+
+        public Feature next() {
+            if (currentRecord == null) {
+                throw new NoSuchElementException();
+            }
+            Feature ret = currentRecord;
+            try {
+                readNextRecord();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read the next record, the last record was at " +
+                        ret.getChr() + ":" + ret.getStart() + "-" + ret.getEnd(), e);
+            }
+            return ret;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Remove is not supported in Iterators");
+        }
+
+        public void close() {
+            lineReader.close();
+        }
+
+        public Iterator iterator() {
+            return this;
+        }
+    }
+}
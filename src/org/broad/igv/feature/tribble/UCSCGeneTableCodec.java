@@ -5,6 +5,7 @@ import org.broad.igv.feature.BasicFeature;
 import org.broad.igv.feature.Exon;
 import org.broad.igv.feature.Strand;
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.tribble.Feature;
 
@@ -37,6 +38,8 @@ public class UCSCGeneTableCodec extends UCSCCodec {
     private Genome genome;
     private Type type;
 
+    private final ThreadLocal<FieldTokenizer> tokenizer = FieldTokenizer.perThread(true, false);
+
 
     public UCSCGeneTableCodec(Type type, Genome genome) {
 
@@ -78,37 +81,36 @@ public class UCSCGeneTableCodec extends UCSCCodec {
             return null;
         }
 
-        line = line.replaceAll("\"", "");
-        String[] tokens = Globals.singleTabMultiSpacePattern.split(line);
-        int tokenCount = tokens.length;
+        if (line.indexOf('"') >= 0) {
+            line = line.replaceAll("\"", "");
+        }
+        FieldTokenizer tokens = tokenizer.get();
+        int tokenCount = tokens.tokenize(line);
 
         if (tokenCount <= strandColumn) {
             return null;
         }
 
-        String identifier = new String(tokens[idColumn].trim());
+        String identifier = tokens.getString(idColumn).trim();
         String name = null;
-        if (tokenCount > nameColumn && tokens[nameColumn] != null) {
-            name = new String(tokens[nameColumn]);
+        if (tokenCount > nameColumn) {
+            name = tokens.getString(nameColumn);
         }
 
         if (name == null || name.length() == nameColumn) {
             name = identifier;
         }
 
-        String chrToken = tokens[chrColumn].trim();
+        String chrToken = tokens.getString(chrColumn).trim();
         String chr = genome == null ? chrToken : genome.getChromosomeAlias(chrToken);
 
-        int start = Integer.parseInt(tokens[startColumn]) - startOffsetValue;
-        int end = Integer.parseInt(tokens[endColumn]);
-        String strandString = tokens[strandColumn];
+        int start = tokens.getInt(startColumn) - startOffsetValue;
+        int end = tokens.getInt(endColumn);
         Strand strand = Strand.NONE;
-        if (strandString != null) {
-            if (strandString.trim().equals("+")) {
-                strand = Strand.POSITIVE;
-            } else if (strandString.trim().equals("-")) {
-                strand = Strand.NEGATIVE;
-            }
+        if (tokens.equals(strandColumn, "+")) {
+            strand = Strand.POSITIVE;
+        } else if (tokens.equals(strandColumn, "-")) {
+            strand = Strand.NEGATIVE;
         }
 
         BasicFeature gene = new BasicFeature(chr, start, end, strand);
@@ -117,8 +119,8 @@ public class UCSCGeneTableCodec extends UCSCCodec {
         gene.setIdentifier(identifier);
 
         if(tokenCount > 7) {
-            gene.setThickStart(Integer.parseInt(tokens[6]) - startOffsetValue);
-            gene.setThickEnd(Integer.parseInt(tokens[7]));
+            gene.setThickStart(tokens.getInt(6) - startOffsetValue);
+            gene.setThickEnd(tokens.getInt(7));
         }
 
         // Coding information is optional
@@ -146,16 +148,16 @@ public class UCSCGeneTableCodec extends UCSCCodec {
     }
 
 
-    private void createExons(String[] tokens, int tokenCount, BasicFeature gene, String chr,
+    private void createExons(FieldTokenizer tokens, int tokenCount, BasicFeature gene, String chr,
                              Strand strand)
             throws NumberFormatException {
 
-        int cdStart = Integer.parseInt(tokens[cdStartColumn]) - startOffsetValue;
-        int cdEnd = Integer.parseInt(tokens[cdEndColumn]);
+        int cdStart = tokens.getInt(cdStartColumn) - startOffsetValue;
+        int cdEnd = tokens.getInt(cdEndColumn);
 
-        int exonCount = Integer.parseInt(tokens[exonCountColumn]);
-        String[] startsBuffer = Globals.commaPattern.split(tokens[startsBufferColumn]);
-        String[] endsBuffer = Globals.commaPattern.split(tokens[endsBufferColumn]);
+        int exonCount = tokens.getInt(exonCountColumn);
+        String[] startsBuffer = Globals.commaPattern.split(tokens.getString(startsBufferColumn));
+        String[] endsBuffer = Globals.commaPattern.split(tokens.getString(endsBufferColumn));
 
         if (startsBuffer.length == endsBuffer.length) {
             int exonNumber = (strand == Strand.NEGATIVE ? exonCount : 1);
@@ -193,7 +195,7 @@ public class UCSCGeneTableCodec extends UCSCCodec {
         if (type == Type.GENEPRED && tokenCount > 15) {
             try {
 
-                String[] frameBuffer = Globals.commaPattern.split(tokens[frameBufferColumn]);
+                String[] frameBuffer = Globals.commaPattern.split(tokens.getString(frameBufferColumn));
                 for (int i = 0; i < frameBuffer.length; i++) {
                     int exonFrame = Integer.parseInt(frameBuffer[i].trim());
                     if (exonFrame == -1) {
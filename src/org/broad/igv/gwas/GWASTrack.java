@@ -31,6 +31,7 @@ import org.broad.igv.ui.FontManager;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.color.ColorUtilities;
 import org.broad.igv.ui.panel.IGVPopupMenu;
+import org.broad.igv.ui.panel.PickIndex;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.util.UIUtilities;
 import org.broad.igv.util.ChromosomeColors;
@@ -47,6 +48,7 @@ import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 //import org.broad.igv.ui.IGVModel;
@@ -58,7 +60,7 @@ import java.util.Map;
  * Time: 4:56:40 PM
  * To change this template use File | Settings | File Templates.
  */
-public class GWASTrack extends AbstractTrack {
+public class GWASTrack extends AbstractTrack implements PickableTrack {
 
     // Color properties
     private int minPointSize;
@@ -74,6 +76,11 @@ public class GWASTrack extends AbstractTrack {
     private static final Logger log = Logger.getLogger(GWASTrack.class);
 
     private static final int AXIS_AREA_WIDTH = 60;
+
+    // Points are recorded for hit testing only when there are no more than this many in view.  Each point is
+    // widened by PICK_MARGIN pixels.
+    private static final int MAX_PICKS = 50000;
+    private static final int PICK_MARGIN = 2;
     private double trackMinY;
     private double maxY;
     private double scale;
@@ -182,9 +189,13 @@ public class GWASTrack extends AbstractTrack {
 
         int xMinPointSize = (int) (1 / locScale);
 
+        // Chromosome index,  point index and bounds of the points drawn
+        IntArrayList picks = context.getPickIndex() == null ? null : new IntArrayList();
+
         // Loop through data points, chromosome by chromosome
 
-        for (String chr : chrList) {
+        for (int chrIdx = 0; chrIdx < chrList.size(); chrIdx++) {
+            String chr = chrList.get(chrIdx);
             if (this.gData.getLocations().containsKey(chr) && this.gData.getValues().containsKey(chr)) {
 
 
@@ -268,6 +279,19 @@ public class GWASTrack extends AbstractTrack {
                         for (int drawX = x; drawX < maxDrawX; drawX++)
                             for (int drawY = y; drawY < maxDrawY; drawY++)
                                 drawBuffer[drawX][drawY] = drawColor;
+
+                        if (picks != null) {
+                            if (picks.size() < 6 * MAX_PICKS) {
+                                picks.add(chrIdx);
+                                picks.add(j);
+                                picks.add(x);
+                                picks.add(y);
+                                picks.add(maxDrawX - x);
+                                picks.add(maxDrawY - y);
+                            } else {
+                                picks = null;
+                            }
+                        }
                     }
                 }
             }
@@ -296,6 +320,20 @@ public class GWASTrack extends AbstractTrack {
             this.renderAxis(context, arect);
         }
 
+        if (picks != null) {
+            PickIndex pickIndex = context.getPickIndex();
+            for (int i = 0; i < picks.size(); i += 6) {
+                int x = picks.get(i + 2);
+                int y = picks.get(i + 3);
+                int width = picks.get(i + 4);
+                int height = picks.get(i + 5);
+                DataPoint point = new DataPoint(chrList.get(picks.get(i)), picks.get(i + 1),
+                        x + width / 2, y + height / 2);
+                pickIndex.add(this, x - PICK_MARGIN, y - PICK_MARGIN, width + 2 * PICK_MARGIN,
+                        height + 2 * PICK_MARGIN, point);
+            }
+            pickIndex.setIndexed(this);
+        }
     }
 
 
@@ -503,6 +541,24 @@ public class GWASTrack extends AbstractTrack {
 
     }
 
+    /**
+     * Return the description of the drawn data point whose center is closest to the position
+     */
+    public String getValueString(List<Object> items, double position, int x, int y) {
+
+        DataPoint closest = null;
+        int minDistance = Integer.MAX_VALUE;
+        for (Object item : items) {
+            DataPoint point = (DataPoint) item;
+            int distance = (point.x - x) * (point.x - x) + (point.y - y) * (point.y - y);
+            if (distance < minDistance) {
+                closest = point;
+                minDistance = distance;
+            }
+        }
+        return closest == null ? null : getDescription(closest.chr, closest.index);
+    }
+
     /**
      * Override to return a specialized popup menu
      *
@@ -857,4 +913,22 @@ public class GWASTrack extends AbstractTrack {
             drawYAxis = Boolean.parseBoolean(tmp);
         }
     }
+
+    /**
+     * A data point drawn at screen position (x, y)
+     */
+    static class DataPoint {
+
+        final String chr;
+        final int index;
+        final int x;
+        final int y;
+
+        DataPoint(String chr, int index, int x, int y) {
+            this.chr = chr;
+            this.index = index;
+            this.x = x;
+            this.y = y;
+        }
+    }
 }
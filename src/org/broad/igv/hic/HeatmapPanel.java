@@ -1,7 +1,9 @@
 package org.broad.igv.hic;
 
+import org.apache.log4j.Logger;
 import org.broad.igv.hic.data.Chromosome;
 import org.broad.igv.hic.data.MatrixZoomData;
+import org.broad.igv.util.ExecutorUtils;
 import org.broad.igv.util.ObjectCache;
 
 import javax.swing.*;
@@ -10,6 +12,10 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * @author jrobinso
@@ -17,13 +23,25 @@ import java.io.*;
  */
 public class HeatmapPanel extends JComponent implements Serializable {
 
+    private static Logger log = Logger.getLogger(HeatmapPanel.class);
+
 
     enum DragMode {NONE, PAN, ZOOM};
 
+    /**
+     * Tiles are rendered in parallel off the event dispatch thread
+     */
+    private static ExecutorService tileRenderer = ExecutorUtils.newFixedThreadPool(
+            "Heatmap tile renderer", ExecutorUtils.CPU_THREADS);
+
     MainWindow mainWindow;
     private HiC hic;
     private int imageTileWidth = 500;
     ObjectCache<String, ImageTile> tileCache = new ObjectCache<String, ImageTile>(100);
+
+    // Tiles being rendered,  and the generation of the tile cache.  Only accessed on the event dispatch thread.
+    private Map<String, Future> pendingTiles = new HashMap<String, Future>();
+    private int tileGeneration;
     private Rectangle zoomRectangle;
 
     /**
@@ -148,28 +166,28 @@ public class HeatmapPanel extends JComponent implements Serializable {
 
         int wh = Math.max(maxBinCountX, maxBinCountY);
 
-        BufferedImage image = (BufferedImage) createImage(wh, wh);
-        Graphics2D g = image.createGraphics();
-        Rectangle clipBounds = new Rectangle(0, 0, wh, wh);
-        renderer.render(0, 0, maxBinCountX, maxBinCountY, zd, displayOption, g);
+        BufferedImage image = new BufferedImage(wh, wh, BufferedImage.TYPE_INT_ARGB_PRE);
+        renderer.render(0, 0, image, zd, displayOption);
 
-        return image.getScaledInstance(tw, th, Image.SCALE_SMOOTH);
+        return HeatmapRenderer.scale(image, tw, th);
 
     }
 
     /**
-     * Return the specified image tile, scaled by scaleFactor
+     * Return the specified image tile, scaled by scaleFactor.  If the tile is not cached it is rendered on the tile
+     * renderer pool and null is returned,  the panel is repainted when the tile is ready.
      *
      * @param i           column index of tile
      * @param j           row index of tile
      * @param scaleFactor
      * @return
      */
-    private ImageTile getImageTile(int i, int j, double scaleFactor, MainWindow.DisplayOption displayOption) {
-        String key = "_" + i + "_" + j + "_" + displayOption;
+    private ImageTile getImageTile(int i, int j, final double scaleFactor,
+                                   final MainWindow.DisplayOption displayOption) {
+        final String key = "_" + i + "_" + j + "_" + displayOption;
         ImageTile tile = tileCache.get(key);
 
-        if (tile == null) {
+        if (tile == null && !pendingTiles.containsKey(key)) {
 
             // Image size can be smaller than tile width when zoomed out, or near the edges.
             int maxBinCountX = (hic.xContext.getChrLength() - hic.xContext.getOrigin()) / hic.zd.getBinSize() + 1;
@@ -177,26 +195,48 @@ public class HeatmapPanel extends JComponent implements Serializable {
 
             if (maxBinCountX < 0 || maxBinCountY < 0) return null;
 
-            int imageWidth = Math.min(maxBinCountX, imageTileWidth);
-            int imageHeight = Math.min(maxBinCountY, imageTileWidth);
-
-            BufferedImage image = (BufferedImage) createImage(imageWidth, imageHeight);
-            Graphics2D g2D = (Graphics2D) image.getGraphics();
-
+            final int imageWidth = Math.min(maxBinCountX, imageTileWidth);
+            final int imageHeight = Math.min(maxBinCountY, imageTileWidth);
             final int bx0 = i * imageTileWidth;
             final int by0 = j * imageTileWidth;
-            renderer.render(bx0, by0, imageWidth, imageHeight, hic.zd, displayOption, g2D);
-
-            if (scaleFactor > 0.999 && scaleFactor < 1.001) {
-                tile = new ImageTile(image, bx0, by0);
-            } else {
-                int scaledWidth = (int) (scaleFactor * imageWidth);
-                int scaledHeight = (int) (scaleFactor * imageHeight);
-                Image scaledImage = image.getScaledInstance(scaledWidth, scaledHeight, Image.SCALE_SMOOTH);
+            final MatrixZoomData zd = hic.zd;
+            final int generation = tileGeneration;
+
+            Future future = tileRenderer.submit(new Runnable() {
+                public void run() {
+                    ImageTile rendered = null;
+                    try {
+                        BufferedImage image = new BufferedImage(imageWidth, imageHeight,
+                                BufferedImage.TYPE_INT_ARGB_PRE);
+                        renderer.render(bx0, by0, image, zd, displayOption);
+
+                        if (scaleFactor < 0.999 || scaleFactor > 1.001) {
+                            int scaledWidth = (int) (scaleFactor * imageWidth);
+                            int scaledHeight = (int) (scaleFactor * imageHeight);
+                            image = HeatmapRenderer.scale(image, scaledWidth, scaledHeight);
+                        }
+                        rendered = new ImageTile(image, bx0, by0);
+                    } catch (Exception e) {
+                        log.error("Error rendering heatmap tile " + key, e);
+                    }
 
-                tile = new ImageTile(scaledImage, bx0, by0);
-            }
-            tileCache.put(key, tile);
+                    // The tile is no longer pending even if rendering failed,  so a later paint can request it again
+                    final ImageTile tile = rendered;
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            // Discard tiles rendered for a cleared cache
+                            if (generation == tileGeneration) {
+                                pendingTiles.remove(key);
+                                if (tile != null) {
+                                    tileCache.put(key, tile);
+                                    repaint();
+                                }
+                            }
+                        }
+                    });
+                }
+            });
+            pendingTiles.put(key, future);
         }
         return tile;
     }
@@ -204,6 +244,11 @@ public class HeatmapPanel extends JComponent implements Serializable {
 
     public void clearTileCache() {
         tileCache.clear();
+        for (Future future : pendingTiles.values()) {
+            future.cancel(false);
+        }
+        pendingTiles.clear();
+        tileGeneration++;
     }
 
 
@@ -443,6 +488,11 @@ public class HeatmapPanel extends JComponent implements Serializable {
                     txt.append(hic.yContext.getChromosome().getName());
                     txt.append(":");
                     txt.append(String.valueOf(posY));
+                    if (posX >= 0 && posY >= 0) {
+                        int binSize = hic.zd.getBinSize();
+                        txt.append("<br>observed value = ");
+                        txt.append(String.valueOf(hic.zd.getCounts(posX / binSize, posY / binSize)));
+                    }
                     setToolTipText(txt.toString());
                 }
             }
@@ -2,12 +2,12 @@ package org.broad.igv.hic;
 
 import org.apache.commons.math.linear.RealMatrix;
 import org.broad.igv.hic.data.Block;
-import org.broad.igv.hic.data.ContactRecord;
 import org.broad.igv.hic.data.DensityFunction;
 import org.broad.igv.hic.data.MatrixZoomData;
-import org.broad.igv.renderer.ColorScale;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.List;
 
 /**
@@ -21,8 +21,7 @@ public class HeatmapRenderer {
     MainWindow mainWindow;
 
     private ObservedColorScale observedColorScale;
-    private ColorScale oeColorScale;
-    private ColorScale pearsonColorScale;
+    private HiCColorScale oeColorScale;
 
     public HeatmapRenderer(MainWindow mainWindow, HiC hic) {
         this.mainWindow = mainWindow;
@@ -33,19 +32,23 @@ public class HeatmapRenderer {
         observedColorScale.setMaxCount(initialMaxCount);
         observedColorScale.setBackground(Color.white);
         oeColorScale = new HiCColorScale();
-        pearsonColorScale = new HiCColorScale();
     }
 
+    /**
+     * Render the region of the matrix with upper left corner (originX, originY),  in bins,  into the image.  Colors
+     * are written directly into the image raster,  one pixel per bin.  Safe to call from multiple threads.
+     *
+     * @param image a TYPE_INT_ARGB_PRE or TYPE_INT_ARGB image
+     */
     public void render(int originX,
                        int originY,
-                       int width,
-                       int height,
+                       BufferedImage image,
                        final MatrixZoomData zd,
-                       MainWindow.DisplayOption displayOption,
-                       Graphics2D g) {
+                       MainWindow.DisplayOption displayOption) {
 
-        g.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_SPEED);
-        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
 
         int chr1 = zd.getChr1();
         int chr2 = zd.getChr2();
@@ -74,124 +77,156 @@ public class HeatmapRenderer {
         }
 
 
-        ColorScale colorScale = getColorScale();
-
         if (displayOption == MainWindow.DisplayOption.PEARSON) {
             RealMatrix pearsonsMatrix = zd.getPearsons();
             if (pearsonsMatrix != null) {
-                ((HiCColorScale) colorScale).setMin((float) zd.getPearsonsMin());
-                ((HiCColorScale) colorScale).setMax((float) zd.getPearsonsMax());
-                renderMatrix(originX, originY, pearsonsMatrix, colorScale, g, zd.getZoom());
+                // Tiles render concurrently,  each with a scale for the range of its zoom data
+                HiCColorScale pearsonColorScale = new HiCColorScale();
+                pearsonColorScale.setMin((float) zd.getPearsonsMin());
+                pearsonColorScale.setMax((float) zd.getPearsonsMax());
+                renderMatrix(originX, originY, width, height, pearsonsMatrix, pearsonColorScale, pixels);
 
             }
         } else {
             // Iterate through blocks overlapping visible region
             DensityFunction df = null;
+            RasterColorScale colorScale = observedColorScale;
             if (displayOption == MainWindow.DisplayOption.OE) {
                 df = hic.getDensityFunction(zd.getZoom());
+                colorScale = oeColorScale;
             }
 
             List<Block> blocks = zd.getBlocksOverlapping(x, y, maxX, maxY);
             for (Block b : blocks) {
-                renderBlock(originX, originY, chr1, chr2, binSizeMB, b, colorScale, df, g);
+                renderBlock(originX, originY, width, height, chr1, chr2, binSizeMB, b, colorScale, df, pixels);
             }
         }
     }
 
 
-    private ColorScale getColorScale() {
-
-        switch (hic.getDisplayOption()) {
-            case OE:
-                return oeColorScale;
-            case PEARSON:
-                return pearsonColorScale;
-            default:
-                return observedColorScale;
-        }
-    }
-
+    private void renderBlock(int originX, int originY, int width, int height, int chr1, int chr2, double binSizeMB,
+                             Block b, RasterColorScale colorScale, DensityFunction df, int[] pixels) {
 
-    private void renderBlock(int originX, int originY, int chr1, int chr2, double binSizeMB, Block b,
-                             ColorScale colorScale, DensityFunction df, Graphics2D g) {
-
-        MainWindow.DisplayOption displayOption = hic.getDisplayOption();
         double binSizeMB2 = binSizeMB * binSizeMB;
         boolean sameChr = (chr1 == chr2);
 
-        ContactRecord[] recs = b.getContactRecords();
-        if (recs != null) {
-            for (int i = 0; i < recs.length; i++) {
-                ContactRecord rec = recs[i];
-
-                Color color = null;
-                double score;
-                // This is weirdly not the same as computeOE.  We opt for speed instead of
-                // showing the actual O/E with the mean subtracted, which is more appropriate.
-                if (displayOption == MainWindow.DisplayOption.OE && df != null) {
-                    int x = rec.getX();// * binSize;
-                    int y = rec.getY();// * binSize;
-                    int dist = Math.abs(x - y);
-                    double expected = df.getDensity(chr1, dist);
-                    score = rec.getCounts() / expected;
-                    score = Math.log10(score);
-                } else {
-                    score = rec.getCounts() / binSizeMB2;
-                }
+        // Records are sorted by row,  off the diagonal only the rows of the image are needed.  The mirror of an
+        // intra-chromosome record can fall in any row.
+        int start = 0;
+        int end = b.getContactCount();
+        if (!sameChr) {
+            start = b.getRowStart(originY);
+            end = b.getRowStart(originY + height);
+        }
 
-                color = colorScale.getColor((float) score);
-                int px = (rec.getX() - originX);
-                int py = (rec.getY() - originY);
-                g.setColor(color);
-                if (px > -1 && py > -1) {
-                    g.fillRect(px, py, MainWindow.BIN_PIXEL_WIDTH, MainWindow.BIN_PIXEL_WIDTH);
-                }
+        for (int i = start; i < end; i++) {
+            int x = b.getX(i);
+            int y = b.getY(i);
+
+            double score;
+            // This is weirdly not the same as computeOE.  We opt for speed instead of
+            // showing the actual O/E with the mean subtracted, which is more appropriate.
+            if (df != null) {
+                int dist = Math.abs(x - y);
+                double expected = df.getDensity(chr1, dist);
+                score = b.getCounts(i) / expected;
+                score = Math.log10(score);
+            } else {
+                score = b.getCounts(i) / binSizeMB2;
+            }
 
-                if (sameChr && (rec.getX() != rec.getY())) {
-                    px = (rec.getY() - originX);
-                    py = (rec.getX() - originY);
-                    if (px > -1 && py > -1) {
-                        g.fillRect(px, py, MainWindow.BIN_PIXEL_WIDTH, MainWindow.BIN_PIXEL_WIDTH);
-                    }
+            int rgb = colorScale.getRGB((float) score);
+            int px = (x - originX);
+            int py = (y - originY);
+            if (px > -1 && py > -1 && px < width && py < height) {
+                pixels[py * width + px] = rgb;
+            }
+
+            if (sameChr && (x != y)) {
+                px = (y - originX);
+                py = (x - originY);
+                if (px > -1 && py > -1 && px < width && py < height) {
+                    pixels[py * width + px] = rgb;
                 }
             }
         }
     }
 
     /**
-     * Used for Pearsons correlation (dense matrix)
+     * Used for Pearsons correlation (dense matrix).  Only the lower diagonal of the matrix is used,  bins above the
+     * diagonal are mirrored.
      *
      * @param originX
      * @param originY
      * @param rm
      * @param colorScale
-     * @param g
+     * @param pixels
      */
-    private void renderMatrix(int originX, int originY, RealMatrix rm,
-                              ColorScale colorScale, Graphics g,
-                              int zoomLevel) {
-
-        int nBinsX = rm.getColumnDimension();
-        int nBinsY = rm.getRowDimension();
-
-
-        for (int i = 0; i < nBinsX; i++) {
-            for (int j = 0; j < nBinsY; j++) {
-                double score = rm.getEntry(i, j);
-                //float logScore = (float) Math.log10(score);                                       
-                Color color = score == 0 ? Color.black : colorScale.getColor((float) score);
-                int px = i - originX;
-                int py = j - originY;
-                g.setColor(color);
-                g.fillRect(px, py, MainWindow.BIN_PIXEL_WIDTH, MainWindow.BIN_PIXEL_WIDTH);
-                // Assuming same chromosome
-                if (i != j) {
-                    px = (j - originX);
-                    py = (i - originY);
-                    g.fillRect(px, py, MainWindow.BIN_PIXEL_WIDTH, MainWindow.BIN_PIXEL_WIDTH);
+    private void renderMatrix(int originX, int originY, int width, int height, RealMatrix rm,
+                              RasterColorScale colorScale, int[] pixels) {
+
+        int nRows = rm.getRowDimension();
+        int nColumns = rm.getColumnDimension();
+        int black = Color.black.getRGB();
+
+        for (int py = 0; py < height; py++) {
+            int j = py + originY;
+            for (int px = 0; px < width; px++) {
+                int i = px + originX;
+                int row = Math.max(i, j);
+                int col = Math.min(i, j);
+                if (row < nRows && col < nColumns) {
+                    double score = rm.getEntry(row, col);
+                    pixels[py * width + px] = score == 0 ? black : colorScale.getRGB((float) score);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resample the image to the given size.  Each destination pixel is the average of the source pixels it covers,
+     * when enlarging this reduces to copying the nearest source pixel.  Averaging assumes premultiplied alpha.
+     *
+     * @param image a TYPE_INT_ARGB_PRE image
+     * @return a new TYPE_INT_ARGB_PRE image
+     */
+    public static BufferedImage scale(BufferedImage image, int width, int height) {
+
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+        int[] src = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        int[] dest = ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData();
+
+        int[] x0 = new int[width + 1];
+        for (int dx = 0; dx <= width; dx++) {
+            x0[dx] = (int) ((long) dx * srcWidth / width);
+        }
+
+        for (int dy = 0; dy < height; dy++) {
+            int y0 = (int) ((long) dy * srcHeight / height);
+            int y1 = Math.max(y0 + 1, (int) ((long) (dy + 1) * srcHeight / height));
+            for (int dx = 0; dx < width; dx++) {
+                int x1 = Math.max(x0[dx] + 1, x0[dx + 1]);
+                int a = 0, r = 0, g = 0, b = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    int offset = sy * srcWidth;
+                    for (int sx = x0[dx]; sx < x1; sx++) {
+                        int argb = src[offset + sx];
+                        a += argb >>> 24;
+                        r += (argb >> 16) & 0xff;
+                        g += (argb >> 8) & 0xff;
+                        b += argb & 0xff;
+                    }
                 }
+                int n = (y1 - y0) * (x1 - x0[dx]);
+                dest[dy * width + dx] = ((a / n) << 24) | ((r / n) << 16) | ((g / n) << 8) | (b / n);
             }
         }
+        return scaled;
     }
 
 
@@ -4,6 +4,7 @@ import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.track.RenderContext;
+import org.broad.igv.ui.panel.PickIndex;
 import org.broad.igv.ui.panel.ReferenceFrame;
 
 import javax.swing.*;
@@ -88,6 +89,10 @@ public class HiCRenderContext implements RenderContext {
         return context.getScreenPosition(location);
     }
 
+    public PickIndex getPickIndex() {
+        return null;
+    }
+
 
     public Graphics2D getGraphic2DForColor(Color color) {
 
@@ -28,7 +28,7 @@ import java.util.Map;
  * @author Jim Robinson
  * @date 9/22/11
  */
-public class ObservedColorScale implements org.broad.igv.renderer.ColorScale {
+public class ObservedColorScale implements RasterColorScale {
 
     private int colorTableSize = 100;
     Color [] colorCache = new Color[colorTableSize];  // Array instead of map for efficiency
@@ -38,6 +38,9 @@ public class ObservedColorScale implements org.broad.igv.renderer.ColorScale {
     private Color background;
     private float[] backgroundColorComponents;
 
+    // ARGB values of the color table,  background last
+    private volatile int[] rgbTable;
+
 
     public Color getColor(float score) {
 
@@ -45,21 +48,42 @@ public class ObservedColorScale implements org.broad.igv.renderer.ColorScale {
             return background;
         }
 
-        final float v = score / maxCount;
-        float alpha = v < 0.05f ? 0.05f : (v > 1.0f ? 1.0f : v);   // Math.min and Math.max taking significant time
-        int idx = (int) ((colorTableSize - 1) * alpha);
+        int idx = getColorIndex(score);
         Color c = colorCache[idx];
         if (c == null) {
-            float rAlpha = Math.max(0.05f, Math.min(1.0f, 0.01f * idx));
-            float red = ((1 - rAlpha) * backgroundColorComponents[0] + rAlpha);
-            float green = ((1 - rAlpha) * backgroundColorComponents[1]);
-            float blue = ((1 - rAlpha) * backgroundColorComponents[2]);
-            c = new Color(red, green, blue);
+            c = createColor(idx);
             colorCache[idx] = c;
         }
         return c;
     }
 
+    public int getRGB(float score) {
+        int[] table = rgbTable;
+        if (table == null) {
+            table = new int[colorTableSize + 1];
+            for (int i = 0; i < colorTableSize; i++) {
+                table[i] = createColor(i).getRGB();
+            }
+            table[colorTableSize] = background.getRGB();
+            rgbTable = table;
+        }
+        return score < minCount ? table[colorTableSize] : table[getColorIndex(score)];
+    }
+
+    private int getColorIndex(float score) {
+        final float v = score / maxCount;
+        float alpha = v < 0.05f ? 0.05f : (v > 1.0f ? 1.0f : v);   // Math.min and Math.max taking significant time
+        return (int) ((colorTableSize - 1) * alpha);
+    }
+
+    private Color createColor(int idx) {
+        float rAlpha = Math.max(0.05f, Math.min(1.0f, 0.01f * idx));
+        float red = ((1 - rAlpha) * backgroundColorComponents[0] + rAlpha);
+        float green = ((1 - rAlpha) * backgroundColorComponents[1]);
+        float blue = ((1 - rAlpha) * backgroundColorComponents[2]);
+        return new Color(red, green, blue);
+    }
+
     public Color getColor(String symbol) {
         return null;  //To change body of implemented methods use File | Settings | File Templates.
     }
@@ -100,6 +124,8 @@ public class ObservedColorScale implements org.broad.igv.renderer.ColorScale {
     public void setBackground(Color background) {
         this.background = background;
         backgroundColorComponents = background.getColorComponents(null);
+        colorCache = new Color[colorTableSize];
+        rgbTable = null;
     }
 
     public void setRange(int min, int max) {
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.hic;
+
+import org.broad.igv.renderer.ColorScale;
+
+/**
+ * A color scale that can be written straight into an image raster.  getRGB(score) is the packed ARGB value of
+ * getColor(score),  looked up in a table rather than creating a Color.
+ */
+public interface RasterColorScale extends ColorScale {
+
+    public int getRGB(float score);
+
+}
@@ -1,11 +1,10 @@
 package org.broad.igv.hic.data;
 
-import java.awt.*;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
+ * The contact records of a block,  stored as parallel arrays of bin x,  bin y and counts sorted by (y, x).
+ *
  * @author jrobinso
  * @date Aug 10, 2010
  */
@@ -13,49 +12,104 @@ public class Block {
 
     private int number;
 
-    // Temporary map used during parsing only TODO -- remove from this class
-    private Map<Point, ContactRecord> contactRecordMap;
+    private int[] binX;
+    private int[] binY;
+    private int[] counts;
 
-    ContactRecord[] records;
-
-    public Block(int number) {
+    /**
+     * Records not sorted by (y, x),  as in files written by older versions of the preprocessor,  are sorted here.
+     * Cells are assumed to be unique.
+     */
+    public Block(int number, int[] binX, int[] binY, int[] counts) {
         this.number = number;
-        contactRecordMap = new HashMap<Point, ContactRecord>();
+        this.binX = binX;
+        this.binY = binY;
+        this.counts = counts;
+        if (!isSorted()) {
+            sort();
+        }
     }
 
-    public Block(int number, ContactRecord[] records) {
-        this.number = number;
-        this.records = records;
+    public int getNumber() {
+        return number;
     }
 
-    public void incrementCount(int col, int row) {
-        Point p = new Point(col, row);
-        ContactRecord rec = contactRecordMap.get(p);
-        if (rec == null) {
-            rec = new ContactRecord(number, col, row, (short) 1);
-            contactRecordMap.put(p, rec);
-        } else {
-            rec.incrementCount();
-        }
+    /**
+     * @return the number of contact records
+     */
+    public int getContactCount() {
+        return counts.length;
+    }
+
+    public int getX(int i) {
+        return binX[i];
+    }
+
+    public int getY(int i) {
+        return binY[i];
+    }
+
+    public int getCounts(int i) {
+        return counts[i];
     }
 
-    public void parsingComplete() {
-//        if (contactRecordMap.size() > 0) {
-//            records = new ContactRecord[contactRecordMap.size()];
-//            int i = 0;
-//            for (ContactRecord rec : contactRecordMap.values()) {
-//                records[i] = rec;
-//                i++;
-//            }
-//        }
+    /**
+     * @return the index of the first record with bin y >= y,  or the number of records if there is none
+     */
+    public int getRowStart(int y) {
+        return lowerBound(y, Integer.MIN_VALUE);
     }
 
+    /**
+     * @return the counts of the cell (x, y),  or 0 if it is not in this block
+     */
+    public int getCounts(int x, int y) {
+        int i = lowerBound(y, x);
+        return (i < counts.length && binY[i] == y && binX[i] == x) ? counts[i] : 0;
+    }
 
-    public ContactRecord[] getContactRecords() {
-        return records;
+    /**
+     * @return the index of the first record at or after (y, x)
+     */
+    private int lowerBound(int y, int x) {
+        int low = 0;
+        int high = counts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (binY[mid] < y || (binY[mid] == y && binX[mid] < x)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
-    public Collection<ContactRecord> getContractRecordValues() {
-        return contactRecordMap.values();
+    private boolean isSorted() {
+        for (int i = 1; i < counts.length; i++) {
+            if (binY[i] < binY[i - 1] || (binY[i] == binY[i - 1] && binX[i] < binX[i - 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sort() {
+        int n = counts.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) binY[i] << 32) | (binX[i] & 0xffffffffL);
+        }
+        long[] sortedKeys = keys.clone();
+        Arrays.sort(sortedKeys);
+        int[] sortedCounts = new int[n];
+        for (int i = 0; i < n; i++) {
+            sortedCounts[Arrays.binarySearch(sortedKeys, keys[i])] = counts[i];
+        }
+        for (int i = 0; i < n; i++) {
+            binY[i] = (int) (sortedKeys[i] >> 32);
+            binX[i] = (int) sortedKeys[i];
+        }
+        counts = sortedCounts;
     }
 }
@@ -30,9 +30,9 @@ public class ContactRecordCodec implements SortingCollection.Codec<ContactRecord
             os.writeInt(contactRecord.getBlockNumber());
             os.writeInt(contactRecord.getX());
             os.writeInt(contactRecord.getY());
-            os.writeShort(contactRecord.getCounts());
+            os.writeInt(contactRecord.getCounts());
         } catch (IOException e) {
-            e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+            throw new RuntimeException(e);
         }
 
     }
@@ -42,7 +42,7 @@ public class ContactRecordCodec implements SortingCollection.Codec<ContactRecord
             int block = is.readInt();
             int bin1 = is.readInt();
             int bin2 = is.readInt();
-            short counts = is.readShort();
+            int counts = is.readInt();
             return new ContactRecord(block, bin1, bin2, counts);
         } catch (IOException e) {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
@@ -9,6 +9,8 @@ import org.broad.tribble.util.LittleEndianInputStream;
 import org.broad.tribble.util.SeekableStream;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -137,8 +139,10 @@ public class DatasetReader {
         }
 
         byte[] buffer = new byte[idx.size];
-        stream.seek(idx.position);
-        stream.readFully(buffer);
+        synchronized (stream) {
+            stream.seek(idx.position);
+            stream.readFully(buffer);
+        }
         LittleEndianInputStream dis = new LittleEndianInputStream(new ByteArrayInputStream(buffer));
 
         int c1 = dis.readInt();
@@ -159,32 +163,30 @@ public class DatasetReader {
 
     public Block readBlock(int blockNumber, Preprocessor.IndexEntry idx) throws IOException {
 
+        // Blocks are read by the tile rendering threads,  only the seek and read share the stream
         byte[] compressedBytes = new byte[idx.size];
-        stream.seek(idx.position);
-        stream.readFully(compressedBytes);
+        synchronized (stream) {
+            stream.seek(idx.position);
+            stream.readFully(compressedBytes);
+        }
 
-        byte[] buffer = CompressionUtils.decompress(compressedBytes);
-        LittleEndianInputStream dis = new LittleEndianInputStream(new ByteArrayInputStream(buffer));
+        // Decode straight from the inflated bytes into the columns of the block
+        ByteBuffer buffer = ByteBuffer.wrap(CompressionUtils.decompress(compressedBytes));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
 
-        int nRecords = dis.readInt();
-        ContactRecord[] records = new ContactRecord[nRecords];
+        int nRecords = buffer.getInt();
+        // Truncated blocks keep the records that are complete
+        nRecords = Math.min(nRecords, buffer.remaining() / 12);
+        int[] binX = new int[nRecords];
+        int[] binY = new int[nRecords];
+        int[] counts = new int[nRecords];
         for (int i = 0; i < nRecords; i++) {
-            try {
-                int bin1 = dis.readInt();
-                int bin2 = dis.readInt();
-                int counts = dis.readInt();
-                records[i] = new ContactRecord(blockNumber, bin1, bin2, counts);
-            } catch (EOFException e) {
-                nRecords = i;
-                ContactRecord[] modifiedRecords = new ContactRecord[nRecords];
-                System.arraycopy(records, 0, modifiedRecords, 0, nRecords);
-                records = modifiedRecords;
-                break;
-            }
-
+            binX[i] = buffer.getInt();
+            binY[i] = buffer.getInt();
+            counts[i] = buffer.getInt();
         }
 
-        return new Block(blockNumber, records);
+        return new Block(blockNumber, binX, binY, counts);
 
     }
 
@@ -122,6 +122,10 @@ public class MatrixZoomData {
         return blockColumnCount;
     }
 
+    public int getBlockBinCount() {
+        return blockBinCount;
+    }
+
 
     /**
      * Return the blocks overlapping the rectangular region specified.  The units are "bins"
@@ -156,16 +160,40 @@ public class MatrixZoomData {
     }
 
     public Block getBlock(int blockNumber) {
-        Block b = blocks.get(blockNumber);
+        Block b;
+        synchronized (blocks) {
+            b = blocks.get(blockNumber);
+        }
         if (b == null) {
             if (reader != null && blockIndex != null) {
+                // Read outside the lock,  a block read twice by concurrent tiles is harmless
                 b = readBlock(blockNumber);
-                blocks.put(blockNumber, b);
+                synchronized (blocks) {
+                    blocks.put(blockNumber, b);
+                }
             }
         }
         return b;
     }
 
+    /**
+     * Return the counts of a cell,  0 if there are none.  For intra-chromosome matrices either (x, y) or (y, x) can be
+     * given.
+     *
+     * @param binX bin in x coordinate
+     * @param binY bin in y coordinate
+     */
+    public int getCounts(int binX, int binY) {
+        if (getChr1() == getChr2() && binX > binY) {
+            int tmp = binX;
+            binX = binY;
+            binY = tmp;
+        }
+        int blockNumber = getBlockColumnCount() * (binY / blockBinCount) + binX / blockBinCount;
+        Block b = getBlock(blockNumber);
+        return b == null ? 0 : b.getCounts(binX, binY);
+    }
+
     private Block readBlock(int blockNumber) {
         Preprocessor.IndexEntry idx = blockIndex.get(blockNumber);
         Block b = null;
@@ -330,8 +358,8 @@ public class MatrixZoomData {
         for (int blockNumber : blockNumbers) {
             Block b = readBlock(blockNumber);
             if (b != null) {
-                for (ContactRecord rec : b.getContactRecords()) {
-                    this.sum += rec.getCounts();
+                for (int i = 0; i < b.getContactCount(); i++) {
+                    this.sum += b.getCounts(i);
                 }
             }
         }
@@ -355,13 +383,13 @@ public class MatrixZoomData {
         for (int blockNumber : blockNumbers) {
             Block b = readBlock(blockNumber);
             if (b != null) {
-                for (ContactRecord rec : b.getContactRecords()) {
-                    int x = rec.getX();// * binSize;
-                    int y = rec.getY();// * binSize;
+                for (int i = 0; i < b.getContactCount(); i++) {
+                    int x = b.getX(i);// * binSize;
+                    int y = b.getY(i);// * binSize;
                     int dist = Math.abs(x - y);
                     double expected = df.getDensity(chr1.getIndex(), dist);
                     //expected = expected * (this.sum / df.getSum());
-                    double normCounts = (rec.getCounts() / expected);
+                    double normCounts = (b.getCounts(i) / expected);
 
                     rm.addToEntry(x, y, normCounts);
                     if (x != y) {
@@ -411,12 +439,11 @@ public class MatrixZoomData {
         double binSizeMB2 = binSizeMB * binSizeMB;
         Block b = readBlock(0);
         if (b != null) {
-            ContactRecord[] records = b.getContactRecords();
-            double[] scores = new double[records.length];
+            double[] scores = new double[b.getContactCount()];
             double sum = 0;
             for (int i = 0; i < scores.length; i++) {
-                scores[i] = records[i].getCounts();
-                sum += records[i].getCounts();
+                scores[i] = b.getCounts(i);
+                sum += b.getCounts(i);
             }
             double percentile90 = StatUtils.percentile(scores, 90) / binSizeMB2;
             double mean = (sum / scores.length) / binSizeMB2;
@@ -452,8 +479,8 @@ public class MatrixZoomData {
         for (int blockNumber : blockNumbers) {
             Block b = readBlock(blockNumber);
             if (b != null) {
-                for (ContactRecord rec : b.getContactRecords()) {
-                    System.out.println(rec.getX() * binSize + "\t" + rec.getY() * binSize + "\t" + rec.getCounts());
+                for (int i = 0; i < b.getContactCount(); i++) {
+                    System.out.println(b.getX(i) * binSize + "\t" + b.getY(i) * binSize + "\t" + b.getCounts(i));
                 }
             }
         }
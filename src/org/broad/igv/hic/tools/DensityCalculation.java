@@ -22,6 +22,9 @@ import java.util.*;
  * (2) loop through the pair data,  calling addDistance for each pair, to accumlate all counts
  * (3) when data loop is complete, call computeDensity to do the calculation
  *
+ * Counts are kept in primitive arrays.  Pairs can be counted by several threads,  each with its own calculation,
+ * and the counts combined with merge before step (3).
+ *
  * Methods are provided to save the result of the calculation to a binary file, and restore it.  See the
  * DensityUtil class for example usage.
  *
@@ -32,13 +35,13 @@ public class DensityCalculation {
 
     private int gridSize;
     private int numberOfBins;
-    private double[] actualDistances;    // genome wide
+    private long[] actualDistances;    // genome wide
     private double[] possibleDistances;  // genome wide
     private double[] densityAvg;
     private List<Chromosome>  chromosomes;
 
-    /** Map of chromosome index -> total count for that chromosome    */
-    private Map<Integer, Integer> chromosomeCounts;
+    /** Total count for each chromosome,  by chromosome index    */
+    private int[] chromosomeCounts;
 
     /** Map of chromosome index -> "normalization factor", essentially a fudge factor to make
       * the "expected total"  == observed total */
@@ -56,15 +59,17 @@ public class DensityCalculation {
 
         this.chromosomes = chromosomes;
         long totalLen = 0;
+        int maxIndex = 0;
         for(Chromosome chromosome : chromosomes) {
-            if (chromosome != null)
+            if (chromosome != null) {
                 totalLen += chromosome.getSize();
+                maxIndex = Math.max(maxIndex, chromosome.getIndex());
+            }
         }
 
         numberOfBins = (int) (totalLen / gridSize) + 1;
-        actualDistances = new double[numberOfBins];
-        Arrays.fill(actualDistances, 0);
-        chromosomeCounts = new HashMap<Integer,Integer>();
+        actualDistances = new long[numberOfBins];
+        chromosomeCounts = new int[maxIndex + 1];
         normalizationFactors = new LinkedHashMap<Integer, Double>();
     }
 
@@ -90,20 +95,33 @@ public class DensityCalculation {
      * @param chr  Chromosome where observed, so can increment count
      * @param dist Distance observed
      */
-    public void addDistance(Integer chr, int dist) {
+    public void addDistance(int chr, int dist) {
 
-        Integer count = chromosomeCounts.get(chr);
-        if (count == null) {
-            chromosomeCounts.put(chr, 1);
-        } else {
-            chromosomeCounts.put(chr, count + 1);
-        }
+        chromosomeCounts[chr]++;
         int bin = dist / gridSize;
 
         actualDistances[bin]++;
 
     }
 
+    /**
+     * Add the counts of another calculation for the same chromosomes and grid size.  This is used to combine
+     * counts accumulated by separate threads.
+     *
+     * @param other Calculation to add
+     */
+    public void merge(DensityCalculation other) {
+        if (other.gridSize != gridSize || other.numberOfBins != numberOfBins) {
+            throw new IllegalArgumentException("Cannot merge density calculations of different grids");
+        }
+        for (int i = 0; i < numberOfBins; i++) {
+            actualDistances[i] += other.actualDistances[i];
+        }
+        for (int i = 0; i < chromosomeCounts.length; i++) {
+            chromosomeCounts[i] += other.chromosomeCounts[i];
+        }
+    }
+
     /**
      * Compute the "density" -- port of python function getDensityControls().
      * The density is a measure of the average distribution of counts genome-wide for a ligated molecule.
@@ -141,38 +159,25 @@ public class DensityCalculation {
         }
 
 
-        // Smooth in 3 stages,  the window sizes are tuned to human.
+        // Smooth in 3 stages,  the window sizes are tuned to human.  Values past the start of stage (3) are
+        // replaced in that stage,  so stages (1) and (2) stop there.
+        final int start3 = 170000000 / gridSize;
+        final int end = Math.min(numberOfBins, start3 + 1);
 
         // Smooth (1)
         final int smoothingWidow1 = 15000000;
         int start = smoothingWidow1 / gridSize;
         int window = (int) (5 * (2000000f / gridSize));
         if (window == 0) window = 1;
-        for (int i = start; i < numberOfBins; i++) {
-            int kMin = i - window;
-            int kMax = Math.min(i + window, numberOfBins);
-            double sum = 0;
-            for (int k = kMin; k < kMax; k++) {
-                sum += density[k];
-            }
-            densityAvg[i] = sum / (kMax - kMin);
-        }
+        smooth(density, start, end, window);
 
         // Smooth (2)
         start = 70000000 / gridSize;
         window = (int)(20 * (2000000f / gridSize));
-        for (int i = start; i < numberOfBins; i++) {
-            int kMin = i - window;
-            int kMax = Math.min(i + window, numberOfBins);
-            double sum = 0;
-            for (int k = kMin; k < kMax; k++) {
-                sum += density[k];
-            }
-            densityAvg[i] = sum / (kMax - kMin);
-        }
+        smooth(density, start, end, window);
 
         // Smooth (3)
-        start = 170000000 / gridSize;
+        start = start3;
         for (int i = start; i < numberOfBins; i++) {
             densityAvg[i] = densityAvg[start];
         }
@@ -181,7 +186,7 @@ public class DensityCalculation {
         // Compute fudge factors for each chromosome so the total "expected" count for that chromosome == the observed
         for (Chromosome chr : chromosomes) {
 
-            if (chr == null || !chromosomeCounts.containsKey(chr.getIndex())) {
+            if (chr == null || chromosomeCounts[chr.getIndex()] == 0) {
                 continue;
             }
 
@@ -201,13 +206,49 @@ public class DensityCalculation {
                 }
             }
 
-            double observedCount = (double) chromosomeCounts.get(chr.getIndex());
+            double observedCount = (double) chromosomeCounts[chr.getIndex()];
             double f = expectedCount / observedCount;
 
             normalizationFactors.put(chr.getIndex(), f);
         }
     }
 
+    /**
+     * Set densityAvg[i],  start <= i < end,  to the mean of density over [i - window, i + window).  The sum is
+     * updated as the window slides,  and recomputed over the window where it holds a NaN or infinite value.
+     */
+    private void smooth(double[] density, int start, int end, int window) {
+        double sum = 0;
+        int nonFinite = 0;
+        int kMin = start - window;
+        int kMax = kMin;
+        for (int i = start; i < end; i++) {
+            int newMin = i - window;
+            int newMax = Math.min(i + window, numberOfBins);
+            for (; kMax < newMax; kMax++) {
+                if (isFinite(density[kMax])) sum += density[kMax];
+                else nonFinite++;
+            }
+            for (; kMin < newMin; kMin++) {
+                if (isFinite(density[kMin])) sum -= density[kMin];
+                else nonFinite--;
+            }
+            if (nonFinite == 0) {
+                densityAvg[i] = sum / (kMax - kMin);
+            } else {
+                double windowSum = 0;
+                for (int k = kMin; k < kMax; k++) {
+                    windowSum += density[k];
+                }
+                densityAvg[i] = windowSum / (kMax - kMin);
+            }
+        }
+    }
+
+    private static boolean isFinite(double v) {
+        return !Double.isNaN(v) && !Double.isInfinite(v);
+    }
+
     /**
      * Debugging method that prints out everything.
      * @param chrIndex Chromosome to print.
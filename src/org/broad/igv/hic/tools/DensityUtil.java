@@ -4,14 +4,14 @@ import org.apache.log4j.Logger;
 import org.broad.igv.hic.HiCGlobals;
 import org.broad.igv.hic.data.Chromosome;
 import org.broad.igv.hic.data.DensityFunction;
+import org.broad.igv.util.ExecutorUtils;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.tribble.util.LittleEndianInputStream;
 import org.broad.tribble.util.LittleEndianOutputStream;
 
 import java.io.*;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author Jim Robinson
@@ -60,42 +60,92 @@ public class DensityUtil {
         }
 
 
-        // Limit calcs to 10KB
-        int[] gridSizeArray = new int[8];
-        for (int i = 0; i < 8; i++) {
-            gridSizeArray[i] = HiCGlobals.zoomBinSizes[i];
-        }
+        DensityCalculation[] calcs = calculate(Arrays.asList(paths), chromosomes, chrIndexMap);
 
-        DensityCalculation[] calcs = new DensityCalculation[gridSizeArray.length];
-        for (int z = 0; z < gridSizeArray.length; z++) {
-            calcs[z] = new DensityCalculation(chromosomes, gridSizeArray[z]);
-        }
+        outputDensities(calcs, new File("/xchip/igv/dev/hic/testFiles/HindIII_Human_August.densities"));
+    }
+
+
+    /**
+     * Compute the expected densities of every zoom level.  Files are read in parallel,  each counting into its own
+     * calculations which are merged when all files are read.
+     *
+     * @param paths              pair files
+     * @param chromosomes
+     * @param chromosomeOrdinals map of chromosome name -> index
+     * @return the calculations,  by zoom level
+     * @throws IOException
+     */
+    public static DensityCalculation[] calculate(List<String> paths, final List<Chromosome> chromosomes,
+                                                 final Map<String, Integer> chromosomeOrdinals) throws IOException {
+
+        final int nZooms = HiCGlobals.zoomBinSizes.length;
+        int nThreads = Math.max(1, Math.min(paths.size(), ExecutorUtils.CPU_THREADS));
+        ExecutorService pool = ExecutorUtils.newFixedThreadPool("Density calculation", nThreads);
 
-        for (String path : paths) {
-            PairIterator iter = (path.endsWith(".bin")) ?
-                    new BinPairIterator(path) :
-                    new AsciiPairIterator(path, chrIndexMap);
-            while (iter.hasNext()) {
-                AlignmentPair pair = iter.next();
-                if (pair.getChr1() == (pair.getChr2())) {
-                    int dist = Math.abs(pair.getPos1() - pair.getPos2());
-
-                    int index = pair.getChr1();
-                    for (int z = 0; z < gridSizeArray.length; z++) {
-                        calcs[z].addDistance(index, dist);
+        try {
+            List<Future<DensityCalculation[]>> futures = new ArrayList<Future<DensityCalculation[]>>();
+            for (final String path : paths) {
+                futures.add(pool.submit(new Callable<DensityCalculation[]>() {
+                    public DensityCalculation[] call() throws Exception {
+                        DensityCalculation[] calcs = new DensityCalculation[nZooms];
+                        for (int z = 0; z < nZooms; z++) {
+                            calcs[z] = new DensityCalculation(chromosomes, HiCGlobals.zoomBinSizes[z]);
+                        }
+                        PairIterator iter = (path.endsWith(".bin")) ?
+                                new BinPairIterator(path) :
+                                new AsciiPairIterator(path, chromosomeOrdinals);
+                        try {
+                            while (iter.hasNext()) {
+                                AlignmentPair pair = iter.next();
+                                if (pair.getChr1() == (pair.getChr2())) {
+                                    int dist = Math.abs(pair.getPos1() - pair.getPos2());
+
+                                    int index = pair.getChr1();
+                                    for (int z = 0; z < nZooms; z++) {
+                                        calcs[z].addDistance(index, dist);
+                                    }
+                                }
+                            }
+                        } finally {
+                            iter.close();
+                        }
+                        return calcs;
+                    }
+                }));
+            }
+
+            DensityCalculation[] calcs = null;
+            for (Future<DensityCalculation[]> future : futures) {
+                DensityCalculation[] fileCalcs = future.get();
+                if (calcs == null) {
+                    calcs = fileCalcs;
+                } else {
+                    for (int z = 0; z < nZooms; z++) {
+                        calcs[z].merge(fileCalcs[z]);
                     }
                 }
+            }
+            if (calcs == null) {
+                calcs = new DensityCalculation[0];
+            }
+            for (DensityCalculation calc : calcs) {
+                calc.computeDensity();
+            }
+            return calcs;
 
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while calculating densities");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
             }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
-        for (int z = 0; z < gridSizeArray.length; z++) {
-            calcs[z].computeDensity();
-        }
-
-        outputDensities(calcs, new File("/xchip/igv/dev/hic/testFiles/HindIII_Human_August.densities"));
     }
 
-
     private static void outputDensities(DensityCalculation[] calcs, File outputFile) throws IOException {
 
         LittleEndianOutputStream os = null;
@@ -49,6 +49,8 @@ public class HiCTools {
             System.out.println("           : -o calculate densities (observed/expected), write to file [false]");
             System.out.println("           : -t <int> only write cells with count above threshold t [0]");
             System.out.println("           : -c <chromosome ID> only calculate map on specific chromosome");
+            System.out.println("           : -x <int> MB of memory used to count contacts before sorting to temporary files [1/4 of max heap]");
+            System.out.println("           : -s <directory> directory for temporary files [system default]");
             System.exit(0);
         }
 
@@ -118,6 +120,12 @@ public class HiCTools {
             preprocessor.setNumberOfThreads(parser.getThreadedOption());
             preprocessor.setDiagonalsOnly(parser.getDiagonalsOption());
             preprocessor.setLoadDensities(parser.getDensitiesOption());
+            if (parser.getTmpDirOption() != null) {
+                preprocessor.setTmpDir(new File(parser.getTmpDirOption()));
+            }
+            if (parser.getMemoryOption() > 0) {
+                preprocessor.setMemoryBudget(parser.getMemoryOption() * 1000000L);
+            }
             preprocessor.preprocess(files);
         }
     }
@@ -285,6 +293,8 @@ public class HiCTools {
         private Option countThresholdOption = null;
         private Option loadDensititesOption = null;
         private Option threadedOption = null;
+        private Option tmpDirOption = null;
+        private Option memoryOption = null;
 
         CommandLineParser() {
             diagonalsOption = addBooleanOption('d', "diagonals");
@@ -292,6 +302,8 @@ public class HiCTools {
             countThresholdOption = addIntegerOption('m', "minCountThreshold");
             loadDensititesOption = addBooleanOption('o', "density");
             threadedOption = addIntegerOption('t', "threads");
+            tmpDirOption = addStringOption('s', "tmpDir");
+            memoryOption = addIntegerOption('x', "maxMemory");
         }
 
         boolean getDiagonalsOption() {
@@ -324,6 +336,16 @@ public class HiCTools {
             return opt == null ? 0 : ((Number) opt).intValue();
 
         }
+
+        String getTmpDirOption() {
+            Object opt = getOptionValue(tmpDirOption);
+            return opt == null ? null : opt.toString();
+        }
+
+        int getMemoryOption() {
+            Object opt = getOptionValue(memoryOption);
+            return opt == null ? 0 : ((Number) opt).intValue();
+        }
     }
 
 
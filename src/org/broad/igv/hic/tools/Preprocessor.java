@@ -5,17 +5,43 @@ package org.broad.igv.hic.tools;
 import org.broad.igv.hic.HiCGlobals;
 import org.broad.igv.hic.data.*;
 import org.broad.igv.util.CompressionUtils;
+import org.broad.igv.util.ExecutorUtils;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.igv.util.collections.LongIntHashMap;
 import org.broad.tribble.util.LittleEndianOutputStream;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Computes the contact matrices of a set of alignment pair files in a single pass.
+ * <p/>
+ * Pairs are read by a pool of reader threads and handed in batches to one accumulator per zoom level,  plus one for
+ * the whole genome view.  Accumulators count contacts in primitive maps keyed by bin,  and when the counts of all
+ * accumulators exceed the memory budget the largest writes its counts to a temporary file as a sorted run.  Matrices
+ * are then written in order by merging the runs with the counts still in memory,  with the blocks of each zoom level
+ * compressed in parallel.  Optionally the accumulators also count the distances between intra-chromosome pairs for
+ * the expected densities of their zoom level.
+ *
  * @author jrobinso
  * @date Aug 16, 2010
  */
 public class Preprocessor {
 
+    /**
+     * Number of pairs handed to the accumulators at a time
+     */
+    static final int BATCH_SIZE = 8192;
+
+    /**
+     * Number of batches queued for each accumulator.  Readers wait when a queue is full.
+     */
+    static final int QUEUE_CAPACITY = 8;
+
+    private static final int[] END_OF_INPUT = new int[0];
+
     int nThreads = 0;
 
     private List<Chromosome> chromosomes;
@@ -23,6 +49,12 @@ public class Preprocessor {
     // Map of name -> index
     private Map<String, Integer> chromosomeOrdinals;
 
+    // Length of the chromosomes preceding each chromosome in the whole genome view
+    private long[] chromosomeOffsets;
+
+    // Ordinal of the matrix for each pair of chromosomes,  or -1 if the pair is not computed
+    private int[][] matrixOrdinals;
+
     private File outputFile;
     private LittleEndianOutputStream fos;
 
@@ -36,6 +68,11 @@ public class Preprocessor {
     private boolean loadDensities;
     private Set<String> includedChromosomes;
 
+    private File tmpDir;
+    private long memoryBudget;
+    private AtomicLong memoryUsage = new AtomicLong();
+    private int nAccumulators;
+
     public Preprocessor(File outputFile, List<Chromosome> chromosomes) {
         this.outputFile = outputFile;
         this.chromosomes = chromosomes;
@@ -46,10 +83,17 @@ public class Preprocessor {
         countThreshold = 0;
         diagonalsOnly = false;
         loadDensities = false;
+        memoryBudget = Runtime.getRuntime().maxMemory() / 4;
         chromosomeOrdinals = new Hashtable<String, Integer>();
         for (int i = 0; i < chromosomes.size(); i++) {
             chromosomeOrdinals.put(chromosomes.get(i).getName(), i);
         }
+
+        // Index zero is whole genome,  it does not contribute to the offsets
+        chromosomeOffsets = new long[chromosomes.size()];
+        for (int i = 2; i < chromosomes.size(); i++) {
+            chromosomeOffsets[i] = chromosomeOffsets[i - 1] + chromosomes.get(i - 1).getSize();
+        }
     }
 
     public void setNumberOfThreads(int n) {
@@ -72,13 +116,36 @@ public class Preprocessor {
         this.loadDensities = loadDensities;
     }
 
+    /**
+     * @param tmpDir directory for sorted runs of contacts,  or null for the system temporary directory
+     */
+    public void setTmpDir(File tmpDir) {
+        this.tmpDir = tmpDir;
+    }
+
+    /**
+     * @param memoryBudget approximate number of bytes used to count contacts before they are written to sorted runs
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
     public void preprocess(final List<String> inputFileList) throws IOException {
 
+        List<ContactAccumulator> accumulators = null;
+        ExecutorService compressor = null;
         try {
             System.out.println("Start preprocess");
+
+            List<MatrixPP> matrices = createMatrices();
+            accumulators = createAccumulators(matrices);
+            accumulate(inputFileList, accumulators);
             if (loadDensities) {
                 File densitiesFile = new File(outputFile.getPath() + ".densities");
-                calculateDensities(inputFileList, densitiesFile);
+                calculateDensities(accumulators, densitiesFile);
+            }
+            for (ContactAccumulator accumulator : accumulators) {
+                accumulator.openRuns();
             }
 
             fos = new LittleEndianOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
@@ -99,65 +166,11 @@ public class Preprocessor {
             fos.writeString("Version");
             fos.writeString("1");
 
-            // Compute matrices.  Note that c2 is always >= c1
-            List<Thread> threads = new ArrayList();
-            final List<MatrixPP> matrices = new ArrayList<MatrixPP>();
-            for (int c1 = 0; c1 < nChrs; c1++) {
-                for (int c2 = c1; c2 < nChrs; c2++) {
-
-                    // Index zero is whole genome
-                    if ((c1 == 0 && c2 != 0) || (c2 == 0 && c1 != 0)) continue;
-
-                    if (diagonalsOnly && c1 != c2) continue;
-
-                    // Optionally filter on chromosome
-                    if (includedChromosomes != null && c1 != 0) {
-                        String c1Name = chromosomes.get(c1).getName();
-                        String c2Name = chromosomes.get(c2).getName();
-                        if (!(includedChromosomes.contains(c1Name) || includedChromosomes.contains(c2Name))) {
-                            continue;
-                        }
-                    }
-
-                    if (nThreads <= 1) {
-                        MatrixPP matrix = computeMatrix(inputFileList, c1, c2);
-                        if (matrix != null) {
-                            writeMatrix(matrix);
-                        }
-                    } else {
-                        final int fc1 = c1;
-                        final int fc2 = c2;
-                        Runnable runnable = new Runnable() {
-                            public void run() {
-                                try {
-                                    MatrixPP matrix = computeMatrix(inputFileList, fc1, fc2);
-                                    if (matrix != null) {
-                                        matrices.add(matrix);
-                                    }
-                                } catch (IOException e) {
-                                    e.printStackTrace();
-                                }
-
-                            }
-                        };
-                        threads.add(new Thread(runnable));
-
-                        // Thread queue is full.  Process it
-                        if (threads.size() >= nThreads) {
-                            processThreads(threads, matrices);
-                            threads.clear();
-                            matrices.clear();
-                        }
-                    }
-                }
-            } // End of double loop through chromosomes
-
-            // Process any leftover threads
-            if (threads.size() > 0) {
-                processThreads(threads, matrices);
+            compressor = ExecutorUtils.newFixedThreadPool("Block compressor", nThreads);
+            for (MatrixPP matrix : matrices) {
+                writeMatrix(matrix, compressor);
             }
 
-
             masterIndexPosition = fos.getWrittenCount();
             writeMasterIndex();
 
@@ -165,157 +178,222 @@ public class Preprocessor {
         } finally {
             if (fos != null)
                 fos.close();
-        }
-
-        updateIndexPositions();
-    }
-
-    private void processThreads(List<Thread> threads, List<MatrixPP> matrices) throws IOException {
-        for (Thread t : threads) {
-            t.start();
-        }
-        for (Thread t : threads) {
-            try {
-                t.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
+            if (compressor != null) {
+                compressor.shutdownNow();
+            }
+            if (accumulators != null) {
+                for (ContactAccumulator accumulator : accumulators) {
+                    accumulator.close();
+                }
             }
         }
 
-        for (MatrixPP matrix : matrices) {
-            writeMatrix(matrix);
-        }
+        updateIndexPositions();
     }
 
     /**
-     * Calculate observed/expected and write to a densities file that can be loaded later with
-     * the Hi-C viewer.
-     *
-     * @param paths         Files to calculate densities on
-     * @param densitiesFile Output file for densities
-     * @throws IOException
+     * Create the matrices to compute,  in the order they are written.  Note that c2 is always >= c1
      */
-    private void calculateDensities(List<String> paths, File densitiesFile) throws IOException {
-        // Limit calcs to 10KB
-        int[] gridSizeArray = new int[8];
-        for (int i = 0; i < 8; i++) {
-            gridSizeArray[i] = HiCGlobals.zoomBinSizes[i];
-        }
+    private List<MatrixPP> createMatrices() {
 
-        DensityCalculation[] calcs = new DensityCalculation[gridSizeArray.length];
-        for (int z = 0; z < gridSizeArray.length; z++) {
-            calcs[z] = new DensityCalculation(chromosomes, gridSizeArray[z]);
+        int nChrs = chromosomes.size();
+        matrixOrdinals = new int[nChrs][nChrs];
+        for (int[] row : matrixOrdinals) {
+            Arrays.fill(row, -1);
         }
 
-        for (String path : paths) {
-            PairIterator iter = (path.endsWith(".bin")) ?
-                    new BinPairIterator(path) :
-                    new AsciiPairIterator(path, chromosomeOrdinals);
-            while (iter.hasNext()) {
-                AlignmentPair pair = iter.next();
-                if (pair.getChr1() == pair.getChr2()) {
-                    int dist = Math.abs(pair.getPos1() - pair.getPos2());
+        List<MatrixPP> matrices = new ArrayList<MatrixPP>();
+        for (int c1 = 0; c1 < nChrs; c1++) {
+            for (int c2 = c1; c2 < nChrs; c2++) {
 
-                    int index = pair.getChr1();
-                    for (int z = 0; z < gridSizeArray.length; z++) {
-                        calcs[z].addDistance(index, dist);
+                // Index zero is whole genome
+                if ((c1 == 0 && c2 != 0) || (c2 == 0 && c1 != 0)) continue;
+
+                if (diagonalsOnly && c1 != c2) continue;
+
+                // Optionally filter on chromosome
+                if (includedChromosomes != null && c1 != 0) {
+                    String c1Name = chromosomes.get(c1).getName();
+                    String c2Name = chromosomes.get(c2).getName();
+                    if (!(includedChromosomes.contains(c1Name) || includedChromosomes.contains(c2Name))) {
+                        continue;
                     }
                 }
+
+                MatrixPP matrix;
+                if (c1 == 0) {
+                    int genomeLength = chromosomes.get(0).getSize();  // <= whole genome in KB
+                    int binSize = genomeLength / 500;
+                    matrix = new MatrixPP(matrices.size(), c1, c2, binSize);
+                } else {
+                    matrix = new MatrixPP(matrices.size(), c1, c2);
+                }
+                matrixOrdinals[c1][c2] = matrix.getOrdinal();
+                matrixOrdinals[c2][c1] = matrix.getOrdinal();
+                matrices.add(matrix);
             }
         }
-        for (int z = 0; z < gridSizeArray.length; z++) {
-            calcs[z].computeDensity();
-        }
+        return matrices;
+    }
+
+    /**
+     * Create an accumulator for the whole genome view,  and one for each zoom level of the chromosome matrices
+     */
+    private List<ContactAccumulator> createAccumulators(List<MatrixPP> matrices) {
 
-        outputDensities(calcs, densitiesFile);
+        int nZooms = HiCGlobals.zoomBinSizes.length;
+        MatrixZoomDataPP[] wholeGenome = new MatrixZoomDataPP[matrices.size()];
+        MatrixZoomDataPP[][] zoomData = new MatrixZoomDataPP[nZooms][matrices.size()];
+        for (MatrixPP matrix : matrices) {
+            MatrixZoomDataPP[] matrixZoomData = matrix.getZoomData();
+            if (matrix.isWholeGenome()) {
+                wholeGenome[matrix.getOrdinal()] = matrixZoomData[0];
+            } else {
+                for (int zoom = 0; zoom < nZooms; zoom++) {
+                    zoomData[zoom][matrix.getOrdinal()] = matrixZoomData[zoom];
+                }
+            }
+        }
 
+        List<ContactAccumulator> accumulators = new ArrayList<ContactAccumulator>();
+        accumulators.add(new ContactAccumulator(wholeGenome, true, null));
+        for (int zoom = 0; zoom < nZooms; zoom++) {
+            DensityCalculation density = loadDensities ?
+                    new DensityCalculation(chromosomes, HiCGlobals.zoomBinSizes[zoom]) : null;
+            accumulators.add(new ContactAccumulator(zoomData[zoom], false, density));
+        }
+        nAccumulators = accumulators.size();
+        return accumulators;
     }
 
     /**
-     * Compute matrix for the given chromosome combination.  This resultes in full pass through the input files
-     * for each chromosome combination.  This is done to save memory, at the expense of longer running times.
+     * Count the contacts of all matrices in one pass through the input files
      *
      * @param inputFileList
-     * @param c1
-     * @param c2
-     * @return
+     * @param accumulators
      * @throws IOException
      */
-    public MatrixPP computeMatrix(List<String> inputFileList, int c1, int c2) throws IOException {
-
-        boolean isWholeGenome = (c1 == 0 && c2 == 0);
-
-        MatrixPP matrix = null;
+    private void accumulate(List<String> inputFileList, final List<ContactAccumulator> accumulators) throws IOException {
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (ContactAccumulator accumulator : accumulators) {
+            Thread thread = new Thread(accumulator, "Contact accumulator");
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
 
-        if (isWholeGenome) {
-            int genomeLength = chromosomes.get(0).getSize();  // <= whole genome in KB
-            int binSize = genomeLength / 500;
-            matrix = new MatrixPP(c1, c2, binSize);
-        } else {
-            matrix = new MatrixPP(c1, c2);
+        int nReaders = Math.max(1, Math.min(nThreads, inputFileList.size()));
+        ExecutorService readers = ExecutorUtils.newFixedThreadPool("Pair reader", nReaders);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (final String file : inputFileList) {
+                futures.add(readers.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        readPairs(file, accumulators);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                getResult(future);
+            }
+        } finally {
+            readers.shutdownNow();
+            try {
+                readers.awaitTermination(1, TimeUnit.MINUTES);
+                for (ContactAccumulator accumulator : accumulators) {
+                    accumulator.finish();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while counting contacts");
+            }
         }
 
-        for (String file : inputFileList) {
+        for (ContactAccumulator accumulator : accumulators) {
+            accumulator.checkError();
+        }
+    }
 
-            PairIterator iter = (file.endsWith(".bin")) ?
-                    new BinPairIterator(file) :
-                    new AsciiPairIterator(file, chromosomeOrdinals);
+    private void readPairs(String file, List<ContactAccumulator> accumulators) throws IOException, InterruptedException {
 
+        PairIterator iter = (file.endsWith(".bin")) ?
+                new BinPairIterator(file) :
+                new AsciiPairIterator(file, chromosomeOrdinals);
+        try {
+            int[] batch = new int[4 * BATCH_SIZE];
+            int n = 0;
             while (iter.hasNext()) {
-
                 AlignmentPair pair = iter.next();
-                int pos1 = pair.getPos1();
-                int pos2 = pair.getPos2();
-                int chr1 = pair.getChr1();
-                int chr2 = pair.getChr2();
-                if (isWholeGenome) {
-                    pos1 = getGenomicPosition(chr1, pos1);
-                    pos2 = getGenomicPosition(chr2, pos2);
-                    incrementCount(matrix, c1, pos1, c2, pos2);
-                } else if ((c1 == chr1 && c2 == chr2) || (c1 == chr2 && c2 == chr1)) {
-                    incrementCount(matrix, chr1, pos1, chr2, pos2);
+                batch[n++] = pair.getChr1();
+                batch[n++] = pair.getPos1();
+                batch[n++] = pair.getChr2();
+                batch[n++] = pair.getPos2();
+                if (n == batch.length) {
+                    for (ContactAccumulator accumulator : accumulators) {
+                        accumulator.add(batch);
+                    }
+                    batch = new int[4 * BATCH_SIZE];
+                    n = 0;
                 }
-
             }
-
+            if (n > 0) {
+                int[] lastBatch = Arrays.copyOf(batch, n);
+                for (ContactAccumulator accumulator : accumulators) {
+                    accumulator.add(lastBatch);
+                }
+            }
+        } finally {
             iter.close();
-
         }
-
-
-        matrix.parsingComplete();
-        return matrix;
     }
 
-    private int getGenomicPosition(int chr, int pos) {
-        long len = 0;
-        for (int i = 1; i < chr; i++) {
-            len += chromosomes.get(i).getSize();
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while preprocessing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
         }
-        len += pos;
-
-        return (int) (len / 1000);
-
     }
 
-    private static void incrementCount(MatrixPP matrix, int chr1, int pos1, int chr2, int pos2) {
+    /**
+     * Calculate observed/expected from the distances counted by the accumulators,  and write to a densities file
+     * that can be loaded later with the Hi-C viewer.
+     *
+     * @param accumulators  Accumulators of the zoom levels
+     * @param densitiesFile Output file for densities
+     * @throws IOException
+     */
+    private void calculateDensities(List<ContactAccumulator> accumulators, File densitiesFile) throws IOException {
 
-        if (chr2 > chr1) {
-            //transpose
-            int tc2 = chr2;
-            int tp2 = pos2;
-            chr2 = chr1;
-            pos2 = pos1;
-            chr1 = tc2;
-            pos1 = tp2;
+        List<DensityCalculation> calcs = new ArrayList<DensityCalculation>();
+        for (ContactAccumulator accumulator : accumulators) {
+            if (accumulator.density != null) {
+                accumulator.density.computeDensity();
+                calcs.add(accumulator.density);
+            }
         }
 
-        matrix.incrementCount(pos1, pos2);
+        outputDensities(calcs.toArray(new DensityCalculation[calcs.size()]), densitiesFile);
 
-        if (chr1 == chr2) {
-            int dist = Math.abs(pos1 - pos2);
-            //densityCalculation.addDistance(chr1, dist);
-        }
+    }
+
+    private int getGenomicPosition(int chr, int pos) {
+        long len = chromosomeOffsets[chr] + pos;
+        return (int) (len / 1000);
     }
 
 
@@ -388,7 +466,7 @@ public class Preprocessor {
     }
 
 
-    public synchronized void writeMatrix(MatrixPP matrix) throws IOException {
+    public void writeMatrix(MatrixPP matrix, ExecutorService compressor) throws IOException {
 
         System.out.println("Start writing matrix: " + matrix.getKey());
 
@@ -404,7 +482,7 @@ public class Preprocessor {
         matrixPositions.put(matrix.getKey(), new IndexEntry(position, size));
 
         for (MatrixZoomDataPP zd : matrix.getZoomData()) {
-            IndexEntry[] blockIndex = writeZoomData(zd);
+            IndexEntry[] blockIndex = writeZoomData(zd, compressor);
             final String blockKey = getBlockKey(zd);
             blockIndexMap.put(blockKey, blockIndex);
         }
@@ -418,7 +496,7 @@ public class Preprocessor {
 
     private void writeZoomHeader(MatrixZoomDataPP zd) throws IOException {
 
-        int numberOfBlocks = zd.getBlocks().size();
+        int numberOfBlocks = zd.getBlockCount();
 
         fos.writeInt(zd.getZoom());
         fos.writeInt(zd.getSum());
@@ -437,65 +515,86 @@ public class Preprocessor {
 
     }
 
-    private IndexEntry[] writeZoomData(MatrixZoomDataPP zd) throws IOException {
-
-        final Map<Integer, Block> blocks = zd.getBlocks();
+    /**
+     * Write the blocks of a zoom level in block number order.  Blocks are compressed in parallel but written in the
+     * order they are merged,  with a bounded number waiting to be written.
+     *
+     * @param zd
+     * @param compressor
+     * @return the block index
+     * @throws IOException
+     */
+    private IndexEntry[] writeZoomData(MatrixZoomDataPP zd, ExecutorService compressor) throws IOException {
 
-        IndexEntry[] indexEntries = new IndexEntry[blocks.size()];
+        IndexEntry[] indexEntries = new IndexEntry[zd.getBlockCount()];
+        int maxPending = 2 * Math.max(1, nThreads);
+        LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+        IntArrayList pendingBlockNumbers = new IntArrayList();
         int i = 0;
-        for (Map.Entry<Integer, Block> entry : blocks.entrySet()) {
-
-            int blockNumber = entry.getKey().intValue();
-            Block block = entry.getValue();
 
-            long position = fos.getWrittenCount();
-            writeContactRecords(block);
-            int size = (int) (fos.getWrittenCount() - position);
+        ContactMerger merger = new ContactMerger(zd.getCursors());
+        while (merger.nextBlock()) {
+            final int[] records = merger.getRecords();
+            pending.add(compressor.submit(new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    return compressContactRecords(records);
+                }
+            }));
+            pendingBlockNumbers.add(merger.getBlockNumber());
 
-            indexEntries[i] = new IndexEntry(blockNumber, position, size);
+            if (pending.size() >= maxPending) {
+                indexEntries[i] = writeBlock(pendingBlockNumbers.get(i), pending.removeFirst());
+                i++;
+            }
+        }
+        while (!pending.isEmpty()) {
+            indexEntries[i] = writeBlock(pendingBlockNumbers.get(i), pending.removeFirst());
             i++;
         }
         return indexEntries;
 
     }
 
+    private IndexEntry writeBlock(int blockNumber, Future<byte[]> compressedBlock) throws IOException {
+        byte[] compressedBytes = getResult(compressedBlock);
+        long position = fos.getWrittenCount();
+        fos.write(compressedBytes);
+        return new IndexEntry(blockNumber, position, compressedBytes.length);
+    }
+
     /**
      * Note -- compressed
      *
-     * @param block
+     * @param records x, y and counts of each record
      * @throws IOException
      */
-    private void writeContactRecords(Block block) throws IOException {
-
-        final Collection<ContactRecord> records = block.getContractRecordValues();//   getContactRecords();
-
+    private byte[] compressContactRecords(int[] records) throws IOException {
 
         // Count records first
         int nRecords;
         if (countThreshold > 0) {
             nRecords = 0;
-            for (ContactRecord rec : records) {
-                if (rec.getCounts() >= countThreshold) {
+            for (int i = 2; i < records.length; i += 3) {
+                if (records[i] >= countThreshold) {
                     nRecords++;
                 }
             }
         } else {
-            nRecords = records.size();
+            nRecords = records.length / 3;
         }
 
-        BufferedByteWriter buffer = new BufferedByteWriter(nRecords * 12);
+        BufferedByteWriter buffer = new BufferedByteWriter(nRecords * 12 + 4);
         buffer.putInt(nRecords);
-        for (ContactRecord rec : records) {
-            if (rec.getCounts() >= countThreshold) {
-                buffer.putInt(rec.getX());
-                buffer.putInt(rec.getY());
-                buffer.putInt(rec.getCounts());
+        for (int i = 0; i < records.length; i += 3) {
+            if (records[i + 2] >= countThreshold) {
+                buffer.putInt(records[i]);
+                buffer.putInt(records[i + 1]);
+                buffer.putInt(records[i + 2]);
             }
         }
 
         byte[] bytes = buffer.getBytes();
-        byte[] compressedBytes = CompressionUtils.compress(bytes);
-        fos.write(compressedBytes);
+        return CompressionUtils.compress(bytes);
 
     }
 
@@ -577,6 +676,7 @@ public class Preprocessor {
      */
     class MatrixPP {
 
+        private int ordinal;
         private int chr1;
         private int chr2;
         private MatrixZoomDataPP[] zoomData;
@@ -586,10 +686,12 @@ public class Preprocessor {
          * Constructor for creating a matrix and initializing zoomed data at predefined resolution scales.  This
          * constructor is used when parsing alignment files.
          *
+         * @param ordinal position of the matrix in the file
          * @param chr1
          * @param chr2
          */
-        MatrixPP(int chr1, int chr2) {
+        MatrixPP(int ordinal, int chr1, int chr2) {
+            this.ordinal = ordinal;
             this.chr1 = chr1;
             this.chr2 = chr2;
             zoomData = new MatrixZoomDataPP[HiCGlobals.zoomBinSizes.length];
@@ -611,11 +713,13 @@ public class Preprocessor {
          * Constructor for creating a matrix with a single zoom level at a specified bin size.  This is provided
          * primarily for constructing a whole-genome view.
          *
+         * @param ordinal position of the matrix in the file
          * @param chr1
          * @param chr2
          * @param binSize
          */
-        MatrixPP(int chr1, int chr2, int binSize) {
+        MatrixPP(int ordinal, int chr1, int chr2, int binSize) {
+            this.ordinal = ordinal;
             this.chr1 = chr1;
             this.chr2 = chr2;
             zoomData = new MatrixZoomDataPP[1];
@@ -633,19 +737,12 @@ public class Preprocessor {
             return generateKey(chr1, chr2);
         }
 
-
-        void incrementCount(int pos1, int pos2) {
-
-            for (int i = 0; i < zoomData.length; i++) {
-                zoomData[i].incrementCount(pos1, pos2);
-            }
-
+        int getOrdinal() {
+            return ordinal;
         }
 
-        void parsingComplete() {
-            for (MatrixZoomDataPP zd : zoomData) {
-                zd.parsingComplete();
-            }
+        boolean isWholeGenome() {
+            return chr1 == 0 && chr2 == 0;
         }
 
         int getChr1() {
@@ -678,8 +775,10 @@ public class Preprocessor {
         private int blockBinCount;   // block size in bins
         private int blockColumnCount;     // number of block columns
 
-        private LinkedHashMap<Integer, Block> blocks;
-        private Map<Integer, Preprocessor.IndexEntry> blockIndex;
+        // Counts by bin (see ContactCursor.getKey) since the last sorted run,  and the numbers of all blocks counted
+        private LongIntHashMap cells;
+        private BitSet blockNumbers;
+        private ContactAccumulator accumulator;
 
         int getSum() {
             return sum;
@@ -711,8 +810,8 @@ public class Preprocessor {
             return blockColumnCount;
         }
 
-        Map<Integer, Block> getBlocks() {
-            return blocks;
+        int getBlockCount() {
+            return blockNumbers.cardinality();
         }
 
 
@@ -737,7 +836,8 @@ public class Preprocessor {
 
             int nBinsX = chromosomes.get(chr1).getSize() / binSize + 1;
             blockBinCount = nBinsX / blockColumnCount + 1;
-            blocks = new LinkedHashMap<Integer, Block>(blockColumnCount * blockColumnCount);
+            cells = new LongIntHashMap(16);
+            blockNumbers = new BitSet();
         }
 
 
@@ -758,26 +858,467 @@ public class Preprocessor {
                 }
             }
 
-            // compute block number (fist block is zero)
+            blockNumbers.set(getBlockNumber(xBin, yBin));
+            cells.increment(ContactCursor.getKey(xBin, yBin), 1);
+
+        }
+
+        // compute block number (fist block is zero)
+        int getBlockNumber(int xBin, int yBin) {
             int blockCol = xBin / getBlockBinCount();
             int blockRow = yBin / getBlockBinCount();
-            int blockNumber = getBlockColumnCount() * blockRow + blockCol;
+            return getBlockColumnCount() * blockRow + blockCol;
+        }
+
+        boolean hasCells() {
+            return !cells.isEmpty();
+        }
+
+        long getMemoryUsage() {
+            return cells.getMemoryUsage();
+        }
+
+        /**
+         * Sort the counts in memory by block and bin,  and clear them
+         *
+         * @return a cursor over the sorted counts
+         */
+        ContactCursor drainCells() {
+
+            long[] keys = cells.keys();
+            Arrays.sort(keys);
+
+            int[] sortedBlocks = new int[blockNumbers.cardinality()];
+            int n = 0;
+            for (int b = blockNumbers.nextSetBit(0); b >= 0; b = blockNumbers.nextSetBit(b + 1)) {
+                sortedBlocks[n++] = b;
+            }
+
+            // Counting sort on block,  which is stable so cells remain sorted by bin within a block
+            int[] ranks = new int[keys.length];
+            int[] offsets = new int[sortedBlocks.length + 1];
+            for (int i = 0; i < keys.length; i++) {
+                int blockNumber = getBlockNumber(ContactCursor.getX(keys[i]), ContactCursor.getY(keys[i]));
+                ranks[i] = Arrays.binarySearch(sortedBlocks, blockNumber);
+                offsets[ranks[i] + 1]++;
+            }
+            for (int r = 0; r < sortedBlocks.length; r++) {
+                offsets[r + 1] += offsets[r];
+            }
+
+            long[] sortedKeys = new long[keys.length];
+            int[] blocks = new int[keys.length];
+            int[] counts = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                int j = offsets[ranks[i]]++;
+                sortedKeys[j] = keys[i];
+                blocks[j] = sortedBlocks[ranks[i]];
+                counts[j] = cells.get(keys[i]);
+            }
+
+            cells = new LongIntHashMap(16);
+            return new MemoryCursor(blocks, sortedKeys, counts);
+        }
+
+        /**
+         * @return cursors over the sorted runs of this zoom data and the counts still in memory
+         * @throws IOException
+         */
+        List<ContactCursor> getCursors() throws IOException {
+            List<ContactCursor> cursors = accumulator.getRunCursors(this);
+            cursors.add(drainCells());
+            return cursors;
+        }
+    }
+
+
+    /**
+     * Counts the contacts of one zoom level of all matrices,  or of the whole genome view.  Pairs are taken from a
+     * queue in batches of chr1, pos1, chr2, pos2.
+     */
+    class ContactAccumulator implements Runnable {
+
+        // Zoom data by matrix ordinal,  null for matrices not counted here
+        private final MatrixZoomDataPP[] zoomData;
+        private final boolean wholeGenome;
+        private final DensityCalculation density;
+        private final BlockingQueue<int[]> queue;
+        private final List<ContactRun> runs;
+        private long accumulatorMemoryUsage;
+        private volatile Throwable error;
+
+        /**
+         * @param zoomData    zoom data by matrix ordinal
+         * @param wholeGenome true for the accumulator of the whole genome view
+         * @param density     calculation of the expected density of this zoom level,  or null
+         */
+        ContactAccumulator(MatrixZoomDataPP[] zoomData, boolean wholeGenome, DensityCalculation density) {
+            this.zoomData = zoomData;
+            this.wholeGenome = wholeGenome;
+            this.density = density;
+            queue = new ArrayBlockingQueue<int[]>(QUEUE_CAPACITY);
+            runs = new ArrayList<ContactRun>();
+            for (MatrixZoomDataPP zd : zoomData) {
+                if (zd != null) {
+                    zd.accumulator = this;
+                }
+            }
+        }
+
+        void add(int[] batch) throws InterruptedException {
+            queue.put(batch);
+        }
+
+        /**
+         * Signal the end of input.  The accumulator thread finishes when it has counted the batches queued so far.
+         */
+        void finish() throws InterruptedException {
+            queue.put(END_OF_INPUT);
+        }
+
+        public void run() {
+            try {
+                int[] batch;
+                while ((batch = queue.take()) != END_OF_INPUT) {
+                    // After an error keep taking batches so readers do not wait on a full queue
+                    if (error == null) {
+                        try {
+                            count(batch);
+                        } catch (Throwable e) {
+                            error = e;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                error = e;
+            }
+        }
+
+        private void count(int[] batch) throws IOException {
+
+            for (int i = 0; i < batch.length; i += 4) {
+                int chr1 = batch[i];
+                int pos1 = batch[i + 1];
+                int chr2 = batch[i + 2];
+                int pos2 = batch[i + 3];
+                if (wholeGenome) {
+                    MatrixZoomDataPP zd = zoomData[matrixOrdinals[0][0]];
+                    zd.incrementCount(getGenomicPosition(chr1, pos1), getGenomicPosition(chr2, pos2));
+                } else {
+                    if (density != null && chr1 == chr2) {
+                        density.addDistance(chr1, Math.abs(pos1 - pos2));
+                    }
+
+                    int ordinal = matrixOrdinals[chr1][chr2];
+                    if (ordinal < 0 || zoomData[ordinal] == null) continue;
+
+                    // Transpose so x is the position on the chromosome with the larger index
+                    if (chr2 > chr1) {
+                        zoomData[ordinal].incrementCount(pos2, pos1);
+                    } else {
+                        zoomData[ordinal].incrementCount(pos1, pos2);
+                    }
+                }
+            }
+
+            // Write a sorted run if all accumulators together are over budget and this one holds its share or more
+            long usage = updateMemoryUsage();
+            if (usage > memoryBudget && accumulatorMemoryUsage >= usage / nAccumulators) {
+                spill();
+                updateMemoryUsage();
+            }
+        }
+
+        private long updateMemoryUsage() {
+            long bytes = 0;
+            for (MatrixZoomDataPP zd : zoomData) {
+                if (zd != null) {
+                    bytes += zd.getMemoryUsage();
+                }
+            }
+            long usage = memoryUsage.addAndGet(bytes - accumulatorMemoryUsage);
+            accumulatorMemoryUsage = bytes;
+            return usage;
+        }
+
+        /**
+         * Write the counts in memory to a temporary file,  by matrix and then by block and bin
+         */
+        private void spill() throws IOException {
+
+            File file = File.createTempFile("contacts", ".tmp", tmpDir);
+            file.deleteOnExit();
+            runs.add(new ContactRun(file));
+
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                ContactRecordCodec codec = new ContactRecordCodec();
+                codec.setOutputStream(os);
+                for (int ordinal = 0; ordinal < zoomData.length; ordinal++) {
+                    MatrixZoomDataPP zd = zoomData[ordinal];
+                    if (zd == null || !zd.hasCells()) continue;
+
+                    MemoryCursor cursor = (MemoryCursor) zd.drainCells();
+                    os.writeInt(ordinal);
+                    os.writeInt(cursor.size());
+                    while (cursor.advance()) {
+                        codec.encode(new ContactRecord(cursor.block, cursor.getX(), cursor.getY(), cursor.counts));
+                    }
+                }
+                os.writeInt(-1);
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            } finally {
+                os.close();
+            }
+        }
+
+        void checkError() throws IOException {
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else if (error != null) {
+                throw new IOException(error);
+            }
+        }
+
+        void openRuns() throws IOException {
+            for (ContactRun run : runs) {
+                run.open();
+            }
+        }
+
+        /**
+         * Cursors over the contacts of a zoom data in each run.  Zoom data must be requested in matrix order.
+         */
+        List<ContactCursor> getRunCursors(MatrixZoomDataPP zd) {
+            int ordinal = Arrays.asList(zoomData).indexOf(zd);
+            List<ContactCursor> cursors = new ArrayList<ContactCursor>();
+            for (ContactRun run : runs) {
+                if (run.nextOrdinal == ordinal) {
+                    cursors.add(new RunCursor(run, run.nextCount));
+                }
+            }
+            return cursors;
+        }
+
+        void close() {
+            for (ContactRun run : runs) {
+                run.close();
+            }
+        }
+    }
+
+
+    /**
+     * A temporary file of contacts sorted by matrix,  block and bin
+     */
+    static class ContactRun {
+
+        private File file;
+        private DataInputStream is;
+        private ContactRecordCodec codec;
+        private int nextOrdinal;
+        private int nextCount;
+
+        ContactRun(File file) {
+            this.file = file;
+        }
+
+        void open() throws IOException {
+            is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            codec = new ContactRecordCodec();
+            codec.setInputStream(is);
+            readHeader();
+        }
+
+        void readHeader() throws IOException {
+            nextOrdinal = is.readInt();
+            nextCount = nextOrdinal < 0 ? 0 : is.readInt();
+        }
 
-            Block block = blocks.get(blockNumber);
-            if (block == null) {
-                block = new Block(blockNumber);
-                blocks.put(blockNumber, block);
+        void close() {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    // Ignore -- the file is deleted next
+                }
             }
-            block.incrementCount(xBin, yBin);
+            file.delete();
+        }
+    }
+
+
+    /**
+     * A sequence of contacts sorted by block number and then by bin
+     */
+    static abstract class ContactCursor {
 
+        int block;
+        long key;
+        int counts;
+
+        /**
+         * Move to the next contact
+         *
+         * @return false if there are no more contacts
+         */
+        abstract boolean advance() throws IOException;
+
+        int getX() {
+            return getX(key);
         }
 
-        void parsingComplete() {
-            for (Block b : blocks.values()) {
-                b.parsingComplete();
+        int getY() {
+            return getY(key);
+        }
+
+        // Keys order cells by (y, x),  the order of the records in a block
+        static long getKey(int x, int y) {
+            return ((long) y << 32) | (x & 0xffffffffL);
+        }
+
+        static int getX(long key) {
+            return (int) key;
+        }
+
+        static int getY(long key) {
+            return (int) (key >> 32);
+        }
+
+        static final Comparator<ContactCursor> ORDER = new Comparator<ContactCursor>() {
+            public int compare(ContactCursor c1, ContactCursor c2) {
+                if (c1.block != c2.block) {
+                    return c1.block < c2.block ? -1 : 1;
+                }
+                return c1.key < c2.key ? -1 : (c1.key == c2.key ? 0 : 1);
             }
+        };
+    }
+
+    static class MemoryCursor extends ContactCursor {
+
+        private int[] blocks;
+        private long[] keys;
+        private int[] countArray;
+        private int next;
+
+        MemoryCursor(int[] blocks, long[] keys, int[] counts) {
+            this.blocks = blocks;
+            this.keys = keys;
+            this.countArray = counts;
         }
 
+        int size() {
+            return keys.length;
+        }
 
+        boolean advance() {
+            if (next == keys.length) {
+                return false;
+            }
+            block = blocks[next];
+            key = keys[next];
+            counts = countArray[next];
+            next++;
+            return true;
+        }
+    }
+
+    static class RunCursor extends ContactCursor {
+
+        private ContactRun run;
+        private int remaining;
+
+        RunCursor(ContactRun run, int count) {
+            this.run = run;
+            this.remaining = count;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            ContactRecord record = run.codec.decode();
+            block = record.getBlockNumber();
+            key = getKey(record.getX(), record.getY());
+            counts = record.getCounts();
+            if (--remaining == 0) {
+                run.readHeader();
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     * Merges sorted cursors a block at a time,  summing the counts of a bin found in more than one
+     */
+    static class ContactMerger {
+
+        private PriorityQueue<ContactCursor> queue;
+        private int blockNumber;
+        private IntArrayList records;
+
+        ContactMerger(List<ContactCursor> cursors) throws IOException {
+            queue = new PriorityQueue<ContactCursor>(Math.max(1, cursors.size()), ContactCursor.ORDER);
+            for (ContactCursor cursor : cursors) {
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        }
+
+        /**
+         * Move to the next block
+         *
+         * @return false if there are no more blocks
+         */
+        boolean nextBlock() throws IOException {
+            if (queue.isEmpty()) {
+                return false;
+            }
+            blockNumber = queue.peek().block;
+            records = new IntArrayList(300);
+            while (!queue.isEmpty() && queue.peek().block == blockNumber) {
+                ContactCursor cursor = queue.poll();
+                long key = cursor.key;
+                int counts = cursor.counts;
+                advance(cursor);
+                while (!queue.isEmpty() && queue.peek().block == blockNumber && queue.peek().key == key) {
+                    cursor = queue.poll();
+                    counts += cursor.counts;
+                    advance(cursor);
+                }
+                records.add(ContactCursor.getX(key));
+                records.add(ContactCursor.getY(key));
+                records.add(counts);
+            }
+            return true;
+        }
+
+        private void advance(ContactCursor cursor) throws IOException {
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+
+        int getBlockNumber() {
+            return blockNumber;
+        }
+
+        /**
+         * @return x, y and counts of each record of the current block
+         */
+        int[] getRecords() {
+            return records.toArray();
+        }
     }
 }
@@ -48,6 +48,21 @@ public class BBMethylDataSource implements MethylDataSource {
         init(genome);
     }
 
+    /**
+     * @return true if the bigBed file holds bisulfite sequencing CpG methylation records
+     */
+    public static boolean isMethylation(String path, BBFileReader reader) {
+        return path.contains("RRBS_cpgMethylation") || path.contains("BiSeq_cpgMethylation") || isUSC(reader);
+    }
+
+    static Type getType(BBFileReader reader) {
+        return isUSC(reader) ? Type.USC : Type.ZILLER;
+    }
+
+    private static boolean isUSC(BBFileReader reader) {
+        return reader.getAutoSql() != null && reader.getAutoSql().startsWith("table BisulfiteSeq");
+    }
+
     public Iterator<MethylScore> query(String chr, int start, int end) {
         String tmp = chrNameMap.get(chr);
         String querySeq = tmp == null ? chr : tmp;
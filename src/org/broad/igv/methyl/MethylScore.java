@@ -28,6 +28,7 @@ public class MethylScore implements LocusScore {
     Strand strand;
     float percentMethylated;
     int totalCount;
+    int cpgCount = 1;
 
     public MethylScore(String chr, int start, int end, Strand strand, float percentMethylated, int totalCount) {
         this.chr = chr;
@@ -38,6 +39,18 @@ public class MethylScore implements LocusScore {
         this.totalCount = totalCount;
     }
 
+    /**
+     * Score summarizing the CpGs of a region.
+     *
+     * @param percentMethylated methylation rate of the CpGs,  weighted by their read counts
+     * @param totalCount        total read count of the CpGs
+     * @param cpgCount          number of CpGs
+     */
+    public MethylScore(String chr, int start, int end, float percentMethylated, int totalCount, int cpgCount) {
+        this(chr, start, end, Strand.NONE, percentMethylated, totalCount);
+        this.cpgCount = cpgCount;
+    }
+
     public String getChr() {
         return chr;
     }
@@ -62,6 +75,10 @@ public class MethylScore implements LocusScore {
         return totalCount;
     }
 
+    public int getCpgCount() {
+        return cpgCount;
+    }
+
     public void setStart(int start) {
         this.start = start;
     }
@@ -81,7 +98,8 @@ public class MethylScore implements LocusScore {
      */
     public String getValueString(double position, WindowFunction windowFunction) {
         return percentMethylated + "%" + " [" + totalCount + "]" +
-                (strand == Strand.POSITIVE ? " (+)" : (strand == Strand.NEGATIVE ? " (-)" : ""));
+                (strand == Strand.POSITIVE ? " (+)" : (strand == Strand.NEGATIVE ? " (-)" : "")) +
+                (cpgCount > 1 ? "<br>" + cpgCount + " CpGs" : "");
     }
 
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not
+ * responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL), Version 2.1 which is
+ * available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.methyl;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.tdf.TDFDataset;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tdf.TDFTile;
+import org.broad.igv.util.FileUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the methylation summaries written by MethylSummaryWriter.
+ */
+public class MethylSummarySource {
+
+    private static Logger log = Logger.getLogger(MethylSummarySource.class);
+
+    private TDFReader reader;
+    private int maxZoom;
+
+    /**
+     * @return the summary source of a bigBed file,  or null if the file has not been summarized
+     */
+    public static MethylSummarySource open(String path) {
+        String summaryPath = MethylSummaryWriter.getSummaryPath(path);
+        if (!FileUtils.resourceExists(summaryPath)) {
+            return null;
+        }
+        try {
+            return new MethylSummarySource(TDFReader.getReader(summaryPath));
+        } catch (Exception e) {
+            log.error("Error opening methylation summary: " + summaryPath, e);
+            return null;
+        }
+    }
+
+    MethylSummarySource(TDFReader reader) {
+        this.reader = reader;
+        String maxZoomString = reader.getGroup("/").getAttribute("maxZoom");
+        maxZoom = maxZoomString == null ? 0 : Integer.parseInt(maxZoomString);
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Return the summary bins overlapping a region.  Zoom levels beyond the maximum summarized level use the
+     * maximum level.
+     */
+    public List<MethylScore> getSummaryScores(String chr, int start, int end, int zoom) {
+
+        TDFDataset ds = reader.getDataset(MethylSummaryWriter.getDatasetName(chr, Math.min(zoom, maxZoom)));
+        if (ds == null) {
+            return Collections.emptyList();
+        }
+
+        List<MethylScore> scores = new ArrayList<MethylScore>();
+        for (TDFTile tile : ds.getTiles(start, end)) {
+            for (int i = 0; i < tile.getSize(); i++) {
+                int binStart = tile.getStartPosition(i);
+                int binEnd = tile.getEndPosition(i);
+                if (binEnd <= start || binStart >= end) {
+                    continue;
+                }
+                scores.add(new MethylScore(chr, binStart, binEnd,
+                        tile.getValue(MethylSummaryWriter.RATE, i),
+                        (int) tile.getValue(MethylSummaryWriter.READ_COUNT, i),
+                        (int) tile.getValue(MethylSummaryWriter.CPG_COUNT, i)));
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not
+ * responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL), Version 2.1 which is
+ * available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.methyl;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.bbfile.BBFileReader;
+import org.broad.igv.feature.Chromosome;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tdf.TDFBedTile;
+import org.broad.igv.tdf.TDFDataset;
+import org.broad.igv.tdf.TDFWriter;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes a multi-resolution summary of a bisulfite sequencing bigBed file,  so methylation can be displayed at any
+ * scale without reading every CpG.  The summary is a TDF file with the tile layout of igvtools toTDF.  Each bin of a
+ * zoom level holds the methylation rate of its CpGs weighted by their read counts,  the number of CpGs,  and the
+ * total read count.
+ */
+public class MethylSummaryWriter {
+
+    private static Logger log = Logger.getLogger(MethylSummaryWriter.class);
+
+    static final String[] TRACK_NAMES = {"Methylation", "CpG count", "Read count"};
+    static final int RATE = 0;
+    static final int CPG_COUNT = 1;
+    static final int READ_COUNT = 2;
+    static final int BINS_PER_TILE = 700;
+
+    /**
+     * @return the path of the summary of a bigBed file
+     */
+    public static String getSummaryPath(String path) {
+        return path + ".tdf";
+    }
+
+    static String getDatasetName(String chr, int zoom) {
+        return "/" + chr + "/z" + zoom + "/methylation";
+    }
+
+    /**
+     * Summarize a bisulfite sequencing bigBed file.
+     *
+     * @param path       bigBed file
+     * @param outputFile summary file
+     * @param genome     used for chromosome names and sizes,  can be null
+     * @param maxZoom    maximum zoom level to summarize
+     */
+    public static void write(String path, File outputFile, Genome genome, int maxZoom) throws IOException {
+
+        BBFileReader reader = new BBFileReader(path);
+        if (!reader.isBigBedFile() || !BBMethylDataSource.isMethylation(path, reader)) {
+            throw new IllegalArgumentException("Not a bisulfite sequencing bigBed file: " + path);
+        }
+        BBMethylDataSource.Type type = BBMethylDataSource.getType(reader);
+
+        String genomeId = genome == null ? "" : genome.getId();
+        TDFWriter writer = new TDFWriter(outputFile, genomeId, TrackType.DNA_METHYLATION, null, TRACK_NAMES,
+                Collections.<WindowFunction>emptyList(), true);
+
+        List<String> chromosomes = new ArrayList<String>();
+        for (String fileChr : reader.getChromosomeNames()) {
+
+            // Read the CpGs of the chromosome
+            IntArrayList starts = new IntArrayList(100000);
+            IntArrayList ends = new IntArrayList(100000);
+            FloatArrayList percents = new FloatArrayList(100000);
+            IntArrayList counts = new IntArrayList(100000);
+            BBMethylDataSource.WrappedIterator iter = new BBMethylDataSource.WrappedIterator(
+                    reader.getBigBedIterator(fileChr, 0, fileChr, Integer.MAX_VALUE, false), type);
+            while (iter.hasNext()) {
+                MethylScore score = iter.next();
+                if (score == null) {
+                    break;
+                }
+                starts.add(score.getStart());
+                ends.add(score.getEnd());
+                percents.add(score.getScore());
+                counts.add(score.getCount());
+            }
+            if (starts.isEmpty()) {
+                continue;
+            }
+
+            String chr = genome == null ? fileChr : genome.getChromosomeAlias(fileChr);
+            Chromosome chromosome = genome == null ? null : genome.getChromosome(chr);
+            int chrLength = chromosome == null ? ends.get(ends.size() - 1) : chromosome.getLength();
+            chromosomes.add(chr);
+
+            int[] cpgStarts = starts.toArray();
+            int[] cpgEnds = ends.toArray();
+            float[] cpgPercents = percents.toArray();
+            int[] cpgCounts = counts.toArray();
+            for (int zoom = 0; zoom <= maxZoom; zoom++) {
+                writeZoomLevel(writer, chr, chrLength, zoom, cpgStarts, cpgEnds, cpgPercents, cpgCounts);
+            }
+            log.info("Summarized " + cpgStarts.length + " CpGs on " + chr);
+        }
+
+        StringBuffer chrString = new StringBuffer();
+        for (String chr : chromosomes) {
+            if (chrString.length() > 0) {
+                chrString.append(",");
+            }
+            chrString.append(chr);
+        }
+        writer.getRootGroup().setAttribute("chromosomes", chrString.toString());
+        writer.getRootGroup().setAttribute("maxZoom", String.valueOf(maxZoom));
+        writer.closeFile();
+    }
+
+    /**
+     * Write the bins of one zoom level.  As in igvtools toTDF there are 2^zoom tiles of 700 bins.  CpGs are
+     * assigned to the bin of their start position,  and empty bins are not written.
+     */
+    static void writeZoomLevel(TDFWriter writer, String chr, int chrLength, int zoom,
+                               int[] starts, int[] ends, float[] percents, int[] counts) throws IOException {
+
+        int nTiles = (int) Math.pow(2, zoom);
+        int tileWidth = chrLength / nTiles + 1;
+        double binWidth = ((double) tileWidth) / BINS_PER_TILE;
+        String dsName = getDatasetName(chr, zoom);
+        writer.createDataset(dsName, TDFDataset.DataType.FLOAT, tileWidth, nTiles);
+
+        double[] methylated = new double[BINS_PER_TILE];
+        long[] reads = new long[BINS_PER_TILE];
+        int[] cpgs = new int[BINS_PER_TILE];
+        int tile = -1;
+        for (int i = 0; i <= starts.length; i++) {
+            int t = i < starts.length ? Math.min(nTiles - 1, starts[i] / tileWidth) : -1;
+            if (t != tile) {
+                if (tile >= 0) {
+                    writeTile(writer, dsName, tile, tileWidth, binWidth, methylated, reads, cpgs);
+                }
+                tile = t;
+            }
+            if (i < starts.length) {
+                int bin = Math.min(BINS_PER_TILE - 1, (int) ((starts[i] - tile * tileWidth) / binWidth));
+                methylated[bin] += (double) percents[i] * counts[i];
+                reads[bin] += counts[i];
+                cpgs[bin]++;
+            }
+        }
+    }
+
+    private static void writeTile(TDFWriter writer, String dsName, int tile, int tileWidth, double binWidth,
+                                  double[] methylated, long[] reads, int[] cpgs) throws IOException {
+
+        int n = 0;
+        for (int cpg : cpgs) {
+            if (cpg > 0) {
+                n++;
+            }
+        }
+
+        int tileStart = tile * tileWidth;
+        int[] binStarts = new int[n];
+        int[] binEnds = new int[n];
+        float[][] data = new float[TRACK_NAMES.length][n];
+        int k = 0;
+        for (int bin = 0; bin < BINS_PER_TILE; bin++) {
+            if (cpgs[bin] == 0) {
+                continue;
+            }
+            binStarts[k] = tileStart + (int) (bin * binWidth);
+            binEnds[k] = Math.max(binStarts[k] + 1, tileStart + (int) ((bin + 1) * binWidth));
+            data[RATE][k] = reads[bin] > 0 ? (float) (methylated[bin] / reads[bin]) : Float.NaN;
+            data[CPG_COUNT][k] = cpgs[bin];
+            data[READ_COUNT][k] = reads[bin];
+            k++;
+
+            methylated[bin] = 0;
+            reads[bin] = 0;
+            cpgs[bin] = 0;
+        }
+        writer.writeTile(dsName, tile, new TDFBedTile(tileStart, binStarts, binEnds, data));
+    }
+}
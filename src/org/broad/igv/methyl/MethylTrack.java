@@ -44,7 +44,13 @@ public class MethylTrack extends AbstractTrack {
     public static final int FIVE_MB = 5000000;
     public static final int FIFTY_MB = 50000000;
 
+    /**
+     * Zoom level of intervals of raw CpG scores
+     */
+    static final int RAW = -1;
+
     private MethylDataSource dataSource;
+    private MethylSummarySource summarySource;
     private Interval loadedInterval;
     private Renderer renderer;
     private int resolutionThreshold;
@@ -56,7 +62,7 @@ public class MethylTrack extends AbstractTrack {
         renderer = new PointsRenderer();
 
         boolean isWGBS;
-        if (reader.getAutoSql() != null && reader.getAutoSql().startsWith("table BisulfiteSeq")) {
+        if (BBMethylDataSource.getType(reader) == BBMethylDataSource.Type.USC) {
             resolutionThreshold = FIVE_MB;
             dataSource = new CachingMethylSource(new BBMethylDataSource(reader, BBMethylDataSource.Type.USC, genome), resolutionThreshold);
             //dataSource = new BBMethylDataSource(reader, BBMethylDataSource.Type.USC, genome);
@@ -67,7 +73,10 @@ public class MethylTrack extends AbstractTrack {
             //dataSource = new BBMethylDataSource(reader, BBMethylDataSource.Type.USC, genome);
         }
 
-        loadedInterval = new Interval("", -1, -1, Collections.<MethylScore>emptyList());
+        // Summaries written by igvtools,  if present,  are used beyond the resolution threshold
+        summarySource = MethylSummarySource.open(dataResourceLocator.getPath());
+
+        loadedInterval = new Interval("", -1, -1, RAW, Collections.<MethylScore>emptyList());
         setDataRange(new DataRange(0, 100));
     }
 
@@ -80,7 +89,8 @@ public class MethylTrack extends AbstractTrack {
      */
     public void render(final RenderContext context, final Rectangle rect) {
 
-        if (context.getChr().equals(Globals.CHR_ALL) || context.getScale() * rect.width > resolutionThreshold) {
+        boolean summarized = context.getScale() * rect.width > resolutionThreshold;
+        if (context.getChr().equals(Globals.CHR_ALL) || (summarized && summarySource == null)) {
             Graphics2D g = context.getGraphic2DForColor(Color.gray);
             Rectangle textRect = new Rectangle(rect);
 
@@ -96,7 +106,8 @@ public class MethylTrack extends AbstractTrack {
         final String chr = context.getChr();
         final int start = (int) context.getOrigin();
         final int end = (int) context.getEndLocation();
-        if (loadedInterval.contains(chr, start, end)) {
+        final int zoom = summarized ? Math.min(context.getZoom(), summarySource.getMaxZoom()) : RAW;
+        if (loadedInterval.contains(chr, start, end, zoom)) {
             renderer.render(loadedInterval.scores, context, rect, this);
         } else {
             if (!loading) {
@@ -109,12 +120,17 @@ public class MethylTrack extends AbstractTrack {
                             int expandedStart = Math.max(0, start - width);
                             int expandedEnd = end + width;
 
-                            List<MethylScore> scores = new ArrayList<MethylScore>(1000);
-                            Iterator<MethylScore> iter = dataSource.query(chr, expandedStart, expandedEnd);
-                            while (iter.hasNext()) {
-                                scores.add(iter.next());
+                            List<MethylScore> scores;
+                            if (zoom == RAW) {
+                                scores = new ArrayList<MethylScore>(1000);
+                                Iterator<MethylScore> iter = dataSource.query(chr, expandedStart, expandedEnd);
+                                while (iter.hasNext()) {
+                                    scores.add(iter.next());
+                                }
+                            } else {
+                                scores = summarySource.getSummaryScores(chr, expandedStart, expandedEnd, zoom);
                             }
-                            loadedInterval = new Interval(chr, expandedStart, expandedEnd, scores);
+                            loadedInterval = new Interval(chr, expandedStart, expandedEnd, zoom, scores);
                             context.getPanel().repaint(); //rect);
                         } finally {
                             loading = false;
@@ -135,17 +151,19 @@ public class MethylTrack extends AbstractTrack {
         String chr;
         int start;
         int end;
+        int zoom;
         List<MethylScore> scores;
 
-        Interval(String chr, int start, int end, List<MethylScore> scores) {
+        Interval(String chr, int start, int end, int zoom, List<MethylScore> scores) {
             this.chr = chr;
             this.end = end;
+            this.zoom = zoom;
             this.scores = scores;
             this.start = start;
         }
 
-        boolean contains(String chr, int start, int end) {
-            return this.chr.equals(chr) && this.start <= start && this.end >= end;
+        boolean contains(String chr, int start, int end, int zoom) {
+            return this.chr.equals(chr) && this.start <= start && this.end >= end && this.zoom == zoom;
         }
 
     }
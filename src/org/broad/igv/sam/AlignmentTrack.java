@@ -34,6 +34,7 @@ import org.broad.igv.ui.event.AlignmentTrackEventListener;
 import org.broad.igv.ui.panel.DataPanel;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.IGVPopupMenu;
+import org.broad.igv.ui.panel.PickIndex;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.util.FileDialogUtils;
 import org.broad.igv.ui.util.MessageUtils;
@@ -56,7 +57,7 @@ import java.util.List;
 /**
  * @author jrobinso
  */
-public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEventListener {
+public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEventListener, PickableTrack {
 
     private static Logger log = Logger.getLogger(AlignmentTrack.class);
     static final int GROUP_MARGIN = 5;
@@ -329,6 +330,11 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
         alignmentsRect = new Rectangle(rect);
         alignmentsRect.y += DOWNAMPLED_ROW_HEIGHT + DS_MARGIN_2;
         renderAlignments(context, alignmentsRect);
+
+        // Arcs are hit tested by shape,  see getValueStringAt
+        if (context.getPickIndex() != null && !renderOptions.isPairedArcView()) {
+            context.getPickIndex().setIndexed(this);
+        }
     }
 
     private void renderDownsampledIntervals(RenderContext context, Rectangle downsampleRect) {
@@ -351,6 +357,9 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
             //int gray = 200 - interval.getCount();
             //Color color = (gray <= 0 ? Color.black : ColorUtilities.getGrayscaleColor(gray));
             g.fillRect(x0, downsampleRect.y, w, downsampleRect.height);
+            if (context.getPickIndex() != null) {
+                context.getPickIndex().add(this, x0, downsampleRect.y + 1, w, downsampleRect.height, interval);
+            }
         }
     }
 
@@ -415,6 +424,9 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
                         Rectangle rowRectangle = new Rectangle(inputRect.x, (int) y, inputRect.width, (int) h);
                         renderer.renderAlignments(row.alignments, context, rowRectangle,
                                 inputRect, renderOptions, leaveMargin, selectedReadNames);
+                        if (!renderOptions.isPairedArcView()) {
+                            addPicks(context, row.alignments, rowRectangle);
+                        }
                     }
                     y += h;
                 }
@@ -438,6 +450,35 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
 
     }
 
+    /**
+     * Record the alignments of a row which are in view in the pick index of the context
+     *
+     * @param alignments alignments sorted by start
+     */
+    private void addPicks(RenderContext context, List<Alignment> alignments, Rectangle rowRect) {
+
+        PickIndex pickIndex = context.getPickIndex();
+        if (pickIndex == null) {
+            return;
+        }
+
+        double origin = context.getOrigin();
+        double end = context.getEndLocation();
+        double scale = context.getScale();
+        for (Alignment alignment : alignments) {
+            if (alignment.getEnd() < origin) {
+                continue;
+            }
+            if (alignment.getStart() > end) {
+                break;
+            }
+            double start = Math.max(alignment.getStart(), origin);
+            int x = (int) ((start - origin) / scale);
+            int width = (int) ((Math.min(alignment.getEnd(), end) - start) / scale);
+            pickIndex.add(this, x, rowRect.y, Math.max(1, width), rowRect.height, alignment);
+        }
+    }
+
     public void clearCaches() {
         dataManager.clear();
     }
@@ -665,6 +706,20 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
         }
     }
 
+    /**
+     * Return popup text for the alignment or downsampled interval recorded in the pick index at the point
+     */
+    public String getValueString(List<Object> items, double position, int x, int y) {
+        if (items.isEmpty()) {
+            return null;
+        }
+        Object item = items.get(items.size() - 1);
+        if (item instanceof CachingQueryReader.DownsampledInterval) {
+            return ((CachingQueryReader.DownsampledInterval) item).getValueString();
+        }
+        return ((Alignment) item).getValueString(position, getWindowFunction());
+    }
+
     private Alignment getAlignmentAt(double position, int y, ReferenceFrame frame) {
 
         Map<String, List<AlignmentInterval.Row>> groups = dataManager.getGroupedAlignments(frame);
@@ -25,6 +25,7 @@ import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.util.LRUCache;
 import org.broad.igv.util.ObjectCache;
+import org.broad.igv.util.stats.Metrics;
 import org.broad.igv.util.RuntimeUtils;
 import org.broad.tribble.Feature;
 
@@ -41,6 +42,11 @@ public class CachingQueryReader {
 
     private static Logger log = Logger.getLogger(CachingQueryReader.class);
 
+    private static final Metrics.Counter tileHits = Metrics.counter("alignments.tile.hits");
+    private static final Metrics.Counter tileMisses = Metrics.counter("alignments.tile.misses");
+    private static final Metrics.Counter alignmentsRead = Metrics.counter("alignments.read");
+    private static final Metrics.Timer loadTimer = Metrics.timer("alignments.load");
+
     //private static final int LOW_MEMORY_THRESHOLD = 150000000;
     private static final int KB = 1000;
     private static final int MITOCHONDRIA_TILE_SIZE = 1000;
@@ -190,6 +196,11 @@ public class CachingQueryReader {
         for (int t = startTile; t <= endTile; t++) {
             AlignmentTile tile = cache.get(t);
 
+            if (tile != null && tile.isLoaded()) {
+                tileHits.inc();
+            } else {
+                tileMisses.inc();
+            }
             if (tile == null) {
                 int start = t * tileSize;
                 int end = start + tileSize;
@@ -258,6 +269,7 @@ public class CachingQueryReader {
         //log.debug("Loading : " + start + " - " + end);
         int alignmentCount = 0;
         WeakReference<CachingQueryReader> ref = new WeakReference(this);
+        long t0 = loadTimer.start();
         try {
             ObjectCache<String, Alignment> mappedMates = new ObjectCache<String, Alignment>(1000);
             ObjectCache<String, Alignment> unmappedMates = new ObjectCache<String, Alignment>(1000);
@@ -378,6 +390,7 @@ public class CachingQueryReader {
                 t.setLoaded(true);
                 cache.put(t.getTileNumber(), t);
             }
+            alignmentsRead.add(alignmentCount);
 
             return true;
 
@@ -392,6 +405,7 @@ public class CachingQueryReader {
             log.error("Error loading alignment data", e);
             throw new DataLoadException("", "Error: " + e.toString());
         } finally {
+            loadTimer.stop(t0);
             // reset cancel flag.  It doesn't matter how we got here,  the read is complete and this flag is reset
             // for the next time
             cancel = false;
@@ -25,16 +25,22 @@ package org.broad.igv.sam.reader;
 import net.sf.samtools.SAMFileHeader;
 import net.sf.samtools.SAMFileReader;
 import net.sf.samtools.SAMFileReader.ValidationStringency;
+import net.sf.samtools.SAMRecord;
 import net.sf.samtools.SAMRecordIterator;
 import net.sf.samtools.SAMSequenceRecord;
 import net.sf.samtools.util.CloseableIterator;
+import net.sf.samtools.util.SeekableFileStream;
 import org.apache.log4j.Logger;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.sam.Alignment;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.util.index.BGZFIndex;
+import org.broad.igv.util.stream.ParallelBlockCompressedInputStream;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -47,8 +53,11 @@ public class BAMFileReader implements AlignmentReader {
     private static Logger log = Logger.getLogger(BAMFileReader.class);
     SAMFileReader reader;
     SAMFileHeader header;
+    File bamFile;
+    BGZFIndex index;
 
     public BAMFileReader(File bamFile) {
+        this.bamFile = bamFile;
         try {
             reader = new SAMFileReader(bamFile);
             reader.setValidationStringency(ValidationStringency.SILENT);
@@ -97,6 +106,12 @@ public class BAMFileReader implements AlignmentReader {
     public CloseableIterator<Alignment> query(String sequence, int start, int end, boolean contained) {
         SAMRecordIterator query = null;
         try {
+            if (useParallelReader()) {
+                BGZFIndex index = getIndex();
+                if (index != null) {
+                    return new WrappedIterator(parallelQuery(index, sequence, start, end, contained));
+                }
+            }
             query = reader.query(sequence, start + 1, end, contained);
             return new WrappedIterator(query);
         } catch (ArrayIndexOutOfBoundsException e) {
@@ -104,14 +119,66 @@ public class BAMFileReader implements AlignmentReader {
             MessageUtils.showMessage("Error reading bam file.  This usually indicates a problem with the index (bai) file." +
                     "<br>" + e.toString() + " (" + e.getMessage() + ")");
             return EmptyIterator.instance;
+        } catch (IOException e) {
+            log.error("Error querying BAM file ", e);
+            throw new RuntimeException("Error querying BAM file", e);
         }
 
     }
 
     public CloseableIterator<Alignment> iterator() {
+        if (useParallelReader()) {
+            try {
+                ParallelBlockCompressedInputStream stream =
+                        new ParallelBlockCompressedInputStream(new SeekableFileStream(bamFile));
+                return new WrappedIterator(new BAMRecordIterator(stream, getHeader()));
+            } catch (IOException e) {
+                log.error("Error reading BAM file ", e);
+                throw new RuntimeException("Error reading BAM file", e);
+            }
+        }
         return new WrappedIterator(reader.iterator());
     }
 
+    private CloseableIterator<SAMRecord> parallelQuery(BGZFIndex index, String sequence, int start, int end,
+                                                       boolean contained) throws IOException {
+        int referenceIndex = getHeader().getSequenceIndex(sequence);
+        List<BGZFIndex.Chunk> chunks = referenceIndex < 0 ?
+                Collections.<BGZFIndex.Chunk>emptyList() :
+                index.getChunks(referenceIndex, start, end);
+        ParallelBlockCompressedInputStream stream =
+                new ParallelBlockCompressedInputStream(new SeekableFileStream(bamFile));
+        return new BAMRecordIterator(stream, getHeader(), chunks, referenceIndex, start + 1, end, contained);
+    }
+
+    /**
+     * Decompress with {@link ParallelBlockCompressedInputStream} rather than the Picard reader,  unless disabled in
+     * preferences.
+     */
+    private boolean useParallelReader() {
+        return bamFile != null && header != null &&
+                PreferenceManager.getInstance().getAsBoolean(PreferenceManager.PARALLEL_BGZF);
+    }
+
+    /**
+     * Load the index,  found as Picard finds it,  the first time it is needed.
+     *
+     * @return the index, or null if there is none
+     */
+    private synchronized BGZFIndex getIndex() throws IOException {
+        if (index == null) {
+            String path = bamFile.getAbsolutePath();
+            File indexFile = new File(path + ".bai");
+            if (!indexFile.exists() && path.toLowerCase().endsWith(".bam")) {
+                indexFile = new File(path.substring(0, path.length() - 4) + ".bai");
+            }
+            if (indexFile.exists()) {
+                index = BGZFIndex.loadBAMIndex(indexFile.getAbsolutePath());
+            }
+        }
+        return index;
+    }
+
 
     /**
      * Class
@@ -20,12 +20,15 @@ import net.sf.samtools.util.SeekableBufferedStream;
 import net.sf.samtools.util.SeekableStream;
 import org.apache.log4j.Logger;
 import org.broad.igv.DirectoryManager;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.sam.Alignment;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.util.HttpUtils;
 import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.index.BGZFIndex;
 import org.broad.igv.util.stream.IGVUrlHelper;
+import org.broad.igv.util.stream.ParallelBlockCompressedInputStream;
 import org.broad.igv.util.stream.SeekablePicardStream;
 import org.broad.tribble.util.SeekableFTPStream;
 
@@ -52,6 +55,7 @@ public class BAMHttpReader implements AlignmentReader {
     URL url;
     SAMFileHeader header;
     File indexFile;
+    BGZFIndex index;
     SAMFileReader reader;
     List<String> sequenceNames;
 
@@ -124,6 +128,9 @@ public class BAMHttpReader implements AlignmentReader {
 
     public CloseableIterator<Alignment> query(String sequence, int start, int end, boolean contained) {
         try {
+            if (hasIndex() && PreferenceManager.getInstance().getAsBoolean(PreferenceManager.PARALLEL_BGZF)) {
+                return new WrappedIterator(parallelQuery(sequence, start, end, contained));
+            }
             if (reader == null) {
                 SeekableStream ss = new SeekableBufferedStream(getSeekableStream(url));
                 reader = new SAMFileReader(ss, indexFile, false);
@@ -136,6 +143,22 @@ public class BAMHttpReader implements AlignmentReader {
         }
     }
 
+    private CloseableIterator<SAMRecord> parallelQuery(String sequence, int start, int end, boolean contained)
+            throws IOException {
+        synchronized (this) {
+            if (index == null) {
+                index = BGZFIndex.loadBAMIndex(indexFile.getAbsolutePath());
+            }
+        }
+        int referenceIndex = getHeader().getSequenceIndex(sequence);
+        List<BGZFIndex.Chunk> chunks = referenceIndex < 0 ?
+                Collections.<BGZFIndex.Chunk>emptyList() :
+                index.getChunks(referenceIndex, start, end);
+        ParallelBlockCompressedInputStream stream =
+                new ParallelBlockCompressedInputStream(new SeekableBufferedStream(getSeekableStream(url)));
+        return new BAMRecordIterator(stream, getHeader(), chunks, referenceIndex, start + 1, end, contained);
+    }
+
     private SeekableStream getSeekableStream(URL url) throws IOException {
         String protocol = url.getProtocol().toLowerCase();
         SeekableStream is = null;
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import net.sf.samtools.BAMRecordCodec;
+import net.sf.samtools.SAMFileHeader;
+import net.sf.samtools.SAMFileReader;
+import net.sf.samtools.SAMRecord;
+import net.sf.samtools.util.BinaryCodec;
+import net.sf.samtools.util.CloseableIterator;
+import org.apache.log4j.Logger;
+import org.broad.igv.util.index.BGZFIndex;
+import org.broad.igv.util.stream.ParallelBlockCompressedInputStream;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the records of a BAM file read through a {@link ParallelBlockCompressedInputStream},  either all
+ * records following the header or those of a region in the chunks returned by a {@link BGZFIndex} query.  Region
+ * filtering follows the Picard query iterator:  records are returned if they overlap (or with {@code contained} lie
+ * within) the region,  unmapped reads placed with their mate count as length 1,  and iteration stops at the first
+ * record starting after the region.
+ * <p/>
+ * The stream is closed when the iterator is exhausted or closed.
+ */
+public class BAMRecordIterator implements CloseableIterator<SAMRecord> {
+
+    private static Logger log = Logger.getLogger(BAMRecordIterator.class);
+
+    private static final int BAM_MAGIC = 0x014D4142;  // "BAM\1"
+
+    private final ParallelBlockCompressedInputStream stream;
+    private final BAMRecordCodec codec;
+    private final Iterator<BGZFIndex.Chunk> chunks;
+    private final int referenceIndex;
+    private final int start;
+    private final int end;
+    private final boolean contained;
+
+    private BGZFIndex.Chunk chunk;
+    private SAMRecord next;
+    private boolean closed = false;
+
+    /**
+     * Iterator over all records of the file.
+     *
+     * @param stream stream positioned at the beginning of the file
+     * @param header
+     */
+    public BAMRecordIterator(ParallelBlockCompressedInputStream stream, SAMFileHeader header) throws IOException {
+        this(stream, header, null, -1, 0, Integer.MAX_VALUE, false);
+        skipHeader(stream);
+        advance();
+    }
+
+    /**
+     * Iterator over the records of a region.
+     *
+     * @param stream
+     * @param header
+     * @param chunks         chunks of the file that may contain records in the region, in file order
+     * @param referenceIndex index of the region's sequence
+     * @param start          1-based start of the region
+     * @param end            1-based inclusive end of the region
+     * @param contained      if true return only records within the region, otherwise those overlapping it
+     */
+    public BAMRecordIterator(ParallelBlockCompressedInputStream stream, SAMFileHeader header,
+                             List<BGZFIndex.Chunk> chunks, int referenceIndex, int start, int end,
+                             boolean contained) throws IOException {
+        this.stream = stream;
+        this.codec = new BAMRecordCodec(header);
+        this.codec.setInputStream(stream);
+        this.chunks = chunks == null ? null : chunks.iterator();
+        this.referenceIndex = referenceIndex;
+        this.start = start;
+        this.end = end;
+        this.contained = contained;
+        if (chunks != null) {
+            if (!chunks.isEmpty()) {
+                stream.setReadAheadLimit(chunks.get(chunks.size() - 1).getEnd() >>> 16);
+            }
+            advance();
+        }
+    }
+
+    /**
+     * Read past the header at the beginning of a BAM file,  leaving the stream at the first record.
+     */
+    static void skipHeader(ParallelBlockCompressedInputStream stream) throws IOException {
+        BinaryCodec binaryCodec = new BinaryCodec(stream);
+        if (binaryCodec.readInt() != BAM_MAGIC) {
+            throw new IOException("Invalid BAM file header");
+        }
+        skipFully(stream, binaryCodec.readInt());
+        int nReferences = binaryCodec.readInt();
+        for (int i = 0; i < nReferences; i++) {
+            skipFully(stream, binaryCodec.readInt());
+            binaryCodec.readInt();
+        }
+    }
+
+    private static void skipFully(ParallelBlockCompressedInputStream stream, int n) throws IOException {
+        byte[] buffer = new byte[Math.min(n, 8192)];
+        while (n > 0) {
+            int count = stream.read(buffer, 0, Math.min(n, buffer.length));
+            if (count < 0) {
+                throw new IOException("Premature end of BAM header");
+            }
+            n -= count;
+        }
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    public SAMRecord next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        SAMRecord record = next;
+        try {
+            advance();
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Error reading BAM file", e);
+        }
+        return record;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("Remove not supported");
+    }
+
+    public void close() {
+        if (!closed) {
+            closed = true;
+            next = null;
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.error("Error closing BAM stream", e);
+            }
+        }
+    }
+
+    private void advance() throws IOException {
+        next = null;
+        while (!closed) {
+            SAMRecord record = readRecord();
+            if (record == null) {
+                close();
+                return;
+            }
+            if (chunks == null) {
+                next = record;
+                return;
+            }
+
+            int recordReference = record.getReferenceIndex();
+            if (recordReference != referenceIndex) {
+                if (recordReference == -1 || recordReference > referenceIndex) {
+                    close();
+                    return;
+                }
+                continue;
+            }
+            int alignmentStart = record.getAlignmentStart();
+            if (alignmentStart > end) {
+                close();
+                return;
+            }
+            int alignmentEnd = record.getReadUnmappedFlag() ? alignmentStart : record.getAlignmentEnd();
+            boolean match = contained ?
+                    start <= alignmentStart && alignmentEnd <= end :
+                    alignmentEnd >= start;
+            if (match) {
+                next = record;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decode the next record,  moving to the next chunk when the current one is exhausted.
+     *
+     * @return the record, or null if there are no more
+     */
+    private SAMRecord readRecord() throws IOException {
+        if (chunks != null) {
+            while (chunk == null || stream.getFilePointer() >= chunk.getEnd()) {
+                if (!chunks.hasNext()) {
+                    return null;
+                }
+                BGZFIndex.Chunk nextChunk = chunks.next();
+                if (chunk == null || stream.getFilePointer() < nextChunk.getStart()) {
+                    stream.seek(nextChunk.getStart());
+                }
+                chunk = nextChunk;
+            }
+        }
+        SAMRecord record = codec.decode();
+        if (record != null) {
+            record.setValidationStringency(SAMFileReader.ValidationStringency.SILENT);
+        }
+        return record;
+    }
+}
@@ -37,6 +37,7 @@ import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.panel.TrackPanel;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.util.ExecutorUtils;
 import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.FilterElement.BooleanOperator;
 import org.broad.igv.util.FilterElement.Operator;
@@ -50,6 +51,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Class to parse an IGV session file
@@ -58,6 +64,16 @@ public class IGVSessionReader implements SessionReader {
 
     private static Logger log = Logger.getLogger(IGVSessionReader.class);
     private static String INPUT_FILE_KEY = "INPUT_FILE_KEY";
+
+    /**
+     * Maximum number of resources loaded at once.  Loads mostly wait on files and servers,  so this exceeds the
+     * number of processors.
+     */
+    static final int MAX_CONCURRENT_LOADS = Math.max(4, 2 * ExecutorUtils.CPU_THREADS);
+
+    private static ExecutorService loadExecutor = ExecutorUtils.newFixedThreadPool("Session loader",
+            MAX_CONCURRENT_LOADS);
+
     // Temporary values used in processing
 
     private Collection<ResourceLocator> dataFiles;
@@ -83,7 +99,6 @@ public class IGVSessionReader implements SessionReader {
 
     private Track geneTrack = null;
     private Track seqTrack = null;
-    private boolean hasTrackElments;
 
 
     static {
@@ -265,9 +280,6 @@ public class IGVSessionReader implements SessionReader {
             throw new RuntimeException(e);
         }
 
-        NodeList tracks = document.getElementsByTagName("Track");
-        hasTrackElments = tracks.getLength() > 0;
-
         HashMap additionalInformation = new HashMap();
         additionalInformation.put(INPUT_FILE_KEY, sessionName);
 
@@ -480,96 +492,128 @@ public class IGVSessionReader implements SessionReader {
         }
         if (dataFiles.size() > 0) {
 
-            final List<String> errors = new ArrayList<String>();
+            // Load synchronously in batch mode
+            List<String> errors = loadResources(new ArrayList<ResourceLocator>(dataFiles), Globals.isBatch());
 
-            // Load files concurrently -- TODO, put a limit on # of threads?
-            List<Thread> threads = new ArrayList(dataFiles.size());
-            long t0 = System.currentTimeMillis();
-            int i = 0;
-            List<Runnable> synchronousLoads = new ArrayList<Runnable>();
-            for (final ResourceLocator locator : dataFiles) {
+            if (errors.size() > 0) {
+                StringBuffer buf = new StringBuffer();
+                buf.append("<html>Errors were encountered loading the session:<br>");
+                for (String msg : errors) {
+                    buf.append(msg);
+                }
+                MessageUtils.showMessage(buf.toString());
+            }
 
-                final String suppliedPath = locator.getPath();
-                final String relPath = fullToRelPathMap.get(suppliedPath);
+        }
+        dataFiles = null;
+    }
 
-                Runnable runnable = new Runnable() {
-                    public void run() {
-                        List<Track> tracks = null;
-                        try {
-                            tracks = igv.load(locator);
-                            for (Track track : tracks) {
-                                if (track == null) {
-                                    log.info("Null track for resource " + locator.getPath());
-                                    continue;
-                                }
-
-                                String id = track.getId();
-                                if (id == null) {
-                                    log.info("Null track id for resource " + locator.getPath());
-                                    continue;
-                                }
-
-                                if (relPath != null) {
-                                    id = id.replace(suppliedPath, relPath);
-                                }
-
-                                List<Track> trackList = trackDictionary.get(id);
-                                if (trackList == null) {
-                                    trackList = new ArrayList();
-                                    trackDictionary.put(id, trackList);
-                                }
-                                trackList.add(track);
-                            }
-                        } catch (Exception e) {
-                            log.error("Error loading resource " + locator.getPath(), e);
-                            String ms = "<b>" + locator.getPath() + "</b><br>&nbs;p&nbsp;" + e.toString() + "<br>";
-                            errors.add(ms);
-                        }
+    /**
+     * Load the resources,  concurrently unless synchronous is true,  on a pool of at most MAX_CONCURRENT_LOADS
+     * threads.  Loading a resource reads its header and index,  data is read when a track first renders its locus.
+     * Tracks are added to the track dictionary in the order of the resources,  whatever the order in which loads
+     * complete,  so tracks not assigned to panels keep the session order.
+     *
+     * @param locators
+     * @param synchronous
+     * @return error messages for the resources that failed to load
+     */
+    List<String> loadResources(final List<ResourceLocator> locators, boolean synchronous) {
+
+        final int n = locators.size();
+        final AtomicReferenceArray<List<Track>> loadedTracks = new AtomicReferenceArray<List<Track>>(n);
+        final AtomicReferenceArray<String> errors = new AtomicReferenceArray<String>(n);
+        final AtomicInteger completed = new AtomicInteger();
+        long t0 = System.currentTimeMillis();
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(n);
+        for (int i = 0; i < n; i++) {
+            final int index = i;
+            final ResourceLocator locator = locators.get(i);
+            Runnable runnable = new Runnable() {
+                public void run() {
+                    try {
+                        loadedTracks.set(index, loadTracks(locator));
+                    } catch (Exception e) {
+                        log.error("Error loading resource " + locator.getPath(), e);
+                        errors.set(index, "<b>" + locator.getPath() + "</b><br>&nbsp;&nbsp;" + e.toString() + "<br>");
+                    } finally {
+                        MessageUtils.setStatusBarMessage("Loaded " + completed.incrementAndGet() + " of " + n +
+                                " resources: " + locator.getTrackName());
                     }
-                };
-
-                boolean isAlignment = locator.getPath().endsWith(".bam") || locator.getPath().endsWith(".entries") ||
-                        locator.getPath().endsWith(".sam");
-
-
-                // Run synchronously if in batch mode or if there are no "track" elments, or if this is an alignment file
-                if (isAlignment || Globals.isBatch() || !hasTrackElments) {
-                    synchronousLoads.add(runnable);
-                } else {
-                    Thread t = new Thread(runnable);
-                    threads.add(t);
-                    t.start();
                 }
-                i++;
+            };
+            if (synchronous) {
+                runnable.run();
+            } else {
+                futures.add(loadExecutor.submit(runnable));
             }
-            // Wait for all threads to complete
-            for (Thread t : threads) {
-                try {
-                    t.join();
-                } catch (InterruptedException ignore) {
+        }
+
+        // Wait for all loads to complete
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                for (Future<?> f : futures) {
+                    f.cancel(true);
                 }
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.error("Error loading session resource", e.getCause());
+            }
+        }
+
+        List<String> errorMessages = new ArrayList<String>();
+        for (int i = 0; i < n; i++) {
+            List<Track> tracks = loadedTracks.get(i);
+            if (tracks != null) {
+                addTracks(locators.get(i), tracks);
+            }
+            if (errors.get(i) != null) {
+                errorMessages.add(errors.get(i));
             }
+        }
 
+        long dt = System.currentTimeMillis() - t0;
+        log.debug("Total load time = " + dt);
 
-            // Now load data that must be loaded synchronously
-            for (Runnable runnable : synchronousLoads) {
-                runnable.run();
+        return errorMessages;
+    }
+
+    List<Track> loadTracks(ResourceLocator locator) {
+        return igv.load(locator);
+    }
+
+    private void addTracks(ResourceLocator locator, List<Track> tracks) {
+
+        final String suppliedPath = locator.getPath();
+        final String relPath = fullToRelPathMap.get(suppliedPath);
+
+        for (Track track : tracks) {
+            if (track == null) {
+                log.info("Null track for resource " + locator.getPath());
+                continue;
             }
 
-            long dt = System.currentTimeMillis() - t0;
-            log.debug("Total load time = " + dt);
+            String id = track.getId();
+            if (id == null) {
+                log.info("Null track id for resource " + locator.getPath());
+                continue;
+            }
 
-            if (errors.size() > 0) {
-                StringBuffer buf = new StringBuffer();
-                buf.append("<html>Errors were encountered loading the session:<br>");
-                for (String msg : errors) {
-                    buf.append(msg);
-                }
-                MessageUtils.showMessage(buf.toString());
+            if (relPath != null) {
+                id = id.replace(suppliedPath, relPath);
             }
 
+            List<Track> trackList = trackDictionary.get(id);
+            if (trackList == null) {
+                trackList = new ArrayList();
+                trackDictionary.put(id, trackList);
+            }
+            trackList.add(track);
         }
-        dataFiles = null;
     }
 
     private void processResource(Session session, Element element, HashMap additionalInformation) {
@@ -22,36 +22,31 @@
  */
 package org.broad.igv.tdf;
 
-import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.track.WindowFunction;
-import org.broad.igv.util.collections.DoubleArrayList;
+import org.broad.igv.util.stats.QuantileSketch;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
  * Accumulator for a single window function.
  * <p/>
- * Estimating percentiles -- weighted average of multiple estimates
+ * Percentiles are estimated with a {@link QuantileSketch},  so memory is bounded and accumulators can be merged.
  *
  * @author jrobinso
  */
 public class Accumulator {
 
-    public static int MAX_VALUE_COUNT = 100000;
     private static Logger log = Logger.getLogger(Accumulator.class);
 
     boolean isFinished = false;
     WindowFunction windowFunction;
-    List<PercentileValue> percentiles;
     float sum = 0.0f;
     int basesCovered = 0;
     int nPts = 0;
     float value = Float.NaN;
-    DoubleArrayList values;
+    QuantileSketch sketch;
 
 
     // Optional -- keep some representative data and probe names for popup text
@@ -74,8 +69,7 @@ public class Accumulator {
     public Accumulator(WindowFunction windowFunction) {
         this.windowFunction = windowFunction;
         if (PERCENTILE_WINDOW_FUNCTIONS.contains(windowFunction)) {
-            values = new DoubleArrayList();
-            percentiles = new ArrayList();
+            sketch = new QuantileSketch();
         }
     }
 
@@ -105,12 +99,8 @@ public class Accumulator {
                     sum += nBases * v;
                     break;
                 default:
-                    if (values != null) {
-                        values.add(v);
-                        if (values.size() > MAX_VALUE_COUNT) {
-                            computePercentiles();
-                            values.clear();
-                        }
+                    if (sketch != null) {
+                        sketch.add(v);
                     }
             }
             nPts++;
@@ -127,54 +117,64 @@ public class Accumulator {
 
         if (windowFunction == WindowFunction.mean) {
             value = Float.isNaN(sum) ? Float.NaN : sum / basesCovered;
-        } else if (values != null) {
-            if (values.size() == 1) {
-                value = (float) values.get(0);
-            } else {
-                if (values.size() > 1) {
-                    computePercentiles();
-                }
-
-
-                float v = Float.NaN; // <= Default,
-                if (percentiles != null && percentiles.size() > 0) {
-                    double weightedSum = 0;
-                    double sumOfWeights = 0;
-                    for (PercentileValue pv : percentiles) {
-                        double weight = (double) pv.nPoints / basesCovered;
-                        sumOfWeights += weight;
-                        weightedSum += weight * pv.value;
-                    }
-                    v = (float) (weightedSum / sumOfWeights);
-                }
-                value = v;
-
-
+        } else if (sketch != null) {
+            value = (float) sketch.getPercentile(getPercentile(windowFunction));
+            if (Float.isInfinite(value)) {
+                log.error("Infinite percentile (" + windowFunction + ")");
+                value = Float.NaN;
             }
         }
-        values = null;
+        // The sketch is retained,  it is small and allows this accumulator to be merged into another
         isFinished = true;
 
     }
 
-    private void computePercentiles() {
-        if (values != null) {
-            double[] valueArray = values.toArray();
-            double p = this.getPercentile(windowFunction);
-            if (p > 0) {
-                float v = (float) StatUtils.percentile(valueArray, p);
-                if (Float.isInfinite(v)) {
-                    log.error("Infinite percentile (" + windowFunction + ")");
-                } else {
-                    percentiles.add(new PercentileValue(valueArray.length, v));
-                }
-            }
+    /**
+     * Combine the statistics of {@code other} into this accumulator, as if its values had been added here.  This
+     * accumulator must not be finished,  {@code other} may be.  Both must be for the same window function.
+     *
+     * @param other
+     */
+    public void merge(Accumulator other) {
+
+        if (isFinished) {
+            throw new IllegalStateException("Cannot merge into a finished accumulator");
+        }
+        if (!other.hasData()) {
+            return;
         }
 
+        if (data != null && other.data != null) {
+            int n = Math.min(other.nPts, other.data.length);
+            for (int i = 0; i < n && nPts + i < data.length; i++) {
+                data[nPts + i] = other.data[i];
+                probes[nPts + i] = other.probes[i];
+            }
+        }
 
+        switch (windowFunction) {
+            case min:
+                if (!Float.isNaN(other.value)) {
+                    value = Float.isNaN(value) ? other.value : Math.min(value, other.value);
+                }
+                break;
+            case max:
+                if (!Float.isNaN(other.value)) {
+                    value = Float.isNaN(value) ? other.value : Math.max(value, other.value);
+                }
+                break;
+            case mean:
+                sum += other.sum;
+                break;
+            default:
+                if (sketch != null && other.sketch != null) {
+                    sketch.merge(other.sketch);
+                }
+        }
+        nPts += other.nPts;
+        basesCovered += other.basesCovered;
     }
 
-
     public float getValue() {
         if (!isFinished) finish();
         return value;
@@ -212,16 +212,6 @@ public class Accumulator {
     }
 
 
-    class PercentileValue {
-        int nPoints;
-        double value;
-
-        PercentileValue(int nPoints, double value) {
-            this.nPoints = nPoints;
-            this.value = value;
-        }
-    }
-
     static Set<WindowFunction> PERCENTILE_WINDOW_FUNCTIONS = new HashSet();
 
     static {
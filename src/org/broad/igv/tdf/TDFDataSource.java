@@ -34,7 +34,6 @@ import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
-import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.util.LRUCache;
 
 import java.util.*;
@@ -390,8 +389,8 @@ public class TDFDataSource implements CoverageDataSource {
         String tmp = chrNameMap.get(chr);
         String querySeq = tmp == null ? chr : tmp;
 
-        // If we are in gene list view bypass caching.
-        if (Globals.isHeadless() || FrameManager.isGeneListMode()) {
+        // Tiles are keyed by chromosome and zoom,  so they are cached for gene list frames as well.
+        if (Globals.isHeadless()) {
 
             return getSummaryScores(querySeq, startLocation, endLocation, zoom);
 
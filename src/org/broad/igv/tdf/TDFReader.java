@@ -28,6 +28,7 @@ import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.util.*;
+import org.broad.igv.util.stats.Metrics;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 import org.broad.tribble.util.SeekableStream;
 
@@ -45,6 +46,10 @@ public class TDFReader {
     static final Logger log = Logger.getLogger(TDFReader.class);
     public static final int GZIP_FLAG = 0x1;
 
+    private static final Metrics.Counter bytesRead = Metrics.counter("tdf.read.bytes");
+    private static final Metrics.Timer tileReadTimer = Metrics.timer("tdf.tile.read");
+    private static final Metrics.Timer tileDecodeTimer = Metrics.timer("tdf.tile.decode");
+
     private SeekableStream seekableStream = null;
     private int version;
     private Map<String, IndexEntry> datasetIndex;
@@ -316,13 +321,18 @@ public class TDFReader {
             //fis.seek(position);
             //byte[] buffer = new byte[nBytes];
             //readFully(buffer);
+            long t0 = tileReadTimer.start();
             byte[] buffer = readBytes(position, nBytes);
+            tileReadTimer.stop(t0);
+
+            t0 = tileDecodeTimer.start();
             if (compressed) {
                 buffer = CompressionUtils.decompress(buffer);
 
             }
-
-            return TileFactory.createTile(buffer, trackNames.length);
+            TDFTile tile = TileFactory.createTile(buffer, trackNames.length);
+            tileDecodeTimer.stop(t0);
+            return tile;
         } catch (IOException ex) {
             String tileName = ds.getName() + "[" + tileNumber + "]";
             log.error("Error reading data tile: " + tileName, ex);
@@ -417,6 +427,7 @@ public class TDFReader {
         seekableStream.seek(position);
         byte[] buffer = new byte[nBytes];
         seekableStream.read(buffer, 0, nBytes);
+        bytesRead.add(nBytes);
         return buffer;
     }
 
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.Globals;
+import org.broad.igv.PreferenceManager;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tools.sort.Sorter;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.ExecutorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+/**
+ * Converts large, unindexed local text files to an indexed (features) or tiled (wig / bedgraph) form in the background,
+ * in lieu of parsing the entire file into memory.  Converted files are placed in
+ * {@link DirectoryManager#getAutoIndexDirectory()} under a name derived from the source path, size, and modification
+ * time, so later sessions reuse them and edits to the source file invalidate them.
+ */
+public class AutoIndexer {
+
+    private static Logger log = Logger.getLogger(AutoIndexer.class);
+
+    public static final long SIZE_THRESHOLD = 50000000;
+
+    static final int MAX_ZOOM = 7;
+
+    /**
+     * Single worker,  conversions are disk-bound and running them concurrently only adds seeks.
+     */
+    private static ExecutorService executor = ExecutorUtils.newFixedThreadPool(1,
+            ExecutorUtils.daemonThreadFactory("AutoIndexer", Thread.MIN_PRIORITY));
+
+    /**
+     * Conversions in progress, keyed by cache file path.  Prevents the same file being converted twice when it is
+     * loaded more than once.
+     */
+    static ConcurrentMap<String, Future<File>> pending = new ConcurrentHashMap<String, Future<File>>();
+
+    public interface Callback {
+        void converted(File cacheFile);
+
+        void failed(Exception e);
+    }
+
+
+    /**
+     * Return true if the file should be converted rather than loaded into memory.
+     *
+     * @param path
+     * @return
+     */
+    public static boolean isCandidate(String path) {
+        if (!PreferenceManager.getInstance().getAsBoolean(PreferenceManager.AUTO_INDEX_LARGE_FILES)) {
+            return false;
+        }
+        String fn = path.toLowerCase();
+        if (fn.endsWith(".gz") || !(isFeatureFile(fn) || isWigFile(fn))) {
+            return false;
+        }
+        File f = new File(path);
+        return f.isFile() && f.length() > SIZE_THRESHOLD;
+    }
+
+    /**
+     * Return the converted version of {@code path} if it exists and is complete, null otherwise.
+     *
+     * @param path
+     * @return
+     */
+    public static File getCachedFile(String path) {
+        File cacheFile = getCacheFile(path);
+        if (cacheFile == null || !cacheFile.exists()) {
+            return null;
+        }
+        if (isFeatureFile(path) && !new File(cacheFile.getAbsolutePath() + ".idx").exists()) {
+            return null;
+        }
+        return cacheFile;
+    }
+
+    /**
+     * Convert {@code path} on the background worker,  or on the calling thread in batch mode so that subsequent
+     * batch commands see the converted file.  The callback is invoked on the worker thread.
+     *
+     * @param path
+     * @param genome
+     * @param callback
+     */
+    public static void submit(final String path, final Genome genome, final Callback callback) {
+
+        final File cacheFile = getCacheFile(path);
+        Callable<File> task = new Callable<File>() {
+            public File call() throws Exception {
+                try {
+                    File f = getCachedFile(path);
+                    if (f == null) {
+                        f = convert(new File(path), cacheFile, genome);
+                    }
+                    callback.converted(f);
+                    return f;
+                } catch (Exception e) {
+                    log.error("Error converting " + path, e);
+                    callback.failed(e);
+                    throw e;
+                }
+            }
+        };
+
+        if (Globals.isBatch()) {
+            try {
+                task.call();
+            } catch (Exception e) {
+                // Already reported to the callback
+            }
+        } else {
+            // The future is registered before it runs,  and removes only itself when done
+            final String key = cacheFile.getAbsolutePath();
+            FutureTask<File> future = new FutureTask<File>(task) {
+                @Override
+                protected void done() {
+                    pending.remove(key, this);
+                }
+            };
+            final Future<File> inProgress = pending.putIfAbsent(key, future);
+            if (inProgress == null) {
+                executor.execute(future);
+            } else {
+                // Wait for the conversion in progress rather than starting another
+                executor.submit(new Runnable() {
+                    public void run() {
+                        try {
+                            callback.converted(inProgress.get());
+                        } catch (Exception e) {
+                            callback.failed(e);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Sort and index a feature file, or tile a wig file, to {@code cacheFile}.  Output is written to a temporary
+     * file first and renamed when complete so a partial conversion is never mistaken for a cached one.
+     *
+     * @param inputFile
+     * @param cacheFile
+     * @param genome
+     * @return
+     * @throws IOException
+     */
+    static File convert(File inputFile, File cacheFile, Genome genome) throws IOException {
+
+        long t0 = System.currentTimeMillis();
+        // The extension is preserved, TDFWriter appends ".tdf" to names that do not end with it
+        File tmpFile = new File(cacheFile.getParentFile(), "tmp_" + cacheFile.getName());
+        if (tmpFile.exists()) {
+            tmpFile.delete();
+        }
+
+        if (isFeatureFile(inputFile.getName())) {
+            Sorter sorter = Sorter.getSorter(inputFile, tmpFile);
+            sorter.run();
+            if (!tmpFile.renameTo(cacheFile)) {
+                throw new IOException("Could not rename " + tmpFile.getAbsolutePath());
+            }
+            (new IgvTools()).doIndex(cacheFile.getAbsolutePath(), IgvTools.LINEAR_INDEX, IgvTools.LINEAR_BIN_SIZE);
+        } else {
+            Preprocessor p = new Preprocessor(tmpFile, genome, Arrays.asList(WindowFunction.mean), -1, null);
+            p.preprocess(inputFile, MAX_ZOOM, inputFile.getName());
+            p.finish();
+            if (!tmpFile.exists() || !tmpFile.renameTo(cacheFile)) {
+                throw new IOException("Error tiling " + inputFile.getAbsolutePath());
+            }
+        }
+
+        log.info("Converted " + inputFile.getAbsolutePath() + " in " + (System.currentTimeMillis() - t0) + " ms");
+        return cacheFile;
+    }
+
+    /**
+     * Return the location of the converted version of {@code path},  whether or not it exists yet.
+     *
+     * @param path
+     * @return
+     */
+    static File getCacheFile(String path) {
+
+        File f = new File(path);
+        String key = f.getAbsolutePath() + "|" + f.length() + "|" + f.lastModified();
+
+        // Strip ".txt" so the cached copy is recognized by its true format extension
+        String name = f.getName();
+        if (name.toLowerCase().endsWith(".txt")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        if (isWigFile(name)) {
+            name = name + ".tdf";
+        }
+        return new File(DirectoryManager.getAutoIndexDirectory(), digest(key) + "_" + name);
+    }
+
+    public static boolean isFeatureFile(String path) {
+        String fn = path.toLowerCase();
+        if (fn.endsWith(".txt")) {
+            fn = fn.substring(0, fn.length() - 4);
+        }
+        return fn.endsWith(".bed") || fn.endsWith(".psl");
+    }
+
+    public static boolean isWigFile(String path) {
+        String fn = path.toLowerCase();
+        return fn.endsWith(".wig") || fn.endsWith(".bedgraph");
+    }
+
+    private static String digest(String key) {
+        try {
+            byte[] b = MessageDigest.getInstance("MD5").digest(key.getBytes());
+            StringBuffer buf = new StringBuffer();
+            for (int i = 0; i < b.length; i++) {
+                buf.append(Integer.toString((b[i] & 0xff) + 0x100, 16).substring(1));
+            }
+            return buf.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
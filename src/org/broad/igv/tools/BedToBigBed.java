@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.bbfile.BBFileWriter;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.ParsingUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Converts a "bed" file to a BigBed file.  The bed file must be sorted by chromosome and start position.
+ */
+public class BedToBigBed {
+
+    private static Logger log = Logger.getLogger(BedToBigBed.class);
+
+    /**
+     * @return true if the output file name is a BigBed file
+     */
+    public static boolean isBigBed(String path) {
+        String lc = path.toLowerCase();
+        return lc.endsWith(".bb") || lc.endsWith(".bigbed");
+    }
+
+    public static void convert(String bedFile, File outputFile, Genome genome) throws IOException {
+
+        BBFileWriter writer = null;
+        Set<String> skippedChromosomes = new HashSet<String>();
+        BufferedReader reader = null;
+        try {
+            reader = ParsingUtils.openBufferedReader(bedFile);
+            String nextLine;
+            while ((nextLine = reader.readLine()) != null) {
+                if (nextLine.startsWith("#") || nextLine.startsWith("track") || nextLine.startsWith("browser") ||
+                        nextLine.trim().length() == 0) {
+                    continue;
+                }
+
+                String[] tokens = ParsingUtils.TAB_PATTERN.split(nextLine, 4);
+                if (tokens.length < 3) {
+                    continue;
+                }
+
+                // The number of fields is taken from the first record
+                if (writer == null) {
+                    int fieldCount = tokens.length < 4 ? 3 : 3 + ParsingUtils.TAB_PATTERN.split(tokens[3], -1).length;
+                    writer = BBFileWriter.createBigBed(outputFile, BigWigConsumer.getChromosomeSizes(genome), fieldCount);
+                }
+
+                String chr = genome.getChromosomeAlias(tokens[0]);
+                if (!writer.hasChromosome(chr)) {
+                    if (skippedChromosomes.add(chr)) {
+                        log.info("Skipping features on chromosome " + chr + ",  it is not in the genome");
+                    }
+                    continue;
+                }
+                int start = Integer.parseInt(tokens[1].trim());
+                int end = Integer.parseInt(tokens[2].trim());
+                writer.addFeature(chr, start, end, tokens.length < 4 ? null : tokens[3]);
+            }
+
+            if (writer == null) {
+                writer = BBFileWriter.createBigBed(outputFile, BigWigConsumer.getChromosomeSizes(genome), 3);
+            }
+            writer.close();
+
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+}
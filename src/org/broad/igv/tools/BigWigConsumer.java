@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.bbfile.BBFileWriter;
+import org.broad.igv.feature.Chromosome;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tools.parsers.DataConsumer;
+import org.broad.igv.track.TrackType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the output of a parser or coverage counter to a BigWig file.  A BigWig file holds a single track,  if the
+ * data has several tracks,  e.g. coverage by strand or base,  their sum is written.
+ */
+public class BigWigConsumer implements DataConsumer {
+
+    private static Logger log = Logger.getLogger(BigWigConsumer.class);
+
+    private Genome genome;
+    private BBFileWriter writer;
+    private Set<String> skippedChromosomes = new HashSet<String>();
+
+    public BigWigConsumer(File outputFile, Genome genome) {
+        this.genome = genome;
+        this.writer = BBFileWriter.createBigWig(outputFile, getChromosomeSizes(genome));
+    }
+
+    /**
+     * @return true if the output file name is a BigWig file
+     */
+    public static boolean isBigWig(String path) {
+        String lc = path.toLowerCase();
+        return lc.endsWith(".bw") || lc.endsWith(".bigwig");
+    }
+
+    static Map<String, Integer> getChromosomeSizes(Genome genome) {
+        Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+        for (String name : genome.getChromosomeNames()) {
+            Chromosome chromosome = genome.getChromosome(name);
+            if (chromosome != null) {
+                sizes.put(name, chromosome.getLength());
+            }
+        }
+        return sizes;
+    }
+
+    public void addData(String chr, int start, int end, float[] data, String name) {
+
+        String chrAlias = genome.getChromosomeAlias(chr);
+        if (!writer.hasChromosome(chrAlias)) {
+            if (skippedChromosomes.add(chr)) {
+                log.info("Skipping data on chromosome " + chr + ",  it is not in the genome");
+            }
+            return;
+        }
+
+        float sum = 0;
+        boolean hasValue = false;
+        for (float v : data) {
+            if (!Float.isNaN(v)) {
+                sum += v;
+                hasValue = true;
+            }
+        }
+        if (!hasValue) {
+            return;
+        }
+
+        try {
+            writer.addValue(chrAlias, start, end, sum);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing BigWig file", e);
+        }
+    }
+
+    /**
+     * Write the zoom levels and indexes,  and close the file
+     */
+    public void finish() throws IOException {
+        writer.close();
+    }
+
+    public void parsingComplete() {
+    }
+
+    public void setType(String type) {
+    }
+
+    public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames) {
+    }
+
+    public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames, boolean b) {
+    }
+
+    /**
+     * BigWig data must be sorted,  unsorted data is rejected by the writer
+     */
+    public void setSortTolerance(int tolerance) {
+    }
+
+    public void setAttribute(String key, String value) {
+    }
+}
@@ -31,10 +31,12 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeDescriptor;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.feature.tribble.CodecFactory;
+import org.broad.igv.methyl.MethylSummaryWriter;
 import org.broad.igv.sam.reader.AlignmentIndexer;
 import org.broad.igv.tdf.TDFUtils;
 import org.broad.igv.tools.converters.ExpressionFormatter;
 import org.broad.igv.tools.converters.GCTtoIGVConverter;
+import org.broad.igv.tools.parsers.WiggleParser;
 import org.broad.igv.tools.sort.Sorter;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.ReadmeParser;
@@ -82,7 +84,7 @@ public class IgvTools {
             "version print the version number",
             "sort    sort an alignment file by start position. ",
             "index   index an alignment file",
-            "toTDF    convert an input file (cn, gct, wig) to tiled data format (tdf)",
+            "toTDF    convert an input file (cn, gct, wig, bisulfite bigbed) to tiled data format (tdf),  or to bigwig (.bw) or bigbed (.bb)",
             "count   compute coverage density for an alignment file",
             "formatexp  center, scale, and log2 normalize an expression file",
             "gui      Start the gui",
@@ -484,6 +486,15 @@ public class IgvTools {
                       Collection<WindowFunction> windowFunctions, String tmpDirName, int maxRecords)
             throws IOException, PreprocessingException {
 
+        if (BedToBigBed.isBigBed(ofile)) {
+            toBigBed(typeString, ifile, ofile, genomeId);
+            return;
+        }
+        if (BedToBigBed.isBigBed(ifile)) {
+            toMethylSummary(ifile, ofile, genomeId, maxZoomValue);
+            return;
+        }
+
         if (!ifile.endsWith(".affective.csv")) validateIsTilable(typeString);
 
         System.out.println("toTDF.  File = " + ifile);
@@ -504,6 +515,11 @@ public class IgvTools {
         }
         File inputFileOrDir = new File(ifile);
 
+        if (BigWigConsumer.isBigWig(ofile)) {
+            toBigWig(typeString, inputFileOrDir, new File(ofile), genome);
+            return;
+        }
+
         // Estimae the total number of lines to be parsed, for progress updates
         int nLines = estimateLineCount(inputFileOrDir);
 
@@ -564,6 +580,88 @@ public class IgvTools {
 
     }
 
+    /**
+     * Convert a wig or bedgraph file to a BigWig file.  The input must be sorted.
+     */
+    private void toBigWig(String typeString, File inputFile, File outputFile, Genome genome) throws IOException {
+
+        if (!(typeString.endsWith("wig") || typeString.endsWith("bedgraph"))) {
+            throw new PreprocessingException("BigWig output is supported for wig and bedgraph files,  not: " + typeString);
+        }
+
+        BigWigConsumer consumer = new BigWigConsumer(outputFile, genome);
+        try {
+            WiggleParser parser = new WiggleParser(inputFile.getAbsolutePath(), consumer, genome);
+            parser.parse();
+            consumer.finish();
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Delete output file as its probably corrupt
+            if (outputFile.exists()) {
+                outputFile.delete();
+            }
+        }
+        System.out.flush();
+    }
+
+    /**
+     * Convert a bed file to a BigBed file.  The input must be sorted.
+     */
+    private void toBigBed(String typeString, String ifile, String ofile, String genomeId) throws IOException {
+
+        if (!typeString.endsWith("bed")) {
+            throw new PreprocessingException("BigBed output is supported for bed files,  not: " + typeString);
+        }
+        System.out.println("toBigBed.  File = " + ifile);
+
+        Genome genome = loadGenome(genomeId, false);
+        if (genome == null) {
+            throw new PreprocessingException("Genome could not be loaded: " + genomeId);
+        }
+
+        File outputFile = new File(ofile);
+        try {
+            BedToBigBed.convert(ifile, outputFile, genome);
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Delete output file as its probably corrupt
+            if (outputFile.exists()) {
+                outputFile.delete();
+            }
+        }
+        System.out.flush();
+    }
+
+
+    /**
+     * Summarize the CpGs of a bisulfite sequencing bigBed file at each zoom level.  The summary is found by the
+     * methylation track if it is next to the bigBed file,  with the extension ".tdf" appended.
+     */
+    private void toMethylSummary(String ifile, String ofile, String genomeId, int maxZoomValue) throws IOException {
+
+        System.out.println("Summarizing methylation.  File = " + ifile);
+        System.out.println("Max zoom = " + maxZoomValue);
+
+        Genome genome = loadGenome(genomeId, false);
+        if (genome == null) {
+            throw new PreprocessingException("Genome could not be loaded: " + genomeId);
+        }
+
+        File outputFile = new File(ofile);
+        try {
+            MethylSummaryWriter.write(ifile, outputFile, genome, maxZoomValue);
+        } catch (IllegalArgumentException e) {
+            throw new PreprocessingException(e.getMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Delete output file as its probably corrupt
+            if (outputFile.exists()) {
+                outputFile.delete();
+            }
+        }
+        System.out.flush();
+    }
+
 
     /**
      * Return either (a) the children files in a directory, or (b) files listed in the input, assuming inputFileOrDir
@@ -664,10 +762,22 @@ public class IgvTools {
             throw new PreprocessingException("Genome could not be loaded: " + genomeId);
         }
 
-        // Multiple files allowed for count command (a tdf and a wig)
+        // Multiple files allowed for count command (a tdf or bigwig,  and a wig)
         File tdfFile = null;
         File wigFile = null;
         String[] files = ofile.split(",");
+        if (BigWigConsumer.isBigWig(files[0])) {
+            if (files.length > 1 && files[1].endsWith("wig") && !BigWigConsumer.isBigWig(files[1])) {
+                wigFile = new File(files[1]);
+            }
+            BigWigConsumer consumer = new BigWigConsumer(new File(files[0]), genome);
+            CoverageCounter counter = new CoverageCounter(ifile, consumer, windowSizeValue, extFactorValue, wigFile,
+                    genome, queryString, minMapQuality, countFlags);
+            counter.parse();
+            consumer.finish();
+            System.out.flush();
+            return;
+        }
         if (files[0].endsWith("wig")) {
             wigFile = new File(files[0]);
         } else {
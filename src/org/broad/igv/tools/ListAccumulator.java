@@ -22,21 +22,22 @@
  */
 package org.broad.igv.tools;
 
-import org.broad.igv.util.collections.DoubleArrayList;
-import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.stats.QuantileSketch;
 
 import java.util.*;
 
 /**
- * Estimating percentiles -- weighted average of multiple estimates
+ * Accumulator for multiple window functions.  Percentiles are estimated with a single {@link QuantileSketch} shared
+ * by all percentile window functions.
  *
  * @author jrobinso
  */
 public class ListAccumulator {
 
     static Set<WindowFunction> PERCENTILE_WINDOW_FUNCTIONS = new HashSet();
+    // Size of the value batches formerly used to estimate percentiles,  still used as a test size
     public static int MAX_VALUE_COUNT = 100000;
     private static Logger log = Logger.getLogger(ListAccumulator.class);
 
@@ -53,8 +54,7 @@ public class ListAccumulator {
 
     List<WindowFunction> windowFunctions;
     List<WindowFunction> quantileFunctions;
-    Map<WindowFunction, List<PercentileValue>> percentiles = new HashMap();
-    DoubleArrayList values = null;
+    QuantileSketch sketch = null;
     float sum = 0.0f;
     int basesCovered = 0;
     int nPts = 0;
@@ -75,8 +75,8 @@ public class ListAccumulator {
         for (WindowFunction wf : windowFunctions) {
             if (PERCENTILE_WINDOW_FUNCTIONS.contains(wf)) {
                 quantileFunctions.add(wf);
-                if (values == null) {
-                    values = new DoubleArrayList();
+                if (sketch == null) {
+                    sketch = new QuantileSketch();
                 }
             }
         }
@@ -89,12 +89,8 @@ public class ListAccumulator {
             sum += w*v;
             basesCovered +=w;
             nPts++;
-            if (values != null) {
-                values.add(v);
-                if (values.size() > MAX_VALUE_COUNT) {
-                    computePercentiles();
-                    values.clear();
-                }
+            if (sketch != null) {
+                sketch.add(v);
             }
         }
     }
@@ -108,60 +104,24 @@ public class ListAccumulator {
 
         mean = Float.isNaN(sum) ? Float.NaN : sum / basesCovered;
 
-        if (values != null) {
+        if (sketch != null) {
             if (nPts == 1) {
                 for (WindowFunction wf : quantileFunctions) {
                     setValue(wf, mean);
                 }
             } else {
-                if (values.size() > 1) {
-                    computePercentiles();
-                }
                 for (WindowFunction wf : quantileFunctions) {
-
-                    List<PercentileValue> pList = percentiles.get(wf);
-                    float v = Float.NaN; // <= Default,
-                    if (pList != null && pList.size() > 0) {
-                        double weightedSum = 0;
-                        double sumOfWeights = 0;
-                        for (PercentileValue pv : pList) {
-                            double weight = (double) pv.nPoints / nPts;
-                            sumOfWeights += weight;
-                            weightedSum += weight * pv.value;
-                        }
-                        v = (float) (weightedSum / sumOfWeights);
-                    }
-                    setValue(wf, v);
-
-                }
-
-            }
-        }
-        values = null;
-        isFinished = true;
-
-    }
-
-    private void computePercentiles() {
-        if (values != null) {
-            double[] valueArray = values.toArray();
-            for (WindowFunction wf : quantileFunctions) {
-                double p = this.getPercentile(wf);
-                if (p > 0) {
-                    float v = (float) StatUtils.percentile(valueArray, p);
+                    float v = (float) sketch.getPercentile(getPercentile(wf));
                     if (Float.isInfinite(v)) {
                         log.error("Infinite percentile (" + wf + ")");
-                    } else {
-                        List<PercentileValue> pList = percentiles.get(wf);
-                        if (pList == null) {
-                            pList = new ArrayList();
-                            percentiles.put(wf, pList);
-                        }
-                        pList.add(new PercentileValue(valueArray.length, v));
+                        v = Float.NaN;
                     }
+                    setValue(wf, v);
                 }
             }
         }
+        sketch = null;
+        isFinished = true;
 
     }
 
@@ -245,15 +205,4 @@ public class ListAccumulator {
         }
     }
 
-
-    class PercentileValue {
-        int nPoints;
-        double value;
-
-        PercentileValue(int nPoints, double value) {
-            this.nPoints = nPoints;
-            this.value = value;
-        }
-    }
-
 }
@@ -27,9 +27,7 @@ import org.broad.tribble.readers.AsciiLineReader;
 
 import java.io.*;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -44,7 +42,7 @@ public class TestFileGenerator {
 
     enum FileType {
 
-        CN, IGV, GCT, WIG
+        CN, IGV, GCT, WIG, BED, GFF, VCF
     }
 
     ;
@@ -54,6 +52,22 @@ public class TestFileGenerator {
             boolean sorted,
             int nRows,
             int nSamples) {
+        generateTestFile(outputFile, sorted, nRows, nSamples, new Random());
+    }
+
+    /**
+     * Generate a file of the type given by the extension of {@code outputFile}:  .cn, .igv, .gct, .wig, .bed, .gff,
+     * or .vcf.  Rows are spread evenly over the hg18 chromosomes.  {@code nSamples} is the number of data columns,
+     * or of genotype columns for vcf files,  and is ignored for bed and gff files.
+     *
+     * @param rand source of values,  seed it for reproducible files
+     */
+    public static void generateTestFile(
+            String outputFile,
+            boolean sorted,
+            int nRows,
+            int nSamples,
+            Random rand) {
 
         int rowsPerChr = Math.max(1, nRows / chromosome.length);
 
@@ -70,6 +84,12 @@ public class TestFileGenerator {
         } else if (outputFile.endsWith(".wig")) {
             type = FileType.WIG;
 
+        } else if (outputFile.endsWith(".bed")) {
+            type = FileType.BED;
+        } else if (outputFile.endsWith(".gff") || outputFile.endsWith(".gff3")) {
+            type = FileType.GFF;
+        } else if (outputFile.endsWith(".vcf")) {
+            type = FileType.VCF;
         } else {
             System.out.println("Unsupported file type: " + outputFile);
         }
@@ -78,7 +98,6 @@ public class TestFileGenerator {
             pw = new PrintWriter(new FileWriter(outputFile));
             writeHeader(pw, nSamples, type);
 
-            Random rand = new Random();
             List<String> probes = type == FileType.GCT ? getExpressionProbes() : new ArrayList();
             int n = 0;
 
@@ -90,8 +109,8 @@ public class TestFileGenerator {
                 int lastStart = 0;
 
                 if (type == FileType.WIG) {
-                    int step = (int) delta;
-                    pw.println("fixedStep chrom=" + chr + " start=" + 1 + " step=" + step + " span=" + (step - 1));
+                    int step = Math.max(1, (int) delta);
+                    pw.println("fixedStep chrom=" + chr + " start=" + 1 + " step=" + step + " span=" + Math.max(1, step - 1));
                 }
 
                 for (int r = 0; r <= rowsPerChr; r++) {
@@ -104,13 +123,16 @@ public class TestFileGenerator {
                     if (type == FileType.WIG) {
                         pw.println(center + rand.nextGaussian());
 
+                    } else if (type == FileType.BED || type == FileType.GFF || type == FileType.VCF) {
+                        writeFeature(pw, type, chr, start, r, nSamples, rand);
+
                     } else {
                         switch (type) {
                             case CN:
                                 pw.print("Snp_" + r + "\t" + chr + "\t" + start);
                                 break;
                             case IGV:
-                                int end = Math.max(start + 1, (int) (start + Math.random() * 1000));
+                                int end = Math.max(start + 1, (int) (start + rand.nextDouble() * 1000));
                                 pw.print(chr + "\t" + start + "\t" + end + "\tProbe_" + r);
                                 break;
                             case GCT:
@@ -182,9 +204,148 @@ public class TestFileGenerator {
                 pw.print("\tSample_" + s);
             }
             pw.println();
+        } else if (type == FileType.GFF) {
+            pw.println("##gff-version 3");
+        } else if (type == FileType.VCF) {
+            pw.println("##fileformat=VCFv4.1");
+            pw.println("##INFO=<ID=DP,Number=1,Type=Integer,Description=\"Total Depth\">");
+            pw.println("##INFO=<ID=AF,Number=A,Type=Float,Description=\"Allele Frequency\">");
+            pw.println("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">");
+            pw.println("##FORMAT=<ID=GQ,Number=1,Type=Integer,Description=\"Genotype Quality\">");
+            pw.println("##FORMAT=<ID=DP,Number=1,Type=Integer,Description=\"Read Depth\">");
+            pw.print("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+            for (int s = 0; s < nSamples; s++) {
+                pw.print("\tSample_" + s);
+            }
+            pw.println();
+        }
+    }
+
+    /**
+     * Write a gene of 1 to 4 exons (bed),  a gene and its first exon (gff),  or a SNP (vcf) starting at
+     * {@code start}
+     */
+    static void writeFeature(PrintWriter pw, FileType type, String chr, int start, int r, int nSamples, Random rand) {
+
+        String strand = rand.nextBoolean() ? "+" : "-";
+        if (type == FileType.VCF) {
+            int refIndex = rand.nextInt(4);
+            char ref = BASES[refIndex];
+            char alt = BASES[(refIndex + 1 + rand.nextInt(3)) % 4];
+            int depth = 10 + rand.nextInt(90);
+            pw.print(chr + "\t" + (start + 1) + "\trs" + r + "\t" + ref + "\t" + alt + "\t" + (20 + rand.nextInt(80)) +
+                    "\tPASS\tDP=" + depth + ";AF=" + ((float) rand.nextInt(100) / 100) + "\tGT:GQ:DP");
+            for (int s = 0; s < nSamples; s++) {
+                pw.print("\t" + GENOTYPES[rand.nextInt(GENOTYPES.length)] + ":" + rand.nextInt(100) + ":" +
+                        rand.nextInt(depth));
+            }
+            pw.println();
+            return;
+        }
+
+        int nExons = 1 + rand.nextInt(4);
+        int[] exonStarts = new int[nExons];
+        int[] exonSizes = new int[nExons];
+        int exonStart = 0;
+        for (int e = 0; e < nExons; e++) {
+            exonStarts[e] = exonStart;
+            exonSizes[e] = 50 + rand.nextInt(250);
+            exonStart += exonSizes[e] + 100 + rand.nextInt(2000);
+        }
+        int end = start + exonStarts[nExons - 1] + exonSizes[nExons - 1];
+
+        if (type == FileType.BED) {
+            StringBuffer sizes = new StringBuffer();
+            StringBuffer starts = new StringBuffer();
+            for (int e = 0; e < nExons; e++) {
+                sizes.append(exonSizes[e]).append(',');
+                starts.append(exonStarts[e]).append(',');
+            }
+            pw.println(chr + "\t" + start + "\t" + end + "\tGene_" + r + "\t" + rand.nextInt(1000) + "\t" + strand +
+                    "\t" + start + "\t" + end + "\t0,0,255\t" + nExons + "\t" + sizes + "\t" + starts);
+        } else {
+            pw.println(chr + "\tTestFileGenerator\tgene\t" + (start + 1) + "\t" + end + "\t.\t" + strand +
+                    "\t.\tID=gene_" + r + ";Name=Gene_" + r);
+            pw.println(chr + "\tTestFileGenerator\texon\t" + (start + 1) + "\t" + (start + exonSizes[0]) + "\t.\t" +
+                    strand + "\t.\tID=exon_" + r + ";Parent=gene_" + r);
+        }
+    }
+
+    /**
+     * Generate a coordinate sorted SAM file of {@code nReads} reads placed uniformly in [start, end) of {@code chr}.
+     * About one read in ten has a deletion.
+     */
+    public static void generateAlignmentFile(String outputFile, String chr, int start, int end, int nReads,
+                                             int readLength, Random rand) throws IOException {
+
+        int[] positions = new int[nReads];
+        for (int i = 0; i < nReads; i++) {
+            positions[i] = start + rand.nextInt(end - start - readLength);
+        }
+        Arrays.sort(positions);
+
+        PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(outputFile)));
+        try {
+            pw.println("@HD\tVN:1.0\tSO:coordinate");
+            for (int i = 0; i < chromosome.length; i++) {
+                pw.println("@SQ\tSN:" + chromosome[i] + "\tLN:" + chromSize[i]);
+            }
+
+            char[] bases = new char[readLength];
+            char[] qualities = new char[readLength];
+            for (int i = 0; i < nReads; i++) {
+                String cigar = readLength + "M";
+                if (rand.nextInt(10) == 0) {
+                    int left = 1 + rand.nextInt(readLength - 1);
+                    cigar = left + "M" + (1 + rand.nextInt(3)) + "D" + (readLength - left) + "M";
+                }
+                for (int b = 0; b < readLength; b++) {
+                    bases[b] = BASES[rand.nextInt(4)];
+                    qualities[b] = (char) ('#' + rand.nextInt(40));
+                }
+                int flag = rand.nextBoolean() ? 16 : 0;
+                pw.println("read_" + i + "\t" + flag + "\t" + chr + "\t" + (positions[i] + 1) + "\t60\t" + cigar +
+                        "\t*\t0\t0\t" + new String(bases) + "\t" + new String(qualities));
+            }
+        } finally {
+            pw.close();
         }
     }
 
+    /**
+     * Generate a file of Hi-C read pairs,  in the text format read by the Hi-C preprocessor.  Most pairs are within a
+     * chromosome and within 200 kb of each other.
+     */
+    public static void generatePairsFile(String outputFile, int nPairs, Random rand) throws IOException {
+
+        PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(outputFile)));
+        try {
+            for (int i = 0; i < nPairs; i++) {
+                int chr1 = rand.nextInt(chromosome.length);
+                int chr2 = rand.nextInt(4) == 0 ? rand.nextInt(chromosome.length) : chr1;
+                int pos1 = rand.nextInt(chromSize[chr1]);
+                int pos2 = chr1 == chr2 ?
+                        Math.min(chromSize[chr2] - 1, pos1 + rand.nextInt(200000)) :
+                        rand.nextInt(chromSize[chr2]);
+                pw.println("r" + i + " " + chromosome[chr1] + " " + pos1 + " r" + i + " " + chromosome[chr2] + " " +
+                        pos2);
+            }
+        } finally {
+            pw.close();
+        }
+    }
+
+    /**
+     * @return the sizes of the chromosomes of generated files,  by name,  in genome order
+     */
+    public static LinkedHashMap<String, Integer> getChromosomeSizes() {
+        LinkedHashMap<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < chromosome.length; i++) {
+            sizes.put(chromosome[i], chromSize[i]);
+        }
+        return sizes;
+    }
+
     static List<String> getExpressionProbes() {
         String urlString = "http://www.broadinstitute.org/igv/resources/probes/affy/affy_human_mappings.txt.gz";
         AsciiLineReader bufReader = null;
@@ -222,6 +383,10 @@ public class TestFileGenerator {
 
     }
 
+    static char[] BASES = {'A', 'C', 'G', 'T'};
+
+    static String[] GENOTYPES = {"0/0", "0/1", "1/1", "./."};
+
     static String[] chromosome = {
             "chr1",
             "chr2",
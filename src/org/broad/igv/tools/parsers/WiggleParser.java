@@ -19,10 +19,10 @@ package org.broad.igv.tools.parsers;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import org.broad.igv.Globals;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.tribble.readers.AsciiLineReader;
@@ -55,6 +55,9 @@ public class WiggleParser {
     String nextLine = null;
     private String chr;
     String lastChr = "";
+    private FieldTokenizer tokens = new FieldTokenizer();
+    private String rawChr;
+    private String rawChrAlias;
     int lastPosition = 0;
     private int start = 0;
     private int step = 1;
@@ -241,8 +244,7 @@ public class WiggleParser {
                 } else {
 
                     // Must be data
-                    String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
-                    int nTokens = tokens.length;
+                    int nTokens = tokens.tokenize(nextLine);
                     if (nTokens == 0) {
                         continue;
                     }
@@ -255,7 +257,7 @@ public class WiggleParser {
                                     dataArray = new float[nTokens - 3];
                                 }
 
-                                chr = tokens[1].trim();
+                                chr = tokens.getString(1).trim();
                                 if (!chr.equals(lastChr)) {
                                     newChromosome();
                                 }
@@ -263,11 +265,11 @@ public class WiggleParser {
 
                                 int endPosition = -1;
                                 try {
-                                    endPosition = Integer.parseInt(tokens[2].trim());
+                                    endPosition = tokens.getInt(2);
                                 } catch (NumberFormatException numberFormatException) {
                                     System.err.println("Column 2  is not a number");
 
-                                    throw new RuntimeException("Column 2 must be numeric." + " Found: " + tokens[1]);
+                                    throw new RuntimeException("Column 2 must be numeric." + " Found: " + tokens.getString(1));
                                 }
                                 int startPosition = endPosition - 1;
 
@@ -277,8 +279,8 @@ public class WiggleParser {
                                 lastPosition = startPosition;
 
 
-                                float value = Float.parseFloat(tokens[4].trim());
-                                if (tokens[3].trim().equals("R")) {
+                                float value = tokens.getFloat(4);
+                                if (tokens.getString(3).trim().equals("R")) {
                                     value = -value;
                                 }
                                 dataArray[0] = value;
@@ -292,22 +294,27 @@ public class WiggleParser {
                                     dataArray = new float[nTokens - 3];
                                 }
 
-                                chr = (genome == null ? tokens[0].trim() : genome.getChromosomeAlias(tokens[0].trim()));
+                                // Reuse the chromosome name while it is unchanged, rather than creating a string per line
+                                if (rawChr == null || !tokens.equals(0, rawChr)) {
+                                    rawChr = tokens.getString(0);
+                                    rawChrAlias = (genome == null ? rawChr.trim() : genome.getChromosomeAlias(rawChr.trim()));
+                                }
+                                chr = rawChrAlias;
                                 if (!chr.equals(lastChr)) {
                                     newChromosome();
                                 }
                                 lastChr = chr;
 
-                                int startPosition = Integer.parseInt(tokens[1].trim());
+                                int startPosition = tokens.getInt(1);
                                 if (startPosition < lastPosition) {
                                     unsortedChromosomes.add(chr);
                                 }
                                 lastPosition = startPosition;
 
-                                int endPosition = Integer.parseInt(tokens[2].trim());
+                                int endPosition = tokens.getInt(2);
 
                                 for (int i = 0; i < dataArray.length; i++) {
-                                    dataArray[i] = Float.parseFloat(tokens[3 + i].trim());
+                                    dataArray[i] = tokens.getFloat(3 + i);
                                 }
 
                                 getDataConsumer().addData(chr, startPosition, endPosition, dataArray, null);
@@ -322,7 +329,7 @@ public class WiggleParser {
 
                                 // Per UCSC specification variable and fixed step coordinates are "1" based.
                                 // We need to subtract 1 to convert to the internal "zero" based coordinates.
-                                int startPosition = Integer.parseInt(tokens[0]) - startBase;
+                                int startPosition = tokens.getInt(0) - startBase;
                                 if (startPosition < lastPosition) {
                                     unsortedChromosomes.add(chr);
                                 }
@@ -331,7 +338,7 @@ public class WiggleParser {
                                 int endPosition = startPosition + span;
 
                                 for (int i = 0; i < dataArray.length; i++) {
-                                    dataArray[i] = Float.parseFloat(tokens[1 + i].trim());
+                                    dataArray[i] = tokens.getFloat(1 + i);
                                 }
 
                                 getDataConsumer().addData(chr, startPosition, endPosition, dataArray, null);
@@ -346,7 +353,7 @@ public class WiggleParser {
                                 int endPosition = position + span;
 
                                 for (int i = 0; i < dataArray.length; i++) {
-                                    dataArray[i] = Float.parseFloat(tokens[i].trim());
+                                    dataArray[i] = tokens.getFloat(i);
                                 }
 
                                 getDataConsumer().addData(chr, position, endPosition, dataArray, null);
@@ -42,6 +42,14 @@ public class DataSourceTrack extends DataTrack {
 
         this.dataSource = dataSource;
         setTrackType(dataSource.getTrackType());
+        initDataRange();
+    }
+
+    /**
+     * Set the data range from the data source statistics.  Called on construction, and again by sources whose data
+     * becomes available after the track is created.
+     */
+    public void initDataRange() {
         List<LocusScore> scores = this.dataSource.getSummaryScoresForRange(Globals.CHR_ALL, -1, -1, -1);
 
         float min = (float) dataSource.getDataMin();
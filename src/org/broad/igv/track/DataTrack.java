@@ -23,36 +23,65 @@ import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.FeatureUtils;
+import org.broad.igv.feature.Locus;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.renderer.DataRange;
 import org.broad.igv.renderer.DataRenderer;
+import org.broad.igv.renderer.HeatmapRenderer;
 import org.broad.igv.renderer.XYPlotRenderer;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.util.ExecutorUtils;
 import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.stats.Metrics;
 
+import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a track of numeric data
  *
  * @author jrobinso
  */
-public abstract class DataTrack extends AbstractTrack {
+public abstract class DataTrack extends AbstractTrack implements TileRenderable {
 
     private static Logger log = Logger.getLogger(DataTrack.class);
     private DataRenderer renderer;
     private boolean autoscale;
 
     // TODO -- memory leak.  This needs to get cleared when the gene list changes
-    private HashMap<String, LoadedDataInterval> loadedIntervalCache = new HashMap(200);
-    private boolean featuresLoading = false;
+    // Synchronized,  region scores are computed off the event dispatch thread
+    private Map<String, LoadedDataInterval> loadedIntervalCache =
+            Collections.synchronizedMap(new HashMap<String, LoadedDataInterval>(200));
+
+    // Background loads requested by render,  by frame name.  A frame is a key of activeLoads while its load task
+    // runs,  mapped to the request being loaded.  Both are guarded by queuedLoads.
+    private final Map<String, LoadRequest> queuedLoads = new HashMap<String, LoadRequest>();
+    private final Map<String, LoadRequest> activeLoads = new HashMap<String, LoadRequest>();
+
+    // Scores of gene list frames,  loaded for clusters of nearby frames and shared by them
+    private final FrameDataCache frameDataCache = new FrameDataCache();
+
+    // Incremented when cached data is cleared,  invalidating rendered tiles
+    private final AtomicInteger tileVersion = new AtomicInteger();
+
+    // Time from a load request to the start of its load,  and the time to load
+    private static final Metrics.Timer queueTimer = Metrics.timer("datatrack.load.queue");
+    private static final Metrics.Timer loadTimer = Metrics.timer("datatrack.load");
+
+    private static ExecutorService loadExecutor = ExecutorUtils.newFixedThreadPool(
+            "DataTrack loader", ExecutorUtils.CPU_THREADS);
 
 
     public DataTrack(ResourceLocator locator, String id, String name) {
@@ -71,10 +100,6 @@ public abstract class DataTrack extends AbstractTrack {
 
     public void render(RenderContext context, Rectangle rect) {
 
-        if (featuresLoading) {
-            return;
-        }
-
         String chr = context.getChr();
         int start = (int) context.getOrigin();
         int end = (int) context.getEndLocation() + 1;
@@ -85,8 +110,19 @@ public abstract class DataTrack extends AbstractTrack {
         LoadedDataInterval interval = loadedIntervalCache.get(context.getReferenceFrame().getName());
         if (interval != null && interval.contains(chr, start, end, zoom)) {
             inViewScores = interval.getScores();
-        } else {
+        } else if (isLoadSynchronous()) {
             inViewScores = load(context, chr, start, end, zoom);
+        } else {
+            // Draw whatever was last loaded for this chromosome,  possibly at another zoom,  until the data arrives.
+            loadInBackground(context, rect, chr, start, end, zoom);
+            if (interval != null && interval.getChr().equals(chr)) {
+                inViewScores = interval.getScores();
+            } else {
+                return;
+            }
+        }
+        if (inViewScores == null) {
+            return;
         }
 
         if (autoscale && !FrameManager.isGeneListMode()) {
@@ -115,39 +151,191 @@ public abstract class DataTrack extends AbstractTrack {
     }
 
     public List<LocusScore> load(final RenderContext context, final String chr, final int start, final int end, final int zoom) {
+        LoadedDataInterval interval = loadInterval(chr, start, end, zoom, getFrameIntervals(chr, zoom));
+        loadedIntervalCache.put(context.getReferenceFrame().getName(), interval);
+        return interval.getScores();
+    }
 
-        try {
-            featuresLoading = true;
-            int maxEnd = end;
-            Genome genome = GenomeManager.getInstance().getCurrentGenome();
-
-            String queryChr = chr;
-            if (genome != null) {
-                queryChr = genome.getChromosomeAlias(chr);
-                Chromosome c = genome.getChromosome(chr);
-                if (c != null) maxEnd = Math.max(c.getLength(), end);
+    /**
+     * Load the scores of the interval expanded by 50% on each side.  In gene list mode the scores are loaded with
+     * those of nearby frames,  whose intervals are given by {@code frameIntervals}.
+     */
+    private LoadedDataInterval loadInterval(String chr, int start, int end, int zoom, List<Locus> frameIntervals) {
+
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        String queryChr = genome == null ? chr : genome.getChromosomeAlias(chr);
+        Locus expanded = expandInterval(genome, chr, start, end);
+
+        List<LocusScore> inViewScores;
+        if (frameIntervals != null) {
+            inViewScores = frameDataCache.getScores(queryChr, expanded.getStart(), expanded.getEnd(), zoom,
+                    frameIntervals, new FrameDataCache.ScoreSource() {
+                public List<LocusScore> getSummaryScores(String chr, int start, int end, int zoom) {
+                    return DataTrack.this.getSummaryScores(chr, start, end, zoom);
+                }
+            });
+        } else {
+            inViewScores = getSummaryScores(queryChr, expanded.getStart(), expanded.getEnd(), zoom);
+        }
+        return new LoadedDataInterval(chr, start, end, zoom, inViewScores);
+    }
+
+    /**
+     * Return the expanded intervals of the gene list frames on the chromosome at the zoom level,  or null if not in
+     * gene list mode.  Called when the load is requested,  as the frames change on the event dispatch thread.
+     */
+    private static List<Locus> getFrameIntervals(String chr, int zoom) {
+        if (!FrameManager.isGeneListMode()) {
+            return null;
+        }
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        String queryChr = genome == null ? chr : genome.getChromosomeAlias(chr);
+        List<Locus> frameIntervals = new ArrayList<Locus>();
+        for (ReferenceFrame frame : FrameManager.getFrames()) {
+            if (frame.getZoom() == zoom && chr.equals(frame.getChrName())) {
+                Locus locus = expandInterval(genome, chr, (int) frame.getOrigin(), (int) frame.getEnd() + 1);
+                frameIntervals.add(new Locus(queryChr, locus.getStart(), locus.getEnd()));
+            }
+        }
+        return frameIntervals;
+    }
+
+    /**
+     * Expand an interval by 50% on each side,  within the chromosome
+     */
+    private static Locus expandInterval(Genome genome, String chr, int start, int end) {
+        int maxEnd = end;
+        if (genome != null) {
+            Chromosome c = genome.getChromosome(chr);
+            if (c != null) maxEnd = Math.max(c.getLength(), end);
+        }
+        int delta = (end - start) / 2;
+        return new Locus(chr, Math.max(0, start - delta), Math.min(maxEnd, end + delta));
+    }
+
+    /**
+     * Data is loaded on the calling thread in batch mode,  when painting off the event dispatch thread (e.g. snapshots),
+     * or when exporting a snapshot,  as the image must be complete.
+     */
+    private static boolean isLoadSynchronous() {
+        return Globals.isBatch() || Globals.isHeadless() || !SwingUtilities.isEventDispatchThread() ||
+                (IGV.hasInstance() && IGV.getInstance().isExportingSnapshot());
+    }
+
+    /**
+     * Queue a load of the interval for the context's frame.  Requests are coalesced per frame:  at most one load is in
+     * progress,  a queued request is replaced by a newer one,  and a request covered by the load in progress or the
+     * queued one is dropped.
+     * When the data arrives only this track's rectangle is repainted.
+     */
+    private void loadInBackground(RenderContext context, Rectangle rect, String chr, int start, int end, int zoom) {
+
+        final String frameName = context.getReferenceFrame().getName();
+
+        synchronized (queuedLoads) {
+            LoadRequest active = activeLoads.get(frameName);
+            if (active != null && active.contains(chr, start, end, zoom)) {
+                queuedLoads.remove(frameName);
+                return;
+            }
+            LoadRequest queued = queuedLoads.get(frameName);
+            if (queued != null && queued.contains(chr, start, end, zoom)) {
+                return;
+            }
+            queuedLoads.put(frameName, new LoadRequest(chr, start, end, zoom, getFrameIntervals(chr, zoom),
+                    context.getPanel(), new Rectangle(rect)));
+            if (activeLoads.containsKey(frameName)) {
+                return;
             }
-            // Expand interval +/- 50%
-            int delta = (end - start) / 2;
-            int expandedStart = Math.max(0, start - delta);
-            int expandedEnd = Math.min(maxEnd, end + delta);
-            List<LocusScore> inViewScores = getSummaryScores(queryChr, expandedStart, expandedEnd, zoom);
-            LoadedDataInterval interval = new LoadedDataInterval(chr, start, end, zoom, inViewScores);
-            loadedIntervalCache.put(context.getReferenceFrame().getName(), interval);
-            return inViewScores;
-
-        } finally {
-            featuresLoading = false;
+            activeLoads.put(frameName, null);
         }
 
+        loadExecutor.submit(new Runnable() {
+            public void run() {
+                while (true) {
+                    LoadRequest request;
+                    synchronized (queuedLoads) {
+                        request = queuedLoads.remove(frameName);
+                        if (request == null) {
+                            activeLoads.remove(frameName);
+                            return;
+                        }
+                        activeLoads.put(frameName, request);
+                    }
+                    queueTimer.stop(request.queueTime);
+
+                    LoadedDataInterval interval;
+                    long t0 = loadTimer.start();
+                    try {
+                        interval = loadInterval(request.getChr(), request.getStart(), request.getEnd(), request.zoom,
+                                request.frameIntervals);
+                        loadTimer.stop(t0);
+                    } catch (Exception e) {
+                        // Mark the interval as empty to prevent an endless loop of load attempts
+                        log.error("Error loading data for " + getName() + " " + request, e);
+                        interval = new LoadedDataInterval(request.getChr(), request.getStart(), request.getEnd(),
+                                request.zoom, new ArrayList<LocusScore>());
+                    }
+
+                    synchronized (queuedLoads) {
+                        // Discard data loaded before the caches were cleared
+                        if (activeLoads.get(frameName) != request) {
+                            continue;
+                        }
+                        loadedIntervalCache.put(frameName, interval);
+                    }
+                    if (request.panel != null) {
+                        request.panel.repaint(request.rect);
+                    }
+                }
+            }
+        });
     }
 
+    /**
+     * Return a number which changes when cached data is cleared,  so that values derived from the data can be
+     * invalidated
+     */
+    int getDataVersion() {
+        return tileVersion.get();
+    }
 
     public void clearCaches() {
-        loadedIntervalCache.clear();
+        tileVersion.incrementAndGet();
+        frameDataCache.clear();
+        synchronized (queuedLoads) {
+            loadedIntervalCache.clear();
+            queuedLoads.clear();
+            for (String frameName : activeLoads.keySet()) {
+                activeLoads.put(frameName, null);
+            }
+        }
     }
 
 
+    /**
+     * Heatmaps are drawn in tiles.  Other renderers draw an axis or data range at the left edge of the view.
+     */
+    public Object getTileStateKey(ReferenceFrame frame) {
+        PreferenceManager prefs = PreferenceManager.getInstance();
+        if (!(getRenderer() instanceof HeatmapRenderer) || prefs.getAsBoolean(PreferenceManager.CHART_DRAW_Y_AXIS)) {
+            return null;
+        }
+        return Arrays.asList(tileVersion.get(), getRenderer().getClass(), getTrackType(), isLogNormalized(),
+                getWindowFunction(), getColorScale().asString(), getColorScale().getNoDataColor(),
+                prefs.getAsBoolean(PreferenceManager.CHART_SHOW_ALL_HEATMAP));
+    }
+
+    public void renderTile(RenderContext context, Rectangle rect) {
+        String chr = context.getChr();
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        String queryChr = genome == null ? chr : genome.getChromosomeAlias(chr);
+        int start = (int) context.getOrigin();
+        int end = (int) context.getEndLocation() + 1;
+        List<LocusScore> scores = getSummaryScores(queryChr, start, end, context.getZoom());
+        getRenderer().render(scores, context, rect, this);
+    }
+
     public void setRendererClass(Class rc) {
         try {
             renderer = (DataRenderer) rc.newInstance();
@@ -376,6 +564,27 @@ public abstract class DataTrack extends AbstractTrack {
     }
 
 
+    static class LoadRequest extends Locus {
+        final int zoom;
+        final List<Locus> frameIntervals;
+        final JComponent panel;
+        final Rectangle rect;
+        final long queueTime = queueTimer.start();
+
+        LoadRequest(String chr, int start, int end, int zoom, List<Locus> frameIntervals, JComponent panel,
+                    Rectangle rect) {
+            super(chr, start, end);
+            this.zoom = zoom;
+            this.frameIntervals = frameIntervals;
+            this.panel = panel;
+            this.rect = rect;
+        }
+
+        boolean contains(String chr, int start, int end, int zoom) {
+            return this.zoom == zoom && super.contains(chr, start, end);
+        }
+    }
+
     class InViewInterval {
         int startIdx;
         int endIdx;
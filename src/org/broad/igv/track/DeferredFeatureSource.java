@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.feature.LocusScore;
+import org.broad.tribble.Feature;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A feature source whose features become available some time after the track is created,  for example when a large
+ * file is being indexed in the background.  Until then queries return no features.
+ *
+ * @see org.broad.igv.tools.AutoIndexer
+ */
+public class DeferredFeatureSource implements FeatureSource {
+
+    private volatile FeatureSource<?> delegate;
+    private int featureWindowSize = -1;
+
+    public boolean isReady() {
+        return delegate != null;
+    }
+
+    public FeatureSource<?> getDelegate() {
+        return delegate;
+    }
+
+    public void setDelegate(FeatureSource<?> delegate) {
+        this.delegate = delegate;
+    }
+
+    public Iterator getFeatures(String chr, int start, int end) throws IOException {
+        FeatureSource<?> src = delegate;
+        return src == null ? Collections.<Feature>emptyList().iterator() : src.getFeatures(chr, start, end);
+    }
+
+    public List<LocusScore> getCoverageScores(String chr, int start, int end, int zoom) {
+        FeatureSource<?> src = delegate;
+        return src == null ? null : src.getCoverageScores(chr, start, end, zoom);
+    }
+
+    public int getFeatureWindowSize() {
+        FeatureSource<?> src = delegate;
+        return src == null ? featureWindowSize : src.getFeatureWindowSize();
+    }
+
+    public void setFeatureWindowSize(int size) {
+        featureWindowSize = size;
+        FeatureSource<?> src = delegate;
+        if (src != null) {
+            src.setFeatureWindowSize(size);
+        }
+    }
+}
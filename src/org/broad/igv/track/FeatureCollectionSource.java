@@ -51,6 +51,29 @@ public class FeatureCollectionSource implements FeatureSource {
         sampleGenomeFeatures();
     }
 
+    /**
+     * Create a source from features separated by chromosome and sorted by start,  with the whole genome features
+     * and coverage precomputed,  for example read from a genome cache.  Feature lists are not accessed until
+     * requested,  so they may be decoded on first access.
+     *
+     * @param featureMap     sorted features by chromosome
+     * @param genomeFeatures features of the whole genome view
+     * @param genomeCoverage feature coverage of the whole genome view,  or null
+     * @param genome
+     */
+    public FeatureCollectionSource(Map<String, List<Feature>> featureMap, List<Feature> genomeFeatures,
+                                   DataTile genomeCoverage, Genome genome) {
+        this.genome = genome;
+        this.featureMap = new HashMap<String, List<Feature>>(featureMap);
+        this.featureMap.put(Globals.CHR_ALL, genomeFeatures);
+        coverageData = new CoverageDataSource(genome);
+        if (genomeCoverage != null) {
+            coverageData.setGenomeCoverage(genomeCoverage);
+        } else {
+            coverageData.computeGenomeCoverage();
+        }
+    }
+
     public Class getFeatureClass() {
         return IGVFeature.class;
     }
@@ -115,6 +138,13 @@ public class FeatureCollectionSource implements FeatureSource {
         featureMap.put(chr, features);
     }
 
+    /**
+     * @return feature coverage of the whole genome view
+     */
+    public DataTile getGenomeCoverage() {
+        return coverageData == null ? null : coverageData.dataCache.get(Globals.CHR_ALL);
+    }
+
     public TrackType getType() {
         return type;
     }
@@ -265,6 +295,13 @@ public class FeatureCollectionSource implements FeatureSource {
 
         }
 
+        void setGenomeCoverage(DataTile coverage) {
+            for (float value : coverage.getValues()) {
+                dataMax = Math.max(dataMax, value);
+            }
+            dataCache.put(Globals.CHR_ALL, coverage);
+        }
+
         protected void computeGenomeCoverage() {
             int nBins = 1000;
             int[] starts = new int[nBins];
@@ -21,6 +21,7 @@ import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.renderer.*;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.UIConstants;
+import org.broad.igv.ui.panel.PickIndex;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.util.BrowserLauncher;
@@ -41,7 +42,7 @@ import java.util.List;
 /**
  * @author jrobinso
  */
-public class FeatureTrack extends AbstractTrack {
+public class FeatureTrack extends AbstractTrack implements PickableTrack {
 
     private static Logger log = Logger.getLogger(FeatureTrack.class);
 
@@ -297,30 +298,7 @@ public class FeatureTrack extends AbstractTrack {
             if (allFeatures == null) {
                 return null;
             }
-
-            StringBuffer buf = new StringBuffer();
-            boolean firstFeature = true;
-            int maxNumber = 10;
-            int n = 1;
-            for (Feature feature : allFeatures) {
-                if (feature != null && feature instanceof IGVFeature) {
-                    IGVFeature igvFeature = (IGVFeature) feature;
-                    String vs = igvFeature.getValueString(position, null);
-                    if (!firstFeature) {
-                        buf.append("<br>--------------<br>");
-                    }
-                    buf.append(vs);
-                    firstFeature = false;
-
-                    if (n > maxNumber) {
-                        buf.append("...");
-                        break;
-                    }
-                }
-                n++;
-            }
-
-            return buf.toString();
+            return getValueString(allFeatures, position);
         } else {
             int zoom = Math.max(0, frame.getZoom());
             if (source == null) {
@@ -341,6 +319,47 @@ public class FeatureTrack extends AbstractTrack {
         }
     }
 
+    /**
+     * Return popup text for the features recorded in the pick index at the point
+     */
+    public String getValueString(List<Object> items, double position, int x, int y) {
+        if (items.isEmpty()) {
+            return null;
+        }
+        List<Feature> features = new ArrayList<Feature>(items.size());
+        for (Object item : items) {
+            features.add((Feature) item);
+        }
+        return getValueString(features, position);
+    }
+
+    private String getValueString(List<Feature> allFeatures, double position) {
+
+        StringBuffer buf = new StringBuffer();
+        boolean firstFeature = true;
+        int maxNumber = 10;
+        int n = 1;
+        for (Feature feature : allFeatures) {
+            if (feature != null && feature instanceof IGVFeature) {
+                IGVFeature igvFeature = (IGVFeature) feature;
+                String vs = igvFeature.getValueString(position, null);
+                if (!firstFeature) {
+                    buf.append("<br>--------------<br>");
+                }
+                buf.append(vs);
+                firstFeature = false;
+
+                if (n > maxNumber) {
+                    buf.append("...");
+                    break;
+                }
+            }
+            n++;
+        }
+
+        return buf.toString();
+    }
+
     /**
      * Get all features this track contains.
      *
@@ -712,6 +731,7 @@ public class FeatureTrack extends AbstractTrack {
                     for (PackedFeatures.FeatureRow row : rows) {
                         levelRects.add(new Rectangle(rect));
                         renderer.render(row.features, context, levelRects.get(i), this);
+                        addPicks(context, row.features, levelRects.get(i));
                         if (selectedFeatureRowIndex == i) {
                             Graphics2D fontGraphics = context.getGraphic2DForColor(SELECTED_FEATURE_ROW_COLOR);
                             fontGraphics.fillRect(rect.x, rect.y, rect.width, rect.height);
@@ -725,7 +745,44 @@ public class FeatureTrack extends AbstractTrack {
             List<IGVFeature> features = packedFeatures.getFeatures();
             if (features != null) {
                 renderer.render(features, context, inputRect, this);
+                addPicks(context, features, inputRect);
+            }
+        }
+        if (context.getPickIndex() != null) {
+            context.getPickIndex().setIndexed(this);
+        }
+    }
+
+    /**
+     * Record the features in view in the pick index of the context,  widened by the feature spacing so that very
+     * narrow features can be hovered.
+     *
+     * @param features features sorted by start.  Packed rows are untyped,  so the elements are cast here.
+     * @param rect     the row the features are drawn in
+     */
+    private void addPicks(RenderContext context, List<?> features, Rectangle rect) {
+
+        PickIndex pickIndex = context.getPickIndex();
+        if (pickIndex == null) {
+            return;
+        }
+
+        double origin = context.getOrigin();
+        double end = context.getEndLocation();
+        double scale = context.getScale();
+        int margin = MINIMUM_FEATURE_SPACING / 2;
+        for (Object o : features) {
+            Feature feature = (Feature) o;
+            if (feature.getEnd() < origin) {
+                continue;
+            }
+            if (feature.getStart() > end) {
+                break;
             }
+            double start = Math.max(feature.getStart(), origin);
+            int x = (int) ((start - origin) / scale);
+            int width = (int) ((Math.min(feature.getEnd(), end) - start) / scale);
+            pickIndex.add(this, x - margin, rect.y, width + 2 * margin + 1, rect.height + 1, feature);
         }
     }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.feature.Locus;
+import org.broad.igv.feature.LocusScore;
+
+import java.util.*;
+
+/**
+ * Scores of a track for the frames of a gene list.  Frames on the same chromosome at the same zoom whose intervals
+ * overlap or nearly touch are loaded as one interval,  and each frame takes its slice of it.  Loaded intervals are
+ * cached by region rather than by frame,  so they are reused when switching between gene lists.
+ */
+public class FrameDataCache {
+
+    static final int MAX_CACHED_SCORES = 500000;
+
+    public interface ScoreSource {
+        List<LocusScore> getSummaryScores(String chr, int start, int end, int zoom);
+    }
+
+    private final int maxCachedScores;
+
+    // Most recently used first
+    private final LinkedList<LoadedDataInterval> intervals = new LinkedList<LoadedDataInterval>();
+    private int cachedScores = 0;
+
+    public FrameDataCache() {
+        this(MAX_CACHED_SCORES);
+    }
+
+    FrameDataCache(int maxCachedScores) {
+        this.maxCachedScores = maxCachedScores;
+    }
+
+    /**
+     * Return the scores overlapping [start, end).  If they are not cached the cluster of frame intervals containing
+     * the interval is loaded.
+     *
+     * @param frameIntervals intervals of the other frames at this zoom,  need not be sorted or on this chromosome
+     * @param source         loads the scores of an interval
+     */
+    public synchronized List<LocusScore> getScores(String chr, int start, int end, int zoom,
+                                                   List<Locus> frameIntervals, ScoreSource source) {
+
+        Iterator<LoadedDataInterval> iter = intervals.iterator();
+        while (iter.hasNext()) {
+            LoadedDataInterval interval = iter.next();
+            if (interval.contains(chr, start, end, zoom)) {
+                iter.remove();
+                intervals.addFirst(interval);
+                return slice(interval.getScores(), start, end);
+            }
+        }
+
+        Locus cluster = getCluster(chr, start, end, frameIntervals);
+        List<LocusScore> scores = source.getSummaryScores(chr, cluster.getStart(), cluster.getEnd(), zoom);
+        if (scores == null) {
+            scores = Collections.emptyList();
+        }
+        intervals.addFirst(new LoadedDataInterval(chr, cluster.getStart(), cluster.getEnd(), zoom, scores));
+        cachedScores += scores.size();
+        while (cachedScores > maxCachedScores && intervals.size() > 1) {
+            cachedScores -= intervals.removeLast().getScores().size();
+        }
+        return slice(scores, start, end);
+    }
+
+    public synchronized void clear() {
+        intervals.clear();
+        cachedScores = 0;
+    }
+
+    /**
+     * Merge the intervals on the chromosome into clusters and return the one containing [start, end).  Intervals
+     * are merged when they overlap or when the gap between them is no wider than the narrower of the two,  so
+     * loading a cluster reads at most about twice the data of its intervals.
+     */
+    static Locus getCluster(String chr, int start, int end, List<Locus> frameIntervals) {
+
+        List<Locus> loci = new ArrayList<Locus>(frameIntervals.size() + 1);
+        loci.add(new Locus(chr, start, end));
+        for (Locus locus : frameIntervals) {
+            if (locus.getChr().equals(chr) && locus.getEnd() > locus.getStart()) {
+                loci.add(locus);
+            }
+        }
+        Collections.sort(loci, new Comparator<Locus>() {
+            public int compare(Locus l1, Locus l2) {
+                return l1.getStart() < l2.getStart() ? -1 : (l1.getStart() == l2.getStart() ? 0 : 1);
+            }
+        });
+
+        int clusterStart = loci.get(0).getStart();
+        int clusterEnd = loci.get(0).getEnd();
+        int lastWidth = clusterEnd - clusterStart;
+        for (int i = 1; i < loci.size(); i++) {
+            Locus locus = loci.get(i);
+            int width = locus.getEnd() - locus.getStart();
+            if (locus.getStart() - clusterEnd > Math.min(lastWidth, width)) {
+                if (clusterStart <= start && clusterEnd >= end) {
+                    break;
+                }
+                clusterStart = locus.getStart();
+                clusterEnd = locus.getEnd();
+            } else {
+                clusterEnd = Math.max(clusterEnd, locus.getEnd());
+            }
+            lastWidth = width;
+        }
+        return new Locus(chr, clusterStart, clusterEnd);
+    }
+
+    /**
+     * Return the scores overlapping [start, end),  in order
+     */
+    static List<LocusScore> slice(List<LocusScore> scores, int start, int end) {
+        List<LocusScore> slice = new ArrayList<LocusScore>();
+        for (LocusScore score : scores) {
+            if (score.getEnd() >= start && score.getStart() <= end) {
+                slice.add(score);
+            }
+        }
+        return slice;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.ui.panel.PickIndex;
+
+import java.util.List;
+
+/**
+ * A track which records what it draws in the {@link PickIndex} of the render context.  Popup text for a point is
+ * then built from the items drawn there rather than by searching the track's data.
+ */
+public interface PickableTrack extends Track {
+
+    /**
+     * Return popup text for the items drawn at the point,  or null.  Called off the event dispatch thread,  so must
+     * not read the reference frame,  which may have moved since the items were drawn.
+     *
+     * @param items    the items recorded at the point,  in the order they were drawn.  May be empty.
+     * @param position position in genomic coordinates
+     * @param x        pixel position in panel coordinates
+     * @param y        pixel position in panel coordinates
+     */
+    String getValueString(List<Object> items, double position, int x, int y);
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.ExecutorUtils;
+import org.broad.igv.util.LRUCache;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Computes the region scores of many tracks at once,  each track's score computed exactly once.  Scores of tracks
+ * which can be scored concurrently are computed on a bounded pool of threads,  as the score may require loading data;
+ * the others are computed in turn on the calling thread.  Scores are cached by track, data version, window function,
+ * region, zoom, score type and frame;  a track's scores are removed with the track,  and the cache is cleared with
+ * the other LRU caches when the session is reset.
+ * <p/>
+ * Sorting by region score sorts over the precomputed scores,  rather than computing scores in the comparator.
+ */
+public class RegionScorer {
+
+    private static Logger log = Logger.getLogger(RegionScorer.class);
+
+    private static final int N_THREADS = ExecutorUtils.CPU_THREADS;
+
+    private static ExecutorService executor = ExecutorUtils.newFixedThreadPool("RegionScorer", N_THREADS);
+
+    private static LRUCache<ScoreKey, Float> cache = new LRUCache<ScoreKey, Float>(RegionScorer.class, 100000);
+
+    /**
+     * Return the region score of each track,  in the order of {@code tracks}.  A track whose score cannot be computed
+     * is given -Float.MAX_VALUE,  the score of a track with no data in the region.
+     *
+     * @param tracks
+     * @param chr
+     * @param start
+     * @param end
+     * @param zoom
+     * @param type
+     * @param frameName
+     * @return
+     */
+    public static float[] getScores(List<? extends Track> tracks, String chr, int start, int end, int zoom,
+                                    RegionScoreType type, String frameName) {
+        return getScores(tracks, chr, start, end, zoom, type, frameName, null);
+    }
+
+    /**
+     * Return the region score of each track,  as above.
+     *
+     * @param overlayTracks Tracks used to compute mutation counts, passed to
+     *                      {@link Track#getRegionScore(String, int, int, int, RegionScoreType, String, java.util.List)}.
+     *                      If null the loaded tracks are used.
+     */
+    public static float[] getScores(List<? extends Track> tracks, final String chr, final int start, final int end,
+                                    final int zoom, final RegionScoreType type, final String frameName,
+                                    final List<Track> overlayTracks) {
+
+        float[] scores = new float[tracks.size()];
+
+        // Mutation counts depend on the overlay tracks,  which are not part of the key
+        final boolean cacheable = overlayTracks == null || type != RegionScoreType.MUTATION_COUNT;
+
+        List<Integer> indexes = new ArrayList<Integer>();
+        List<Callable<Float>> tasks = new ArrayList<Callable<Float>>();
+        List<Integer> serialIndexes = new ArrayList<Integer>();
+        List<Callable<Float>> serialTasks = new ArrayList<Callable<Float>>();
+        for (int i = 0; i < scores.length; i++) {
+            final Track track = tracks.get(i);
+            if (track == null) {
+                scores[i] = -Float.MAX_VALUE;
+                continue;
+            }
+            final ScoreKey key = new ScoreKey(track, chr, start, end, zoom, type, frameName);
+            Float cachedScore = cacheable ? cache.get(key) : null;
+            if (cachedScore != null) {
+                scores[i] = cachedScore;
+            } else {
+                Callable<Float> task = new Callable<Float>() {
+                    public Float call() throws Exception {
+                        float score = overlayTracks == null ?
+                                track.getRegionScore(chr, start, end, zoom, type, frameName) :
+                                track.getRegionScore(chr, start, end, zoom, type, frameName, overlayTracks);
+                        if (cacheable) {
+                            cache.put(key, score);
+                        }
+                        return score;
+                    }
+                };
+                if (isConcurrent(track, type)) {
+                    indexes.add(i);
+                    tasks.add(task);
+                } else {
+                    serialIndexes.add(i);
+                    serialTasks.add(task);
+                }
+            }
+        }
+
+        if (tasks.isEmpty() && serialTasks.isEmpty()) {
+            return scores;
+        }
+
+        try {
+            List<Future<Float>> futures = tasks.size() <= 1 ? runNow(tasks) : executor.invokeAll(tasks);
+            setScores(scores, indexes, futures);
+            setScores(scores, serialIndexes, runNow(serialTasks));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted computing region scores", e);
+        }
+        return scores;
+    }
+
+    /**
+     * Return true if the track's score can be computed concurrently with other tracks' scores.  Only data tracks,
+     * whose loaded data caches are thread safe,  qualify;  their mutation counts read the overlaid feature tracks.
+     */
+    static boolean isConcurrent(Track track, RegionScoreType type) {
+        return track instanceof DataTrack && type != RegionScoreType.MUTATION_COUNT;
+    }
+
+    private static void setScores(float[] scores, List<Integer> indexes, List<Future<Float>> futures)
+            throws InterruptedException {
+        for (int i = 0; i < futures.size(); i++) {
+            float score;
+            try {
+                score = futures.get(i).get();
+            } catch (ExecutionException e) {
+                log.error("Error computing region score. Sort might not be accurate.", e.getCause());
+                score = -Float.MAX_VALUE;
+            }
+            scores[indexes.get(i)] = score;
+        }
+    }
+
+    /**
+     * Sort tracks in descending order of region score.  Tracks with equal scores keep their relative order, null
+     * tracks are placed last,  and NaN scores are treated as no data.
+     *
+     * @param tracks
+     * @param chr
+     * @param start
+     * @param end
+     * @param zoom
+     * @param type
+     * @param frameName
+     */
+    public static void sortByRegionScore(List<Track> tracks, String chr, int start, int end, int zoom,
+                                         RegionScoreType type, String frameName) {
+        float[] scores = getScores(tracks, chr, start, end, zoom, type, frameName);
+        List<Track> sorted = sortByScore(tracks, scores);
+        tracks.clear();
+        tracks.addAll(sorted);
+    }
+
+    /**
+     * Return {@code items} in descending order of {@code scores},  stable,  with null items last.
+     *
+     * @param items
+     * @param itemScores scores of the items,  in the same order
+     * @return
+     */
+    public static <T> List<T> sortByScore(List<T> items, float[] itemScores) {
+        final float[] scores = itemScores.clone();
+        Integer[] order = new Integer[items.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            if (Float.isNaN(scores[i])) {
+                scores[i] = -Float.MAX_VALUE;
+            }
+        }
+        final List<T> itemList = items;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                boolean null1 = itemList.get(i1) == null;
+                boolean null2 = itemList.get(i2) == null;
+                if (null1 || null2) {
+                    return null1 == null2 ? 0 : (null1 ? 1 : -1);
+                }
+                return Float.compare(scores[i2], scores[i1]);
+            }
+        });
+        List<T> sorted = new ArrayList<T>(order.length);
+        for (Integer i : order) {
+            sorted.add(items.get(i));
+        }
+        return sorted;
+    }
+
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Remove the cached scores of a track,  called when the track is removed
+     *
+     * @param track
+     */
+    public static void removeTrack(Track track) {
+        for (ScoreKey key : cache.getKeys()) {
+            if (key.track == track) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    private static List<Future<Float>> runNow(List<Callable<Float>> tasks) {
+        List<Future<Float>> futures = new ArrayList<Future<Float>>(tasks.size());
+        for (Callable<Float> task : tasks) {
+            FutureTask<Float> future = new FutureTask<Float>(task);
+            future.run();
+            futures.add(future);
+        }
+        return futures;
+    }
+
+    static class ScoreKey {
+        final Track track;
+        final int dataVersion;
+        final WindowFunction windowFunction;
+        final String chr;
+        final int start;
+        final int end;
+        final int zoom;
+        final RegionScoreType type;
+        final String frameName;
+
+        ScoreKey(Track track, String chr, int start, int end, int zoom, RegionScoreType type, String frameName) {
+            this.track = track;
+            this.dataVersion = track instanceof DataTrack ? ((DataTrack) track).getDataVersion() : 0;
+            this.windowFunction = track.getWindowFunction();
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+            this.zoom = zoom;
+            this.type = type;
+            this.frameName = frameName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ScoreKey)) return false;
+            ScoreKey key = (ScoreKey) o;
+            return track == key.track && dataVersion == key.dataVersion && windowFunction == key.windowFunction &&
+                    start == key.start && end == key.end && zoom == key.zoom && type == key.type &&
+                    equals(chr, key.chr) && equals(frameName, key.frameName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(track);
+            result = 31 * result + dataVersion;
+            result = 31 * result + (windowFunction != null ? windowFunction.hashCode() : 0);
+            result = 31 * result + (chr != null ? chr.hashCode() : 0);
+            result = 31 * result + start;
+            result = 31 * result + end;
+            result = 31 * result + zoom;
+            result = 31 * result + (type != null ? type.hashCode() : 0);
+            result = 31 * result + (frameName != null ? frameName.hashCode() : 0);
+            return result;
+        }
+
+        private static boolean equals(String s1, String s2) {
+            return s1 == null ? s2 == null : s1.equals(s2);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.broad.igv.track;
 
+import org.broad.igv.ui.panel.PickIndex;
 import org.broad.igv.ui.panel.ReferenceFrame;
 
 import javax.swing.*;
@@ -34,5 +35,10 @@ public interface RenderContext {
 
     int bpToScreenPixel(double location);
 
+    /**
+     * @return the index in which tracks record what they draw,  or null if hit testing is not needed
+     */
+    PickIndex getPickIndex();
+
     void dispose();
 }
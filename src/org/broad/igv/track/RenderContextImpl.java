@@ -22,6 +22,7 @@
  */
 package org.broad.igv.track;
 
+import org.broad.igv.ui.panel.PickIndex;
 import org.broad.igv.ui.panel.ReferenceFrame;
 
 import javax.swing.*;
@@ -39,6 +40,7 @@ public class RenderContextImpl implements RenderContext {
     private ReferenceFrame referenceFrame;
     private JComponent panel;
     private Rectangle visibleRect;
+    private PickIndex pickIndex;
 
     public RenderContextImpl(JComponent panel, Graphics2D graphics, ReferenceFrame referenceFrame, Rectangle visibleRect) {
         this.graphics = graphics;
@@ -107,6 +109,14 @@ public class RenderContextImpl implements RenderContext {
 
     }
 
+    public PickIndex getPickIndex() {
+        return pickIndex;
+    }
+
+    public void setPickIndex(PickIndex pickIndex) {
+        this.pickIndex = pickIndex;
+    }
+
     /**
      * Release graphics objects
      *
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.ui.panel.ReferenceFrame;
+
+import java.awt.*;
+
+/**
+ * A track whose rendering can be cached as bitmap tiles of fixed genomic extent,  and reused when panning.  This
+ * requires that the pixels drawn for a location do not depend on the visible interval,  e.g. no labels or axes
+ * anchored to the edge of the view.
+ */
+public interface TileRenderable extends Track {
+
+    /**
+     * Return a key identifying the state the rendering depends on,  other than the genomic interval and the track
+     * height,  or null if the track cannot currently be rendered in tiles.  Tiles rendered with a different key are
+     * not reused.
+     *
+     * @param frame
+     * @return
+     */
+    Object getTileStateKey(ReferenceFrame frame);
+
+    /**
+     * Render the interval of the context into rect.  Called off the event dispatch thread,  possibly concurrently
+     * for several tiles.
+     *
+     * @param context
+     * @param rect
+     */
+    void renderTile(RenderContext context, Rectangle rect);
+}
@@ -29,7 +29,8 @@ import org.broad.igv.dev.affective.AffectiveAnnotationTrack;
 import org.broad.igv.dev.affective.AffectiveUtils;
 import org.broad.igv.dev.affective.Annotation;
 import org.broad.igv.dev.db.SampleInfoSQLReader;
-import org.broad.igv.dev.db.SegmentedSQLReader;
+import org.broad.igv.dev.db.SegmentedSQLDataSet;
+import org.broad.igv.dev.db.SegmentedSQLDataSource;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.exceptions.ProbeMappingException;
 import org.broad.igv.feature.*;
@@ -47,6 +48,7 @@ import org.broad.igv.lists.GeneList;
 import org.broad.igv.lists.GeneListManager;
 import org.broad.igv.lists.VariantListManager;
 import org.broad.igv.maf.MAFTrack;
+import org.broad.igv.methyl.BBMethylDataSource;
 import org.broad.igv.methyl.MethylTrack;
 import org.broad.igv.peaks.PeakTrack;
 import org.broad.igv.renderer.*;
@@ -56,6 +58,7 @@ import org.broad.igv.synteny.BlastMapping;
 import org.broad.igv.synteny.BlastParser;
 import org.broad.igv.tdf.TDFDataSource;
 import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tools.AutoIndexer;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.ConfirmDialog;
 import org.broad.igv.ui.util.MessageUtils;
@@ -295,9 +298,17 @@ public class TrackLoader {
     }
 
     private void loadIndexed(ResourceLocator locator, List<Track> newTracks, Genome genome) throws IOException {
+        loadIndexed(locator, locator.getPath(), newTracks, genome);
+    }
+
+    /**
+     * Load an indexed feature file.  The data is read from {@code indexedPath},  which differs from the locator path
+     * when loading an indexed copy of the locator's file.
+     */
+    private void loadIndexed(ResourceLocator locator, String indexedPath, List<Track> newTracks, Genome genome) throws IOException {
 
-        TribbleFeatureSource src = new TribbleFeatureSource(locator.getPath(), genome);
-        String typeString = locator.getPath();
+        TribbleFeatureSource src = new TribbleFeatureSource(indexedPath, genome);
+        String typeString = indexedPath;
         //Track t;
 
         if (typeString.endsWith("vcf") || typeString.endsWith("vcf.gz")) {
@@ -400,6 +411,11 @@ public class TrackLoader {
      */
     private void loadFeatureFile(ResourceLocator locator, List<Track> newTracks, Genome genome) throws IOException {
 
+        if (locator.isLocal() && AutoIndexer.isCandidate(locator.getPath())) {
+            loadAutoIndexed(locator, newTracks, genome);
+            return;
+        }
+
         if (locator.isLocal() && (locator.getPath().endsWith(".bed") ||
                 locator.getPath().endsWith(".bed.txt"))) {
             //checkSize takes care of warning the user
@@ -618,6 +634,10 @@ public class TrackLoader {
     private void loadWigFile(ResourceLocator locator, List<Track> newTracks, Genome genome) {
 
         if (locator.isLocal()) {
+            if (AutoIndexer.isCandidate(locator.getPath())) {
+                loadAutoIndexed(locator, newTracks, genome);
+                return;
+            }
             if (!checkSize(locator.getPath())) {
                 return;
             }
@@ -664,10 +684,110 @@ public class TrackLoader {
         }
     }
 
+    /**
+     * Load a large local feature or wig file from its indexed or tiled copy, creating the copy in the background
+     * if it does not exist yet.  The track is returned immediately and displays no data until the copy is ready.
+     *
+     * @param locator
+     * @param newTracks
+     * @param genome
+     */
+    private void loadAutoIndexed(final ResourceLocator locator, List<Track> newTracks, final Genome genome) {
+
+        final String path = locator.getPath();
+        final boolean isWig = AutoIndexer.isWigFile(path);
+
+        File cachedFile = AutoIndexer.getCachedFile(path);
+        if (cachedFile != null) {
+            log.info("Loading " + path + " from " + cachedFile.getAbsolutePath());
+            if (isWig) {
+                loadTDFFile(locator, cachedFile.getAbsolutePath(), newTracks, genome);
+            } else {
+                try {
+                    loadIndexed(locator, cachedFile.getAbsolutePath(), newTracks, genome);
+                } catch (IOException e) {
+                    throw new DataLoadException(e.getMessage(), path);
+                }
+            }
+            return;
+        }
+
+        final Track track;
+        final AutoIndexer.Callback callback;
+        if (isWig) {
+            final DeferredDataSource dataSource = new DeferredDataSource(TrackType.OTHER);
+            final DataSourceTrack dataTrack = new DataSourceTrack(locator, path, locator.getTrackName(), dataSource);
+            callback = new AutoIndexer.Callback() {
+                public void converted(File cacheFile) {
+                    TDFReader reader = TDFReader.getReader(cacheFile.getAbsolutePath());
+                    dataSource.setDelegate(new TDFDataSource(reader, 0, reader.getTrackNames()[0], genome));
+                    dataTrack.setTrackType(reader.getTrackType());
+                    dataTrack.initDataRange();
+                    dataTrack.clearCaches();
+                    autoIndexComplete(locator);
+                }
+
+                public void failed(Exception e) {
+                    autoIndexFailed(locator, e);
+                }
+            };
+            track = dataTrack;
+        } else {
+            final DeferredFeatureSource featureSource = new DeferredFeatureSource();
+            final FeatureTrack featureTrack = new FeatureTrack(locator, featureSource);
+            callback = new AutoIndexer.Callback() {
+                public void converted(File cacheFile) {
+                    try {
+                        TribbleFeatureSource src = new TribbleFeatureSource(cacheFile.getAbsolutePath(), genome);
+                        featureSource.setDelegate(src);
+                        Object header = src.getHeader();
+                        if (header instanceof FeatureFileHeader && ((FeatureFileHeader) header).getTrackProperties() != null) {
+                            featureTrack.setProperties(((FeatureFileHeader) header).getTrackProperties());
+                        }
+                        featureTrack.setVisibilityWindow(src.getFeatureWindowSize());
+                        autoIndexComplete(locator);
+                    } catch (IOException e) {
+                        failed(e);
+                    }
+                }
+
+                public void failed(Exception e) {
+                    autoIndexFailed(locator, e);
+                }
+            };
+            track = featureTrack;
+        }
+
+        track.setName(locator.getTrackName());
+        newTracks.add(track);
+        log.info("Indexing " + path + " in the background");
+        AutoIndexer.submit(path, genome, callback);
+    }
+
+    private void autoIndexComplete(ResourceLocator locator) {
+        log.info("Finished indexing " + locator.getPath());
+        if (IGV.hasInstance()) {
+            IGV.getInstance().repaintDataPanels();
+        }
+    }
+
+    private void autoIndexFailed(ResourceLocator locator, Exception e) {
+        MessageUtils.showMessage("<html>Error indexing " + locator.getPath() + ": " + e.getMessage() +
+                "<br>Convert the file with igvtools or disable automatic indexing in the preferences.");
+    }
+
     public void loadTDFFile(ResourceLocator locator, List<Track> newTracks, Genome genome) {
+        loadTDFFile(locator, locator.getPath(), newTracks, genome);
+    }
 
+    /**
+     * Load a TDF file.  The data is read from {@code tdfPath}, which differs from the locator path when loading a
+     * tiled copy of the locator's file.
+     */
+    private void loadTDFFile(ResourceLocator locator, String tdfPath, List<Track> newTracks, Genome genome) {
 
-        TDFReader reader = TDFReader.getReader(locator.getPath());
+
+        TDFReader reader = TDFReader.getReader(tdfPath);
         TrackType type = reader.getTrackType();
 
         if (reader.getTrackType() == TrackType.AFFECTIVE) {
@@ -734,9 +854,7 @@ public class TrackLoader {
             newTracks.add(track);
         } else if (reader.isBigBedFile()) {
 
-            if (locator.getPath().contains("RRBS_cpgMethylation") ||
-                    locator.getPath().contains("BiSeq_cpgMethylation") ||
-                    (reader.getAutoSql() != null && reader.getAutoSql().startsWith("table BisulfiteSeq"))) {
+            if (BBMethylDataSource.isMethylation(locator.getPath(), reader)) {
                 loadMethylTrack(locator, reader, newTracks, genome);
             } else {
                 FeatureTrack track = new FeatureTrack(locator, trackId, trackName, bigwigSource);
@@ -1055,32 +1173,28 @@ public class TrackLoader {
 
         if (".seg".equals(locator.getType())) {
 
-            SegmentedAsciiDataSet ds = (new SegmentedSQLReader()).load(locator, genome);
+            // Segments are read by region as they are viewed
+            SegmentedSQLDataSet ds = new SegmentedSQLDataSet(locator.getDescription(), genome);
 
             String path = locator.getPath();
-            TrackProperties props = ds.getTrackProperties();
 
-            // The "freq" track.  TODO - make this optional
+            // The "freq" track reads every segment,  so can be turned off for large tables
             if ((ds.getType() == TrackType.COPY_NUMBER || ds.getType() == TrackType.CNV) &&
-                    ds.getSampleNames().size() > 4) {
-                FreqData fd = new FreqData(ds, genome);
+                    ds.getSampleNames().size() > 4 &&
+                    PreferenceManager.getInstance().getAsBoolean(PreferenceManager.DB_CNV_SUMMARY)) {
+                FreqData fd = new FreqData(ds.readAllSegments(), genome);
                 String freqTrackId = path;
                 String freqTrackName = "CNV Summary";
                 CNFreqTrack freqTrack = new CNFreqTrack(locator, freqTrackId, freqTrackName, fd);
                 newTracks.add(freqTrack);
             }
 
-            for (String trackName : ds.getDataHeadings()) {
+            for (String trackName : ds.getSampleNames()) {
                 String trackId = path + "_" + trackName;
-                SegmentedDataSource dataSource = new SegmentedDataSource(trackName, ds);
+                SegmentedSQLDataSource dataSource = new SegmentedSQLDataSource(trackName, ds);
                 DataSourceTrack track = new DataSourceTrack(locator, trackId, trackName, dataSource);
                 track.setRendererClass(HeatmapRenderer.class);
                 track.setTrackType(ds.getType());
-
-                if (props != null) {
-                    track.setProperties(props);
-                }
-
                 newTracks.add(track);
             }
         } else {
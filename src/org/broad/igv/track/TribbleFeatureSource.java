@@ -18,11 +18,13 @@
 
 package org.broad.igv.track;
 
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.data.DataSource;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.tribble.CachingFeatureReader;
 import org.broad.igv.feature.tribble.CodecFactory;
+import org.broad.igv.feature.tribble.IGVTabixFeatureReader;
 import org.broad.igv.feature.tribble.VCFWrapperCodec;
 import org.broad.igv.tdf.TDFDataSource;
 import org.broad.igv.tdf.TDFReader;
@@ -63,7 +65,12 @@ public class TribbleFeatureSource implements org.broad.igv.track.FeatureSource {
         this.genome = genome;
         isVCF = codec.getClass() == VCFWrapperCodec.class;
         featureClass = codec.getFeatureType();
-        AbstractFeatureReader basicReader = AbstractFeatureReader.getFeatureReader(path, codec, true);
+        FeatureReader basicReader;
+        if (isTabix(path)) {
+            basicReader = new IGVTabixFeatureReader(path, codec);
+        } else {
+            basicReader = AbstractFeatureReader.getFeatureReader(path, codec, true);
+        }
         header = basicReader.getHeader();
         initFeatureWindowSize(basicReader);
         reader = new CachingFeatureReader(basicReader, 5, getFeatureWindowSize());
@@ -75,6 +82,15 @@ public class TribbleFeatureSource implements org.broad.igv.track.FeatureSource {
 
     }
 
+    /**
+     * Tabix indexed files are read with {@link IGVTabixFeatureReader},  which decompresses in parallel,  unless
+     * disabled in preferences.
+     */
+    private static boolean isTabix(String path) {
+        return path.toLowerCase().endsWith(".gz") && ParsingUtils.pathExists(path + ".tbi") &&
+                PreferenceManager.getInstance().getAsBoolean(PreferenceManager.PARALLEL_BGZF);
+    }
+
     private void initCoverageSource(String covPath) {
         if (ParsingUtils.pathExists(covPath)) {
             TDFReader reader = TDFReader.getReader(covPath);
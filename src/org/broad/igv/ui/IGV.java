@@ -1045,6 +1045,8 @@ public class IGV {
     public void resetSession(String sessionPath) {
 
         LRUCache.clearCaches();
+        TileCache.clear();
+        DataPanelPainter.clearTrackTimers();
 
         AttributeManager.getInstance().clearAllAttributes();
 
@@ -1270,6 +1272,8 @@ public class IGV {
 
             mainFrame.setTitle(UIConstants.APPLICATION_NAME + " - Session: " + sessionPath);
             LRUCache.clearCaches();
+            TileCache.clear();
+            DataPanelPainter.clearTrackTimers();
 
 
             double[] dividerFractions = session.getDividerFractions();
@@ -1946,6 +1950,9 @@ public class IGV {
         }
 
         for (Track t : tracksToRemove) {
+            TileCache.removeTrack(t);
+            RegionScorer.removeTrack(t);
+            DataPanelPainter.removeTrack(t);
             if (t instanceof DragListener) {
                 DragEventManager.getInstance().removeDragListener((DragListener) t);
             }
@@ -1960,44 +1967,33 @@ public class IGV {
 
 
     /**
-     * @param reader        a reader for the gene (annotation) file.
+     * Create the gene and sequence tracks of a genome.
+     *
      * @param genome
-     * @param geneFileName
+     * @param geneSource    source of the gene (annotation) features,  or null if there are none
+     * @param properties    properties from the annotation file's track line,  or null
      * @param geneTrackName
+     * @param annotationURL
      */
-    public void createGeneTrack(Genome genome, BufferedReader reader, String geneFileName, String geneTrackName,
-                                String annotationURL) {
+    public void createGeneTrack(Genome genome, FeatureSource geneSource, TrackProperties properties,
+                                String geneTrackName, String annotationURL) {
 
-        FeatureDB.clearFeatures();
         FeatureTrack geneFeatureTrack = null;
 
-        if (reader != null) {
-            FeatureParser parser;
-            if (GFFParser.isGFF(geneFileName)) {
-                parser = new GFFParser(geneFileName);
-            } else {
-                parser = AbstractFeatureParser.getInstanceFor(new ResourceLocator(geneFileName), genome);
-            }
-            if (parser == null) {
-                MessageUtils.showMessage("ERROR: Unrecognized annotation file format: " + geneFileName +
-                        "<br>Annotations for genome: " + genome.getId() + " will not be loaded.");
-            } else {
-                List<org.broad.tribble.Feature> genes = parser.loadFeatures(reader, genome);
-                String name = geneTrackName;
-                if (name == null) name = "Genes";
-
-                String id = genome.getId() + "_genes";
-                geneFeatureTrack = new FeatureTrack(id, name, new FeatureCollectionSource(genes, genome));
-                geneFeatureTrack.setMinimumHeight(5);
-                geneFeatureTrack.setHeight(35);
-                geneFeatureTrack.setRendererClass(IGVFeatureRenderer.class);
-                geneFeatureTrack.setColor(Color.BLUE.darker());
-                TrackProperties props = parser.getTrackProperties();
-                if (props != null) {
-                    geneFeatureTrack.setProperties(parser.getTrackProperties());
-                }
-                geneFeatureTrack.setUrl(annotationURL);
+        if (geneSource != null) {
+            String name = geneTrackName;
+            if (name == null) name = "Genes";
+
+            String id = genome.getId() + "_genes";
+            geneFeatureTrack = new FeatureTrack(id, name, geneSource);
+            geneFeatureTrack.setMinimumHeight(5);
+            geneFeatureTrack.setHeight(35);
+            geneFeatureTrack.setRendererClass(IGVFeatureRenderer.class);
+            geneFeatureTrack.setColor(Color.BLUE.darker());
+            if (properties != null) {
+                geneFeatureTrack.setProperties(properties);
             }
+            geneFeatureTrack.setUrl(annotationURL);
         }
 
 
@@ -2145,33 +2141,7 @@ public class IGV {
             final int start = region.getStart();
             final int end = region.getEnd();
 
-            Comparator<Track> c = new Comparator<Track>() {
-
-                public int compare(Track t1, Track t2) {
-                    try {
-                        if (t1 == null && t2 == null) return 0;
-                        if (t1 == null) return 1;
-                        if (t2 == null) return -1;
-
-
-                        float s1 = t1.getRegionScore(chr, start, end, zoom, type, frameName);
-                        float s2 = t2.getRegionScore(chr, start, end, zoom, type, frameName);
-
-                        if (s1 < s2) {
-                            return 1;
-                        } else if (s1 > s2) {
-                            return -1;
-                        } else {
-                            return 0;
-                        }
-                    } catch (Exception e) {
-                        log.error("Error sorting tracks. Sort might not be accurate.", e);
-                        return 0;
-                    }
-
-                }
-            };
-            Collections.sort(tracks, c);
+            RegionScorer.sortByRegionScore(tracks, chr, start, end, zoom, type, frameName);
 
         }
     }
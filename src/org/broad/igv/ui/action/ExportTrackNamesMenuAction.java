@@ -20,6 +20,7 @@ package org.broad.igv.ui.action;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScorer;
 import org.broad.igv.track.Track;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.ui.IGV;
@@ -34,6 +35,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -79,20 +81,31 @@ public class ExportTrackNamesMenuAction extends MenuAction {
                 pw.println();
             }
 
+            List<Track> tracks = new ArrayList<Track>();
             for (Track t : igv.getAllTracks(false)) {
                 if (t.getTrackType() == TrackType.COPY_NUMBER || t.getTrackType() == TrackType.CNV) {
-                    pw.print(t.getName());
-                    for (ReferenceFrame frame : referenceFrames) {
-                        //track.getRegionScore(chr, start, end, zoom, type, frame));
-                        String chr = frame.getChrName();
-                        int start = (int) frame.getOrigin();
-                        int end = (int) frame.getEnd();
-                        float score = t.getRegionScore(chr, start, end, frame.getZoom(), RegionScoreType.SCORE, frame.getName());
-                        pw.print("\t" + score);
-                    }
-                    pw.println();
+                    tracks.add(t);
                 }
             }
+
+            // Scores by frame,  each computed once per track
+            float[][] scores = new float[referenceFrames.size()][];
+            for (int f = 0; f < scores.length; f++) {
+                ReferenceFrame frame = referenceFrames.get(f);
+                String chr = frame.getChrName();
+                int start = (int) frame.getOrigin();
+                int end = (int) frame.getEnd();
+                scores[f] = RegionScorer.getScores(tracks, chr, start, end, frame.getZoom(), RegionScoreType.SCORE,
+                        frame.getName());
+            }
+
+            for (int i = 0; i < tracks.size(); i++) {
+                pw.print(tracks.get(i).getName());
+                for (int f = 0; f < scores.length; f++) {
+                    pw.print("\t" + scores[f][i]);
+                }
+                pw.println();
+            }
         } catch (IOException ex) {
             MessageUtils.showMessage("IO Error: " + ex.getMessage());
         } finally {
@@ -36,6 +36,8 @@ import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.UIConstants;
 import org.broad.igv.ui.WaitCursorManager;
 import org.broad.igv.ui.util.DataPanelTool;
+import org.broad.igv.ui.util.UIUtilities;
+import org.broad.igv.util.ExecutorUtils;
 
 import javax.swing.*;
 import javax.swing.event.MouseInputAdapter;
@@ -46,6 +48,7 @@ import java.awt.event.MouseEvent;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * The batch panel for displaying tracks and data.  A DataPanel is always associated with a ReferenceFrame.  Normally
@@ -59,6 +62,13 @@ public class DataPanel extends JComponent implements Paintable {
     private static Logger log = Logger.getLogger(DataPanel.class);
     private boolean isWaitingForToolTipText = false;
 
+    /**
+     * Milliseconds the mouse must rest before tooltip text is computed
+     */
+    static final int TOOLTIP_DELAY = 50;
+
+    private static ScheduledExecutorService tooltipExecutor = ExecutorUtils.newSingleThreadScheduledExecutor("Tooltip");
+
 
     // TODO move this to some central place
     final static private boolean IS_MAC = System.getProperty("os.name").toLowerCase().startsWith("mac");
@@ -71,6 +81,11 @@ public class DataPanel extends JComponent implements Paintable {
     private DataPanelPainter painter;
     private String tooltipText = "";
 
+    // Items drawn by the tracks in the last full paint
+    private volatile PickIndex pickIndex;
+    private ScheduledFuture tooltipTask;
+    private int tooltipRequest = 0;
+
 
     public DataPanel(ReferenceFrame frame, DataPanelContainer parent) {
         init();
@@ -120,7 +135,15 @@ public class DataPanel extends JComponent implements Paintable {
             final Rectangle damageRect = clipBounds == null ? visibleRect : clipBounds.intersection(visibleRect);
             Graphics2D graphics2D = (Graphics2D) g; //(Graphics2D) g.create();
 
-            context = new RenderContextImpl(this, graphics2D, frame, visibleRect);
+            RenderContextImpl contextImpl = new RenderContextImpl(this, graphics2D, frame, visibleRect);
+            context = contextImpl;
+
+            // Partial repaints,  e.g. when a tooltip is hidden,  keep the index of the last full paint
+            PickIndex paintPickIndex = null;
+            if (damageRect.contains(visibleRect)) {
+                paintPickIndex = new PickIndex(frame, visibleRect);
+                contextImpl.setPickIndex(paintPickIndex);
+            }
 
             if (IS_MAC) {
                 this.applyMacPerformanceHints((Graphics2D) g);
@@ -148,6 +171,9 @@ public class DataPanel extends JComponent implements Paintable {
 
             computeMousableRegions(groups, trackWidth);
             painter.paint(groups, context, trackWidth, trackHeight, getBackground(), damageRect);
+            if (paintPickIndex != null) {
+                pickIndex = paintPickIndex;
+            }
 
 
             // If there is a partial ROI in progress draw it first
@@ -380,14 +406,105 @@ public class DataPanel extends JComponent implements Paintable {
 
 
     /**
-     * Update tooltip text for the current mouse position (x, y)
+     * Update tooltip text for the current mouse position (x, y).  When every track under the mouse recorded what it
+     * drew in the pick index the text is computed from the index on a background thread,  once the mouse has rested
+     * for TOOLTIP_DELAY milliseconds.  Other tracks search their data with the live reference frame,  which is only
+     * safe on the event dispatch thread,  so their text is computed here.  Text for an earlier position is discarded.
      *
      * @param x Mouse x position in pixels
      * @param y Mouse y position in pixels
      */
-    public void updateTooltipText(int x, int y) {
+    public void updateTooltipText(final int x, final int y) {
+
+        if (tooltipTask != null) {
+            tooltipTask.cancel(false);
+            tooltipTask = null;
+        }
+        final int request = ++tooltipRequest;
+
+        final double position = frame.getChromosomePosition(x);
+        PickIndex index = pickIndex;
+        final PickIndex currentIndex = index != null && index.isCurrent(frame) ? index : null;
+        final List<Track> tracks = getPickedTracks(x, y, currentIndex);
+        if (tracks == null) {
+            setToolTipText(getTooltipText(x, y, position));
+            return;
+        }
+
+        tooltipTask = tooltipExecutor.schedule(new Runnable() {
+            public void run() {
+                String text;
+                try {
+                    text = getPickedTooltipText(tracks, x, y, position, currentIndex);
+                } catch (Exception e) {
+                    log.error("Error computing tooltip text", e);
+                    text = "";
+                }
+                final String tooltipText = text;
+                UIUtilities.invokeOnEventThread(new Runnable() {
+                    public void run() {
+                        if (request == tooltipRequest) {
+                            setToolTipText(tooltipText);
+                        }
+                    }
+                });
+            }
+        }, TOOLTIP_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return the tracks under the point,  in the order they are asked for text,  if all of them can be answered
+     * from the pick index.  Return null if any track,  or a track overlaid on it,  must search its data.
+     *
+     * @param pickIndex index of the last paint,  or null if it is out of date
+     */
+    private List<Track> getPickedTracks(int x, int y, PickIndex pickIndex) {
+        if (pickIndex == null) {
+            return null;
+        }
+        List<Track> tracks = new ArrayList<Track>();
+        for (MouseableRegion mouseRegion : parent.getMouseRegions()) {
+            if (mouseRegion.containsPoint(x, y)) {
+                Track track = mouseRegion.getTracks().iterator().next();
+                if (track != null) {
+                    if (!(track instanceof PickableTrack) || !pickIndex.isIndexed(track, x, y)) {
+                        return null;
+                    }
+                    List<Track> overlays = IGV.getInstance().getOverlayTracks(track);
+                    if (overlays != null) {
+                        for (Track overlay : overlays) {
+                            if (overlay != track) {
+                                return null;
+                            }
+                        }
+                    }
+                    tracks.add(track);
+                }
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * Return html formatted text for the items the tracks drew at the point,  or "" if there is nothing under it.
+     * Only reads the pick index,  so may be called from any thread.
+     */
+    static String getPickedTooltipText(List<Track> tracks, int x, int y, double position, PickIndex pickIndex) {
+        for (Track track : tracks) {
+            String valueString = ((PickableTrack) track).getValueString(pickIndex.getItems(track, x, y),
+                    position, x, y);
+            if (valueString != null) {
+                return ("<html>" + valueString + "<br>").trim();
+            }
+        }
+        return "";
+    }
 
-        double position = frame.getChromosomePosition(x);
+    /**
+     * Return html formatted text for the mouse position,  or "" if there is nothing under it.  Must be called on
+     * the event dispatch thread.
+     */
+    private String getTooltipText(int x, int y, double position) {
 
         Track track = null;
         List<MouseableRegion> regions = parent.getMouseRegions();
@@ -405,8 +522,7 @@ public class DataPanel extends JComponent implements Paintable {
                     boolean foundOverlaidFeature = false;
                     if (overlays != null) {
                         for (Track overlay : overlays) {
-                            if ((overlay != track) && (overlay.getValueStringAt(
-                                    frame.getChrName(), position, y, frame) != null)) {
+                            if (overlay != track) {
                                 String valueString = overlay.getValueStringAt(frame.getChrName(), position, y, frame);
                                 if (valueString != null) {
                                     popupTextBuffer.append(valueString);
@@ -420,9 +536,6 @@ public class DataPanel extends JComponent implements Paintable {
                     if (!foundOverlaidFeature) {
                         String valueString = track.getValueStringAt(frame.getChrName(), position, y, frame);
                         if (valueString != null) {
-                            if (foundOverlaidFeature) {
-                                popupTextBuffer.append("---------------------<br>");
-                            }
                             popupTextBuffer.append(valueString);
                             popupTextBuffer.append("<br>");
                             break;
@@ -433,14 +546,9 @@ public class DataPanel extends JComponent implements Paintable {
         }
 
         if (popupTextBuffer.length() > 6) {   // 6 characters for <html>
-            //popupTextBuffer.append("<br>--------------------------");
-            //popupTextBuffer.append(positionString);
-            String puText = popupTextBuffer.toString().trim();
-            if (!puText.equals(tooltipText)) {
-                setToolTipText(puText);
-            }
+            return popupTextBuffer.toString().trim();
         } else {
-            setToolTipText("");
+            return "";
         }
     }
 
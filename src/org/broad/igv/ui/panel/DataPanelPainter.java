@@ -27,14 +27,15 @@ package org.broad.igv.ui.panel;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.TileRenderable;
 import org.broad.igv.track.Track;
 import org.broad.igv.track.TrackGroup;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.UIConstants;
+import org.broad.igv.util.stats.Metrics;
 
 import java.awt.*;
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.*;
 import java.util.List;
 
 /**
@@ -44,6 +45,13 @@ public class DataPanelPainter {
 
     private static Logger log = Logger.getLogger(DataPanelPainter.class);
 
+    private static final Metrics.Timer renderTimer = Metrics.timer("render.track");
+
+    /**
+     * Render timer of each track,  named by track id.  Timers are unregistered when their track is removed.
+     */
+    private static final Map<Track, Metrics.Timer> trackTimers = new WeakHashMap<Track, Metrics.Timer>();
+
     public synchronized void paint(Collection<TrackGroup> groups,
                                    RenderContext context,
                                    int width,
@@ -124,7 +132,12 @@ public class DataPanelPainter {
 
     final private void draw(Track track, Rectangle rect, RenderContext context) {
 
-        track.render(context, rect);
+        long t0 = renderTimer.start();
+        boolean tiled = track instanceof TileRenderable && TileCache.isEnabled(context) &&
+                TileCache.draw((TileRenderable) track, context, rect);
+        if (!tiled) {
+            track.render(context, rect);
+        }
 
         // Get overlays
 
@@ -139,5 +152,44 @@ public class DataPanelPainter {
             }
         }
 
+        renderTimer.stop(t0);
+        getTrackTimer(track).stop(t0);
+    }
+
+    private static synchronized Metrics.Timer getTrackTimer(Track track) {
+        Metrics.Timer timer = trackTimers.get(track);
+        if (timer == null) {
+            String id = track.getId() == null ? track.getName() : track.getId();
+            String name = "render.track." + id;
+            // Tracks loaded from the same file share an id
+            for (int i = 2; Metrics.contains(name); i++) {
+                name = "render.track." + id + "." + i;
+            }
+            timer = Metrics.timer(name);
+            trackTimers.put(track, timer);
+        }
+        return timer;
+    }
+
+    /**
+     * Unregister the render timer of a track that has been removed
+     *
+     * @param track
+     */
+    public static synchronized void removeTrack(Track track) {
+        Metrics.Timer timer = trackTimers.remove(track);
+        if (timer != null) {
+            Metrics.remove(timer.getName());
+        }
+    }
+
+    /**
+     * Unregister the render timers of all tracks,  e.g. when a new session is loaded
+     */
+    public static synchronized void clearTrackTimers() {
+        for (Metrics.Timer timer : trackTimers.values()) {
+            Metrics.remove(timer.getName());
+        }
+        trackTimers.clear();
     }
 }
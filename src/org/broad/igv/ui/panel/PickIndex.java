@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.broad.igv.track.Track;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Screen bounds of the items drawn by each track during one paint of a data panel,  for hit testing.  The painted
+ * rectangle is divided into square cells,  and each cell lists the items overlapping it,  so the items under a point
+ * are found without searching the track's data.
+ * <p/>
+ * An index is filled on the event dispatch thread while painting and is not modified once published,  after which
+ * it can be read from any thread.
+ */
+public class PickIndex {
+
+    static final int CELL_SIZE = 16;
+
+    /**
+     * Maximum number of item references held by the cells.  Beyond this the index is abandoned,  and tracks fall
+     * back to searching their data.
+     */
+    static final int MAX_CELL_ENTRIES = 1000000;
+
+    private final String chr;
+    private final double origin;
+    private final double scale;
+    private final Rectangle bounds;
+    private final int columns;
+
+    // For each cell the position in cellEntries of its most recently added item,  or -1
+    private final int[] cellHeads;
+    private final IntArrayList cellEntries = new IntArrayList();
+    private final IntArrayList cellNext = new IntArrayList();
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Set<Track> indexedTracks = new HashSet<Track>();
+    private boolean overflow = false;
+
+    /**
+     * @param frame  the frame being painted
+     * @param bounds the painted rectangle,  in panel coordinates
+     */
+    public PickIndex(ReferenceFrame frame, Rectangle bounds) {
+        this.chr = frame.getChrName();
+        this.origin = frame.getOrigin();
+        this.scale = frame.getScale();
+        this.bounds = new Rectangle(bounds);
+        this.columns = Math.max(1, (bounds.width + CELL_SIZE - 1) / CELL_SIZE);
+        int rows = Math.max(1, (bounds.height + CELL_SIZE - 1) / CELL_SIZE);
+        cellHeads = new int[columns * rows];
+        Arrays.fill(cellHeads, -1);
+    }
+
+    /**
+     * Record an item drawn by the track.  The part of the bounds outside the painted rectangle is ignored.
+     */
+    public void add(Track track, int x, int y, int width, int height, Object item) {
+
+        int x0 = Math.max(x, bounds.x);
+        int y0 = Math.max(y, bounds.y);
+        int x1 = (int) Math.min((long) x + width, bounds.x + bounds.width);
+        int y1 = (int) Math.min((long) y + height, bounds.y + bounds.height);
+        if (overflow || x1 <= x0 || y1 <= y0) {
+            return;
+        }
+
+        int c0 = (x0 - bounds.x) / CELL_SIZE;
+        int c1 = (x1 - 1 - bounds.x) / CELL_SIZE;
+        int r0 = (y0 - bounds.y) / CELL_SIZE;
+        int r1 = (y1 - 1 - bounds.y) / CELL_SIZE;
+        if (cellEntries.size() + (c1 - c0 + 1) * (r1 - r0 + 1) > MAX_CELL_ENTRIES) {
+            overflow = true;
+            return;
+        }
+
+        int entry = entries.size();
+        entries.add(new Entry(track, x, y, width, height, item));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * columns + c;
+                cellEntries.add(entry);
+                cellNext.add(cellHeads[cell]);
+                cellHeads[cell] = cellEntries.size() - 1;
+            }
+        }
+    }
+
+    /**
+     * Mark the track as having recorded everything it drew,  so a point of the track without items is empty.
+     */
+    public void setIndexed(Track track) {
+        indexedTracks.add(track);
+    }
+
+    /**
+     * @return true if the items of the track at (x, y) can be found with {@link #getItems}
+     */
+    public boolean isIndexed(Track track, int x, int y) {
+        return !overflow && bounds.contains(x, y) && indexedTracks.contains(track);
+    }
+
+    /**
+     * @return true if the frame has not moved since it was painted
+     */
+    public boolean isCurrent(ReferenceFrame frame) {
+        return chr.equals(frame.getChrName()) && origin == frame.getOrigin() && scale == frame.getScale();
+    }
+
+    /**
+     * @return the items of the track whose bounds contain (x, y),  in the order they were added
+     */
+    public List<Object> getItems(Track track, int x, int y) {
+
+        List<Object> items = new ArrayList<Object>();
+        if (!bounds.contains(x, y)) {
+            return items;
+        }
+        int cell = ((y - bounds.y) / CELL_SIZE) * columns + (x - bounds.x) / CELL_SIZE;
+        for (int i = cellHeads[cell]; i >= 0; i = cellNext.get(i)) {
+            Entry entry = entries.get(cellEntries.get(i));
+            if (entry.track == track && entry.contains(x, y)) {
+                items.add(entry.item);
+            }
+        }
+        Collections.reverse(items);
+        return items;
+    }
+
+    static class Entry {
+
+        final Track track;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        final Object item;
+
+        Entry(Track track, int x, int y, int width, int height, Object item) {
+            this.track = track;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.item = item;
+        }
+
+        boolean contains(int px, int py) {
+            return px >= x && px < (long) x + width && py >= y && py < (long) y + height;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.Globals;
+import org.broad.igv.PreferenceManager;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.RenderContextImpl;
+import org.broad.igv.track.TileRenderable;
+import org.broad.igv.track.Track;
+import org.broad.igv.ui.IGV;
+import org.broad.igv.util.ExecutorUtils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Cache of rendered track tiles.  A tile is TILE_WIDTH pixels wide and covers a fixed genomic interval at a given
+ * scale,  so after a pan the cached tiles are drawn at their new position and only newly exposed tiles are rendered.
+ * Missing tiles are rendered in parallel off the event dispatch thread,  and the track repainted when they arrive.
+ * <p/>
+ * Tiles are keyed by track,  the track's tile state key,  chromosome,  scale,  tile index and track height.  They are
+ * not shared between tracks.  The least recently drawn tiles are evicted when the pixels held exceed MAX_BYTES,  and a
+ * track's tiles are removed with the track.
+ */
+public class TileCache {
+
+    private static Logger log = Logger.getLogger(TileCache.class);
+
+    public static final int TILE_WIDTH = 256;
+
+    private static final int N_THREADS = ExecutorUtils.CPU_THREADS;
+
+    private static ExecutorService executor = ExecutorUtils.newFixedThreadPool("Tile renderer", N_THREADS);
+
+    /**
+     * Maximum bytes of tile pixels held,  an eighth of the heap up to 256 MB
+     */
+    static final long MAX_BYTES = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8);
+
+    // Tiles in order of access.  Guarded by itself,  as are cacheBytes and generation.
+    private static final LinkedHashMap<TileKey, BufferedImage> cache =
+            new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true);
+    private static long cacheBytes = 0;
+
+    // Incremented when tiles are removed,  tiles rendered for an earlier generation are discarded
+    private static long generation = 0;
+
+    private static Set<TileKey> pendingTiles = Collections.synchronizedSet(new HashSet<TileKey>());
+
+    /**
+     * Return true if tracks should be drawn from tiles in this context.  Images must be complete in batch mode and
+     * when exporting snapshots,  so these render directly.
+     *
+     * @param context
+     * @return
+     */
+    public static boolean isEnabled(RenderContext context) {
+        return context.getPanel() != null &&
+                !Globals.isBatch() &&
+                SwingUtilities.isEventDispatchThread() &&
+                !(IGV.hasInstance() && IGV.getInstance().isExportingSnapshot()) &&
+                PreferenceManager.getInstance().getAsBoolean(PreferenceManager.TILE_CACHE);
+    }
+
+    /**
+     * Draw the track from cached tiles,  queuing the missing ones for rendering.  Returns false,  drawing nothing,
+     * if the track cannot currently be drawn in tiles.
+     *
+     * @param track
+     * @param context
+     * @param rect
+     * @return
+     */
+    public static boolean draw(TileRenderable track, RenderContext context, Rectangle rect) {
+
+        Object stateKey = track.getTileStateKey(context.getReferenceFrame());
+        if (stateKey == null || rect.width <= 0 || rect.height <= 0) {
+            return false;
+        }
+
+        String chr = context.getChr();
+        double scale = context.getScale();
+        int zoom = context.getZoom();
+        double originPixel = context.getOrigin() / scale;
+        long firstTile = (long) Math.floor(originPixel / TILE_WIDTH);
+        long lastTile = (long) Math.floor((originPixel + rect.width - 1) / TILE_WIDTH);
+
+        Graphics2D graphics = context.getGraphics();
+        for (long tile = firstTile; tile <= lastTile; tile++) {
+            TileKey key = new TileKey(track, stateKey, chr, scale, tile, rect.height);
+            BufferedImage image = get(key);
+            if (image != null) {
+                int x = rect.x + (int) Math.round(tile * TILE_WIDTH - originPixel);
+                graphics.drawImage(image, x, rect.y, null);
+            } else {
+                renderInBackground(key, zoom, context, new Rectangle(rect));
+            }
+        }
+        return true;
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            cacheBytes = 0;
+            generation++;
+        }
+    }
+
+    /**
+     * Remove the tiles of a track,  called when the track is removed
+     *
+     * @param track
+     */
+    public static void removeTrack(Track track) {
+        synchronized (cache) {
+            Iterator<Map.Entry<TileKey, BufferedImage>> iter = cache.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<TileKey, BufferedImage> entry = iter.next();
+                if (entry.getKey().track == track) {
+                    cacheBytes -= getBytes(entry.getValue());
+                    iter.remove();
+                }
+            }
+            generation++;
+        }
+    }
+
+    static long getCacheBytes() {
+        synchronized (cache) {
+            return cacheBytes;
+        }
+    }
+
+    private static BufferedImage get(TileKey key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * Add a tile,  evicting the least recently drawn tiles to keep within MAX_BYTES
+     */
+    static void put(TileKey key, BufferedImage image) {
+        synchronized (cache) {
+            BufferedImage previous = cache.put(key, image);
+            if (previous != null) {
+                cacheBytes -= getBytes(previous);
+            }
+            cacheBytes += getBytes(image);
+            Iterator<Map.Entry<TileKey, BufferedImage>> iter = cache.entrySet().iterator();
+            while (cacheBytes > MAX_BYTES && iter.hasNext()) {
+                Map.Entry<TileKey, BufferedImage> eldest = iter.next();
+                if (!eldest.getKey().equals(key)) {
+                    cacheBytes -= getBytes(eldest.getValue());
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    private static long getBytes(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();    // TYPE_INT_ARGB
+    }
+
+    private static void renderInBackground(final TileKey key, final int zoom, RenderContext context,
+                                           final Rectangle trackRect) {
+
+        if (!pendingTiles.add(key)) {
+            return;
+        }
+
+        final JComponent panel = context.getPanel();
+        final ReferenceFrame frame = context.getReferenceFrame();
+        final long requestGeneration;
+        synchronized (cache) {
+            requestGeneration = generation;
+        }
+
+        executor.submit(new Runnable() {
+            public void run() {
+                boolean rendered = false;
+                try {
+                    BufferedImage image = new BufferedImage(TILE_WIDTH, key.height, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D graphics = image.createGraphics();
+                    Rectangle rect = new Rectangle(0, 0, TILE_WIDTH, key.height);
+                    double origin = key.tile * TILE_WIDTH * key.scale;
+                    TileRenderContext context = new TileRenderContext(panel, graphics, frame, rect, key.chr, origin,
+                            key.scale, zoom);
+                    try {
+                        key.track.renderTile(context, rect);
+                    } finally {
+                        context.dispose();
+                        graphics.dispose();
+                    }
+                    synchronized (cache) {
+                        // Drop the tile if its track was removed,  or the cache cleared,  while it rendered
+                        if (generation == requestGeneration) {
+                            put(key, image);
+                        }
+                    }
+                    rendered = true;
+                } catch (Exception e) {
+                    log.error("Error rendering tile of " + key.track.getName(), e);
+                } finally {
+                    pendingTiles.remove(key);
+                }
+                // The key is no longer pending,  so the repaint draws the tile or requests it again
+                if (rendered) {
+                    panel.repaint(trackRect);
+                }
+            }
+        });
+    }
+
+    /**
+     * Context for rendering a tile.  The interval is fixed when the tile is requested,  as the frame continues to
+     * change while the tile renders.
+     */
+    static class TileRenderContext extends RenderContextImpl {
+
+        String chr;
+        double origin;
+        double scale;
+        int zoom;
+
+        TileRenderContext(JComponent panel, Graphics2D graphics, ReferenceFrame frame, Rectangle rect, String chr,
+                          double origin, double scale, int zoom) {
+            super(panel, graphics, frame, rect);
+            this.chr = chr;
+            this.origin = origin;
+            this.scale = scale;
+            this.zoom = zoom;
+        }
+
+        @Override
+        public String getChr() {
+            return chr;
+        }
+
+        @Override
+        public double getOrigin() {
+            return origin;
+        }
+
+        @Override
+        public double getEndLocation() {
+            return origin + getVisibleRect().width * scale;
+        }
+
+        @Override
+        public double getScale() {
+            return scale;
+        }
+
+        @Override
+        public int getZoom() {
+            return zoom;
+        }
+    }
+
+    static class TileKey {
+        final TileRenderable track;
+        final Object stateKey;
+        final String chr;
+        final double scale;
+        final long tile;
+        final int height;
+
+        TileKey(TileRenderable track, Object stateKey, String chr, double scale, long tile, int height) {
+            this.track = track;
+            this.stateKey = stateKey;
+            this.chr = chr;
+            this.scale = scale;
+            this.tile = tile;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TileKey)) return false;
+            TileKey key = (TileKey) o;
+            return track == key.track && tile == key.tile && height == key.height &&
+                    Double.compare(scale, key.scale) == 0 && chr.equals(key.chr) && stateKey.equals(key.stateKey);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(track);
+            long bits = Double.doubleToLongBits(scale);
+            result = 31 * result + stateKey.hashCode();
+            result = 31 * result + chr.hashCode();
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            result = 31 * result + (int) (tile ^ (tile >>> 32));
+            result = 31 * result + height;
+            return result;
+        }
+    }
+}
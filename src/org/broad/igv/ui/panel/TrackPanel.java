@@ -21,6 +21,7 @@ package org.broad.igv.ui.panel;
 import org.apache.log4j.Logger;
 import org.broad.igv.feature.RegionOfInterest;
 import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScorer;
 import org.broad.igv.track.Track;
 import org.broad.igv.track.TrackGroup;
 import org.broad.igv.ui.UIConstants;
@@ -309,24 +310,33 @@ public class TrackPanel extends IGVPanel {
             final String chr = region.getChr();
             final int start = region.getStart();
             final int end = region.getEnd();
-            Comparator<TrackGroup> c = new Comparator<TrackGroup>() {
-
-                public int compare(TrackGroup group1, TrackGroup group2) {
-                    float s1 = group1.getRegionScore(chr, start, end, zoom, type, frameName);
-                    float s2 = group2.getRegionScore(chr, start, end, zoom, type, frameName);
-
-                    if (s1 < s2) {
-                        return 1;
-                    } else if (s1 > s2) {
-                        return -1;
-                    } else {
-                        return 0;
-                    }
 
+            // Score every visible track once,  a group's score is the maximum of its tracks' scores
+            List<Track> tracks = new ArrayList<Track>();
+            for (TrackGroup group : groups) {
+                for (Track track : group.getTracks()) {
+                    if (track.isVisible()) {
+                        tracks.add(track);
+                    }
+                }
+            }
+            float[] trackScores = RegionScorer.getScores(tracks, chr, start, end, zoom, type, frameName);
+
+            float[] groupScores = new float[groups.size()];
+            int t = 0;
+            for (int i = 0; i < groupScores.length; i++) {
+                float score = -Float.MAX_VALUE;
+                for (Track track : groups.get(i).getTracks()) {
+                    if (track.isVisible()) {
+                        score = Math.max(score, trackScores[t++]);
+                    }
                 }
-            };
+                groupScores[i] = score;
+            }
 
-            Collections.sort(groups, c);
+            List<TrackGroup> sorted = RegionScorer.sortByScore(groups, groupScores);
+            groups.clear();
+            groups.addAll(sorted);
         }
 
     }
@@ -46,9 +46,22 @@ public class CompressionUtils {
      * @return
      */
     public static byte[] decompress(byte[] data, int uncompressedChunkSize) {
+        return decompress(data, 0, data.length, uncompressedChunkSize);
+    }
+
+    /**
+     * Decompress length bytes of data starting at offset
+     *
+     * @param data                  -- the data to decompress
+     * @param offset                -- offset of the compressed bytes in data
+     * @param length                -- number of compressed bytes
+     * @param uncompressedChunkSize -- an estimate of the uncompressed chunk size.  This need not be exact.
+     * @return
+     */
+    public static byte[] decompress(byte[] data, int offset, int length, int uncompressedChunkSize) {
 
         // mpd: new code
-        int rem = data.length;
+        int rem = length;
 
         // Create an expandable byte array to hold the decompressed data
         ByteArrayOutputStream bos = new ByteArrayOutputStream(uncompressedChunkSize);
@@ -57,14 +70,13 @@ public class CompressionUtils {
         byte[] outbuf = new byte[uncompressedChunkSize];
 
         Inflater decompressor = new Inflater();
-        decompressor.setInput(data);
+        decompressor.setInput(data, offset, length);
         while (rem > 0) {
 
             // If we are finished with the current chunk start a new one
             if (decompressor.finished()) {
                 decompressor = new Inflater();
-                int offset = data.length - rem;
-                decompressor.setInput(data, offset, rem);
+                decompressor.setInput(data, offset + length - rem, rem);
             }
 
             try {
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+package org.broad.igv.util;
+
+import java.util.concurrent.*;
+
+/**
+ * Factory methods for the background thread pools.  Threads are daemons,  so a pool never keeps the VM alive,  and
+ * are named for the pool.  Pool threads exit after they have been idle for {@link #KEEP_ALIVE_SECONDS},  so the
+ * static pools of components that are not in use do not hold threads.
+ */
+public class ExecutorUtils {
+
+    /**
+     * Number of threads for pools of compute bound work.  Callers that submit to each other's pools share the
+     * processors,  so pools should not be sized above this.
+     */
+    public static final int CPU_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    static final long KEEP_ALIVE_SECONDS = 60;
+
+    private ExecutorUtils() {
+    }
+
+    public static ThreadFactory daemonThreadFactory(String name) {
+        return daemonThreadFactory(name, Thread.NORM_PRIORITY);
+    }
+
+    public static ThreadFactory daemonThreadFactory(final String name, final int priority) {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                t.setPriority(priority);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Return a pool of at most {@code nThreads} daemon threads.  Tasks queue when all threads are busy.
+     *
+     * @param name     thread name
+     * @param nThreads maximum number of threads,  at least 1 is used
+     * @return
+     */
+    public static ExecutorService newFixedThreadPool(String name, int nThreads) {
+        return newFixedThreadPool(nThreads, daemonThreadFactory(name));
+    }
+
+    public static ExecutorService newFixedThreadPool(int nThreads, ThreadFactory threadFactory) {
+        int n = Math.max(1, nThreads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(n, n, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Return an executor of a single daemon thread,  tasks run in the order submitted.
+     *
+     * @param name thread name
+     * @return
+     */
+    public static ExecutorService newSingleThreadExecutor(String name) {
+        return newFixedThreadPool(name, 1);
+    }
+
+    /**
+     * Return a scheduled executor of a single daemon thread.  A scheduled executor's thread does not time out.
+     *
+     * @param name thread name
+     * @return
+     */
+    public static ScheduledExecutorService newSingleThreadScheduledExecutor(String name) {
+        return Executors.newSingleThreadScheduledExecutor(daemonThreadFactory(name));
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+/**
+ * Splits a line into fields without creating a String per field.  Field boundaries are recorded as offsets into
+ * the line, and numeric fields are parsed directly from the characters.  Strings are created only for fields that
+ * are requested with {@link #getString(int)}.
+ * <p/>
+ * Tokenizing produces the same fields as {@link org.broad.igv.Globals#singleTabMultiSpacePattern} (single tab
+ * or run of spaces), or {@link org.broad.igv.Globals#tabPattern} when constructed with {@code splitOnSpaces = false}.
+ * As with {@code Pattern.split(line)} trailing empty fields are dropped,  unless {@code keepTrailingEmpty} is set
+ * which corresponds to {@code Pattern.split(line, -1)}.
+ * <p/>
+ * Fields that have already been split,  e.g. by another reader,  can be wrapped with {@link #setFields(String[])}
+ * and read with the same accessors.
+ * <p/>
+ * Instances are reused line after line and are not thread safe,  see {@link #perThread(boolean, boolean)}.
+ */
+public class FieldTokenizer {
+
+    private static final float[] FLOAT_POW10 = {1f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    // Integers up to 2^24 are exactly representable as floats
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1 << 24;
+
+    private final boolean splitOnSpaces;
+    private final boolean keepTrailingEmpty;
+
+    private CharSequence line;
+    private String[] fields;
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    private int count;
+
+    public FieldTokenizer() {
+        this(true, false);
+    }
+
+    public FieldTokenizer(boolean splitOnSpaces, boolean keepTrailingEmpty) {
+        this.splitOnSpaces = splitOnSpaces;
+        this.keepTrailingEmpty = keepTrailingEmpty;
+    }
+
+    /**
+     * Return a tokenizer per thread.  Codecs can be shared by readers queried from more than one thread,  so each
+     * thread gets its own tokenizer.
+     */
+    public static ThreadLocal<FieldTokenizer> perThread(final boolean splitOnSpaces, final boolean keepTrailingEmpty) {
+        return new ThreadLocal<FieldTokenizer>() {
+            @Override
+            protected FieldTokenizer initialValue() {
+                return new FieldTokenizer(splitOnSpaces, keepTrailingEmpty);
+            }
+        };
+    }
+
+    /**
+     * Split the line into fields, replacing the fields of the previous line.
+     *
+     * @param line
+     * @return the number of fields
+     */
+    public int tokenize(CharSequence line) {
+
+        this.line = line;
+        this.fields = null;
+        count = 0;
+
+        int len = line.length();
+        int tokenStart = 0;
+        int i = 0;
+        while (i < len) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                add(tokenStart, i);
+                tokenStart = ++i;
+            } else if (c == ' ' && splitOnSpaces) {
+                add(tokenStart, i);
+                while (i < len && line.charAt(i) == ' ') {
+                    i++;
+                }
+                tokenStart = i;
+            } else {
+                i++;
+            }
+        }
+
+        if (count == 0) {
+            // No delimiter, the entire line is the only field
+            add(0, len);
+            return count;
+        }
+
+        add(tokenStart, len);
+        if (!keepTrailingEmpty) {
+            while (count > 0 && starts[count - 1] == ends[count - 1]) {
+                count--;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Use fields that have already been split,  replacing the fields of the previous line.  The array is not
+     * copied.  A null field reads as empty,  except that {@link #getString(int)} returns it unchanged.
+     *
+     * @param fields
+     * @return the number of fields
+     */
+    public int setFields(String[] fields) {
+        this.line = null;
+        this.fields = fields;
+        count = fields.length;
+        return count;
+    }
+
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            int[] newStarts = new int[2 * count];
+            int[] newEnds = new int[2 * count];
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(ends, 0, newEnds, 0, count);
+            starts = newStarts;
+            ends = newEnds;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int length(int field) {
+        checkField(field);
+        return end(field) - start(field);
+    }
+
+    public char charAt(int field, int index) {
+        checkField(field);
+        return chars(field).charAt(start(field) + index);
+    }
+
+    public String getString(int field) {
+        checkField(field);
+        if (fields != null) {
+            return fields[field];
+        }
+        return line.subSequence(starts[field], ends[field]).toString();
+    }
+
+    /**
+     * Return true if the field equals {@code s}, without creating a String for the field.
+     */
+    public boolean equals(int field, String s) {
+        checkField(field);
+        CharSequence line = chars(field);
+        int start = start(field);
+        int len = end(field) - start;
+        if (len != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (line.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return a String array of all fields,  equivalent to the result of {@code Pattern.split}.
+     */
+    public String[] toArray() {
+        String[] tokens = new String[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = getString(i);
+        }
+        return tokens;
+    }
+
+    /**
+     * Parse the field as an int.  Leading and trailing control characters are ignored, as they would be after
+     * {@code String.trim()}.
+     *
+     * @throws NumberFormatException if the field is not an integer
+     */
+    public int getInt(int field) {
+        checkField(field);
+        CharSequence line = chars(field);
+        int start = trimStart(line, start(field), end(field));
+        int end = trimEnd(line, start, end(field));
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        // Up to 9 digits cannot overflow an int
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(line.subSequence(start, end).toString());
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int d = line.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return Integer.parseInt(line.subSequence(start, end).toString());
+            }
+            value = 10 * value + d;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse the field as a float.  Plain decimal numbers with up to 7 significant digits, the common case for
+     * genomic data, are converted directly.  Anything else (more digits, NaN, Infinity, hex) defers to
+     * {@link Float#parseFloat(String)}.  Either way the result is identical to {@code Float.parseFloat}.
+     *
+     * @throws NumberFormatException if the field is not a number
+     */
+    public float getFloat(int field) {
+        checkField(field);
+        CharSequence line = chars(field);
+        int start = trimStart(line, start(field), end(field));
+        int end = trimEnd(line, start, end(field));
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int nDigits = 0;
+        int exponent = 0;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa > 0 || c != '0') {
+                    nDigits++;
+                }
+                mantissa = 10 * mantissa + (c - '0');
+                if (seenPoint) {
+                    exponent--;
+                }
+                if (nDigits > 8) {
+                    return parseFloatSlow(line, start, end);
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return parseFloatSlow(line, start, end);
+        }
+
+        if (i < end) {
+            char c = line.charAt(i);
+            if (c != 'e' && c != 'E') {
+                return parseFloatSlow(line, start, end);
+            }
+            i++;
+            boolean negativeExp = false;
+            if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+                negativeExp = line.charAt(i) == '-';
+                i++;
+            }
+            if (i == end || end - i > 3) {
+                return parseFloatSlow(line, start, end);
+            }
+            int exp = 0;
+            for (; i < end; i++) {
+                int d = line.charAt(i) - '0';
+                if (d < 0 || d > 9) {
+                    return parseFloatSlow(line, start, end);
+                }
+                exp = 10 * exp + d;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        // Clinger's fast path.  The mantissa and power of ten are both exact floats, so a single correctly
+        // rounded multiply or divide gives the correctly rounded result.
+        if (mantissa > MAX_EXACT_FLOAT_MANTISSA || exponent < -10 || exponent > 10) {
+            return parseFloatSlow(line, start, end);
+        }
+        float value = exponent < 0 ? mantissa / FLOAT_POW10[-exponent] : mantissa * FLOAT_POW10[exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse the field as a float,  returning {@code defaultValue} if it is not a number (e.g. "NA").
+     */
+    public float getFloat(int field, float defaultValue) {
+        if (field >= count || length(field) == 0) {
+            return defaultValue;
+        }
+        try {
+            return getFloat(field);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static float parseFloatSlow(CharSequence line, int start, int end) {
+        return Float.parseFloat(line.subSequence(start, end).toString());
+    }
+
+    private static int trimStart(CharSequence line, int start, int end) {
+        int i = start;
+        while (i < end && line.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(CharSequence line, int start, int end) {
+        int i = end;
+        while (i > start && line.charAt(i - 1) <= ' ') {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * The characters holding the field,  the field spans {@link #start(int)} to {@link #end(int)}.
+     */
+    private CharSequence chars(int field) {
+        if (fields != null) {
+            String s = fields[field];
+            return s == null ? "" : s;
+        }
+        return line;
+    }
+
+    private int start(int field) {
+        return fields != null ? 0 : starts[field];
+    }
+
+    private int end(int field) {
+        return fields != null ? chars(field).length() : ends[field];
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= count) {
+            throw new ArrayIndexOutOfBoundsException(field);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.broad.igv.PreferenceManager;
 import org.broad.igv.exceptions.HttpResponseException;
 import org.broad.igv.gs.GSUtils;
 import org.broad.igv.ui.IGV;
+import org.broad.igv.util.stats.Metrics;
 import org.broad.igv.util.stream.IGVUrlHelper;
 import org.broad.tribble.util.SeekableHTTPStream;
 import org.broad.tribble.util.ftp.FTPClient;
@@ -55,6 +56,10 @@ public class HttpUtils {
 
     private static Logger log = Logger.getLogger(HttpUtils.class);
 
+    private static final Metrics.Counter requestCount = Metrics.counter("http.requests");
+    private static final Metrics.Counter errorCount = Metrics.counter("http.errors");
+    private static final Metrics.Timer responseTimer = Metrics.timer("http.response");
+
     private static HttpUtils instance;
 
     private Map<String, Boolean> byteRangeTestMap;
@@ -604,7 +609,10 @@ public class HttpUtils {
         if (method.equals("PUT")) {
             return conn;
         } else {
+            requestCount.inc();
+            long t0 = responseTimer.start();
             int code = conn.getResponseCode();
+            responseTimer.stop(t0);
 
             // Redirects.  These can occur even if followRedirects == true if there is a change in protocol,
             // for example http -> https.
@@ -623,6 +631,7 @@ public class HttpUtils {
             // TODO -- handle other response codes.
             else if (code >= 400) {
 
+                errorCount.inc();
                 String message;
                 if (code == 404) {
                     message = "File not found: " + url.toString();
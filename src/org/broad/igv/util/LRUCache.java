@@ -88,6 +88,20 @@ public class LRUCache<K, V> {
         return getMap().isEmpty();    //To change body of overridden methods use File | Settings | File Templates.
     }
 
+    public V remove(Object key) {
+        return getMap().remove(key);
+    }
+
+    /**
+     * Return a copy of the keys
+     */
+    public List<K> getKeys() {
+        Map<K, V> map = getMap();
+        synchronized (map) {
+            return new ArrayList<K>(map.keySet());
+        }
+    }
+
     public void clear() {
         getMap().clear();
     }
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.index;
+
+import net.sf.samtools.util.BinaryCodec;
+import net.sf.samtools.util.BlockCompressedInputStream;
+import org.broad.igv.util.ParsingUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Binning index of a BGZF compressed file,  read from a BAM (.bai) or tabix (.tbi) index.  Both formats use the
+ * UCSC binning scheme with a linear index of 16 kb windows;  a query returns the chunks of the file,  as pairs of
+ * virtual file pointers,  that may contain records overlapping the region.
+ * <p/>
+ * Used with {@link org.broad.igv.util.stream.ParallelBlockCompressedInputStream} in place of the Picard and Tribble
+ * index readers,  whose chunk lists are not accessible.
+ */
+public class BGZFIndex {
+
+    private static final int BAI_MAGIC = 0x01494142;   // "BAI\1"
+    private static final int TBI_MAGIC = 0x01494254;   // "TBI\1"
+
+    // Pseudo-bin holding BAM index metadata rather than chunks
+    private static final int METADATA_BIN = 37450;
+
+    private static final int LINEAR_INDEX_SHIFT = 14;
+    private static final int MAX_BIN = 37450;
+
+    // Tabix header fields
+    int format;
+    int sequenceColumn;
+    int startColumn;
+    int endColumn;
+    char metaChar;
+    int skip;
+    List<String> sequenceNames;
+    Map<String, Integer> sequenceIndexes;
+
+    private ReferenceIndex[] references;
+
+    /**
+     * Load a BAM index (.bai)
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static BGZFIndex loadBAMIndex(String path) throws IOException {
+        InputStream is = null;
+        try {
+            is = new BufferedInputStream(ParsingUtils.openInputStream(path));
+            BinaryCodec codec = new BinaryCodec(is);
+            if (codec.readInt() != BAI_MAGIC) {
+                throw new IOException("Not a BAM index: " + path);
+            }
+            BGZFIndex index = new BGZFIndex();
+            index.readReferences(codec, codec.readInt());
+            return index;
+        } finally {
+            if (is != null) is.close();
+        }
+    }
+
+    /**
+     * Load a tabix index (.tbi)
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static BGZFIndex loadTabixIndex(String path) throws IOException {
+        InputStream is = null;
+        try {
+            is = new BlockCompressedInputStream(new BufferedInputStream(ParsingUtils.openInputStream(path)));
+            BinaryCodec codec = new BinaryCodec(is);
+            if (codec.readInt() != TBI_MAGIC) {
+                throw new IOException("Not a tabix index: " + path);
+            }
+            BGZFIndex index = new BGZFIndex();
+            int nRef = codec.readInt();
+            index.format = codec.readInt();
+            index.sequenceColumn = codec.readInt();
+            index.startColumn = codec.readInt();
+            index.endColumn = codec.readInt();
+            index.metaChar = (char) codec.readInt();
+            index.skip = codec.readInt();
+
+            byte[] names = new byte[codec.readInt()];
+            codec.readBytes(names);
+            index.sequenceNames = new ArrayList<String>(nRef);
+            index.sequenceIndexes = new HashMap<String, Integer>();
+            int start = 0;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] == 0) {
+                    String name = new String(names, start, i - start);
+                    index.sequenceIndexes.put(name, index.sequenceNames.size());
+                    index.sequenceNames.add(name);
+                    start = i + 1;
+                }
+            }
+
+            index.readReferences(codec, nRef);
+            return index;
+        } finally {
+            if (is != null) is.close();
+        }
+    }
+
+    private void readReferences(BinaryCodec codec, int nRef) {
+        references = new ReferenceIndex[nRef];
+        for (int r = 0; r < nRef; r++) {
+            ReferenceIndex ref = new ReferenceIndex();
+            int nBins = codec.readInt();
+            ref.bins = new HashMap<Integer, Chunk[]>(nBins);
+            for (int b = 0; b < nBins; b++) {
+                int bin = codec.readInt();
+                int nChunks = codec.readInt();
+                Chunk[] chunks = new Chunk[nChunks];
+                for (int c = 0; c < nChunks; c++) {
+                    chunks[c] = new Chunk(codec.readLong(), codec.readLong());
+                }
+                if (bin != METADATA_BIN) {
+                    ref.bins.put(bin, chunks);
+                }
+            }
+            int nIntervals = codec.readInt();
+            ref.linearIndex = new long[nIntervals];
+            for (int i = 0; i < nIntervals; i++) {
+                ref.linearIndex[i] = codec.readLong();
+            }
+            references[r] = ref;
+        }
+    }
+
+    /**
+     * @return sequence names of a tabix index,  in index order.  Null for a BAM index,  whose sequences are those
+     *         of the BAM header.
+     */
+    public List<String> getSequenceNames() {
+        return sequenceNames;
+    }
+
+    /**
+     * @return the index of the named sequence in a tabix index,  or -1 if it is not indexed
+     */
+    public int getSequenceIndex(String name) {
+        Integer idx = sequenceIndexes == null ? null : sequenceIndexes.get(name);
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     * @return the tabix format preset,  with {@code 0x10000} set for 0-based coordinates
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    public int getSequenceColumn() {
+        return sequenceColumn;
+    }
+
+    public int getStartColumn() {
+        return startColumn;
+    }
+
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    public char getMetaChar() {
+        return metaChar;
+    }
+
+    public int getSkip() {
+        return skip;
+    }
+
+    /**
+     * Return the chunks that may contain records overlapping a region,  sorted and with overlapping or adjacent
+     * chunks merged so each is read once.
+     *
+     * @param refIndex index of the sequence
+     * @param start    0-based start of the region
+     * @param end      0-based exclusive end of the region
+     * @return the chunks,  empty if there are none
+     */
+    public List<Chunk> getChunks(int refIndex, int start, int end) {
+
+        if (refIndex < 0 || refIndex >= references.length) {
+            return Collections.emptyList();
+        }
+        ReferenceIndex ref = references[refIndex];
+        start = Math.max(0, start);
+        end = Math.max(start + 1, end);
+
+        // Chunks ending before the first record of the start window cannot overlap the region
+        long minOffset = 0;
+        int window = start >> LINEAR_INDEX_SHIFT;
+        if (ref.linearIndex.length > 0) {
+            minOffset = window < ref.linearIndex.length ? ref.linearIndex[window] :
+                    ref.linearIndex[ref.linearIndex.length - 1];
+        }
+
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for (int bin : regionToBins(start, end)) {
+            Chunk[] binChunks = ref.bins.get(bin);
+            if (binChunks != null) {
+                for (Chunk c : binChunks) {
+                    if (c.end > minOffset) {
+                        chunks.add(c);
+                    }
+                }
+            }
+        }
+        if (chunks.isEmpty()) {
+            return chunks;
+        }
+
+        Collections.sort(chunks);
+        List<Chunk> merged = new ArrayList<Chunk>();
+        Chunk last = null;
+        for (Chunk c : chunks) {
+            long cStart = Math.max(c.start, minOffset);
+            if (last != null && (cStart <= last.end || (cStart >>> 16) == (last.end >>> 16))) {
+                last.end = Math.max(last.end, c.end);
+            } else {
+                last = new Chunk(cStart, c.end);
+                merged.add(last);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Return the bins that may contain features overlapping [start, end),  as defined in the SAM specification.
+     */
+    static List<Integer> regionToBins(int start, int end) {
+        List<Integer> bins = new ArrayList<Integer>();
+        end--;
+        bins.add(0);
+        for (int k = 1 + (start >> 26); k <= 1 + (end >> 26); k++) bins.add(k);
+        for (int k = 9 + (start >> 23); k <= 9 + (end >> 23); k++) bins.add(k);
+        for (int k = 73 + (start >> 20); k <= 73 + (end >> 20); k++) bins.add(k);
+        for (int k = 585 + (start >> 17); k <= 585 + (end >> 17); k++) bins.add(k);
+        for (int k = 4681 + (start >> 14); k <= Math.min(MAX_BIN - 1, 4681 + (end >> 14)); k++) bins.add(k);
+        return bins;
+    }
+
+    static class ReferenceIndex {
+        Map<Integer, Chunk[]> bins;
+        long[] linearIndex;
+    }
+
+    /**
+     * A contiguous range of the file,  from the virtual file pointer {@code start} up to but excluding {@code end}.
+     */
+    public static class Chunk implements Comparable<Chunk> {
+        long start;
+        long end;
+
+        public Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public int compareTo(Chunk o) {
+            return start < o.start ? -1 : (start == o.start ? 0 : 1);
+        }
+    }
+}
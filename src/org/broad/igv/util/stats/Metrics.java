@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stats;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.ExecutorUtils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of named counters,  timers and histograms for the data loading and rendering paths.  Metrics are created
+ * once,  typically as static fields,  and updated without locking apart from the percentile sketches.  A report of
+ * all metrics is returned by the batch command "stats" and can be written to a file periodically.
+ * <p/>
+ * Names are dotted,  e.g. "tdf.tile.read".  Counters of bytes end in ".bytes".
+ */
+public class Metrics {
+
+    private static Logger log = Logger.getLogger(Metrics.class);
+
+    static final int SKETCH_K = 128;
+
+    private static final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+
+    private static ScheduledExecutorService reporter;
+    private static ScheduledFuture reportTask;
+
+    public static Counter counter(String name) {
+        Metric metric = metrics.get(name);
+        return metric != null && metric.getClass() == Counter.class ? (Counter) metric :
+                (Counter) register(name, new Counter(name));
+    }
+
+    public static Histogram histogram(String name) {
+        Metric metric = metrics.get(name);
+        return metric != null && metric.getClass() == Histogram.class ? (Histogram) metric :
+                (Histogram) register(name, new Histogram(name));
+    }
+
+    /**
+     * Return the timer with this name,  creating it if necessary.  Metrics stay registered until removed,  so a
+     * metric named for an object that comes and goes should be removed with it,  see {@link #remove(String)}.
+     */
+    public static Timer timer(String name) {
+        Metric metric = metrics.get(name);
+        return metric != null && metric.getClass() == Timer.class ? (Timer) metric :
+                (Timer) register(name, new Timer(name));
+    }
+
+    private static Metric register(String name, Metric metric) {
+        Metric existing = metrics.putIfAbsent(name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (existing.getClass() != metric.getClass()) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + existing.getClass().getSimpleName());
+        }
+        return existing;
+    }
+
+    public static boolean contains(String name) {
+        return metrics.containsKey(name);
+    }
+
+    /**
+     * Unregister a metric,  it is no longer reported.  Holders of the metric can still update it.
+     */
+    public static void remove(String name) {
+        metrics.remove(name);
+    }
+
+    /**
+     * Reset every metric to zero.  Metrics stay registered.
+     */
+    public static void reset() {
+        for (Metric metric : metrics.values()) {
+            metric.reset();
+        }
+    }
+
+    /**
+     * @return one line per metric which has been updated,  sorted by name
+     */
+    public static List<String> getReport() {
+        List<String> lines = new ArrayList<String>();
+        for (Metric metric : new TreeMap<String, Metric>(metrics).values()) {
+            if (metric.getCount() > 0) {
+                lines.add(metric.toString());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Append a report to a file,  preceded by a line with the time
+     */
+    public static void writeReport(File file) throws IOException {
+        PrintWriter pw = null;
+        try {
+            pw = new PrintWriter(new FileWriter(file, true));
+            pw.println("# " + new Date());
+            for (String line : getReport()) {
+                pw.println(line);
+            }
+        } finally {
+            if (pw != null) {
+                pw.close();
+            }
+        }
+    }
+
+    /**
+     * Append a report to the file every {@code seconds} seconds,  replacing any previous schedule.  A value of 0 or
+     * less stops reporting.
+     */
+    public static synchronized void startReporting(final File file, long seconds) {
+        if (reportTask != null) {
+            reportTask.cancel(false);
+            reportTask = null;
+        }
+        if (seconds <= 0) {
+            return;
+        }
+        if (reporter == null) {
+            reporter = ExecutorUtils.newSingleThreadScheduledExecutor("Metrics reporter");
+        }
+        reportTask = reporter.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                try {
+                    writeReport(file);
+                } catch (IOException e) {
+                    log.error("Error writing metrics to " + file, e);
+                }
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+
+    abstract static class Metric {
+
+        final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        abstract long getCount();
+
+        abstract void reset();
+    }
+
+    public static class Counter extends Metric {
+
+        private final AtomicLong count = new AtomicLong();
+
+        Counter(String name) {
+            super(name);
+        }
+
+        public void inc() {
+            count.incrementAndGet();
+        }
+
+        public void add(long n) {
+            count.addAndGet(n);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        void reset() {
+            count.set(0);
+        }
+
+        public String toString() {
+            return name + " " + count.get();
+        }
+    }
+
+    /**
+     * Distribution of values,  with percentiles estimated by a {@link QuantileSketch}
+     */
+    public static class Histogram extends Metric {
+
+        private QuantileSketch sketch = new QuantileSketch(SKETCH_K);
+        private double sum;
+
+        Histogram(String name) {
+            super(name);
+        }
+
+        public synchronized void update(double value) {
+            sketch.add((float) value);
+            sum += value;
+        }
+
+        public synchronized long getCount() {
+            return sketch.getCount();
+        }
+
+        public synchronized double getSum() {
+            return sum;
+        }
+
+        public synchronized double getMax() {
+            return sketch.getMax();
+        }
+
+        public synchronized double getPercentile(double p) {
+            return sketch.getPercentile(p);
+        }
+
+        synchronized void reset() {
+            sketch = new QuantileSketch(SKETCH_K);
+            sum = 0;
+        }
+
+        String getUnit() {
+            return "";
+        }
+
+        public synchronized String toString() {
+            long count = sketch.getCount();
+            String unit = getUnit();
+            return String.format("%s count=%d sum=%.1f%s mean=%.3f%s p50=%.3f%s p90=%.3f%s p99=%.3f%s max=%.3f%s",
+                    name, count, sum, unit, count == 0 ? 0 : sum / count, unit,
+                    sketch.getPercentile(50), unit, sketch.getPercentile(90), unit, sketch.getPercentile(99), unit,
+                    sketch.getMax(), unit);
+        }
+    }
+
+    /**
+     * Histogram of durations in milliseconds.  Usage:
+     * <pre>
+     *     long t0 = timer.start();
+     *     ...
+     *     timer.stop(t0);
+     * </pre>
+     */
+    public static class Timer extends Histogram {
+
+        Timer(String name) {
+            super(name);
+        }
+
+        public long start() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Record the time since {@code start},  a value returned by {@link #start()}
+         */
+        public void stop(long start) {
+            update((System.nanoTime() - start) / 1.0e6);
+        }
+
+        String getUnit() {
+            return "ms";
+        }
+    }
+}
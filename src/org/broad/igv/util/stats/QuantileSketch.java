@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stats;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable, fixed-memory estimator of percentiles, after the KLL sketch of Karnin, Lang and Liberty.  Values are
+ * held in levels of increasing weight,  level h items each standing for 2^h values.  When a level fills it is sorted
+ * and every other item promoted to the next level, halving its size.  Capacities shrink geometrically towards the
+ * lower levels so memory is about 3 * k floats however many values are added.
+ * <p/>
+ * Until the first level fills the sketch holds every value and percentiles are exact,  computed as
+ * {@link org.apache.commons.math.stat.StatUtils#percentile(double[], double)} does.  Beyond that the rank error is
+ * roughly 1 / k.
+ * <p/>
+ * Sketches of the same k can be merged,  the result is equivalent to a sketch of the combined values.  Successive
+ * compactions of a level alternate between promoting odd and even items,  so errors cancel rather than accumulate,
+ * and results are deterministic.
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_K = 512;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final int k;
+    private float[][] levels;
+    private int[] sizes;
+    private int[] capacities;
+    private long count = 0;
+    private float min = Float.NaN;
+    private float max = Float.NaN;
+    private boolean[] keepOdd;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        this.k = Math.max(MIN_CAPACITY, k);
+        levels = new float[1][];
+        levels[0] = new float[MIN_CAPACITY];
+        sizes = new int[1];
+        keepOdd = new boolean[1];
+        computeCapacities();
+    }
+
+    /**
+     * Add a value.  NaN values are ignored.
+     *
+     * @param v
+     */
+    public void add(float v) {
+        if (Float.isNaN(v)) {
+            return;
+        }
+        updateRange(v, v);
+        count++;
+        append(0, v);
+        if (sizes[0] >= capacities[0]) {
+            compress();
+        }
+    }
+
+    /**
+     * Add the values summarized by {@code other} to this sketch.  {@code other} is not modified.
+     *
+     * @param other
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        while (levels.length < other.levels.length) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        updateRange(other.min, other.max);
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    /**
+     * Estimate the p'th percentile of the values added,  0 < p <= 100.
+     *
+     * @param p
+     * @return the estimate,  or NaN if no values have been added
+     */
+    public double getPercentile(double p) {
+
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count == 1) {
+            return min;
+        }
+
+        // Interpolate between values at adjacent ranks,  as org.apache.commons.math.stat.descriptive.rank.Percentile
+        double pos = p * (count + 1) / 100;
+        double fpos = Math.floor(pos);
+        if (pos < 1) {
+            return min;
+        }
+        if (pos >= count) {
+            return max;
+        }
+
+        float[] values = new float[getRetainedCount()];
+        long[] weights = new long[values.length];
+        sortedItems(values, weights);
+
+        double lower = valueAtRank(values, weights, (long) fpos);
+        double upper = valueAtRank(values, weights, (long) fpos + 1);
+        return lower + (pos - fpos) * (upper - lower);
+    }
+
+    /**
+     * @return the number of items held, a measure of memory use
+     */
+    int getRetainedCount() {
+        int n = 0;
+        for (int size : sizes) {
+            n += size;
+        }
+        return n;
+    }
+
+    private void updateRange(float lo, float hi) {
+        min = Float.isNaN(min) ? lo : Math.min(min, lo);
+        max = Float.isNaN(max) ? hi : Math.max(max, hi);
+    }
+
+    private void append(int h, float v) {
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], Math.max(MIN_CAPACITY, 2 * sizes[h]));
+        }
+        levels[h][sizes[h]++] = v;
+    }
+
+    /**
+     * Compact each level at or over capacity, promoting half its items to the next level.
+     */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= capacities[h]) {
+                if (h == levels.length - 1) {
+                    addLevel();
+                }
+                float[] items = levels[h];
+                int size = sizes[h];
+                Arrays.sort(items, 0, size);
+
+                // With an odd number of items the largest stays at this level
+                int nPairs = size / 2;
+                int offset = keepOdd[h] ? 1 : 0;
+                keepOdd[h] = !keepOdd[h];
+                for (int i = 0; i < nPairs; i++) {
+                    append(h + 1, items[2 * i + offset]);
+                }
+                if (size % 2 == 1) {
+                    items[0] = items[size - 1];
+                    sizes[h] = 1;
+                } else {
+                    sizes[h] = 0;
+                }
+            }
+        }
+    }
+
+    private void addLevel() {
+        int n = levels.length;
+        levels = Arrays.copyOf(levels, n + 1);
+        levels[n] = new float[MIN_CAPACITY];
+        sizes = Arrays.copyOf(sizes, n + 1);
+        keepOdd = Arrays.copyOf(keepOdd, n + 1);
+        computeCapacities();
+    }
+
+    /**
+     * The top level has capacity k,  each level below 2/3 of the one above.
+     */
+    private void computeCapacities() {
+        int n = levels.length;
+        capacities = new int[n];
+        double c = k;
+        for (int h = n - 1; h >= 0; h--) {
+            capacities[h] = Math.max(MIN_CAPACITY, (int) Math.ceil(c));
+            c *= 2.0 / 3;
+        }
+    }
+
+    /**
+     * Fill {@code values} with all retained items in ascending order, and {@code weights} with the weight of each.
+     */
+    private void sortedItems(float[] values, long[] weights) {
+
+        // Sort each level, then merge the levels
+        int n = 0;
+        int[] positions = new int[levels.length];
+        float[][] sorted = new float[levels.length][];
+        for (int h = 0; h < levels.length; h++) {
+            sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(sorted[h]);
+        }
+        while (n < values.length) {
+            int best = -1;
+            for (int h = 0; h < levels.length; h++) {
+                if (positions[h] < sorted[h].length &&
+                        (best < 0 || sorted[h][positions[h]] < sorted[best][positions[best]])) {
+                    best = h;
+                }
+            }
+            values[n] = sorted[best][positions[best]++];
+            weights[n] = 1L << best;
+            n++;
+        }
+    }
+
+    /**
+     * Return the value of the given 1-based rank,  i.e. the first item whose cumulative weight reaches it.
+     */
+    private static double valueAtRank(float[] values, long[] weights, long rank) {
+        long cumulative = 0;
+        for (int i = 0; i < values.length; i++) {
+            cumulative += weights[i];
+            if (cumulative >= rank) {
+                return values[i];
+            }
+        }
+        return values[values.length - 1];
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stream;
+
+import org.broad.igv.util.ExecutorUtils;
+import net.sf.samtools.util.SeekableStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reader for BGZF (block compressed gzip) files, the compression used by BAM and tabix files,  that inflates blocks
+ * ahead of the consumer on a shared worker pool.  Compressed blocks are read from the underlying stream in file
+ * order and submitted for decompression;  the consumer takes inflated blocks from an ordered queue,  so while it
+ * decodes one block the following ones are being inflated in parallel.
+ * <p/>
+ * File positions are BGZF virtual file pointers,  the compressed address of a block shifted left 16 bits or'ed with
+ * the offset into its inflated data,  as stored in .bai and .tbi indexes.  Reads past a read-ahead limit set with
+ * {@link #setReadAheadLimit(long)} are still served,  they are simply not scheduled in advance.
+ * <p/>
+ * Instances are not thread safe.
+ */
+public class ParallelBlockCompressedInputStream extends InputStream {
+
+    static final int BLOCK_HEADER_LENGTH = 18;
+    static final int BLOCK_FOOTER_LENGTH = 8;
+    static final int MAX_BLOCK_SIZE = 1 << 16;
+
+    private static final int N_THREADS = ExecutorUtils.CPU_THREADS;
+
+    /**
+     * Number of blocks to read ahead of the consumer,  about 64 KB of inflated data each.
+     */
+    static final int READ_AHEAD = Math.min(32, 4 * N_THREADS);
+
+    private static ExecutorService inflaters = ExecutorUtils.newFixedThreadPool("BGZF inflater", N_THREADS);
+
+    private static ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>() {
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private final SeekableStream stream;
+    private final LinkedList<PendingBlock> pending = new LinkedList<PendingBlock>();
+    private final byte[] header = new byte[BLOCK_HEADER_LENGTH];
+
+    // Compressed address of the next block to read from the underlying stream
+    private long nextAddress = 0;
+    // Current position of the underlying stream,  to avoid redundant seeks
+    private long streamPosition = 0;
+    private boolean streamExhausted = false;
+    private long readAheadLimit = Long.MAX_VALUE;
+
+    private Block current;
+    private int offset;
+
+    public ParallelBlockCompressedInputStream(SeekableStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Do not schedule blocks beginning after {@code address} in advance.  Used by index queries,  which know where
+     * the data they need ends,  to avoid inflating blocks that will not be read.
+     *
+     * @param address compressed address of the last block likely to be read
+     */
+    public void setReadAheadLimit(long address) {
+        this.readAheadLimit = address;
+    }
+
+    /**
+     * Position the stream at a virtual file pointer.  Blocks already inflated or in progress are reused if the
+     * pointer is ahead of the current position,  so seeking forward through the chunks of an index query does not
+     * discard the read ahead.
+     *
+     * @param virtualPointer
+     * @throws IOException
+     */
+    public void seek(long virtualPointer) throws IOException {
+
+        long address = virtualPointer >>> 16;
+        int blockOffset = (int) (virtualPointer & 0xFFFF);
+
+        if (current == null || current.address != address) {
+            while (!pending.isEmpty() && pending.getFirst().address < address) {
+                pending.removeFirst().future.cancel(false);
+            }
+            if (pending.isEmpty() || pending.getFirst().address != address) {
+                clearPending();
+                nextAddress = address;
+                streamExhausted = false;
+            }
+            current = null;
+            if (!nextBlock()) {
+                if (blockOffset > 0) {
+                    throw new IOException("Invalid file pointer: " + virtualPointer);
+                }
+                return;
+            }
+        }
+        if (blockOffset > current.length) {
+            throw new IOException("Invalid file pointer: " + virtualPointer);
+        }
+        offset = blockOffset;
+    }
+
+    /**
+     * @return the virtual file pointer of the next byte to be read
+     */
+    public long getFilePointer() {
+        if (current == null) {
+            return nextAddress << 16;
+        }
+        if (offset == current.length) {
+            return (current.address + current.compressedSize) << 16;
+        }
+        return (current.address << 16) | offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return current.data[offset++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < len && ensureData()) {
+            int count = Math.min(len - n, current.length - offset);
+            System.arraycopy(current.data, offset, b, off + n, count);
+            offset += count;
+            n += count;
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current == null ? 0 : current.length - offset;
+    }
+
+    /**
+     * Read a line of text,  terminated by '\n' or "\r\n".  Bytes are mapped to chars one for one, as
+     * tabix does.
+     *
+     * @return the line, without terminator,  or null at end of file
+     * @throws IOException
+     */
+    public String readLine() throws IOException {
+        StringBuilder buf = null;
+        while (ensureData()) {
+            byte[] data = current.data;
+            int start = offset;
+            int end = start;
+            while (end < current.length && data[end] != '\n') {
+                end++;
+            }
+            if (buf == null) {
+                buf = new StringBuilder(end - start);
+            }
+            for (int i = start; i < end; i++) {
+                buf.append((char) (data[i] & 0xFF));
+            }
+            if (end < current.length) {
+                offset = end + 1;
+                int len = buf.length();
+                if (len > 0 && buf.charAt(len - 1) == '\r') {
+                    buf.setLength(len - 1);
+                }
+                return buf.toString();
+            }
+            offset = end;
+        }
+        return buf == null ? null : buf.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        clearPending();
+        current = null;
+        stream.close();
+    }
+
+    /**
+     * Make the current block non-empty,  advancing through the queue as necessary.
+     *
+     * @return false at end of file
+     */
+    private boolean ensureData() throws IOException {
+        while (current == null || offset >= current.length) {
+            if (!nextBlock()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean nextBlock() throws IOException {
+        fill();
+        if (pending.isEmpty()) {
+            if (current != null) {
+                // Leave the file pointer at the end of the last block
+                offset = current.length;
+            }
+            return false;
+        }
+        PendingBlock p = pending.removeFirst();
+        try {
+            current = p.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted reading " + stream.getSource());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error inflating block at " + p.address + " in " + stream.getSource(), cause);
+        }
+        offset = 0;
+        fill();
+        return true;
+    }
+
+    /**
+     * Read compressed blocks and submit them for inflation until the queue is full,  the read ahead limit is reached,
+     * or the file is exhausted.  The block immediately needed is always read.
+     */
+    private void fill() throws IOException {
+        while (!streamExhausted && pending.size() < READ_AHEAD &&
+                (pending.isEmpty() || nextAddress <= readAheadLimit)) {
+            PendingBlock p = readBlock();
+            if (p == null) {
+                streamExhausted = true;
+            } else {
+                pending.add(p);
+            }
+        }
+    }
+
+    private PendingBlock readBlock() throws IOException {
+
+        if (streamPosition != nextAddress) {
+            stream.seek(nextAddress);
+            streamPosition = nextAddress;
+        }
+
+        int n = readFully(header, 0, BLOCK_HEADER_LENGTH);
+        if (n == 0) {
+            return null;
+        }
+        if (n < BLOCK_HEADER_LENGTH || !isBlockHeader(header)) {
+            throw new IOException("Invalid BGZF block at " + nextAddress + " in " + stream.getSource());
+        }
+        int blockSize = unpackShort(header, 16) + 1;
+        if (blockSize < BLOCK_HEADER_LENGTH + BLOCK_FOOTER_LENGTH) {
+            throw new IOException("Invalid BGZF block size at " + nextAddress + " in " + stream.getSource());
+        }
+
+        final byte[] compressed = new byte[blockSize - BLOCK_HEADER_LENGTH];
+        if (readFully(compressed, 0, compressed.length) < compressed.length) {
+            throw new IOException("Premature end of file at " + nextAddress + " in " + stream.getSource());
+        }
+
+        final long address = nextAddress;
+        final int compressedSize = blockSize;
+        nextAddress += blockSize;
+
+        Future<Block> future = inflaters.submit(new Callable<Block>() {
+            public Block call() throws Exception {
+                return inflate(address, compressedSize, compressed);
+            }
+        });
+        return new PendingBlock(address, future);
+    }
+
+    private Block inflate(long address, int compressedSize, byte[] compressed) throws IOException {
+
+        int dataLength = compressed.length - BLOCK_FOOTER_LENGTH;
+        int inflatedSize = unpackInt(compressed, dataLength + 4);
+        if (inflatedSize < 0 || inflatedSize > MAX_BLOCK_SIZE) {
+            throw new IOException("Invalid BGZF block at " + address + " in " + stream.getSource());
+        }
+
+        byte[] data = new byte[inflatedSize];
+        Inflater inf = inflater.get();
+        try {
+            inf.reset();
+            inf.setInput(compressed, 0, dataLength);
+            int n = 0;
+            while (n < inflatedSize) {
+                int count = inf.inflate(data, n, inflatedSize - n);
+                if (count == 0 && (inf.finished() || inf.needsInput())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n != inflatedSize) {
+                throw new IOException("Did not inflate expected amount at " + address + " in " + stream.getSource());
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Error inflating block at " + address + " in " + stream.getSource(), e);
+        }
+        return new Block(address, compressedSize, data);
+    }
+
+    private void clearPending() {
+        for (PendingBlock p : pending) {
+            p.future.cancel(false);
+        }
+        pending.clear();
+    }
+
+    private int readFully(byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int count = stream.read(b, off + n, len - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
+        streamPosition += n;
+        return n;
+    }
+
+    static boolean isBlockHeader(byte[] b) {
+        // gzip magic, deflate, FEXTRA set,  and the BGZF "BC" subfield
+        return (b[0] & 0xFF) == 31 && (b[1] & 0xFF) == 139 && b[2] == 8 && (b[3] & 4) != 0 &&
+                unpackShort(b, 10) == 6 && b[12] == 'B' && b[13] == 'C' && unpackShort(b, 14) == 2;
+    }
+
+    private static int unpackShort(byte[] b, int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+    }
+
+    private static int unpackInt(byte[] b, int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8) | ((b[off + 2] & 0xFF) << 16) | ((b[off + 3] & 0xFF) << 24);
+    }
+
+    static class Block {
+        final long address;
+        final int compressedSize;
+        final byte[] data;
+        final int length;
+
+        Block(long address, int compressedSize, byte[] data) {
+            this.address = address;
+            this.compressedSize = compressedSize;
+            this.data = data;
+            this.length = data.length;
+        }
+    }
+
+    static class PendingBlock {
+        final long address;
+        final Future<Block> future;
+
+        PendingBlock(long address, Future<Block> future) {
+            this.address = address;
+            this.future = future;
+        }
+    }
+}
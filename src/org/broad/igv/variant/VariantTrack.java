@@ -59,6 +59,9 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
 
     private static final Color OFF_WHITE = new Color(170, 170, 170);
     private static final int GROUP_BORDER_WIDTH = 3;
+
+    // Distance in pixels within which a variant is found for popup text
+    private static final int PICK_DISTANCE = 10;
     private static final Color BAND1_COLOR = new Color(245, 245, 245);
     private static final Color BAND2_COLOR = Color.white;
     private static final Color SELECTED_BAND_COLOR = new Color(210, 210, 210);
@@ -446,6 +449,11 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
 
                 if (pX + dX > lastPX) {
 
+                    if (context.getPickIndex() != null) {
+                        context.getPickIndex().add(this, pX - PICK_DISTANCE, top, dX + 2 * PICK_DISTANCE,
+                                trackRectangle.y + trackRectangle.height - top, variant);
+                    }
+
                     rect.y = top;
                     rect.height = variantBandHeight;
                     if (rect.intersects(visibleRectangle)) {
@@ -516,6 +524,9 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
             g2D.drawLine(left, bottomY, right, bottomY);
         }
 
+        if (context.getPickIndex() != null) {
+            context.getPickIndex().setIndexed(this);
+        }
 
     }
 
@@ -829,23 +840,9 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
     public String getValueStringAt(String chr, double position, int y, ReferenceFrame frame) {
 
         try {
-            double maxDistance = 10 * frame.getScale();
+            double maxDistance = PICK_DISTANCE * frame.getScale();
             Variant variant = getFeatureClosest(position, maxDistance, frame); //getVariantAtPosition(chr, (int) position, frame);
-            if (variant == null) {
-                return null;
-            } else {
-                if (y < top + variantBandHeight) {
-                    return getVariantToolTip(variant);
-                } else {
-                    if (sampleBounds == null && sampleBounds.isEmpty()) return null;
-                    String sample = getSampleAtPosition(y);
-                    if (sample != null) {
-                        return getSampleToolTip(sample, variant);
-                    } else {
-                        return null;
-                    }
-                }
-            }
+            return variant == null ? null : getValueString(variant, y);
 
         } catch (Exception e) {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
@@ -853,6 +850,46 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
         }
     }
 
+    /**
+     * Return popup text for the drawn variant closest to the position
+     */
+    @Override
+    public String getValueString(List<Object> items, double position, int x, int y) {
+
+        Variant closest = null;
+        double minDistance = Double.MAX_VALUE;
+        for (Object item : items) {
+            Variant variant = (Variant) item;
+            double distance = position < variant.getStart() ? variant.getStart() - position :
+                    Math.max(0, position - variant.getEnd());
+            if (distance < minDistance) {
+                closest = variant;
+                minDistance = distance;
+            }
+        }
+
+        try {
+            return closest == null ? null : getValueString(closest, y);
+        } catch (Exception e) {
+            log.error("Error getting popup text", e);
+            return null;
+        }
+    }
+
+    private String getValueString(Variant variant, int y) {
+        if (y < top + variantBandHeight) {
+            return getVariantToolTip(variant);
+        } else {
+            if (sampleBounds == null && sampleBounds.isEmpty()) return null;
+            String sample = getSampleAtPosition(y);
+            if (sample != null) {
+                return getSampleToolTip(sample, variant);
+            } else {
+                return null;
+            }
+        }
+    }
+
     /**
      * Return the sample at the give pixel position
      *
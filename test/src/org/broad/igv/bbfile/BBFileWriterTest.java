@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bbfile;
+
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BBFileWriterTest {
+
+    File file = new File(TestUtils.DATA_DIR, "out/writertest.bb");
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testBigWig() throws Exception {
+
+        Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+        sizes.put("chr1", 5000000);
+        sizes.put("chr2", 3000000);
+        sizes.put("chr10", 1000000);
+
+        // Enough values on chr1 for a two level index,  chromosomes are not in id order
+        int[] counts = {300000, 3000};
+        String[] chrs = {"chr1", "chr2"};
+        int[] steps = {10, 100};
+        BBFileWriter writer = BBFileWriter.createBigWig(file, sizes);
+        writer.setNumberOfThreads(3);
+        for (int c = 1; c >= 0; c--) {
+            for (int i = 0; i < counts[c]; i++) {
+                writer.addValue(chrs[c], i * steps[c], i * steps[c] + 5, value(i));
+            }
+        }
+        writer.close();
+
+        BBFileReader reader = new BBFileReader(file.getAbsolutePath());
+        assertTrue(reader.isBigWigFile());
+        assertEquals(3, reader.getChromosomeNames().size());
+
+        long basesCovered = 0;
+        for (int c = 0; c < 2; c++) {
+            WigData data = reader.getBigWigData(chrs[c], 0, sizes.get(chrs[c]), false);
+            assertEquals(counts[c], data.size());
+            for (int i = 0; i < counts[c]; i++) {
+                assertEquals(i * steps[c], data.getStarts()[i]);
+                assertEquals(i * steps[c] + 5, data.getEnds()[i]);
+                assertEquals(value(i), data.getValues()[i], 0);
+            }
+            basesCovered += 5 * counts[c];
+        }
+        assertEquals(0, reader.getBigWigData("chr10", 0, 1000000, false).size());
+
+        WigData region = reader.getBigWigData("chr1", 1000003, 1000500, false);
+        assertEquals(50, region.size());
+        assertEquals(1000000, region.getStarts()[0]);
+
+        BBTotalSummaryBlock summary = reader.getTotalSummaryBlock();
+        assertEquals(basesCovered, summary.getBasesCovered());
+        assertEquals(0, summary.getMinVal(), 0);
+        assertEquals(16, summary.getMaxVal(), 0);
+
+        // Every zoom level summarizes all values
+        int nLevels = reader.getZoomLevels().getZoomHeaderCount();
+        assertTrue(nLevels > 1);
+        for (int level = 1; level <= nLevels; level++) {
+            int reduction = reader.getZoomLevels().getZoomLevelHeader(level).getReductionLevel();
+            ZoomLevelIterator iter = reader.getZoomLevelIterator(level, "chr1", 0, "chr1", 5000000, false);
+            ZoomData data = reader.getZoomData(level, "chr1", 0, 5000000, false);
+            long validCount = 0;
+            double sum = 0;
+            float max = 0;
+            int n = 0;
+            while (iter.hasNext()) {
+                ZoomDataRecord record = iter.next();
+                assertEquals(record.getChromStart(), data.getStarts()[n]);
+                assertEquals(record.getChromEnd(), data.getEnds()[n]);
+                assertEquals(record.getMinVal(), data.getMinValues()[n], 0);
+                assertEquals(record.getMaxVal(), data.getMaxValues()[n], 0);
+                assertEquals(record.getMeanVal(), data.getMeanValues()[n], 0);
+                n++;
+                assertEquals(0, record.getChromStart() % reduction);
+                validCount += record.getBasesCovered();
+                sum += record.getSumData();
+                max = Math.max(max, record.getMaxVal());
+            }
+            double expectedSum = 0;
+            for (int i = 0; i < counts[0]; i++) {
+                expectedSum += 5 * value(i);
+            }
+            assertEquals(n, data.size());
+            assertEquals(5 * counts[0], validCount);
+            assertEquals(expectedSum, sum, 1e-4 * expectedSum);
+            assertEquals(16, max, 0);
+        }
+
+        // Records of all chromosomes,  in file order,  up to a limit
+        ZoomData all = reader.getZoomData(1, Integer.MAX_VALUE);
+        ZoomData chr1 = reader.getZoomData(1, "chr1", 0, 5000000, false);
+        ZoomData chr2 = reader.getZoomData(1, "chr2", 0, 3000000, false);
+        assertEquals(chr1.size() + chr2.size(), all.size());
+        ZoomData first = reader.getZoomData(1, 1000);
+        assertEquals(1000, first.size());
+        assertTrue(Arrays.equals(Arrays.copyOf(all.getMeanValues(), 1000), first.getMeanValues()));
+        assertEquals(0, reader.getZoomData(1, "chr10", 0, 1000000, false).size());
+    }
+
+    @Test
+    public void testBigBed() throws Exception {
+
+        Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+        sizes.put("chr1", 1000000);
+        BBFileWriter writer = BBFileWriter.createBigBed(file, sizes, 6);
+
+        // Overlapping features
+        int nFeatures = 5000;
+        for (int i = 0; i < nFeatures; i++) {
+            writer.addFeature("chr1", i * 100, i * 100 + 50 + (i % 3) * 100, "f" + i + "\t" + i + "\t+");
+        }
+        writer.close();
+
+        BBFileReader reader = new BBFileReader(file.getAbsolutePath());
+        assertTrue(reader.isBigBedFile());
+        assertEquals(6, reader.getBBFileHeader().getFieldCount());
+
+        BigBedIterator iter = reader.getBigBedIterator("chr1", 0, "chr1", 1000000, false);
+        int n = 0;
+        long totalLength = 0;
+        while (iter.hasNext()) {
+            BedFeature f = iter.next();
+            assertEquals("chr1", f.getChromosome());
+            assertEquals(n * 100, f.getStartBase());
+            assertEquals(n * 100 + 50 + (n % 3) * 100, f.getEndBase());
+            assertTrue(Arrays.equals(new String[]{"f" + n, String.valueOf(n), "+"}, f.getRestOfFields()));
+            totalLength += f.getEndBase() - f.getStartBase();
+            n++;
+        }
+        assertEquals(nFeatures, n);
+
+        // Zoom levels summarize coverage depth
+        ZoomLevelIterator zoomIter = reader.getZoomLevelIterator(1, "chr1", 0, "chr1", 1000000, false);
+        long validCount = 0;
+        double sum = 0;
+        float max = 0;
+        while (zoomIter.hasNext()) {
+            ZoomDataRecord record = zoomIter.next();
+            validCount += record.getBasesCovered();
+            sum += record.getSumData();
+            max = Math.max(max, record.getMaxVal());
+        }
+        assertEquals(reader.getTotalSummaryBlock().getBasesCovered(), validCount);
+        assertEquals(totalLength, sum, 1e-6 * totalLength);
+        assertEquals(2, max, 0);
+    }
+
+    @Test
+    public void testDepth() throws Exception {
+        WigData depth = BBFileWriter.computeDepth(new int[]{0, 10, 10, 40, 50}, new int[]{20, 15, 30, 50, 50});
+        assertTrue(Arrays.equals(new int[]{0, 10, 15, 20, 40}, depth.getStarts()));
+        assertTrue(Arrays.equals(new int[]{10, 15, 20, 30, 50}, depth.getEnds()));
+        assertTrue(Arrays.equals(new float[]{1, 3, 2, 1, 1}, depth.getValues()));
+    }
+
+    @Test
+    public void testManyChromosomes() throws Exception {
+
+        Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < 600; i++) {
+            sizes.put("contig" + i, 10000 + i);
+        }
+        BBFileWriter writer = BBFileWriter.createBigWig(file, sizes);
+        for (int i = 0; i < 600; i += 7) {
+            writer.addValue("contig" + i, 100, 200, i);
+        }
+        writer.close();
+
+        BBFileReader reader = new BBFileReader(file.getAbsolutePath());
+        assertEquals(600, reader.getChromosomeNames().size());
+        for (int i = 0; i < 600; i += 7) {
+            WigData data = reader.getBigWigData("contig" + i, 0, 10000, false);
+            assertEquals(1, data.size());
+            assertEquals(i, data.getValues()[0], 0);
+        }
+    }
+
+    @Test
+    public void testUnsorted() throws Exception {
+
+        Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+        sizes.put("chr1", 1000000);
+        sizes.put("chr2", 1000000);
+        BBFileWriter writer = BBFileWriter.createBigWig(file, sizes);
+        writer.addValue("chr1", 100, 200, 1);
+        try {
+            writer.addValue("chr1", 50, 60, 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        writer.addValue("chr2", 100, 200, 1);
+        try {
+            writer.addValue("chr1", 300, 400, 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        writer.close();
+    }
+
+    private static float value(int i) {
+        return i % 17;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.bbfile;
+
+import org.broad.igv.util.CompressionUtils;
+import org.broad.igv.util.TestUtils;
+import org.broad.tribble.util.SeekableFileStream;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BigWigDataReaderTest {
+
+    @Test
+    public void testReadAndDecode() throws Exception {
+
+        // bedGraph,  fixedStep,  and a block of two sections (varStep + bedGraph)
+        byte[] blockA = CompressionUtils.compress(section(1, 0, 100, 400, 0, 0,
+                new int[]{100, 200, 200, 300, 300, 400}, new float[]{1, 2, 3}));
+        byte[] blockB = CompressionUtils.compress(section(3, 0, 400, 700, 100, 50,
+                new int[0], new float[]{4, 5, 6}));
+        byte[] c1 = section(2, 0, 700, 900, 0, 10, new int[]{700, 800}, new float[]{7, 8});
+        byte[] c2 = section(1, 0, 900, 1200, 0, 0, new int[]{900, 1000, 1000, 1100}, new float[]{9, 10});
+        byte[] blockC = CompressionUtils.compress(concat(c1, c2));
+
+        File file = new File(TestUtils.DATA_DIR, "out/blocks.bin");
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(blockA);
+        fos.write(blockB);
+        fos.write(new byte[10]);
+        fos.write(blockC);
+        fos.close();
+
+        List<RPTreeLeafNodeItem> hits = new ArrayList<RPTreeLeafNodeItem>();
+        hits.add(new RPTreeLeafNodeItem(0, 100, 0, 400, 0, blockA.length));
+        hits.add(new RPTreeLeafNodeItem(0, 400, 0, 700, blockA.length, blockB.length));
+        hits.add(new RPTreeLeafNodeItem(0, 700, 0, 1200, blockA.length + blockB.length + 10, blockC.length));
+
+        SeekableFileStream fis = new SeekableFileStream(file);
+        List<BigWigDataReader.BlockBytes> blocks = BigWigDataReader.readBlocks(fis, hits);
+        fis.close();
+        file.delete();
+
+        // Adjacent blocks share one read
+        assertEquals(3, blocks.size());
+        assertSame(blocks.get(0).buffer, blocks.get(1).buffer);
+        assertNotSame(blocks.get(1).buffer, blocks.get(2).buffer);
+
+        RPChromosomeRegion region = new RPChromosomeRegion(0, 150, 0, 1050);
+        WigData data = BigWigDataReader.decodeBlocks(blocks, region, false, true, 1000);
+        assertTrue(Arrays.equals(new int[]{100, 200, 300, 400, 500, 600, 700, 800, 900, 1000}, data.getStarts()));
+        assertTrue(Arrays.equals(new int[]{200, 300, 400, 450, 550, 650, 710, 810, 1000, 1100}, data.getEnds()));
+        assertTrue(Arrays.equals(new float[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, data.getValues()));
+
+        data = BigWigDataReader.decodeBlocks(blocks, region, true, true, 1000);
+        assertTrue(Arrays.equals(new int[]{200, 300, 400, 500, 600, 700, 800, 900}, data.getStarts()));
+    }
+
+    /**
+     * A little-endian wig section,  see BBFile Table J
+     */
+    private static byte[] section(int type, int chromID, int start, int end, int step, int span,
+                                  int[] positions, float[] values) {
+        int itemSize = type == 1 ? 12 : (type == 2 ? 8 : 4);
+        ByteBuffer buffer = ByteBuffer.allocate(24 + itemSize * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(chromID).putInt(start).putInt(end).putInt(step).putInt(span);
+        buffer.put((byte) type).put((byte) 0).putShort((short) values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (type == 1) {
+                buffer.putInt(positions[2 * i]).putInt(positions[2 * i + 1]);
+            } else if (type == 2) {
+                buffer.putInt(positions[i]);
+            }
+            buffer.putFloat(values[i]);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] concat(byte[] b1, byte[] b2) {
+        byte[] result = Arrays.copyOf(b1, b1.length + b2.length);
+        System.arraycopy(b2, 0, result, b1.length, b2.length);
+        return result;
+    }
+}
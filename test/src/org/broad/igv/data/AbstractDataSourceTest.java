@@ -15,6 +15,7 @@ import org.broad.igv.AbstractHeadlessTest;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.track.WindowFunction;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
 import org.junit.Test;
@@ -115,8 +116,64 @@ public class AbstractDataSourceTest  extends AbstractHeadlessTest {
     }
 
 
+    /**
+     * Tiles derived from cached tiles of the next zoom level should match tiles computed from the raw data,  without
+     * touching the raw data.
+     */
+    @Test
+    public void testDeriveTilesFromNextZoom() throws Exception {
+
+        WindowFunction[] wfs = {WindowFunction.mean, WindowFunction.min, WindowFunction.max, WindowFunction.median};
+        for (WindowFunction wf : wfs) {
+            TestDataSource derived = new TestDataSource();
+            derived.setWindowFunction(wf);
+            TestDataSource direct = new TestDataSource(derived.starts, derived.ends, derived.values);
+            direct.setWindowFunction(wf);
+
+            int end = derived.getChrLength("");
+            derived.getSummaryScoresForRange("", 0, end, 4);
+            int rawDataCount = derived.rawDataCount;
+
+            for (int z = 3; z >= 0; z--) {
+                List<LocusScore> derivedScores = derived.getSummaryScoresForRange("", 0, end, z);
+                List<LocusScore> directScores = direct.getSummaryScoresForRange("", 0, end, z);
+
+                assertEquals(directScores.size(), derivedScores.size());
+                for (int i = 0; i < directScores.size(); i++) {
+                    LocusScore s1 = directScores.get(i);
+                    LocusScore s2 = derivedScores.get(i);
+                    assertEquals(s1.getStart(), s2.getStart());
+                    assertEquals(s1.getEnd(), s2.getEnd());
+                    assertEquals(s1.getScore(), s2.getScore(), 1.0e-4);
+                }
+            }
+            assertEquals(rawDataCount, derived.rawDataCount);
+        }
+    }
+
+    @Test
+    public void testMergeSplitFeature() throws Exception {
+
+        // A single feature crossing the boundary between the two tiles at zoom 1
+        int[] starts = {100, 49500, 60000};
+        int[] ends = {200, 50500, 60010};
+        float[] values = {1, 2, 3};
+        TestDataSource ds = new TestDataSource(starts, ends, values);
+
+        int end = ds.getChrLength("");
+        ds.getSummaryScoresForRange("", 0, end, 1);
+        List<LocusScore> scores = ds.getSummaryScoresForRange("", 0, end, 0);
+        assertEquals(3, scores.size());
+        assertEquals(49500, scores.get(1).getStart());
+        assertEquals(50500, scores.get(1).getEnd());
+        assertEquals(2, scores.get(1).getScore(), 0);
+    }
+
+
     class TestDataSource extends AbstractDataSource {
 
+        int rawDataCount = 0;
+
 
         private int nPts;
         int[] starts;
@@ -151,6 +208,7 @@ public class AbstractDataSourceTest  extends AbstractHeadlessTest {
         }
 
         protected DataTile getRawData(String chr, int startLocation, int endLocation) {
+            rawDataCount++;
             return new DataTile(starts, ends, values, probes);
         }
 
@@ -160,6 +218,11 @@ public class AbstractDataSourceTest  extends AbstractHeadlessTest {
         }
 
 
+        @Override
+        public int getChrLength(String chr) {
+            return 100000;
+        }
+
         @Override
         public int getLongestFeature(String chr) {
             return 1000;
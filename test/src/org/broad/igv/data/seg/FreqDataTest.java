@@ -12,12 +12,22 @@
 package org.broad.igv.data.seg;
 
 import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author jrobinso
@@ -37,4 +47,181 @@ public class FreqDataTest extends AbstractHeadlessTest {
 
         FreqData fd = new FreqData(sd, genome);
     }
+
+    @Test
+    public void testCounts() throws IOException {
+
+        Genome genome = TestUtils.loadGenome();
+        String segfile = TestUtils.DATA_DIR + "seg/canFam2_hg18.seg";
+        ResourceLocator locator = new ResourceLocator(segfile);
+        SegmentedDataSet sd = new SegmentFileParser(locator).loadSegments(locator, genome);
+        FreqData fd = new FreqData(sd, genome);
+        assertCounts(fd, sd, genome, FreqData.DEFAULT_BIN_SIZE, FreqData.DEFAULT_DEL_THRESHOLD,
+                FreqData.DEFAULT_AMP_THRESHOLD);
+    }
+
+    @Test
+    public void testSortableBits() throws Exception {
+        float[] values = {Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -2.5f, -1, -Float.MIN_VALUE, -0.0f, 0,
+                Float.MIN_VALUE, 0.1f, 1, 2.5f, Float.MAX_VALUE, Float.POSITIVE_INFINITY};
+        for (int i = 1; i < values.length; i++) {
+            assertTrue(FreqData.sortableBits(values[i - 1]) < FreqData.sortableBits(values[i]));
+        }
+    }
+
+    /**
+     * Changing thresholds updates the counts incrementally,  which must agree with counting from scratch
+     */
+    @Test
+    public void testSetParameters() throws IOException {
+
+        Genome genome = TestUtils.loadGenome();
+        String segfile = TestUtils.DATA_DIR + "seg/canFam2_hg18.seg";
+        ResourceLocator locator = new ResourceLocator(segfile);
+        SegmentedDataSet sd = new SegmentFileParser(locator).loadSegments(locator, genome);
+        FreqData fd = new FreqData(sd, genome);
+
+        fd.setParameters(FreqData.DEFAULT_BIN_SIZE, -0.3f, 0.3f);
+        assertCounts(fd, sd, genome, FreqData.DEFAULT_BIN_SIZE, -0.3f, 0.3f);
+
+        fd.setParameters(FreqData.DEFAULT_BIN_SIZE, -0.05f, 0.2f);
+        assertCounts(fd, sd, genome, FreqData.DEFAULT_BIN_SIZE, -0.05f, 0.2f);
+
+        fd.setParameters(1000000, -0.05f, 0.2f);
+        assertCounts(fd, sd, genome, 1000000, -0.05f, 0.2f);
+    }
+
+    /**
+     * Enough segments to be counted in parallel partitions
+     */
+    @Test
+    public void testManySamples() throws IOException {
+
+        Genome genome = TestUtils.loadGenome();
+        SegmentedAsciiDataSet sd = new SegmentedAsciiDataSet(genome);
+        Random random = new Random(1);
+        List<String> chrs = new ArrayList<String>(genome.getChromosomeNames());
+        for (int s = 0; s < 40; s++) {
+            for (int i = 0; i < 5000; i++) {
+                String chr = chrs.get(random.nextInt(chrs.size()));
+                int start = random.nextInt(genome.getChromosome(chr).getLength());
+                int end = start + random.nextInt(i % 50 == 0 ? 20000000 : 500000);
+                sd.addSegment("sample" + s, chr, start, end, random.nextInt(5), null);
+            }
+        }
+        sd.sortLists();
+
+        FreqData fd = new FreqData(sd, genome);
+        assertCounts(fd, sd, genome, FreqData.DEFAULT_BIN_SIZE, FreqData.DEFAULT_DEL_THRESHOLD,
+                FreqData.DEFAULT_AMP_THRESHOLD);
+
+        fd.setParameters(FreqData.DEFAULT_BIN_SIZE, -1.5f, 0.8f);
+        assertCounts(fd, sd, genome, FreqData.DEFAULT_BIN_SIZE, -1.5f, 0.8f);
+    }
+
+    private void assertCounts(FreqData fd, SegmentedDataSet sd, Genome genome, int binSize, float delThreshold,
+                              float ampThreshold) {
+
+        ReferenceCounts expected = new ReferenceCounts(sd, genome, binSize, delThreshold, ampThreshold);
+        int nonZero = 0;
+        List<String> chrs = new ArrayList<String>(genome.getChromosomeNames());
+        chrs.add(Globals.CHR_ALL);
+        for (String chr : chrs) {
+            List<LocusScore> ampBins = fd.getAmpCounts(chr);
+            List<LocusScore> delBins = fd.getDelCounts(chr);
+            float[][] expectedAmp = expected.amp.get(chr);
+            float[][] expectedDel = expected.del.get(chr);
+            assertEquals(expectedAmp[0].length, ampBins.size());
+            assertEquals(expectedDel[0].length, delBins.size());
+            for (int b = 0; b < ampBins.size(); b++) {
+                FreqData.Bin ampBin = (FreqData.Bin) ampBins.get(b);
+                FreqData.Bin delBin = (FreqData.Bin) delBins.get(b);
+                assertClose(expectedAmp[0][b], ampBin.getScore());
+                assertClose(expectedAmp[1][b], ampBin.getTotalCN());
+                assertClose(expectedDel[0][b], delBin.getScore());
+                assertClose(expectedDel[1][b], delBin.getTotalCN());
+                if (ampBin.getScore() != 0 || delBin.getScore() != 0) {
+                    nonZero++;
+                }
+                if (chr != Globals.CHR_ALL) {
+                    assertEquals(b * binSize, ampBin.getStart());
+                }
+            }
+        }
+        assertTrue(nonZero > 0);
+    }
+
+    /**
+     * The reference sums in single precision,  FreqData in double precision
+     */
+    private static void assertClose(float expected, float actual) {
+        assertEquals(expected, actual, 1.0e-3 + 1.0e-5 * Math.abs(expected));
+    }
+
+    /**
+     * Counts computed bin by bin,  the straightforward way
+     */
+    static class ReferenceCounts {
+
+        Map<String, float[][]> amp = new HashMap<String, float[][]>();
+        Map<String, float[][]> del = new HashMap<String, float[][]>();
+
+        ReferenceCounts(SegmentedDataSet dataset, Genome genome, int binSize, float delThreshold,
+                        float ampThreshold) {
+
+            int sizeInKB = (int) (genome.getLength() / 1000);
+            int wgBinSize = sizeInKB / 700;
+            int wgBinCount = sizeInKB / wgBinSize + 1;
+            for (String chr : genome.getChromosomeNames()) {
+                int nBins = genome.getChromosome(chr).getLength() / binSize + 1;
+                amp.put(chr, new float[2][nBins]);
+                del.put(chr, new float[2][nBins]);
+            }
+            amp.put(Globals.CHR_ALL, new float[2][wgBinCount]);
+            del.put(Globals.CHR_ALL, new float[2][wgBinCount]);
+
+            for (String sample : dataset.getSampleNames()) {
+                for (String chr : genome.getChromosomeNames()) {
+                    List<LocusScore> segments = dataset.getSegments(sample, chr);
+                    if (segments == null) continue;
+                    for (LocusScore seg : segments) {
+                        float segScore = dataset.isLogNormalized() ? seg.getScore() :
+                                (float) (Math.log(seg.getScore() / 2) / Globals.log2);
+                        int gStart = genome.getGenomeCoordinate(chr, seg.getStart());
+                        int gEnd = genome.getGenomeCoordinate(chr, seg.getEnd());
+                        count(chr, seg.getStart(), seg.getEnd(), segScore, binSize, delThreshold, ampThreshold);
+                        count(Globals.CHR_ALL, gStart, gEnd, segScore, wgBinSize, delThreshold, ampThreshold);
+                    }
+                }
+            }
+        }
+
+        void count(String chr, int segStart, int segEnd, float segScore, int binSize, float delThreshold,
+                   float ampThreshold) {
+            float[][] ampBins = amp.get(chr);
+            float[][] delBins = del.get(chr);
+            for (int b = segStart / binSize; b <= segEnd / binSize && b < ampBins[0].length; b++) {
+                int binStart = b * binSize;
+                int binEnd = binStart + binSize;
+                float weight = 1.0f;
+                if (segEnd < binEnd) {
+                    weight = ((float) (segEnd - Math.max(segStart, binStart))) / binSize;
+                } else if (segStart > binStart) {
+                    weight = ((float) (Math.min(segEnd, binEnd) - segStart)) / binSize;
+                }
+                // Zero weight would add NaN for infinite scores,  i.e. copy number 0,  which FreqData skips
+                if (weight == 0) {
+                    continue;
+                }
+                if (segScore > ampThreshold) {
+                    ampBins[0][b] += weight;
+                    ampBins[1][b] += weight * segScore;
+                }
+                if (segScore < delThreshold) {
+                    delBins[0][b] -= weight;
+                    delBins[1][b] += weight * segScore;
+                }
+            }
+        }
+    }
 }
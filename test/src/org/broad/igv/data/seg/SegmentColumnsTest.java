@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data.seg;
+
+import org.broad.igv.feature.LocusScore;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SegmentColumnsTest {
+
+    @Test
+    public void testSortAndRangeQuery() throws Exception {
+
+        Random random = new Random(1);
+        SegmentColumns columns = new SegmentColumns();
+        for (int i = 0; i < 5000; i++) {
+            int start = random.nextInt(10000000);
+            // Mostly short segments,  a few very long ones overlapping many others
+            int length = i % 100 == 0 ? random.nextInt(2000000) : random.nextInt(5000);
+            columns.add(start, start + length, random.nextFloat(), i % 2 == 0 ? null : "desc" + i);
+        }
+        columns.sort();
+
+        for (int i = 1; i < columns.size(); i++) {
+            assertTrue(columns.getStart(i - 1) <= columns.getStart(i));
+        }
+
+        for (int q = 0; q < 200; q++) {
+            int start = random.nextInt(10500000);
+            int end = start + 1 + random.nextInt(q % 10 == 0 ? 1000000 : 10000);
+
+            Set<String> expected = new HashSet<String>();
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.getEnd(i) > start && columns.getStart(i) < end) {
+                    expected.add(key(columns.getStart(i), columns.getEnd(i), columns.getValue(i)));
+                }
+            }
+
+            Set<String> actual = new HashSet<String>();
+            for (LocusScore score : columns.getSegments(start, end)) {
+                if (score.getEnd() > start && score.getStart() < end) {
+                    actual.add(key(score.getStart(), score.getEnd(), score.getScore()));
+                }
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testDescriptions() throws Exception {
+        SegmentColumns columns = new SegmentColumns();
+        columns.add(300, 400, 3, "c");
+        columns.add(100, 200, 1, null);
+        columns.add(200, 300, 2, "b");
+        columns.sort();
+
+        List<LocusScore> segments = columns.getSegments();
+        assertEquals(3, segments.size());
+        assertNull(((Segment) segments.get(0)).getDescription());
+        assertEquals("b", ((Segment) segments.get(1)).getDescription());
+        assertEquals("c", ((Segment) segments.get(2)).getDescription());
+        assertEquals(300, segments.get(2).getStart());
+        assertEquals(0, columns.getSegments(400, 500).size());
+    }
+
+    @Test
+    public void testDecimation() throws Exception {
+
+        // Many small adjacent segments near the baseline,  with a few focal events
+        SegmentColumns columns = new SegmentColumns();
+        int nSegments = 100000;
+        for (int i = 0; i < nSegments; i++) {
+            float value = i % 10000 == 5000 ? 3 : (i % 10000 == 7000 ? -3 : 0.1f);
+            columns.add(i * 1000, (i + 1) * 1000, value, null);
+        }
+        columns.sort();
+
+        List<LocusScore> full = columns.getSegments(0, nSegments * 1000, 0, 0);
+        assertTrue(full.size() < nSegments / 10);
+
+        int n3 = 0;
+        int nMinus3 = 0;
+        int lastStart = -1;
+        int covered = 0;
+        for (LocusScore score : full) {
+            assertTrue(score.getStart() >= lastStart);
+            lastStart = score.getStart();
+            covered += score.getEnd() - score.getStart();
+            if (score.getScore() == 3) n3++;
+            if (score.getScore() == -3) nMinus3++;
+        }
+        assertEquals(10, n3);
+        assertEquals(10, nMinus3);
+        assertEquals(nSegments * 1000, covered);
+
+        // At high zoom segments are wider than a pixel and are not merged
+        assertEquals(10, columns.getSegments(0, 10000, 15, 0).size());
+    }
+
+    private static String key(int start, int end, float value) {
+        return start + "-" + end + ":" + value;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.dev.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class DBManagerTest {
+
+    TestDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = TestDatabase.register();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DBManager.shutdown();
+        DBManager.setURL(null);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        Connection conn = DBManager.getConnection();
+        Connection raw = ((DBManager.ConnectionWrapper) conn).conn;
+        conn.close();
+        assertTrue(conn.isClosed());
+
+        // Closing twice returns the connection once
+        conn.close();
+
+        Connection conn2 = DBManager.getConnection();
+        assertFalse(conn2.isClosed());
+        assertSame(raw, ((DBManager.ConnectionWrapper) conn2).conn);
+        conn2.close();
+        assertEquals(1, db.connectionCount);
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+
+        List<Connection> connections = new ArrayList<Connection>();
+        for (int i = 0; i < DBManager.MAX_CONNECTIONS; i++) {
+            connections.add(DBManager.getConnection());
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Connection> future = executor.submit(new Callable<Connection>() {
+            public Connection call() throws Exception {
+                return DBManager.getConnection();
+            }
+        });
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            fail("Expected the pool to be exhausted");
+        } catch (TimeoutException e) {
+            // Expected
+        }
+
+        connections.get(0).close();
+        Connection conn = future.get(5, TimeUnit.SECONDS);
+        assertNotNull(conn);
+        assertEquals(DBManager.MAX_CONNECTIONS, db.connectionCount);
+
+        conn.close();
+        for (int i = 1; i < connections.size(); i++) {
+            connections.get(i).close();
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        List<Connection> connections = new ArrayList<Connection>();
+        for (int i = 0; i < DBManager.MAX_CONNECTIONS; i++) {
+            connections.add(DBManager.getConnection());
+        }
+
+        long timeout = DBManager.CONNECTION_TIMEOUT_SECONDS;
+        DBManager.CONNECTION_TIMEOUT_SECONDS = 1;
+        try {
+            DBManager.getConnection();
+            fail("Expected a timeout");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("Timed out"));
+        } finally {
+            DBManager.CONNECTION_TIMEOUT_SECONDS = timeout;
+            for (Connection conn : connections) {
+                conn.close();
+            }
+        }
+
+        // The pool is usable after a timeout
+        Connection conn = DBManager.getConnection();
+        assertNotNull(conn);
+        conn.close();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.dev.db;
+
+import org.broad.igv.Globals;
+import org.broad.igv.data.seg.FreqData;
+import org.broad.igv.data.seg.Segment;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SegmentedSQLDataSetTest {
+
+    TestDatabase db;
+    String[] samples = {"sampleA", "sampleB", "sampleC"};
+
+    @Before
+    public void setUp() throws Exception {
+        db = TestDatabase.register();
+
+        // Short segments,  with a long one spanning several bins in each sample
+        Random random = new Random(1);
+        for (String chr : new String[]{"chr1", "chr2"}) {
+            for (String sample : samples) {
+                int start = 0;
+                while (start < 100000) {
+                    int end = start + 10 + random.nextInt(500);
+                    db.addSegment(sample, chr, start, end, random.nextFloat() * 4 - 1);
+                    start = end + random.nextInt(50);
+                }
+                db.addSegment(sample, chr, 20000, 2000000, 3.5f);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DBManager.shutdown();
+        DBManager.setURL(null);
+    }
+
+    @Test
+    public void testSummary() throws Exception {
+        SegmentedSQLDataSet ds = new SegmentedSQLDataSet("segments", null, 10000);
+        assertEquals(Arrays.asList(samples), ds.getSampleNames());
+        assertTrue(ds.isLogNormalized());
+        assertEquals(3.5, ds.getDataMax("chr1"), 0);
+        assertTrue(ds.getDataMin("chr1") < 0);
+        assertEquals(1, db.queryCount);
+        assertTrue(db.rowCount < db.rows.size());
+    }
+
+    @Test
+    public void testRangeQueries() throws Exception {
+
+        SegmentedSQLDataSet ds = new SegmentedSQLDataSet("segments", null, 10000);
+        SegmentedSQLDataSource source = new SegmentedSQLDataSource("sampleB", ds);
+
+        int[][] ranges = {{30000, 31000}, {5000, 42000}, {64990, 70000}, {99000, 200000}};
+        for (int[] range : ranges) {
+            int rowCount = db.rowCount;
+            List<LocusScore> segments = source.getSummaryScoresForRange("chr1", range[0], range[1], 20);
+            assertSegments(getExpected("sampleB", "chr1", range[0], range[1]), segments, range[0], range[1]);
+
+            // Only the rows of the uncached bins are read
+            assertTrue(db.rowCount - rowCount < db.rows.size() / 4);
+
+            // Cached
+            int queryCount = db.queryCount;
+            segments = source.getSummaryScoresForRange("chr1", range[0], range[1], 20);
+            assertSegments(getExpected("sampleB", "chr1", range[0], range[1]), segments, range[0], range[1]);
+            assertEquals(queryCount, db.queryCount);
+        }
+
+        // Bins are shared by the samples
+        int queryCount = db.queryCount;
+        List<LocusScore> segments = new SegmentedSQLDataSource("sampleC", ds).
+                getSummaryScoresForRange("chr1", 30000, 31000, 20);
+        assertSegments(getExpected("sampleC", "chr1", 30000, 31000), segments, 30000, 31000);
+        assertEquals(queryCount, db.queryCount);
+
+        assertNull(source.getSummaryScoresForRange("chrX", 0, 1000, 20));
+        for (int fetchSize : db.fetchSizes) {
+            assertEquals(DBReader.FETCH_SIZE, fetchSize);
+        }
+    }
+
+    @Test
+    public void testWholeGenome() throws Exception {
+
+        Genome genome = TestUtils.loadGenome();
+        SegmentedSQLDataSet ds = new SegmentedSQLDataSet("SELECT * FROM segments;", genome, 10000);
+        int rowCount = db.rowCount;
+        List<LocusScore> scores = new SegmentedSQLDataSource("sampleA", ds).
+                getSummaryScoresForRange(Globals.CHR_ALL, 0, -1, 0);
+
+        // Only the long segments are wide enough to see
+        assertEquals(2, scores.size());
+        assertEquals(3.5, scores.get(0).getScore(), 0);
+        assertEquals(20, scores.get(0).getStart());
+        assertEquals(2000, scores.get(0).getEnd());
+        assertEquals(6, db.rowCount - rowCount);
+    }
+
+    @Test
+    public void testFreqData() throws Exception {
+        Genome genome = TestUtils.loadGenome();
+        SegmentedSQLDataSet ds = new SegmentedSQLDataSet("segments", genome, 10000);
+
+        // One pass over the table
+        int queryCount = db.queryCount;
+        int rowCount = db.rowCount;
+        FreqData fd = new FreqData(ds.readAllSegments(), genome);
+        assertEquals(1, db.queryCount - queryCount);
+        assertEquals(db.rows.size(), db.rowCount - rowCount);
+        assertEquals(samples.length, fd.getNumberOfSamples());
+
+        // Every sample is amplified by its long segment,  and only that segment covers the bin at 1 mb
+        int nBins = 0;
+        for (String chr : new String[]{"chr1", "chr2"}) {
+            for (LocusScore bin : fd.getAmpCounts(chr)) {
+                if (bin.getStart() <= 1000000 && bin.getEnd() > 1000000) {
+                    assertEquals(samples.length, bin.getScore(), 0);
+                    nBins++;
+                }
+            }
+        }
+        assertEquals(2, nBins);
+    }
+
+    private List<LocusScore> getExpected(String sample, String chr, int start, int end) {
+        List<LocusScore> expected = new ArrayList<LocusScore>();
+        for (Object[] row : db.rows) {
+            if (row[0].equals(sample) && row[1].equals(chr) && (Integer) row[2] < end && (Integer) row[3] > start) {
+                expected.add(new Segment((Integer) row[2], (Integer) row[3], (Float) row[4]));
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Compare the segments overlapping [start, end).  As for segments read from a file,  segments following a long
+     * segment may be returned even if they end before start.
+     */
+    private void assertSegments(List<LocusScore> expected, List<LocusScore> segments, int start, int end) {
+        List<String> e = new ArrayList<String>();
+        for (LocusScore segment : expected) {
+            e.add(segment.getStart() + "-" + segment.getEnd() + ":" + segment.getScore());
+        }
+        List<String> s = new ArrayList<String>();
+        for (LocusScore segment : segments) {
+            if (segment.getStart() < end && segment.getEnd() > start) {
+                s.add(segment.getStart() + "-" + segment.getEnd() + ":" + segment.getScore());
+            }
+        }
+        Collections.sort(e);
+        Collections.sort(s);
+        assertEquals(e, s);
+    }
+}
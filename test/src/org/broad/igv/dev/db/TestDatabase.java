@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.dev.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * An embedded H2 database holding one segment table,  for testing without a database server.  Connections are made
+ * through this driver,  which delegates to H2 and counts the connections,  queries and rows returned.
+ */
+public class TestDatabase implements Driver {
+
+    static final String URL = "jdbc:igvtest:segments";
+
+    static TestDatabase instance;
+    static int databaseCount = 0;
+
+    String h2URL;
+    Connection adminConnection;
+    PreparedStatement insert;
+    List<Object[]> rows = new ArrayList<Object[]>();
+    int connectionCount;
+    int queryCount;
+    int rowCount;
+    List<Integer> fetchSizes = new ArrayList<Integer>();
+
+    /**
+     * Register a new empty database and point DBManager at it
+     */
+    static synchronized TestDatabase register() throws SQLException {
+        DBManager.shutdown();
+        if (instance != null) {
+            DriverManager.deregisterDriver(instance);
+            instance.adminConnection.close();
+        }
+        instance = new TestDatabase();
+        DriverManager.registerDriver(instance);
+        DBManager.setURL(URL);
+        return instance;
+    }
+
+    TestDatabase() throws SQLException {
+        try {
+            Class.forName("org.h2.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("H2 driver not found", e);
+        }
+        // The database is dropped when the admin connection,  the last one open,  is closed
+        h2URL = "jdbc:h2:mem:segments" + (databaseCount++);
+        adminConnection = DriverManager.getConnection(h2URL);
+        Statement st = adminConnection.createStatement();
+        st.execute("CREATE TABLE segments (Sample VARCHAR(255), chr VARCHAR(255), start INT, end INT, value REAL, " +
+                "description VARCHAR(255))");
+        st.close();
+        insert = adminConnection.prepareStatement("INSERT INTO segments VALUES (?, ?, ?, ?, ?, ?)");
+    }
+
+    void addSegment(String sample, String chr, int start, int end, float value) throws SQLException {
+        Object[] row = new Object[]{sample, chr, start, end, value, sample + ":" + start};
+        rows.add(row);
+        insert.setString(1, sample);
+        insert.setString(2, chr);
+        insert.setInt(3, start);
+        insert.setInt(4, end);
+        insert.setFloat(5, value);
+        insert.setString(6, (String) row[5]);
+        insert.executeUpdate();
+    }
+
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        synchronized (this) {
+            connectionCount++;
+        }
+        Connection conn = DriverManager.getConnection(h2URL);
+        return (Connection) proxy(Connection.class, new ConnectionHandler(conn));
+    }
+
+    public boolean acceptsURL(String url) throws SQLException {
+        return url.startsWith(URL);
+    }
+
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+        return new DriverPropertyInfo[0];
+    }
+
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private static Object proxy(Class type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(TestDatabase.class.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        Connection conn;
+
+        ConnectionHandler(Connection conn) {
+            this.conn = conn;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TestDatabase.invoke(conn, method, args);
+            if (method.getName().equals("prepareStatement")) {
+                return TestDatabase.proxy(PreparedStatement.class, new StatementHandler((PreparedStatement) result));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        PreparedStatement st;
+
+        StatementHandler(PreparedStatement st) {
+            this.st = st;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Object result = TestDatabase.invoke(st, method, args);
+            if (name.equals("setFetchSize")) {
+                synchronized (TestDatabase.this) {
+                    fetchSizes.add((Integer) args[0]);
+                }
+            } else if (name.equals("executeQuery")) {
+                synchronized (TestDatabase.this) {
+                    queryCount++;
+                }
+                return TestDatabase.proxy(ResultSet.class, new ResultSetHandler((ResultSet) result));
+            }
+            return result;
+        }
+    }
+
+    private class ResultSetHandler implements InvocationHandler {
+
+        ResultSet rs;
+
+        ResultSetHandler(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TestDatabase.invoke(rs, method, args);
+            if (method.getName().equals("next") && (Boolean) result) {
+                synchronized (TestDatabase.this) {
+                    rowCount++;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.tribble.Feature;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class FeatureNameIndexTest extends AbstractHeadlessTest {
+
+    @After
+    public void tearDown() throws Exception {
+        FeatureDB.clearFeatures();
+    }
+
+    @Test
+    public void testCreateAndMerge() throws Exception {
+
+        List<Feature> features = new ArrayList<Feature>();
+        features.add(createFeature("BRCA1", 100, 200));
+        features.add(createFeature("BRCA2", 100, 300));
+        features.add(createFeature("brca1", 1000, 1500));
+        features.add(createFeature("EGFR", 100, 200));
+        FeatureNameIndex index = FeatureDB.createIndex(features, null);
+
+        assertEquals(3, index.size());
+        assertEquals("BRCA1", index.getKey(0));
+        assertEquals(-1, index.find("BRCA"));
+        assertEquals(2, index.lowerBound("C"));
+        assertTrue(index.keyStartsWith(1, "BRCA"));
+
+        // Longest first
+        List<NamedFeature> brca1 = index.getFeatures(index.find("BRCA1"));
+        assertEquals(2, brca1.size());
+        assertEquals(1000, brca1.get(0).getStart());
+
+        SortedMap<String, NamedFeature[]> added = new TreeMap<String, NamedFeature[]>();
+        NamedFeature longest = createFeature("BRCA1", 0, 5000);
+        added.put("BRCA1", new NamedFeature[]{longest});
+        added.put("AKT1", new NamedFeature[]{createFeature("AKT1", 0, 10)});
+        added.put("ZZZ", new NamedFeature[]{createFeature("ZZZ", 0, 10)});
+        Comparator<Feature> longestFirst = new Comparator<Feature>() {
+            public int compare(Feature f1, Feature f2) {
+                return (f2.getEnd() - f2.getStart()) - (f1.getEnd() - f1.getStart());
+            }
+        };
+        FeatureNameIndex merged = index.merge(added, longestFirst, 2);
+
+        assertEquals(5, merged.size());
+        assertEquals("AKT1", merged.getKey(0));
+        assertEquals("ZZZ", merged.getKey(4));
+        brca1 = merged.getFeatures(merged.find("BRCA1"));
+        assertEquals(2, brca1.size());
+        assertSame(longest, brca1.get(0));
+        assertEquals(1000, brca1.get(1).getStart());
+
+        // Merging again appends to the same table
+        added = new TreeMap<String, NamedFeature[]>();
+        added.put("EGFR", new NamedFeature[]{createFeature("EGFR", 0, 1)});
+        merged = merged.merge(added, longestFirst, 21);
+        assertEquals(2, merged.getFeatures(merged.find("EGFR")).size());
+        assertEquals("ZZZ", merged.getFeatures(merged.find("ZZZ")).get(0).getName());
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        List<Feature> features = new ArrayList<Feature>();
+        for (int i = 0; i < 1000; i++) {
+            features.add(createFeature("gene" + (i % 700), i * 10, i * 10 + i));
+        }
+        FeatureNameIndex index = FeatureDB.createIndex(features, null);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        index.write(out);
+        out.writeInt(12345);
+        out.close();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        FeatureNameIndex read = FeatureNameIndex.read(buffer, features);
+        assertEquals(12345, buffer.getInt());
+
+        assertEquals(index.size(), read.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.getKey(i), read.getKey(i));
+            assertEquals(index.getFeatures(i), read.getFeatures(i));
+        }
+    }
+
+    /**
+     * Names are found while they are added and merged in the background
+     */
+    @Test
+    public void testFeatureDB() throws Exception {
+
+        FeatureDB.clearFeatures();
+        final int nFeatures = 3 * FeatureDB.MIN_MERGE_SIZE;
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    int lastSize = 0;
+                    while (lastSize < 10) {
+                        List<NamedFeature> found = FeatureDB.getFeaturesList("RS1", 10);
+                        for (NamedFeature f : found) {
+                            assertTrue(f.getName().toUpperCase().startsWith("RS1"));
+                        }
+                        lastSize = found.size();
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < nFeatures; i++) {
+            FeatureDB.addFeature(createFeature("rs" + i, i, i + 1));
+        }
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+
+        FeatureDB.mergeNames();
+        assertEquals(nFeatures, FeatureDB.size());
+        FeatureDB.addFeature(createFeature("rs10", 0, 100));
+        assertEquals(nFeatures, FeatureDB.size());
+        assertEquals(100, FeatureDB.getFeature("RS10").getEnd());
+        assertEquals(2, FeatureDB.getFeaturesList("rs10", 1, false).size());
+
+        List<NamedFeature> found = FeatureDB.getFeaturesList("rs1", 5);
+        assertEquals(5, found.size());
+        assertEquals(Arrays.asList("rs1", "rs10", "rs100", "rs1000", "rs10000"), names(found));
+        assertEquals(0, FeatureDB.getFeaturesList("rt", 5).size());
+
+        FeatureDB.clearFeatures();
+        assertNull(FeatureDB.getFeature("RS10"));
+        assertEquals(0, FeatureDB.size());
+    }
+
+    @Test
+    public void testMaxDuplicates() throws Exception {
+        FeatureDB.clearFeatures();
+        int added = 0;
+        for (int i = 0; i < 30; i++) {
+            if (FeatureDB.put("DUP", createFeature("dup", 0, i + 1))) {
+                added++;
+            }
+            if (i == 10) {
+                FeatureDB.mergeNames();
+            }
+        }
+        assertEquals(21, added);
+        List<NamedFeature> features = FeatureDB.getFeaturesList("DUP", 1, false);
+        assertEquals(21, features.size());
+        assertEquals(21, features.get(0).getEnd());
+    }
+
+    private static List<String> names(List<NamedFeature> features) {
+        List<String> names = new ArrayList<String>();
+        for (NamedFeature f : features) {
+            names.add(f.getName());
+        }
+        return names;
+    }
+
+    private static BasicFeature createFeature(String name, int start, int end) {
+        BasicFeature feature = new BasicFeature("chr1", start, end);
+        feature.setName(name);
+        return feature;
+    }
+}
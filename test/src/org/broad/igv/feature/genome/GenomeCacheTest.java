@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature.genome;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.BasicFeature;
+import org.broad.igv.feature.Cytoband;
+import org.broad.igv.feature.Exon;
+import org.broad.igv.feature.FeatureNameIndex;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.track.FeatureCollectionSource;
+import org.broad.igv.util.TestUtils;
+import org.broad.tribble.Feature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.*;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GenomeCacheTest extends AbstractHeadlessTest {
+
+    File archiveFile;
+
+    @Before
+    public void setUp() throws Exception {
+        archiveFile = new File(TestUtils.DATA_DIR, "out/cachetest.genome");
+        FileWriter writer = new FileWriter(archiveFile);
+        writer.write("not really a genome archive");
+        writer.close();
+        GenomeCache.getCacheFile(archiveFile).delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        GenomeCache.getCacheFile(archiveFile).delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        LinkedHashMap<String, List<Cytoband>> cytobands = new LinkedHashMap<String, List<Cytoband>>();
+        Cytoband band = new Cytoband("chr1");
+        band.setName("p36.33");
+        band.setStart(0);
+        band.setEnd(2300000);
+        band.setType('n');
+        band.setStain((short) 25);
+        cytobands.put("chr1", Arrays.asList(band));
+
+        Map<String, String> aliases = new HashMap<String, String>();
+        aliases.put("1", "chr1");
+
+        List<Feature> features = new ArrayList<Feature>();
+        for (int i = 0; i < 100; i++) {
+            features.add(createGene(i % 2 == 0 ? "chr1" : "chr2", i));
+        }
+        FeatureCollectionSource source = new FeatureCollectionSource(features, genome);
+
+        GenomeCache.write(archiveFile, null, cytobands, aliases, source);
+        GenomeCache cache = GenomeCache.read(archiveFile);
+        assertNotNull(cache);
+
+        Cytoband cachedBand = cache.getCytobands().get("chr1").get(0);
+        assertEquals("p36.33", cachedBand.getName());
+        assertEquals(2300000, cachedBand.getEnd());
+        assertEquals('n', cachedBand.getType());
+        assertEquals(25, cachedBand.getStain());
+        assertEquals(aliases, cache.getAliases());
+
+        assertTrue(cache.hasGenes());
+        FeatureCollectionSource cachedSource = cache.createGeneSource(genome);
+        for (String chr : Arrays.asList("chr1", "chr2")) {
+            List<Feature> expected = source.getFeatures(chr);
+            List<Feature> actual = cachedSource.getFeatures(chr);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertFeatureEquals((BasicFeature) expected.get(i), (BasicFeature) actual.get(i));
+            }
+        }
+        assertEquals(source.getFeatures(Globals.CHR_ALL).size(), cachedSource.getFeatures(Globals.CHR_ALL).size());
+        assertTrue(Arrays.equals(source.getGenomeCoverage().getValues(), cachedSource.getGenomeCoverage().getValues()));
+
+        // Names refer to genes of both chromosomes by their position in the cached blocks
+        FeatureNameIndex nameIndex = cache.getNameIndex();
+        for (int i = 0; i < 100; i += 7) {
+            int k = nameIndex.find("GENE" + i);
+            assertTrue(k >= 0);
+            assertFeatureEquals((BasicFeature) features.get(i), (BasicFeature) nameIndex.getFeatures(k).get(0));
+            assertEquals("GENE" + i, nameIndex.getFeatures(nameIndex.find("NM_" + i)).get(0).getName());
+        }
+        assertEquals("GENE5", nameIndex.getFeatures(nameIndex.find("G5")).get(0).getName());
+        assertEquals(-1, nameIndex.find("G6"));
+    }
+
+    @Test
+    public void testNameIndexChromosomes() throws Exception {
+        List<Feature> features = new ArrayList<Feature>();
+        features.add(createGene("chr1", 0));
+        features.add(createGene("chrNotInGenome", 1));
+        GenomeCache.write(archiveFile, genome, null, null, new FeatureCollectionSource(features, genome));
+        FeatureNameIndex nameIndex = GenomeCache.read(archiveFile).getNameIndex();
+        assertTrue(nameIndex.find("GENE0") >= 0);
+        assertEquals(-1, nameIndex.find("GENE1"));
+    }
+
+    @Test
+    public void testStale() throws Exception {
+        GenomeCache.write(archiveFile, null, null, null, null);
+        GenomeCache cache = GenomeCache.read(archiveFile);
+        assertNotNull(cache);
+        assertNull(cache.getCytobands());
+        assertNull(cache.getAliases());
+        assertFalse(cache.hasGenes());
+        assertFalse(cache.hasUncacheableGenes());
+
+        archiveFile.setLastModified(archiveFile.lastModified() - 60000);
+        assertNull(GenomeCache.read(archiveFile));
+    }
+
+    @Test
+    public void testNotEncodable() throws Exception {
+        List<Feature> features = new ArrayList<Feature>();
+        features.add(createGene("chr1", 0));
+        features.add(new BasicFeature("chr1", 100, 200) {
+        });
+        GenomeCache.write(archiveFile, null, null, null, new FeatureCollectionSource(features, genome));
+        GenomeCache cache = GenomeCache.read(archiveFile);
+        assertNotNull(cache);
+        assertFalse(cache.hasGenes());
+        assertTrue(cache.hasUncacheableGenes());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        GenomeCache.write(archiveFile, null, null, null, null);
+        assertNotNull(GenomeCache.read(archiveFile));
+
+        // The file is not held open or mapped once read
+        GenomeCache.clear();
+        assertFalse(GenomeCache.getCacheFile(archiveFile).exists());
+    }
+
+    private BasicFeature createGene(String chr, int i) {
+        int start = i * 10000;
+        BasicFeature feature = new BasicFeature(chr, start, start + 5000, i % 3 == 0 ? Strand.NEGATIVE : Strand.POSITIVE);
+        feature.setName("GENE" + i);
+        feature.setIdentifier("NM_" + i);
+        feature.setDescription(i % 4 == 0 ? null : "description " + i);
+        feature.setThickStart(start + 100);
+        feature.setThickEnd(start + 4900);
+        if (i % 5 == 0) {
+            feature.setColor(new Color(i, 100, 200));
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            attributes.put("gene_id", "G" + i);
+            feature.setAttributes(attributes);
+        }
+        for (int e = 0; e < 3; e++) {
+            Exon exon = new Exon(chr, start + e * 2000, start + e * 2000 + 1000, feature.getStrand());
+            exon.setCodingStart(Math.max(exon.getStart(), start + 100));
+            exon.setCodingEnd(Math.min(exon.getEnd(), start + 4900));
+            feature.addExon(exon);
+        }
+        return feature;
+    }
+
+    private static void assertFeatureEquals(BasicFeature expected, BasicFeature actual) {
+        assertEquals(expected.getChr(), actual.getChr());
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(expected.getStrand(), actual.getStrand());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getIdentifier(), actual.getIdentifier());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getColor(), actual.getColor());
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+        assertEquals(expected.getThickStart(), actual.getThickStart());
+        assertEquals(expected.getThickEnd(), actual.getThickEnd());
+        assertEquals(expected.getExonCount(), actual.getExonCount());
+        for (int i = 0; i < expected.getExonCount(); i++) {
+            Exon e1 = expected.getExons().get(i);
+            Exon e2 = actual.getExons().get(i);
+            assertEquals(e1.getStart(), e2.getStart());
+            assertEquals(e1.getEnd(), e2.getEnd());
+            assertEquals(e1.getCdStart(), e2.getCdStart());
+            assertEquals(e1.getCdEnd(), e2.getCdEnd());
+            assertEquals(e1.getReadingShift(), e2.getReadingShift());
+            assertEquals(e1.isUTR(), e2.isUTR());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature.tribble;
+
+import org.broad.igv.util.TestUtils;
+import org.broad.tribble.*;
+import org.broad.tribble.readers.LineReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class IGVTabixFeatureReaderTest {
+
+    String path = TestUtils.DATA_DIR + "vcf/example4-last-gsnap-2.vcf.gz";
+
+    @Test
+    public void testQueryMatchesTribble() throws Exception {
+
+        FeatureReader expectedReader = AbstractFeatureReader.getFeatureReader(path, new LocusCodec(), true);
+        IGVTabixFeatureReader reader = new IGVTabixFeatureReader(path, new LocusCodec());
+
+        assertEquals(new HashSet<String>(expectedReader.getSequenceNames()), new HashSet<String>(reader.getSequenceNames()));
+        assertNotNull(reader.getHeader());
+
+        int[][] ranges = {{1, 100000000}, {6321733, 6321733}, {6321700, 6321750}, {6321750, 6321800},
+                {6321823, 6322000}};
+        for (int[] range : ranges) {
+            Iterator<Feature> expected = expectedReader.query("1", range[0], range[1]);
+            Iterator<Feature> actual = reader.query("1", range[0], range[1]);
+            assertSameFeatures(expected, actual);
+        }
+
+        // Tribble fails on regions without index chunks
+        assertFalse(reader.query("1", 1, 10).hasNext());
+        assertFalse(reader.query("1", 6400000, 6500000).hasNext());
+
+        assertNull(reader.query("noSuchChr", 1, 100));
+
+        assertSameFeatures(expectedReader.iterator(), reader.iterator());
+    }
+
+    private void assertSameFeatures(Iterator<Feature> expected, Iterator<Feature> actual) {
+        while (expected.hasNext()) {
+            Feature f = expected.next();
+            assertTrue(actual.hasNext());
+            Feature g = actual.next();
+            assertEquals(f.getChr(), g.getChr());
+            assertEquals(f.getStart(), g.getStart());
+            assertEquals(f.getEnd(), g.getEnd());
+        }
+        assertFalse(actual.hasNext());
+    }
+
+    /**
+     * Decodes the position and reference allele of VCF lines.  The VCF codec rejects the INFO fields of this file.
+     */
+    static class LocusCodec extends AbstractFeatureCodec {
+
+        public Feature decodeLoc(String line) {
+            return decode(line);
+        }
+
+        public Feature decode(String line) {
+            if (line.startsWith("#")) {
+                return null;
+            }
+            String[] tokens = line.split("\t");
+            int start = Integer.parseInt(tokens[1]);
+            int end = start + tokens[3].length() - 1;
+            return new Locus(tokens[0], end, start);
+        }
+
+        public Class getFeatureType() {
+            return Locus.class;
+        }
+
+        public Object readHeader(LineReader reader) {
+            List<String> header = new ArrayList<String>();
+            try {
+                String line;
+                while ((line = reader.readLine()) != null && line.startsWith("#")) {
+                    header.add(line);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return header;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.hic;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertEquals;
+
+public class HeatmapRendererTest {
+
+    @Test
+    public void testScale() throws Exception {
+        BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_INT_ARGB_PRE);
+        int[] values = {0, 100, 200, 40, 20, 80, 0, 240};
+        for (int i = 0; i < values.length; i++) {
+            image.setRGB(i % 4, i / 4, new Color(values[i], 0, 0).getRGB());
+        }
+
+        // Each pixel is the average of a 2 x 2 box
+        BufferedImage scaled = HeatmapRenderer.scale(image, 2, 1);
+        assertEquals(new Color(50, 0, 0).getRGB(), scaled.getRGB(0, 0));
+        assertEquals(new Color(120, 0, 0).getRGB(), scaled.getRGB(1, 0));
+
+        // Enlarging copies the nearest pixel
+        scaled = HeatmapRenderer.scale(image, 8, 4);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 4; y++) {
+                assertEquals(image.getRGB(x / 2, y / 2), scaled.getRGB(x, y));
+            }
+        }
+
+        assertEquals(1, HeatmapRenderer.scale(image, 0, 0).getWidth());
+    }
+
+    @Test
+    public void testColorTables() throws Exception {
+        ObservedColorScale observed = new ObservedColorScale();
+        observed.setRange(2, 50);
+        observed.setBackground(Color.white);
+        HiCColorScale hicScale = new HiCColorScale();
+        hicScale.setMin(-0.5f);
+        hicScale.setMax(2);
+
+        for (float score = -3; score < 60; score += 0.25f) {
+            assertEquals(observed.getColor(score).getRGB(), observed.getRGB(score));
+            assertEquals(hicScale.getColor(score).getRGB(), hicScale.getRGB(score));
+        }
+        assertEquals(hicScale.getColor(Float.NaN).getRGB(), hicScale.getRGB(Float.NaN));
+
+        // The table follows the background
+        observed.setBackground(Color.lightGray);
+        assertEquals(observed.getColor(10).getRGB(), observed.getRGB(10));
+    }
+}
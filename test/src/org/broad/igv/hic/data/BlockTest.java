@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.hic.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BlockTest {
+
+    @Test
+    public void testLookup() throws Exception {
+        // Not sorted,  as written by older preprocessors
+        int[] binX = {5, 1, 2, 0, 7};
+        int[] binY = {3, 3, 1, 1, 9};
+        int[] counts = {10, 20, 30, 40, 50};
+        Block block = new Block(4, binX, binY, counts);
+
+        assertEquals(4, block.getNumber());
+        assertEquals(5, block.getContactCount());
+        int[] expectedX = {0, 2, 1, 5, 7};
+        int[] expectedY = {1, 1, 3, 3, 9};
+        int[] expectedCounts = {40, 30, 20, 10, 50};
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expectedX[i], block.getX(i));
+            assertEquals(expectedY[i], block.getY(i));
+            assertEquals(expectedCounts[i], block.getCounts(i));
+        }
+
+        assertEquals(0, block.getRowStart(0));
+        assertEquals(2, block.getRowStart(2));
+        assertEquals(2, block.getRowStart(3));
+        assertEquals(5, block.getRowStart(10));
+
+        assertEquals(10, block.getCounts(5, 3));
+        assertEquals(50, block.getCounts(7, 9));
+        assertEquals(0, block.getCounts(3, 5));
+        assertEquals(0, block.getCounts(8, 9));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.hic.tools;
+
+import org.broad.igv.hic.data.Chromosome;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DensityCalculationTest {
+
+    @Test
+    public void testMergeAndSmoothing() throws Exception {
+
+        List<Chromosome> chromosomes = new ArrayList<Chromosome>();
+        chromosomes.add(new Chromosome(0, "All", 430000));
+        chromosomes.add(new Chromosome(1, "chr1", 250000000));
+        chromosomes.add(new Chromosome(2, "chr2", 180000000));
+
+        int gridSize = 500000;
+        DensityCalculation all = new DensityCalculation(chromosomes, gridSize);
+        DensityCalculation part1 = new DensityCalculation(chromosomes, gridSize);
+        DensityCalculation part2 = new DensityCalculation(chromosomes, gridSize);
+
+        Random random = new Random(1);
+        long[] actual = new long[430430000 / gridSize + 1];
+        int[] chrCounts = new int[3];
+        for (int i = 0; i < 200000; i++) {
+            int chr = 1 + random.nextInt(2);
+            // Distances decay with distance from the diagonal
+            int dist = (int) Math.min(chromosomes.get(chr).getSize() - 1, Math.abs(random.nextGaussian()) * 5e7);
+            all.addDistance(chr, dist);
+            (i % 2 == 0 ? part1 : part2).addDistance(chr, dist);
+            actual[dist / gridSize]++;
+            chrCounts[chr]++;
+        }
+        part1.merge(part2);
+        all.computeDensity();
+        part1.computeDensity();
+        assertTrue(Arrays.equals(all.getDensityAvg(), part1.getDensityAvg()));
+        assertEquals(all.getNormalizationFactors(), part1.getNormalizationFactors());
+
+        // Compare with the smoothing of each bin computed directly
+        double[] expected = computeDensityAvg(chromosomes, gridSize, actual);
+        double[] densityAvg = all.getDensityAvg();
+        assertEquals(expected.length, densityAvg.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], densityAvg[i], 1e-9 * Math.abs(expected[i]));
+        }
+        assertTrue(all.getNormalizationFactors().get(1) > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeDifferentGrids() throws Exception {
+        List<Chromosome> chromosomes = Arrays.asList(new Chromosome(0, "All", 1000), new Chromosome(1, "chr1", 1000000));
+        new DensityCalculation(chromosomes, 1000).merge(new DensityCalculation(chromosomes, 2000));
+    }
+
+    private static double[] computeDensityAvg(List<Chromosome> chromosomes, int gridSize, long[] actual) {
+        int n = actual.length;
+        double[] possible = new double[n];
+        for (Chromosome chr : chromosomes) {
+            int nChrBins = chr.getSize() / gridSize;
+            for (int i = 0; i < nChrBins; i++) {
+                possible[i] += (nChrBins - i);
+            }
+        }
+        double[] density = new double[n];
+        double[] densityAvg = new double[n];
+        for (int i = 0; i < n; i++) {
+            density[i] = actual[i] / possible[i];
+            densityAvg[i] = density[i];
+        }
+        int[][] stages = {{15000000 / gridSize, (int) (5 * (2000000f / gridSize))},
+                {70000000 / gridSize, (int) (20 * (2000000f / gridSize))}};
+        for (int[] stage : stages) {
+            for (int i = stage[0]; i < n; i++) {
+                int kMin = i - stage[1];
+                int kMax = Math.min(i + stage[1], n);
+                double sum = 0;
+                for (int k = kMin; k < kMax; k++) {
+                    sum += density[k];
+                }
+                densityAvg[i] = sum / (kMax - kMin);
+            }
+        }
+        int start3 = 170000000 / gridSize;
+        for (int i = start3; i < n; i++) {
+            densityAvg[i] = densityAvg[start3];
+        }
+        return densityAvg;
+    }
+}
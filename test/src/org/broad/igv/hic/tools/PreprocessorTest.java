@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.hic.tools;
+
+import org.broad.igv.hic.HiCGlobals;
+import org.broad.igv.hic.data.*;
+import org.broad.igv.util.TestUtils;
+import org.broad.tribble.util.SeekableFileStream;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.PrintWriter;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PreprocessorTest {
+
+    List<Chromosome> chromosomes;
+    List<String> inputFiles;
+    List<int[]> pairs;
+
+    @Before
+    public void setUp() throws Exception {
+        chromosomes = new ArrayList<Chromosome>();
+        chromosomes.add(new Chromosome(0, "All", 6200));
+        chromosomes.add(new Chromosome(1, "chr1", 3000000));
+        chromosomes.add(new Chromosome(2, "chr2", 2000000));
+        chromosomes.add(new Chromosome(3, "chr3", 1200000));
+
+        Random random = new Random(1);
+        pairs = new ArrayList<int[]>();
+        inputFiles = new ArrayList<String>();
+        for (int f = 0; f < 2; f++) {
+            File file = new File(TestUtils.DATA_DIR, "out/pairs" + f + ".txt");
+            PrintWriter pw = new PrintWriter(file);
+            for (int i = 0; i < 20000; i++) {
+                int chr1 = 1 + random.nextInt(3);
+                // Mostly intra-chromosome,  near the diagonal
+                int chr2 = random.nextInt(4) == 0 ? 1 + random.nextInt(3) : chr1;
+                int pos1 = random.nextInt(chromosomes.get(chr1).getSize());
+                int pos2 = chr1 == chr2 ?
+                        Math.min(chromosomes.get(chr2).getSize() - 1, pos1 + random.nextInt(200000)) :
+                        random.nextInt(chromosomes.get(chr2).getSize());
+                pw.println("r" + i + " " + chromosomes.get(chr1).getName() + " " + pos1 + " r" + i + " " +
+                        chromosomes.get(chr2).getName() + " " + pos2);
+                pairs.add(new int[]{chr1, pos1, chr2, pos2});
+            }
+            // Pairs on unknown chromosomes are skipped
+            pw.println("x chrUn 100 x chr1 200");
+            pw.close();
+            inputFiles.add(file.getAbsolutePath());
+        }
+    }
+
+    @Test
+    public void testPreprocess() throws Exception {
+
+        // A small budget forces sorted runs to be written and merged
+        File spilled = new File(TestUtils.DATA_DIR, "out/spilled.hic");
+        Preprocessor preprocessor = new Preprocessor(spilled, chromosomes);
+        preprocessor.setNumberOfThreads(3);
+        preprocessor.setMemoryBudget(64000);
+        preprocessor.preprocess(inputFiles);
+
+        File inMemory = new File(TestUtils.DATA_DIR, "out/inmemory.hic");
+        preprocessor = new Preprocessor(inMemory, chromosomes);
+        preprocessor.preprocess(inputFiles);
+
+        assertTrue(Arrays.equals(readBytes(inMemory), readBytes(spilled)));
+
+        DatasetReader reader = new DatasetReader(new SeekableFileStream(spilled));
+        reader.read();
+
+        int nChrs = chromosomes.size();
+        for (int c1 = 0; c1 < nChrs; c1++) {
+            for (int c2 = c1; c2 < nChrs; c2++) {
+                Matrix matrix = reader.readMatrix(c1 + "_" + c2);
+                if ((c1 == 0) != (c2 == 0)) {
+                    assertNull(matrix);
+                    continue;
+                }
+                int nZooms = c1 == 0 ? 1 : HiCGlobals.zoomBinSizes.length;
+                for (int zoom = 0; zoom < nZooms; zoom++) {
+                    assertZoomData(c1, c2, matrix.getObservedMatrix(zoom));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+
+        File file = new File(TestUtils.DATA_DIR, "out/filtered.hic");
+        Preprocessor preprocessor = new Preprocessor(file, chromosomes);
+        preprocessor.setDiagonalsOnly(true);
+        preprocessor.setIncludedChromosomes(new HashSet<String>(Arrays.asList("chr2")));
+        preprocessor.setCountThreshold(2);
+        preprocessor.preprocess(inputFiles);
+
+        DatasetReader reader = new DatasetReader(new SeekableFileStream(file));
+        reader.read();
+        assertNotNull(reader.readMatrix("0_0"));
+        assertNotNull(reader.readMatrix("2_2"));
+        assertNull(reader.readMatrix("1_1"));
+        assertNull(reader.readMatrix("2_3"));
+
+        MatrixZoomData zd = reader.readMatrix("2_2").getObservedMatrix(0);
+        Map<Integer, Map<Long, Integer>> expected = computeExpected(2, 2, zd);
+        for (Map.Entry<Integer, Map<Long, Integer>> entry : expected.entrySet()) {
+            int nAboveThreshold = 0;
+            for (int counts : entry.getValue().values()) {
+                if (counts >= 2) nAboveThreshold++;
+            }
+            assertEquals(nAboveThreshold, zd.getBlock(entry.getKey()).getContactCount());
+        }
+    }
+
+    @Test
+    public void testDensities() throws Exception {
+
+        File file = new File(TestUtils.DATA_DIR, "out/densities.hic");
+        File densitiesFile = new File(file.getPath() + ".densities");
+        Preprocessor preprocessor = new Preprocessor(file, chromosomes);
+        preprocessor.setNumberOfThreads(2);
+        preprocessor.setDiagonalsOnly(true);
+        preprocessor.setLoadDensities(true);
+        preprocessor.preprocess(inputFiles);
+
+        // Distances are counted in the preprocessing pass,  compare with a separate pass over the files
+        Map<String, Integer> chromosomeOrdinals = new HashMap<String, Integer>();
+        for (Chromosome chr : chromosomes) {
+            chromosomeOrdinals.put(chr.getName(), chr.getIndex());
+        }
+        DensityCalculation[] expected = DensityUtil.calculate(inputFiles, chromosomes, chromosomeOrdinals);
+        assertEquals(HiCGlobals.zoomBinSizes.length, expected.length);
+
+        FileInputStream is = new FileInputStream(densitiesFile);
+        Map<Integer, DensityFunction> densities = DensityUtil.readDensities(is);
+        is.close();
+        assertEquals(expected.length, densities.size());
+        for (int z = 0; z < expected.length; z++) {
+            DensityFunction df = densities.get(z);
+            DensityFunction expectedDf = new DensityFunction(expected[z]);
+            for (int chr = 1; chr < chromosomes.size(); chr++) {
+                for (int bin = 0; bin < 20; bin++) {
+                    assertEquals(expectedDf.getDensity(chr, bin), df.getDensity(chr, bin), 1e-12);
+                }
+            }
+        }
+        densitiesFile.delete();
+    }
+
+    private void assertZoomData(int c1, int c2, MatrixZoomData zd) {
+
+        Map<Integer, Map<Long, Integer>> expected = computeExpected(c1, c2, zd);
+        int expectedSum = 0;
+        for (Map<Long, Integer> cells : expected.values()) {
+            for (Map.Entry<Long, Integer> cell : cells.entrySet()) {
+                long key = cell.getKey();
+                boolean offDiagonal = c1 == c2 && (int) (key >> 32) != (int) key;
+                expectedSum += offDiagonal ? 2 * cell.getValue() : cell.getValue();
+            }
+        }
+        assertEquals(expectedSum, zd.getSum());
+
+        for (Map.Entry<Integer, Map<Long, Integer>> entry : expected.entrySet()) {
+            Block block = zd.getBlock(entry.getKey());
+            assertNotNull(block);
+            Map<Long, Integer> actual = new HashMap<Long, Integer>();
+            for (int i = 0; i < block.getContactCount(); i++) {
+                if (i > 0) {
+                    // Sorted by (y, x)
+                    assertTrue(block.getY(i - 1) < block.getY(i) ||
+                            (block.getY(i - 1) == block.getY(i) && block.getX(i - 1) < block.getX(i)));
+                }
+                actual.put(((long) block.getX(i) << 32) | block.getY(i), block.getCounts(i));
+            }
+            assertEquals(entry.getValue(), actual);
+            for (Map.Entry<Long, Integer> cell : entry.getValue().entrySet()) {
+                int x = (int) (cell.getKey() >> 32);
+                int y = (int) (long) cell.getKey();
+                assertEquals((int) cell.getValue(), zd.getCounts(x, y));
+            }
+        }
+    }
+
+    /**
+     * Count the contacts of a matrix zoom level by block number and bin,  one pair at a time
+     */
+    private Map<Integer, Map<Long, Integer>> computeExpected(int c1, int c2, MatrixZoomData zd) {
+
+        Map<Integer, Map<Long, Integer>> blocks = new HashMap<Integer, Map<Long, Integer>>();
+        for (int[] pair : pairs) {
+            int chr1 = pair[0];
+            int pos1 = pair[1];
+            int chr2 = pair[2];
+            int pos2 = pair[3];
+            if (c1 == 0) {
+                pos1 = genomicPosition(chr1, pos1);
+                pos2 = genomicPosition(chr2, pos2);
+            } else if ((chr1 == c1 && chr2 == c2) || (chr1 == c2 && chr2 == c1)) {
+                if (chr2 > chr1) {
+                    int tmp = pos1;
+                    pos1 = pos2;
+                    pos2 = tmp;
+                }
+            } else {
+                continue;
+            }
+
+            int x = pos1 / zd.getBinSize();
+            int y = pos2 / zd.getBinSize();
+            if (c1 == c2) {
+                int tmp = Math.min(x, y);
+                y = Math.max(x, y);
+                x = tmp;
+            }
+            int blockBinCount = zd.getBlockBinCount();
+            int blockNumber = zd.getBlockColumnCount() * (y / blockBinCount) + x / blockBinCount;
+
+            Map<Long, Integer> cells = blocks.get(blockNumber);
+            if (cells == null) {
+                cells = new HashMap<Long, Integer>();
+                blocks.put(blockNumber, cells);
+            }
+            long key = ((long) x << 32) | y;
+            Integer counts = cells.get(key);
+            cells.put(key, counts == null ? 1 : counts + 1);
+        }
+        return blocks;
+    }
+
+    private int genomicPosition(int chr, int pos) {
+        long len = 0;
+        for (int i = 1; i < chr; i++) {
+            len += chromosomes.get(i).getSize();
+        }
+        return (int) ((len + pos) / 1000);
+    }
+
+    private static byte[] readBytes(File file) throws Exception {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            int n = 0;
+            while (n < bytes.length) {
+                n += fis.read(bytes, n, bytes.length - n);
+            }
+        } finally {
+            fis.close();
+        }
+        return bytes;
+    }
+}
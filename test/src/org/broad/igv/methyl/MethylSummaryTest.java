@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not
+ * responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL), Version 2.1 which is
+ * available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.methyl;
+
+import org.broad.igv.bbfile.BBFileReader;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MethylSummaryTest {
+
+    String testFile = TestUtils.DATA_DIR +
+            "/methylation/usc/jhu-usc.edu_UCEC.IlluminaHiSeq_WGBS.Level_3.1.0.0.hg18.SAMPLE.bb";
+
+    File summaryFile = new File(TestUtils.DATA_DIR, "out/methylsummary.tdf");
+
+    @After
+    public void tearDown() throws Exception {
+        summaryFile.delete();
+    }
+
+    @Test
+    public void testSummary() throws Exception {
+
+        int maxZoom = 12;
+        MethylSummaryWriter.write(testFile, summaryFile, null, maxZoom);
+        MethylSummarySource summarySource = new MethylSummarySource(TDFReader.getReader(summaryFile.getAbsolutePath()));
+        assertEquals(maxZoom, summarySource.getMaxZoom());
+
+        BBFileReader reader = new BBFileReader(testFile);
+        String chr = "chr11";
+        List<MethylScore> cpgs = new ArrayList<MethylScore>();
+        Iterator<MethylScore> iter = new BBMethylDataSource(reader, BBMethylDataSource.Type.USC, null).
+                query(chr, 0, Integer.MAX_VALUE);
+        while (iter.hasNext()) {
+            cpgs.add(iter.next());
+        }
+        assertTrue(cpgs.size() > 100);
+        int chrLength = cpgs.get(cpgs.size() - 1).getEnd();
+
+        for (int zoom = 0; zoom <= maxZoom; zoom++) {
+
+            // Summarize the CpGs one at a time,  by tile and bin
+            int tileWidth = chrLength / (1 << zoom) + 1;
+            double binWidth = ((double) tileWidth) / MethylSummaryWriter.BINS_PER_TILE;
+            SortedMap<Long, double[]> expected = new TreeMap<Long, double[]>();
+            for (MethylScore cpg : cpgs) {
+                int tile = cpg.getStart() / tileWidth;
+                int bin = (int) ((cpg.getStart() - tile * tileWidth) / binWidth);
+                long key = (long) tile * MethylSummaryWriter.BINS_PER_TILE + bin;
+                double[] sums = expected.get(key);
+                if (sums == null) {
+                    sums = new double[3];
+                    expected.put(key, sums);
+                }
+                sums[0] += cpg.getScore() * cpg.getCount();
+                sums[1] += cpg.getCount();
+                sums[2]++;
+            }
+
+            List<MethylScore> bins = summarySource.getSummaryScores(chr, 0, chrLength, zoom);
+            assertEquals(expected.size(), bins.size());
+            int i = 0;
+            for (Map.Entry<Long, double[]> entry : expected.entrySet()) {
+                MethylScore bin = bins.get(i++);
+                double[] sums = entry.getValue();
+                assertEquals(sums[0] / sums[1], bin.getScore(), 1e-3);
+                assertEquals((int) sums[1], bin.getCount());
+                assertEquals((int) sums[2], bin.getCpgCount());
+                assertTrue(bin.getEnd() > bin.getStart());
+            }
+        }
+
+        // Zoom levels beyond the last summarized level use the last level
+        assertEquals(summarySource.getSummaryScores(chr, 0, chrLength, maxZoom).size(),
+                summarySource.getSummaryScores(chr, 0, chrLength, maxZoom + 3).size());
+        assertTrue(summarySource.getSummaryScores("chr1", 0, chrLength, 0).isEmpty());
+    }
+
+    @Test
+    public void testOpen() throws Exception {
+        assertNull(MethylSummarySource.open(testFile));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import net.sf.samtools.*;
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.sam.Alignment;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares queries of the parallel BGZF reader with those of the Picard reader.
+ */
+public class BAMFileReaderTest extends AbstractHeadlessTest {
+
+    static File bamFile;
+    static File indexFile;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        AbstractHeadlessTest.setUpClass();
+
+        bamFile = File.createTempFile("parallelBGZF", ".bam");
+        indexFile = new File(bamFile.getAbsolutePath() + ".bai");
+
+        SAMFileHeader header = new SAMFileHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        header.addSequence(new SAMSequenceRecord("chr1", 10000000));
+        header.addSequence(new SAMSequenceRecord("chr2", 10000000));
+        header.addSequence(new SAMSequenceRecord("chr3", 10000000));
+
+        SAMFileWriterFactory factory = new SAMFileWriterFactory();
+        factory.setCreateIndex(true);
+        SAMFileWriter writer = factory.makeBAMWriter(header, true, bamFile);
+
+        // Reads of varying length,  some spanning large deletions,  some unmapped but placed with their mate
+        Random random = new Random(1);
+        byte[] bases = new byte[50];
+        Arrays.fill(bases, (byte) 'A');
+        byte[] qualities = new byte[50];
+        for (String chr : new String[]{"chr1", "chr3"}) {
+            int position = 1;
+            for (int i = 0; i < 50000; i++) {
+                position += random.nextInt(100);
+                SAMRecord record = new SAMRecord(header);
+                record.setReadName("read" + i);
+                record.setReferenceName(chr);
+                record.setAlignmentStart(position);
+                record.setReadBases(bases);
+                record.setBaseQualities(qualities);
+                if (i % 50 == 0) {
+                    record.setReadPairedFlag(true);
+                    record.setReadUnmappedFlag(true);
+                } else {
+                    record.setCigarString(i % 20 == 0 ? "25M" + random.nextInt(100000) + "N25M" : "50M");
+                    record.setMappingQuality(30);
+                }
+                writer.addAlignment(record);
+            }
+        }
+        writer.close();
+        assertTrue(indexFile.exists() || new File(bamFile.getAbsolutePath().replace(".bam", ".bai")).exists());
+        if (!indexFile.exists()) {
+            indexFile = new File(bamFile.getAbsolutePath().replace(".bam", ".bai"));
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        bamFile.delete();
+        indexFile.delete();
+        AbstractHeadlessTest.tearDownClass();
+    }
+
+    @Test
+    public void testQueryMatchesPicard() throws Exception {
+        BAMFileReader reader = new BAMFileReader(bamFile);
+        SAMFileReader picardReader = new SAMFileReader(bamFile);
+        picardReader.setValidationStringency(SAMFileReader.ValidationStringency.SILENT);
+
+        Random random = new Random(2);
+        for (int i = 0; i < 100; i++) {
+            String chr = random.nextBoolean() ? "chr1" : (random.nextInt(10) == 0 ? "chr2" : "chr3");
+            int start = random.nextInt(2600000);
+            int end = start + 1 + random.nextInt(i % 10 == 0 ? 500000 : 5000);
+            boolean contained = i % 3 == 0;
+
+            CloseableIterator<Alignment> iter = reader.query(chr, start, end, contained);
+            SAMRecordIterator expected = picardReader.query(chr, start + 1, end, contained);
+            while (expected.hasNext()) {
+                SAMRecord record = expected.next();
+                assertTrue(iter.hasNext());
+                Alignment alignment = iter.next();
+                assertEquals(record.getReadName(), alignment.getReadName());
+                assertEquals(record.getAlignmentStart() - 1, alignment.getStart());
+            }
+            assertFalse(iter.hasNext());
+            iter.close();
+            expected.close();
+        }
+        picardReader.close();
+        reader.close();
+    }
+
+    @Test
+    public void testIteratorMatchesPicard() throws Exception {
+        BAMFileReader reader = new BAMFileReader(bamFile);
+        SAMFileReader picardReader = new SAMFileReader(bamFile);
+        picardReader.setValidationStringency(SAMFileReader.ValidationStringency.SILENT);
+
+        CloseableIterator<Alignment> iter = reader.iterator();
+        SAMRecordIterator expected = picardReader.iterator();
+        int n = 0;
+        while (expected.hasNext()) {
+            SAMRecord record = expected.next();
+            Alignment alignment = iter.next();
+            assertEquals(record.getReadName(), alignment.getReadName());
+            assertEquals(record.getAlignmentStart() - 1, alignment.getStart());
+            assertEquals(record.getCigarString(), alignment.getCigarString());
+            n++;
+        }
+        assertFalse(iter.hasNext());
+        assertEquals(100000, n);
+        iter.close();
+        picardReader.close();
+        reader.close();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.session;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.renderer.Renderer;
+import org.broad.igv.track.AbstractTrack;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.Track;
+import org.broad.igv.util.ResourceLocator;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class IGVSessionReaderTest extends AbstractHeadlessTest {
+
+    /**
+     * Resources load concurrently on a bounded pool,  and their tracks are added in the order of the resources
+     */
+    @Test
+    public void testLoadResources() throws Exception {
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Random random = new Random(1);
+
+        IGVSessionReader reader = new IGVSessionReader(null) {
+            @Override
+            List<Track> loadTracks(ResourceLocator locator) {
+                int n = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), n));
+                }
+                try {
+                    int delay;
+                    synchronized (random) {
+                        delay = random.nextInt(20);
+                    }
+                    Thread.sleep(delay);
+                    if (locator.getPath().equals("file13")) {
+                        throw new RuntimeException("Cannot load");
+                    }
+                    String path = locator.getPath();
+                    return Arrays.<Track>asList(new TestTrack(path + "_a"), new TestTrack(path + "_b"));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+
+        int nResources = 4 * IGVSessionReader.MAX_CONCURRENT_LOADS;
+        List<ResourceLocator> locators = new ArrayList<ResourceLocator>();
+        for (int i = 0; i < nResources; i++) {
+            locators.add(new ResourceLocator("file" + i));
+        }
+
+        List<String> errors = reader.loadResources(locators, false);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("file13"));
+
+        assertTrue(maxRunning.get() > 1);
+        assertTrue(maxRunning.get() <= IGVSessionReader.MAX_CONCURRENT_LOADS);
+
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < nResources; i++) {
+            if (i != 13) {
+                expected.add("file" + i + "_a");
+                expected.add("file" + i + "_b");
+            }
+        }
+        List<String> ids = new ArrayList<String>();
+        for (Map.Entry<String, List<Track>> entry : reader.trackDictionary.entrySet()) {
+            assertEquals(1, entry.getValue().size());
+            assertEquals(entry.getKey(), entry.getValue().get(0).getId());
+            ids.add(entry.getKey());
+        }
+        assertEquals(expected, ids);
+    }
+
+    static class TestTrack extends AbstractTrack {
+
+        TestTrack(String id) {
+            super(id);
+        }
+
+        public void render(RenderContext context, Rectangle rect) {
+        }
+
+        public Renderer getRenderer() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.track.TribbleFeatureSource;
+import org.broad.igv.util.TestUtils;
+import org.broad.tribble.Feature;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AutoIndexerTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testConvertFeatureFile() throws Exception {
+        File inputFile = new File(TestUtils.DATA_DIR + "bed/Unigene.unsorted.bed");
+        File cacheFile = new File(TestUtils.DATA_DIR + "out/autoindex_Unigene.unsorted.bed");
+
+        AutoIndexer.convert(inputFile, cacheFile, genome);
+
+        assertTrue(cacheFile.exists());
+        assertTrue(new File(cacheFile.getAbsolutePath() + ".idx").exists());
+        assertFalse(new File(cacheFile.getParentFile(), "tmp_" + cacheFile.getName()).exists());
+
+        TribbleFeatureSource src = new TribbleFeatureSource(cacheFile.getAbsolutePath(), genome);
+        Iterator<Feature> iter = src.getFeatures("chr2", 178707000, 178712000);
+        int count = 0;
+        int lastStart = -1;
+        while (iter.hasNext()) {
+            Feature f = iter.next();
+            assertTrue(f.getStart() >= lastStart);
+            lastStart = f.getStart();
+            count++;
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testConvertWigFile() throws Exception {
+        File inputFile = new File(TestUtils.DATA_DIR + "wig/test.wig");
+        File cacheFile = new File(TestUtils.DATA_DIR + "out/autoindex_test.wig.tdf");
+
+        AutoIndexer.convert(inputFile, cacheFile, genome);
+
+        assertTrue(cacheFile.exists());
+        TDFReader reader = TDFReader.getReader(cacheFile.getAbsolutePath());
+        assertEquals(1, reader.getTrackNames().length);
+        assertTrue(reader.getChromosomeNames().contains("chr1"));
+    }
+
+    @Test
+    public void testCacheFileKey() throws Exception {
+        String path = TestUtils.DATA_DIR + "bed/intervalTest.bed.txt";
+        File cacheFile = AutoIndexer.getCacheFile(path);
+        assertTrue(cacheFile.getName().endsWith("_intervalTest.bed"));
+        assertEquals(cacheFile, AutoIndexer.getCacheFile(path));
+        assertFalse(cacheFile.equals(AutoIndexer.getCacheFile(TestUtils.DATA_DIR + "bed/intervalTest.bed")));
+
+        assertTrue(AutoIndexer.getCacheFile(TestUtils.DATA_DIR + "wig/test.wig").getName().endsWith(".wig.tdf"));
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+        String path = TestUtils.DATA_DIR + "wig/test.wig";
+        File cacheFile = AutoIndexer.getCacheFile(path);
+        try {
+            // The second submission waits for the first.  A later one runs again rather than reusing a finished task
+            for (int n : new int[]{2, 1}) {
+                final CountDownLatch latch = new CountDownLatch(n);
+                AutoIndexer.Callback callback = new AutoIndexer.Callback() {
+                    public void converted(File f) {
+                        latch.countDown();
+                    }
+
+                    public void failed(Exception e) {
+                    }
+                };
+                for (int i = 0; i < n; i++) {
+                    AutoIndexer.submit(path, genome, callback);
+                }
+                assertTrue(latch.await(30, TimeUnit.SECONDS));
+                long t0 = System.currentTimeMillis();
+                while (!AutoIndexer.pending.isEmpty() && System.currentTimeMillis() - t0 < 5000) {
+                    Thread.sleep(10);
+                }
+                assertTrue(AutoIndexer.pending.isEmpty());
+                assertTrue(cacheFile.exists());
+            }
+        } finally {
+            cacheFile.delete();
+        }
+    }
+
+    @Test
+    public void testIsCandidate() throws Exception {
+        // Small files are loaded directly
+        assertFalse(AutoIndexer.isCandidate(TestUtils.DATA_DIR + "bed/Unigene.unsorted.bed"));
+        assertFalse(AutoIndexer.isCandidate(TestUtils.DATA_DIR + "wig/test.wig"));
+    }
+}
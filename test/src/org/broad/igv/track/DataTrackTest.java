@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.Globals;
+import org.broad.igv.data.BasicScore;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.renderer.DataRenderer;
+import org.broad.igv.ui.panel.PickIndex;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.util.ResourceLocator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DataTrackTest extends AbstractHeadlessTest {
+
+    boolean headless;
+
+    @Before
+    public void setUp() throws Exception {
+        // Data is loaded in the background only when painting on the event dispatch thread of a GUI session
+        headless = Globals.isHeadless();
+        Globals.setHeadless(false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Globals.setHeadless(headless);
+    }
+
+    /**
+     * Render must not wait for data.  Requests made while a load is in progress are coalesced to the latest, and
+     * only the track's rectangle is repainted when data arrives.
+     */
+    @Test
+    public void testLoadInBackground() throws Exception {
+
+        final SlowTrack track = new SlowTrack();
+        final TestPanel panel = new TestPanel();
+        final Rectangle rect = new Rectangle(0, 100, 500, 40);
+
+        render(track, panel, rect, 0, 1000);
+        assertTrue(track.loadStarted.await(10, TimeUnit.SECONDS));
+        assertEquals(0, track.rendered.size());
+
+        // Requests while the first load blocks.  The first is covered by the load in progress.
+        render(track, panel, rect, 100, 900);
+        render(track, panel, rect, 100000, 101000);
+        render(track, panel, rect, 200000, 201000);
+        render(track, panel, rect, 300000, 301000);
+
+        track.release.countDown();
+        panel.awaitRepaints(2);
+        Thread.sleep(100);
+
+        // Intervals are expanded by 50% on each side
+        assertEquals(Arrays.asList(0, 299500), track.loadedStarts);
+        assertEquals(2, panel.repaints.get());
+        assertEquals(rect, panel.repaintRect);
+
+        // The last interval is cached,  and earlier data is drawn while a new one loads
+        render(track, panel, rect, 300000, 301000);
+        assertEquals(2, track.loadedStarts.size());
+        assertEquals(1, track.rendered.size());
+        assertEquals(299500, track.rendered.get(0).get(0).getStart());
+
+        render(track, panel, rect, 400000, 401000);
+        panel.awaitRepaints(3);
+        assertEquals(2, track.rendered.size());
+        assertEquals(299500, track.rendered.get(1).get(0).getStart());
+        assertEquals(3, track.loadedStarts.size());
+    }
+
+    private void render(final DataTrack track, final JComponent panel, final Rectangle rect,
+                        final int start, final int end) throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                track.render(new TestContext(panel, start, end), rect);
+            }
+        });
+    }
+
+    static class SlowTrack extends DataTrack {
+
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> loadedStarts = Collections.synchronizedList(new ArrayList<Integer>());
+        List<List<LocusScore>> rendered = new ArrayList<List<LocusScore>>();
+
+        SlowTrack() {
+            super(new ResourceLocator("slow"), "slow", "slow");
+            setAutoscale(false);
+        }
+
+        @Override
+        public List<LocusScore> getSummaryScores(String chr, int startLocation, int endLocation, int zoom) {
+            int start = startLocation;
+            loadedStarts.add(start);
+            loadStarted.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<LocusScore> scores = new ArrayList<LocusScore>();
+            scores.add(new BasicScore(start, start + 1, 1));
+            return scores;
+        }
+
+        @Override
+        public DataRenderer getRenderer() {
+            return new DataRenderer() {
+                protected void renderScores(Track track, List<LocusScore> scores, RenderContext context, Rectangle arect) {
+                    rendered.add(scores);
+                }
+
+                public void renderAxis(Track track, RenderContext context, Rectangle rect) {
+                }
+            };
+        }
+    }
+
+    static class TestPanel extends JPanel {
+
+        AtomicInteger repaints = new AtomicInteger();
+        Rectangle repaintRect;
+
+        @Override
+        public void repaint(Rectangle r) {
+            synchronized (this) {
+                repaintRect = r;
+                repaints.incrementAndGet();
+                notifyAll();
+            }
+        }
+
+        synchronized void awaitRepaints(int n) throws InterruptedException {
+            long timeout = System.currentTimeMillis() + 10000;
+            while (repaints.get() < n && System.currentTimeMillis() < timeout) {
+                wait(1000);
+            }
+            assertTrue(repaints.get() >= n);
+        }
+    }
+
+    static class TestContext implements RenderContext {
+
+        static ReferenceFrame frame = new ReferenceFrame("test");
+
+        JComponent panel;
+        int start;
+        int end;
+        Graphics2D graphics = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB).createGraphics();
+
+        TestContext(JComponent panel, int start, int end) {
+            this.panel = panel;
+            this.start = start;
+            this.end = end;
+        }
+
+        public Graphics2D getGraphic2DForColor(Color color) {
+            return graphics;
+        }
+
+        public Color getBackgroundColor() {
+            return Color.white;
+        }
+
+        public String getChr() {
+            return "chr1";
+        }
+
+        public double getOrigin() {
+            return start;
+        }
+
+        public double getEndLocation() {
+            return end;
+        }
+
+        public double getScale() {
+            return 1;
+        }
+
+        public Rectangle getVisibleRect() {
+            return null;
+        }
+
+        public JComponent getPanel() {
+            return panel;
+        }
+
+        public Graphics2D getGraphics() {
+            return graphics;
+        }
+
+        public int getZoom() {
+            return 10;
+        }
+
+        public ReferenceFrame getReferenceFrame() {
+            return frame;
+        }
+
+        public int bpToScreenPixel(double location) {
+            return (int) (location - start);
+        }
+
+        public PickIndex getPickIndex() {
+            return null;
+        }
+
+        public void dispose() {
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.data.BasicScore;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.feature.LocusScore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameDataCacheTest {
+
+    @Test
+    public void testCluster() throws Exception {
+        List<Locus> frames = Arrays.asList(
+                new Locus("chr1", 1000, 2000),
+                new Locus("chr1", 2500, 3000),     // gap of 500,  merged
+                new Locus("chr1", 10000, 11000),   // gap of 7000,  separate
+                new Locus("chr1", 10500, 12000),   // overlapping
+                new Locus("chr2", 3000, 9000));
+
+        assertLocus(1000, 3000, FrameDataCache.getCluster("chr1", 1000, 2000, frames));
+        assertLocus(1000, 3000, FrameDataCache.getCluster("chr1", 2500, 3000, frames));
+        assertLocus(10000, 12000, FrameDataCache.getCluster("chr1", 10500, 12000, frames));
+        assertLocus(50000, 51000, FrameDataCache.getCluster("chr1", 50000, 51000, frames));
+        assertLocus(3000, 9000, FrameDataCache.getCluster("chr2", 3000, 9000, frames));
+    }
+
+    @Test
+    public void testSharedLoads() throws Exception {
+
+        CountingSource source = new CountingSource();
+        FrameDataCache cache = new FrameDataCache();
+
+        // First gene list
+        List<Locus> frames = Arrays.asList(
+                new Locus("chr1", 1000, 2000),
+                new Locus("chr1", 1800, 2600),
+                new Locus("chr1", 50000, 51000));
+        for (Locus frame : frames) {
+            List<LocusScore> scores = cache.getScores("chr1", frame.getStart(), frame.getEnd(), 10, frames, source);
+            assertScores(frame.getStart(), frame.getEnd(), scores);
+        }
+        assertEquals(2, source.loads.size());
+        assertLocus(1000, 2600, source.loads.get(0));
+
+        // A second gene list with loci inside those already loaded costs no I/O
+        List<Locus> frames2 = Arrays.asList(
+                new Locus("chr1", 1200, 1500),
+                new Locus("chr1", 50100, 50400));
+        for (Locus frame : frames2) {
+            List<LocusScore> scores = cache.getScores("chr1", frame.getStart(), frame.getEnd(), 10, frames2, source);
+            assertScores(frame.getStart(), frame.getEnd(), scores);
+        }
+        assertEquals(2, source.loads.size());
+
+        // Another zoom level is loaded separately
+        cache.getScores("chr1", 1200, 1500, 11, frames2, source);
+        assertEquals(3, source.loads.size());
+
+        cache.clear();
+        cache.getScores("chr1", 1200, 1500, 10, frames2, source);
+        assertEquals(4, source.loads.size());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        CountingSource source = new CountingSource();
+        FrameDataCache cache = new FrameDataCache(250);
+        List<Locus> frames = new ArrayList<Locus>();
+        cache.getScores("chr1", 0, 1000, 10, frames, source);
+        cache.getScores("chr1", 10000, 11000, 10, frames, source);
+        cache.getScores("chr1", 20000, 21000, 10, frames, source);
+        assertEquals(3, source.loads.size());
+
+        // The least recently used interval was evicted
+        cache.getScores("chr1", 20000, 21000, 10, frames, source);
+        cache.getScores("chr1", 10000, 11000, 10, frames, source);
+        assertEquals(3, source.loads.size());
+        cache.getScores("chr1", 0, 1000, 10, frames, source);
+        assertEquals(4, source.loads.size());
+    }
+
+    private static void assertLocus(int start, int end, Locus locus) {
+        assertEquals(start, locus.getStart());
+        assertEquals(end, locus.getEnd());
+    }
+
+    private static void assertScores(int start, int end, List<LocusScore> scores) {
+        assertFalse(scores.isEmpty());
+        assertTrue(scores.get(0).getStart() <= start && scores.get(0).getEnd() >= start);
+        int expectedStart = scores.get(0).getStart();
+        for (LocusScore score : scores) {
+            assertEquals(expectedStart, score.getStart());
+            expectedStart += 10;
+        }
+        assertTrue(expectedStart > end);
+    }
+
+    /**
+     * Returns a score every 10 bp,  and records the intervals loaded
+     */
+    static class CountingSource implements FrameDataCache.ScoreSource {
+
+        List<Locus> loads = new ArrayList<Locus>();
+
+        public List<LocusScore> getSummaryScores(String chr, int start, int end, int zoom) {
+            loads.add(new Locus(chr, start, end));
+            List<LocusScore> scores = new ArrayList<LocusScore>();
+            for (int s = start / 10 * 10; s <= end; s += 10) {
+                scores.add(new BasicScore(s, s + 10, s));
+            }
+            return scores;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.renderer.Renderer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RegionScorerTest extends AbstractHeadlessTest {
+
+    @Before
+    public void setUp() throws Exception {
+        RegionScorer.clearCache();
+    }
+
+    @Test
+    public void testSortComputesEachScoreOnce() throws Exception {
+        Random random = new Random(1);
+        List<Track> tracks = new ArrayList<Track>();
+        for (int i = 0; i < 1000; i++) {
+            // Few distinct values,  so ties must keep their order
+            tracks.add(new ScoredTrack("track" + i, random.nextInt(20)));
+        }
+        tracks.add(500, null);
+        tracks.add(new ScoredTrack("nan", Float.NaN));
+        List<Track> original = new ArrayList<Track>(tracks);
+
+        RegionScorer.sortByRegionScore(tracks, "chr1", 0, 100, 0, RegionScoreType.SCORE, "frame");
+
+        assertEquals(original.size(), tracks.size());
+        assertNull(tracks.get(tracks.size() - 1));
+        assertEquals("nan", tracks.get(tracks.size() - 2).getName());
+        for (int i = 1; i < tracks.size() - 2; i++) {
+            ScoredTrack t1 = (ScoredTrack) tracks.get(i - 1);
+            ScoredTrack t2 = (ScoredTrack) tracks.get(i);
+            assertTrue(t1.score >= t2.score);
+            if (t1.score == t2.score) {
+                assertTrue(original.indexOf(t1) < original.indexOf(t2));
+            }
+        }
+        for (Track t : tracks) {
+            if (t != null) {
+                assertEquals(1, ((ScoredTrack) t).count.get());
+            }
+        }
+
+        // Scores of the same region are cached
+        RegionScorer.sortByRegionScore(tracks, "chr1", 0, 100, 0, RegionScoreType.SCORE, "frame");
+        RegionScorer.getScores(tracks, "chr1", 0, 100, 0, RegionScoreType.SCORE, "frame");
+        for (Track t : tracks) {
+            if (t != null) {
+                assertEquals(1, ((ScoredTrack) t).count.get());
+            }
+        }
+
+        // A different region is not
+        RegionScorer.getScores(tracks, "chr1", 0, 200, 0, RegionScoreType.SCORE, "frame");
+        assertEquals(2, ((ScoredTrack) tracks.get(0)).count.get());
+    }
+
+    @Test
+    public void testRemoveTrack() throws Exception {
+        List<Track> tracks = new ArrayList<Track>();
+        tracks.add(new ScoredTrack("a", 1));
+        tracks.add(new ScoredTrack("b", 2));
+        RegionScorer.getScores(tracks, "chr1", 0, 100, 0, RegionScoreType.SCORE, "frame");
+
+        RegionScorer.removeTrack(tracks.get(0));
+        RegionScorer.getScores(tracks, "chr1", 0, 100, 0, RegionScoreType.SCORE, "frame");
+        assertEquals(2, ((ScoredTrack) tracks.get(0)).count.get());
+        assertEquals(1, ((ScoredTrack) tracks.get(1)).count.get());
+
+        // The window function is part of the key
+        tracks.get(1).setWindowFunction(WindowFunction.max);
+        RegionScorer.getScores(tracks, "chr1", 0, 100, 0, RegionScoreType.SCORE, "frame");
+        assertEquals(2, ((ScoredTrack) tracks.get(1)).count.get());
+    }
+
+    @Test
+    public void testScoreError() throws Exception {
+        List<Track> tracks = new ArrayList<Track>();
+        tracks.add(new ScoredTrack("a", 1));
+        tracks.add(new ScoredTrack("b", 2) {
+            @Override
+            public float getRegionScore(String chr, int start, int end, int zoom, RegionScoreType type, String frameName) {
+                throw new RuntimeException("Expected error");
+            }
+        });
+        float[] scores = RegionScorer.getScores(tracks, "chr1", 0, 100, 0, RegionScoreType.SCORE, "frame");
+        assertEquals(1, scores[0], 0);
+        assertEquals(-Float.MAX_VALUE, scores[1], 0);
+    }
+
+    static class ScoredTrack extends AbstractTrack {
+
+        float score;
+        AtomicInteger count = new AtomicInteger();
+        WindowFunction windowFunction = WindowFunction.mean;
+
+        ScoredTrack(String name, float score) {
+            super(name);
+            this.score = score;
+        }
+
+        @Override
+        public float getRegionScore(String chr, int start, int end, int zoom, RegionScoreType type, String frameName) {
+            count.incrementAndGet();
+            return score;
+        }
+
+        @Override
+        public void setWindowFunction(WindowFunction windowFunction) {
+            this.windowFunction = windowFunction;
+        }
+
+        @Override
+        public WindowFunction getWindowFunction() {
+            return windowFunction;
+        }
+
+        public Renderer getRenderer() {
+            return null;
+        }
+
+        public void render(RenderContext context, Rectangle rect) {
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.broad.igv.renderer.Renderer;
+import org.broad.igv.track.AbstractTrack;
+import org.broad.igv.track.RenderContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PickIndexTest {
+
+    ReferenceFrame frame;
+    TestTrack track1;
+    TestTrack track2;
+
+    @Before
+    public void setUp() throws Exception {
+        frame = new ReferenceFrame("test");
+        frame.setBounds(0, 600);
+        frame.setInterval("chr1", 1000, 7000);
+        track1 = new TestTrack("track1");
+        track2 = new TestTrack("track2");
+    }
+
+    @Test
+    public void testGetItems() throws Exception {
+
+        PickIndex index = new PickIndex(frame, new Rectangle(0, 100, 600, 400));
+        index.add(track1, 10, 110, 50, 10, "a");
+        index.add(track1, 40, 110, 100, 10, "b");
+        index.add(track1, 40, 120, 100, 10, "c");
+        index.add(track2, 0, 110, 600, 10, "d");
+        index.setIndexed(track1);
+
+        assertEquals(Arrays.asList((Object) "a"), index.getItems(track1, 10, 110));
+        assertEquals(Arrays.asList((Object) "a", "b"), index.getItems(track1, 45, 119));
+        assertEquals(Arrays.asList((Object) "b"), index.getItems(track1, 60, 115));
+        assertEquals(Arrays.asList((Object) "c"), index.getItems(track1, 60, 120));
+        assertEquals(Collections.emptyList(), index.getItems(track1, 140, 115));
+        assertEquals(Arrays.asList((Object) "d"), index.getItems(track2, 140, 115));
+
+        assertTrue(index.isIndexed(track1, 45, 115));
+        assertFalse(index.isIndexed(track2, 45, 115));
+
+        // Outside the painted rectangle
+        assertFalse(index.isIndexed(track1, 45, 50));
+        assertEquals(Collections.emptyList(), index.getItems(track1, 45, 50));
+    }
+
+    @Test
+    public void testClipping() throws Exception {
+
+        PickIndex index = new PickIndex(frame, new Rectangle(0, 100, 600, 400));
+
+        // Items extending past the painted rectangle,  or entirely outside it
+        index.add(track1, -1000, 90, Integer.MAX_VALUE, 20, "a");
+        index.add(track1, 700, 110, 10, 10, "b");
+        index.add(track1, 10, 0, 10, 10, "c");
+
+        assertEquals(Arrays.asList((Object) "a"), index.getItems(track1, 599, 100));
+        assertEquals(Arrays.asList((Object) "a"), index.getItems(track1, 0, 109));
+        assertEquals(Collections.emptyList(), index.getItems(track1, 0, 110));
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+
+        PickIndex index = new PickIndex(frame, new Rectangle(0, 0, 600, 400));
+        index.setIndexed(track1);
+        int cells = (600 / PickIndex.CELL_SIZE) * (400 / PickIndex.CELL_SIZE);
+        for (int i = 0; i * cells <= PickIndex.MAX_CELL_ENTRIES; i++) {
+            index.add(track1, 0, 0, 600, 400, i);
+        }
+
+        // Searching the data is required once the index is abandoned
+        assertFalse(index.isIndexed(track1, 10, 10));
+    }
+
+    @Test
+    public void testIsCurrent() throws Exception {
+
+        PickIndex index = new PickIndex(frame, new Rectangle(0, 0, 600, 400));
+        assertTrue(index.isCurrent(frame));
+
+        frame.setInterval("chr1", 2000, 8000);
+        assertFalse(index.isCurrent(frame));
+
+        frame.setInterval("chr1", 1000, 13000);
+        assertFalse(index.isCurrent(frame));
+
+        frame.setInterval("chr2", 1000, 7000);
+        assertFalse(index.isCurrent(frame));
+
+        frame.setInterval("chr1", 1000, 7000);
+        assertTrue(index.isCurrent(frame));
+    }
+
+    static class TestTrack extends AbstractTrack {
+
+        TestTrack(String id) {
+            super(id);
+        }
+
+        public void render(RenderContext context, Rectangle rect) {
+        }
+
+        public Renderer getRenderer() {
+            return null;
+        }
+    }
+}
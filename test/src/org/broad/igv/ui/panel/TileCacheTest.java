@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.renderer.Renderer;
+import org.broad.igv.track.AbstractTrack;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.TileRenderable;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class TileCacheTest extends AbstractHeadlessTest {
+
+    static final int WIDTH = 600;
+    static final int HEIGHT = 20;
+    static final double SCALE = 10;
+
+    TiledTrack track;
+    TestPanel panel;
+    Rectangle rect;
+
+    @Before
+    public void setUp() throws Exception {
+        TileCache.clear();
+        track = new TiledTrack();
+        panel = new TestPanel();
+        rect = new Rectangle(0, 30, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void testPan() throws Exception {
+
+        // Nothing cached,  all tiles are rendered in the background
+        BufferedImage image = draw(0);
+        panel.awaitRepaints(3);
+        assertEquals(Arrays.asList(0.0, 2560.0, 5120.0), track.sortedOrigins());
+        assertEquals(0, image.getRGB(10, rect.y));
+
+        image = draw(0);
+        assertEquals(3, track.origins.size());
+        assertEquals(Color.black.getRGB(), image.getRGB(0, rect.y));
+        assertEquals(Color.black.getRGB(), image.getRGB(256, rect.y + HEIGHT - 1));
+        assertEquals(track.tileColor(1).getRGB(), image.getRGB(257, rect.y));
+        assertEquals(0, image.getRGB(257, rect.y - 1));
+
+        // Pan by 100 pixels,  the cached tiles cover the view
+        image = draw(1000);
+        assertEquals(3, track.origins.size());
+        assertEquals(Color.black.getRGB(), image.getRGB(156, rect.y));
+        assertEquals(track.tileColor(0).getRGB(), image.getRGB(155, rect.y));
+
+        // Pan by 300 pixels,  a new tile is exposed
+        draw(3000);
+        panel.awaitRepaints(4);
+        assertEquals(Arrays.asList(0.0, 2560.0, 5120.0, 7680.0), track.sortedOrigins());
+        image = draw(3000);
+        assertEquals(track.tileColor(3).getRGB(), image.getRGB(WIDTH - 1, rect.y));
+
+        // A change of state invalidates the tiles
+        track.state = "changed";
+        draw(3000);
+        panel.awaitRepaints(7);
+        assertEquals(7, track.origins.size());
+    }
+
+    @Test
+    public void testNotTiled() throws Exception {
+        track.state = null;
+        BufferedImage image = new BufferedImage(WIDTH, 100, BufferedImage.TYPE_INT_ARGB);
+        assertFalse(TileCache.draw(track, new TestContext(panel, image.createGraphics(), 0), rect));
+    }
+
+    @Test
+    public void testRemoveTrack() throws Exception {
+        draw(0);
+        panel.awaitRepaints(3);
+        assertEquals(3L * 4 * TileCache.TILE_WIDTH * HEIGHT, TileCache.getCacheBytes());
+
+        TileCache.removeTrack(track);
+        assertEquals(0, TileCache.getCacheBytes());
+        draw(0);
+        panel.awaitRepaints(6);
+        assertEquals(6, track.origins.size());
+    }
+
+    @Test
+    public void testRemoveTrackWhileRendering() throws Exception {
+        track.gate = new CountDownLatch(1);
+        draw(0);
+        TileCache.removeTrack(track);
+        track.gate.countDown();
+        panel.awaitRepaints(3);
+        assertEquals(0, TileCache.getCacheBytes());
+    }
+
+    @Test
+    public void testMaxBytes() throws Exception {
+        int height = 1000;
+        long tileBytes = 4L * TileCache.TILE_WIDTH * height;
+        int nTiles = (int) (TileCache.MAX_BYTES / tileBytes) + 10;
+        BufferedImage image = new BufferedImage(TileCache.TILE_WIDTH, height, BufferedImage.TYPE_INT_ARGB);
+        for (int i = 0; i < nTiles; i++) {
+            TileCache.put(new TileCache.TileKey(track, "state", "chr1", SCALE, i, height), image);
+        }
+        assertTrue(TileCache.getCacheBytes() <= TileCache.MAX_BYTES);
+        assertTrue(TileCache.getCacheBytes() > TileCache.MAX_BYTES - tileBytes);
+    }
+
+    private BufferedImage draw(final double origin) throws Exception {
+        final BufferedImage image = new BufferedImage(WIDTH, 100, BufferedImage.TYPE_INT_ARGB);
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                RenderContext context = new TestContext(panel, image.createGraphics(), origin);
+                assertTrue(TileCache.draw(track, context, rect));
+            }
+        });
+        return image;
+    }
+
+    static class TiledTrack extends AbstractTrack implements TileRenderable {
+
+        Object state = "state";
+        List<Double> origins = Collections.synchronizedList(new ArrayList<Double>());
+
+        // If set,  rendering waits for it
+        volatile CountDownLatch gate;
+
+        TiledTrack() {
+            super("tiled");
+        }
+
+        public Object getTileStateKey(ReferenceFrame frame) {
+            return state;
+        }
+
+        /**
+         * Fill the tile with a color for its index,  with a black line at its left edge
+         */
+        public void renderTile(RenderContext context, Rectangle rect) {
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            origins.add(context.getOrigin());
+            int tile = (int) (context.getOrigin() / (context.getScale() * TileCache.TILE_WIDTH));
+            context.getGraphic2DForColor(tileColor(tile)).fill(rect);
+            context.getGraphic2DForColor(Color.black).drawLine(rect.x, rect.y, rect.x, rect.y + rect.height);
+        }
+
+        Color tileColor(int tile) {
+            return new Color(50 * tile, 100, 100);
+        }
+
+        List<Double> sortedOrigins() {
+            List<Double> sorted = new ArrayList<Double>(origins);
+            Collections.sort(sorted);
+            return sorted;
+        }
+
+        public void render(RenderContext context, Rectangle rect) {
+            fail("Tiled tracks are not rendered directly");
+        }
+
+        public Renderer getRenderer() {
+            return null;
+        }
+    }
+
+    static class TestPanel extends JPanel {
+
+        int repaints;
+
+        @Override
+        public synchronized void repaint(Rectangle r) {
+            repaints++;
+            notifyAll();
+        }
+
+        synchronized void awaitRepaints(int n) throws InterruptedException {
+            long timeout = System.currentTimeMillis() + 10000;
+            while (repaints < n && System.currentTimeMillis() < timeout) {
+                wait(1000);
+            }
+            assertEquals(n, repaints);
+        }
+    }
+
+    static class TestContext implements RenderContext {
+
+        static ReferenceFrame frame = new ReferenceFrame("test");
+
+        JComponent panel;
+        Graphics2D graphics;
+        double origin;
+
+        TestContext(JComponent panel, Graphics2D graphics, double origin) {
+            this.panel = panel;
+            this.graphics = graphics;
+            this.origin = origin;
+        }
+
+        public Graphics2D getGraphic2DForColor(Color color) {
+            Graphics2D g = (Graphics2D) graphics.create();
+            g.setColor(color);
+            return g;
+        }
+
+        public Color getBackgroundColor() {
+            return Color.white;
+        }
+
+        public String getChr() {
+            return "chr1";
+        }
+
+        public double getOrigin() {
+            return origin;
+        }
+
+        public double getEndLocation() {
+            return origin + WIDTH * SCALE;
+        }
+
+        public double getScale() {
+            return SCALE;
+        }
+
+        public Rectangle getVisibleRect() {
+            return null;
+        }
+
+        public JComponent getPanel() {
+            return panel;
+        }
+
+        public Graphics2D getGraphics() {
+            return graphics;
+        }
+
+        public int getZoom() {
+            return 5;
+        }
+
+        public ReferenceFrame getReferenceFrame() {
+            return frame;
+        }
+
+        public int bpToScreenPixel(double location) {
+            return (int) ((location - origin) / SCALE);
+        }
+
+        public PickIndex getPickIndex() {
+            return null;
+        }
+
+        public void dispose() {
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+import org.broad.igv.Globals;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FieldTokenizerTest {
+
+    static String[] lines = {
+            "chr1\t100\t200\tname\t0.5\t+",
+            "chr1 100  200   name",
+            "chr1\t\t200\t",
+            "\tchr1\t100",
+            "chr1 \t100",
+            "chr1\t100\t\t\t",
+            "\t\t",
+            "",
+            "noDelimiter"
+    };
+
+    @Test
+    public void testTokenizeMatchesPattern() throws Exception {
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        FieldTokenizer tabTokenizer = new FieldTokenizer(false, true);
+        for (String line : lines) {
+            tokenizer.tokenize(line);
+            assertArrayEquals(line, Globals.singleTabMultiSpacePattern.split(line), tokenizer.toArray());
+
+            tabTokenizer.tokenize(line);
+            assertArrayEquals(line, Globals.tabPattern.split(line, -1), tabTokenizer.toArray());
+        }
+    }
+
+    @Test
+    public void testGetInt() throws Exception {
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        tokenizer.tokenize("0\t-12\t+7\t2147483647\t-2147483648\t123456789\t42\r");
+        assertEquals(0, tokenizer.getInt(0));
+        assertEquals(-12, tokenizer.getInt(1));
+        assertEquals(7, tokenizer.getInt(2));
+        assertEquals(Integer.MAX_VALUE, tokenizer.getInt(3));
+        assertEquals(Integer.MIN_VALUE, tokenizer.getInt(4));
+        assertEquals(123456789, tokenizer.getInt(5));
+        assertEquals(42, tokenizer.getInt(6));
+
+        String[] invalid = {"abc", "1.5", "-", "2147483648", "1e6"};
+        for (String s : invalid) {
+            tokenizer.tokenize(s);
+            try {
+                tokenizer.getInt(0);
+                fail("Expected NumberFormatException for " + s);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testGetFloat() throws Exception {
+        String[] values = {"0", "-0", "0.0", "1", "19.0", "-3.25", ".5", "5.", "+1.5", "1e5", "1.5E-3", "-2.5e+2",
+                "0.1", "0.3", "3.4028235E38", "1.4E-45", "123456.7", "0.123456789", "16777217", "NaN", "-Infinity",
+                "1.5f", "0.000001", "99999999", "1e-10", "1e10", "7.000000001"};
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        for (String s : values) {
+            tokenizer.tokenize(s);
+            assertEquals(s, Float.floatToIntBits(Float.parseFloat(s)), Float.floatToIntBits(tokenizer.getFloat(0)));
+        }
+
+        // Random decimal values must parse exactly as Float.parseFloat does
+        Random random = new Random(1234);
+        for (int i = 0; i < 100000; i++) {
+            int digits = 1 + random.nextInt(8);
+            long mantissa = (long) (random.nextDouble() * Math.pow(10, digits));
+            int scale = random.nextInt(digits + 1);
+            String s = String.valueOf(mantissa);
+            if (scale > 0 && scale < s.length()) {
+                s = s.substring(0, s.length() - scale) + "." + s.substring(s.length() - scale);
+            }
+            if (random.nextBoolean()) {
+                s = "-" + s;
+            }
+            tokenizer.tokenize(s);
+            assertEquals(s, Float.floatToIntBits(Float.parseFloat(s)), Float.floatToIntBits(tokenizer.getFloat(0)));
+        }
+    }
+
+    @Test
+    public void testGetFloatDefault() throws Exception {
+        FieldTokenizer tokenizer = new FieldTokenizer(false, true);
+        tokenizer.tokenize("1.5\tNA\t\t");
+        assertEquals(1.5f, tokenizer.getFloat(0, Float.NaN), 0);
+        assertTrue(Float.isNaN(tokenizer.getFloat(1, Float.NaN)));
+        assertTrue(Float.isNaN(tokenizer.getFloat(2, Float.NaN)));
+        assertTrue(Float.isNaN(tokenizer.getFloat(10, Float.NaN)));
+    }
+
+    @Test
+    public void testEquals() throws Exception {
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        tokenizer.tokenize("chr1\t100");
+        assertTrue(tokenizer.equals(0, "chr1"));
+        assertFalse(tokenizer.equals(0, "chr10"));
+        assertFalse(tokenizer.equals(1, "101"));
+        assertEquals(4, tokenizer.length(0));
+        assertEquals('1', tokenizer.charAt(1, 0));
+    }
+
+    @Test
+    public void testManyFields() throws Exception {
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < 100; i++) {
+            buf.append(i).append('\t');
+        }
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        assertEquals(100, tokenizer.tokenize(buf));
+        assertEquals(99, tokenizer.getInt(99));
+    }
+
+    @Test
+    public void testSetFields() throws Exception {
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        tokenizer.tokenize("chr2	5	6	x	y");
+        String[] fields = {"chr1", " 100 ", "0.5", null, ""};
+        assertEquals(5, tokenizer.setFields(fields));
+        assertEquals("chr1", tokenizer.getString(0));
+        assertEquals(100, tokenizer.getInt(1));
+        assertEquals(0.5f, tokenizer.getFloat(2), 0);
+        assertNull(tokenizer.getString(3));
+        assertEquals(0, tokenizer.length(3));
+        assertEquals(1.0f, tokenizer.getFloat(3, 1.0f), 0);
+        assertTrue(tokenizer.equals(0, "chr1"));
+        assertArrayEquals(fields, tokenizer.toArray());
+
+        tokenizer.tokenize("chr2	5");
+        assertEquals(2, tokenizer.getCount());
+        assertEquals("chr2", tokenizer.getString(0));
+        assertEquals(5, tokenizer.getInt(1));
+    }
+}
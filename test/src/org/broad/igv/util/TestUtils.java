@@ -11,6 +11,8 @@
 
 package org.broad.igv.util;
 
+import org.apache.commons.io.FileUtils;
+import org.broad.igv.DirectoryManager;
 import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.genome.Genome;
@@ -43,6 +45,8 @@ public class TestUtils {
         LARGE_DATA_DIR = System.getProperty(LARGE_DATA_DIR_KEY, LARGE_DATA_DIR);
     }
 
+    private static File genomeCacheDir;
+
     private static void setUpTestEnvironment() {
         Globals.setTesting(true);
         PreferenceManager.getInstance().setPrefsFile("testprefs.properties");
@@ -55,6 +59,18 @@ public class TestUtils {
         if (!outDir.exists()) {
             outDir.mkdir();
         }
+
+        //Compile genomes into a temporary directory rather than the user's genome cache
+        if (genomeCacheDir == null) {
+            genomeCacheDir = new File(System.getProperty("java.io.tmpdir"), "igvgenomes" + System.nanoTime());
+            genomeCacheDir.mkdir();
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                public void run() {
+                    FileUtils.deleteQuietly(genomeCacheDir);
+                }
+            });
+        }
+        DirectoryManager.setGenomeCacheDirectory(genomeCacheDir);
     }
 
     public static void setUpHeadless() {
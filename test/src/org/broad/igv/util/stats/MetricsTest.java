@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stats;
+
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Test
+    public void testCounter() throws Exception {
+        Metrics.Counter counter = Metrics.counter("test.counter");
+        counter.reset();
+        counter.inc();
+        counter.add(41);
+        assertEquals(42, counter.getCount());
+        assertSame(counter, Metrics.counter("test.counter"));
+    }
+
+    @Test
+    public void testHistogram() throws Exception {
+        Metrics.Histogram histogram = Metrics.histogram("test.histogram");
+        histogram.reset();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.update(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSum(), 1e-6);
+        assertEquals(1000, histogram.getMax(), 1e-6);
+        assertEquals(500, histogram.getPercentile(50), 50);
+        assertEquals(990, histogram.getPercentile(99), 20);
+    }
+
+    @Test
+    public void testTimer() throws Exception {
+        Metrics.Timer timer = Metrics.timer("test.timer");
+        timer.reset();
+        long t0 = timer.start();
+        Thread.sleep(20);
+        timer.stop(t0);
+        assertEquals(1, timer.getCount());
+        assertTrue(timer.getMax() >= 19);
+        assertTrue(timer.toString().startsWith("test.timer count=1 "));
+        assertTrue(timer.toString().contains("ms"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeConflict() throws Exception {
+        Metrics.counter("test.conflict");
+        Metrics.timer("test.conflict");
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        Metrics.Timer timer = Metrics.timer("test.remove");
+        assertTrue(Metrics.contains("test.remove"));
+        Metrics.remove("test.remove");
+        assertFalse(Metrics.contains("test.remove"));
+        assertNotSame(timer, Metrics.timer("test.remove"));
+        Metrics.remove("test.remove");
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        Metrics.reset();
+        Metrics.counter("test.report.b").add(2);
+        Metrics.counter("test.report.a").inc();
+        Metrics.counter("test.report.unused");
+
+        List<String> report = Metrics.getReport();
+        assertEquals(2, report.size());
+        assertEquals("test.report.a 1", report.get(0));
+        assertEquals("test.report.b 2", report.get(1));
+
+        File file = new File(TestUtils.DATA_DIR, "out/metrics.txt");
+        file.delete();
+        try {
+            Metrics.writeReport(file);
+            Metrics.writeReport(file);
+            List<String> lines = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            String nextLine;
+            while ((nextLine = reader.readLine()) != null) {
+                lines.add(nextLine);
+            }
+            reader.close();
+            assertEquals(6, lines.size());
+            assertTrue(lines.get(0).startsWith("#"));
+            assertEquals("test.report.a 1", lines.get(1));
+            assertTrue(lines.get(3).startsWith("#"));
+        } finally {
+            file.delete();
+        }
+
+        Metrics.reset();
+        assertTrue(Metrics.getReport().isEmpty());
+        assertEquals(0, Metrics.counter("test.report.b").getCount());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stats;
+
+import org.apache.commons.math.stat.StatUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+
+    static double[] percentiles = {2, 10, 50, 90, 98};
+
+    /**
+     * Percentiles of a sketch that has not compacted are exact
+     */
+    @Test
+    public void testExactForSmallCounts() throws Exception {
+        Random random = new Random(1);
+        for (int n = 1; n < QuantileSketch.DEFAULT_K; n += 17) {
+            QuantileSketch sketch = new QuantileSketch();
+            double[] values = new double[n];
+            for (int i = 0; i < n; i++) {
+                float v = (float) random.nextGaussian();
+                values[i] = v;
+                sketch.add(v);
+            }
+            for (double p : percentiles) {
+                assertEquals((float) StatUtils.percentile(values, p), (float) sketch.getPercentile(p), 1.0e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeCount() throws Exception {
+        Random random = new Random(2);
+        QuantileSketch sketch = new QuantileSketch();
+        int n = 1000000;
+        for (int i = 0; i < n; i++) {
+            sketch.add(random.nextFloat());
+        }
+        assertEquals(n, sketch.getCount());
+        for (double p : percentiles) {
+            assertEquals(p / 100, sketch.getPercentile(p), 1.0e-2);
+        }
+        // Memory is bounded by the sketch size, not the number of values
+        assertTrue(sketch.getRetainedCount() < 3 * QuantileSketch.DEFAULT_K);
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        Random random = new Random(3);
+        QuantileSketch merged = new QuantileSketch();
+        for (int s = 0; s < 100; s++) {
+            QuantileSketch sketch = new QuantileSketch();
+            int n = random.nextInt(20000);
+            for (int i = 0; i < n; i++) {
+                sketch.add(random.nextFloat());
+            }
+            long count = merged.getCount();
+            merged.merge(sketch);
+            assertEquals(count + n, merged.getCount());
+        }
+        for (double p : percentiles) {
+            assertEquals(p / 100, merged.getPercentile(p), 1.0e-2);
+        }
+        assertTrue(merged.getRetainedCount() < 3 * QuantileSketch.DEFAULT_K);
+    }
+
+    @Test
+    public void testEmptyAndNaN() throws Exception {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.getPercentile(50)));
+        sketch.add(Float.NaN);
+        assertEquals(0, sketch.getCount());
+        sketch.add(3);
+        assertEquals(3, sketch.getPercentile(50), 0);
+        assertEquals(3, sketch.getMin(), 0);
+        assertEquals(3, sketch.getMax(), 0);
+    }
+}
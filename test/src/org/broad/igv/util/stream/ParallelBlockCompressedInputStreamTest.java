@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.stream;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+import net.sf.samtools.util.BlockCompressedOutputStream;
+import net.sf.samtools.util.SeekableFileStream;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ParallelBlockCompressedInputStreamTest {
+
+    static File file;
+    static int nLines = 200000;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        file = File.createTempFile("parallelBGZF", ".gz");
+        BlockCompressedOutputStream os = new BlockCompressedOutputStream(file);
+        Random random = new Random(1);
+        for (int i = 0; i < nLines; i++) {
+            String line = "chr1\t" + i + "\t" + random.nextInt() + "\t" + random.nextGaussian() + (i % 7 == 0 ? "\r\n" : "\n");
+            os.write(line.getBytes());
+        }
+        os.close();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        file.delete();
+    }
+
+    @Test
+    public void testReadMatchesPicard() throws Exception {
+        BlockCompressedInputStream expected = new BlockCompressedInputStream(file);
+        ParallelBlockCompressedInputStream actual = new ParallelBlockCompressedInputStream(new SeekableFileStream(file));
+
+        byte[] b1 = new byte[10000];
+        byte[] b2 = new byte[10000];
+        long total = 0;
+        int n;
+        while ((n = readFully(expected, b1)) > 0) {
+            assertEquals(n, readFully(actual, b2));
+            for (int i = 0; i < n; i++) {
+                assertEquals(b1[i], b2[i]);
+            }
+            total += n;
+        }
+        assertEquals(-1, actual.read());
+        assertTrue(total > 10 * ParallelBlockCompressedInputStream.MAX_BLOCK_SIZE);
+        expected.close();
+        actual.close();
+    }
+
+    @Test
+    public void testReadLineAndSeek() throws Exception {
+
+        // Record the virtual file pointer of every line start
+        BlockCompressedInputStream expected = new BlockCompressedInputStream(file);
+        List<Long> pointers = new ArrayList<Long>();
+        List<String> lines = new ArrayList<String>();
+        String line;
+        pointers.add(0L);
+        while ((line = expected.readLine()) != null) {
+            lines.add(line);
+            pointers.add(expected.getFilePointer());
+        }
+        expected.close();
+        assertEquals(nLines, lines.size());
+
+        ParallelBlockCompressedInputStream actual = new ParallelBlockCompressedInputStream(new SeekableFileStream(file));
+        for (int i = 0; i < nLines; i++) {
+            assertEquals(lines.get(i), actual.readLine());
+            // The end of the last line may or may not be reported past the empty terminating block
+            if (i + 1 < nLines) {
+                assertEquals((long) pointers.get(i + 1), actual.getFilePointer());
+            }
+        }
+        assertNull(actual.readLine());
+
+        // Seek forward and backward,  both within the read ahead and beyond it
+        Random random = new Random(2);
+        for (int i = 0; i < 500; i++) {
+            int lineNumber = random.nextInt(nLines - 1);
+            actual.seek(pointers.get(lineNumber));
+            assertEquals(lines.get(lineNumber), actual.readLine());
+            assertEquals((long) pointers.get(lineNumber + 1), actual.getFilePointer());
+        }
+        actual.close();
+    }
+
+    private static int readFully(java.io.InputStream is, byte[] b) throws Exception {
+        int n = 0;
+        while (n < b.length) {
+            int count = is.read(b, n, b.length - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
+        return n;
+    }
+}